@@ -12,6 +12,9 @@ curl localhost:2223/api/v1/account/1
 # View all accounts
 curl localhost:2223/api/v1/account
 
+# View accounts a page at a time, pass nextAfter from the response as after to get the next page
+curl 'localhost:2223/api/v1/account/page?after=0&limit=100'
+
 # Transfer money
 curl -XPUT -H "Content-Type: application/json" -d '
  {
@@ -20,3 +23,28 @@ curl -XPUT -H "Content-Type: application/json" -d '
    "currency" : "GBP",
    "transferAmount" : 12.34
  }' localhost:2223/api/v1/account
+
+# View the balance changes of account 1, optionally limited to a time range in epoch milliseconds
+curl 'localhost:2223/api/v1/account/1/transactions?from=0&limit=100'
+
+# Transfer money safely retryable, a retry with the same key is not applied twice
+curl -XPUT -H "Content-Type: application/json" -H "Idempotency-Key: 6f1c2a52-transfer-1" -d '
+ {
+   "sourceAccountId" : 1,
+   "destinationAccountId" : 2,
+   "currency" : "GBP",
+   "transferAmount" : 12.34
+ }' localhost:2223/api/v1/account
+
+# Transfer money in a batch (all or nothing)
+curl -XPOST -H "Content-Type: application/json" -d '
+ [
+   { "sourceAccountId" : 1, "destinationAccountId" : 2, "currency" : "GBP", "transferAmount" : 1.00 },
+   { "sourceAccountId" : 2, "destinationAccountId" : 1, "currency" : "GBP", "transferAmount" : 0.50 }
+ ]' localhost:2223/api/v1/account/transfers/batch
+
+# View server thread pool load
+curl localhost:2223/api/v1/server/threadPools
+
+# View metrics in Prometheus text format
+curl localhost:2223/metrics
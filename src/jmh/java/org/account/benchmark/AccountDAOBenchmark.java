@@ -0,0 +1,54 @@
+package org.account.benchmark;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.AccountDAOImpl;
+import org.account.exception.AccountNotFoundException;
+import org.account.exception.InsufficientFundsException;
+import org.account.model.Account;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single account DAO operations against a uniformly random account.
+ * Run with -t to vary the number of threads and -p accounts=... to vary the population.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountDAOBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int accounts;
+
+    private AccountDAO dao;
+
+    @Setup
+    public void setup() {
+        dao = new AccountDAOImpl();
+        BenchmarkData.populate(dao, accounts);
+    }
+
+    @Benchmark
+    public Account getAccount() throws AccountNotFoundException {
+        return dao.getAccount(randomId());
+    }
+
+    @Benchmark
+    public boolean accountWithdraw() throws AccountNotFoundException, InsufficientFundsException {
+        return dao.accountWithdraw(randomId(), BenchmarkData.TRANSFER_AMOUNT, randomId());
+    }
+
+    @Benchmark
+    public boolean accountDeposit() throws AccountNotFoundException {
+        return dao.accountDeposit(randomId(), BenchmarkData.TRANSFER_AMOUNT, randomId());
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(accounts) + 1;
+    }
+}
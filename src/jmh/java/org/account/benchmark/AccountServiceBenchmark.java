@@ -0,0 +1,128 @@
+package org.account.benchmark;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.AccountDAOImpl;
+import org.account.dao.LedgerAccountDAO;
+import org.account.dao.PartitionedAccountDAO;
+import org.account.fx.NoOpCurrencyConverter;
+import org.account.idempotency.NoOpIdempotencyCache;
+import org.account.journal.NoOpJournal;
+import org.account.ledger.LedgerImpl;
+import org.account.lock.AccountLockManagerImpl;
+import org.account.model.dto.TransferDTO;
+import org.account.service.AccountService;
+import org.account.service.AccountServiceImpl;
+import org.account.service.OptimisticAccountServiceImpl;
+import org.account.service.PartitionedAccountServiceImpl;
+import org.account.service.SequencedAccountServiceImpl;
+import org.account.snapshot.NoOpSnapshotManager;
+import org.account.transformer.AccountTransformerImpl;
+import org.account.validator.AccountValidatorImpl;
+import org.account.validator.TransferValidatorImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end service transfers. UNCONTENDED picks both accounts uniformly from the
+ * whole population, CONTENDED sends every transfer through a small set of hot accounts
+ * and HOT_ACCOUNT puts account 1 on one side of nine transfers in ten. Each runs against
+ * the lock based service, the optimistic service that only takes locks to validate and apply,
+ * the single writer sequenced service and the partitioned service with one writer per partition,
+ * optionally recording every balance change in the ledger. The ledger only grows, so keep ledger
+ * runs short.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountServiceBenchmark {
+
+    private static final int HOT_ACCOUNTS = 4;
+
+    private static final int HOT_ACCOUNT_PERCENT = 90;
+
+    public enum Distribution { UNCONTENDED, CONTENDED, HOT_ACCOUNT }
+
+    public enum ServiceMode { LOCKING, OPTIMISTIC, SEQUENCED, PARTITIONED }
+
+    @Param({"10000"})
+    public int accounts;
+
+    @Param({"UNCONTENDED", "CONTENDED", "HOT_ACCOUNT"})
+    public Distribution distribution;
+
+    @Param({"LOCKING", "OPTIMISTIC", "SEQUENCED", "PARTITIONED"})
+    public ServiceMode mode;
+
+    @Param({"false"})
+    public boolean ledger;
+
+    /** Partitions in PARTITIONED mode, 0 for one per core */
+    @Param({"0"})
+    public int partitions;
+
+    private AccountService service;
+
+    @Setup
+    public void setup() {
+        int partitionCount = partitions > 0 ? partitions : Runtime.getRuntime().availableProcessors();
+        AccountDAO dao = mode == ServiceMode.PARTITIONED ? new PartitionedAccountDAO(partitionCount) : new AccountDAOImpl();
+        BenchmarkData.populate(dao, accounts);
+        if (ledger) {
+            dao = new LedgerAccountDAO(dao, new LedgerImpl());
+        }
+        if (mode == ServiceMode.SEQUENCED) {
+            service = new SequencedAccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                    new AccountTransformerImpl(), dao, new NoOpJournal(), new NoOpSnapshotManager());
+        }
+        else if (mode == ServiceMode.PARTITIONED) {
+            service = new PartitionedAccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                    new AccountTransformerImpl(), dao, new NoOpJournal(), new NoOpSnapshotManager(), partitionCount);
+        }
+        else if (mode == ServiceMode.OPTIMISTIC) {
+            service = new OptimisticAccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                    new AccountTransformerImpl(), dao, new AccountLockManagerImpl(), new NoOpJournal(),
+                    new NoOpSnapshotManager(), new NoOpIdempotencyCache(), new NoOpCurrencyConverter());
+        }
+        else {
+            service = new AccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                    new AccountTransformerImpl(), dao);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (service instanceof SequencedAccountServiceImpl) {
+            ((SequencedAccountServiceImpl) service).close();
+        }
+        if (service instanceof PartitionedAccountServiceImpl) {
+            ((PartitionedAccountServiceImpl) service).close();
+        }
+    }
+
+    @Benchmark
+    public void transferMoney() throws Exception {
+        service.transferMoney(nextTransfer());
+    }
+
+    private TransferDTO nextTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (distribution == Distribution.HOT_ACCOUNT && random.nextInt(100) < HOT_ACCOUNT_PERCENT) {
+            int otherId = random.nextInt(accounts - 1) + 2;
+            return random.nextBoolean()
+                    ? BenchmarkData.createTransferDTO(1, otherId)
+                    : BenchmarkData.createTransferDTO(otherId, 1);
+        }
+        int range = distribution == Distribution.CONTENDED ? Math.min(HOT_ACCOUNTS, accounts) : accounts;
+        int srcId = random.nextInt(range) + 1;
+        int dstId = random.nextInt(range - 1) + 1;
+        if (dstId >= srcId) {
+            dstId++;
+        }
+        return BenchmarkData.createTransferDTO(srcId, dstId);
+    }
+}
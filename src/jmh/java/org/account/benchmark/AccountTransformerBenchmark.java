@@ -0,0 +1,42 @@
+package org.account.benchmark;
+
+import org.account.model.Account;
+import org.account.model.dto.AccountDTO;
+import org.account.transformer.AccountTransformer;
+import org.account.transformer.AccountTransformerImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountTransformerBenchmark {
+
+    @Param({"false", "true"})
+    public boolean minorUnitBalances;
+
+    private AccountTransformer transformer;
+    private Account account;
+    private AccountDTO accountDTO;
+
+    @Setup
+    public void setup() {
+        transformer = new AccountTransformerImpl(minorUnitBalances);
+        accountDTO = BenchmarkData.createAccountDTO(1);
+        account = transformer.fromDTO(accountDTO);
+    }
+
+    @Benchmark
+    public AccountDTO toDTO() {
+        return transformer.toDTO(account);
+    }
+
+    @Benchmark
+    public Account fromDTO() {
+        return transformer.fromDTO(accountDTO);
+    }
+}
@@ -0,0 +1,57 @@
+package org.account.benchmark;
+
+import org.account.dao.AccountDAO;
+import org.account.model.Account;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.TransferDTO;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Date;
+
+/**
+ * Builds the account populations shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    /** Large enough that no benchmark run can exhaust an account */
+    static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000000.00");
+    static final BigDecimal TRANSFER_AMOUNT = new BigDecimal("0.01");
+    static final String CURRENCY = "GBP";
+
+    private BenchmarkData() {}
+
+    static void populate(AccountDAO dao, int accounts) {
+        for (int i = 1; i <= accounts; i++) {
+            dao.createAccount(createAccount(i));
+        }
+    }
+
+    static Account createAccount(int id) {
+        Account account = new Account();
+        account.setId(id);
+        account.setAccountHolderName("Account holder " + id);
+        account.setCurrency(Currency.getInstance(CURRENCY));
+        account.setBalance(INITIAL_BALANCE);
+        account.setCreatedDate(new Date());
+        return account;
+    }
+
+    static AccountDTO createAccountDTO(int id) {
+        AccountDTO dto = new AccountDTO();
+        dto.setId(id);
+        dto.setAccountHolderName("Account holder " + id);
+        dto.setCurrency(CURRENCY);
+        dto.setBalance(INITIAL_BALANCE);
+        return dto;
+    }
+
+    static TransferDTO createTransferDTO(int srcId, int dstId) {
+        TransferDTO dto = new TransferDTO();
+        dto.setSourceAccountId(srcId);
+        dto.setDestinationAccountId(dstId);
+        dto.setCurrency(CURRENCY);
+        dto.setTransferAmount(TRANSFER_AMOUNT);
+        return dto;
+    }
+}
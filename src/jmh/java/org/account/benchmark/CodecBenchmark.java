@@ -0,0 +1,93 @@
+package org.account.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.account.codec.AccountBinaryCodec;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.TransferDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes the bodies of the busiest endpoints with Jackson, as the JSON content type does,
+ * and with the fixed binary layout. Both sides produce or consume a byte array, as they would on a
+ * connection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    private ObjectMapper mapper;
+    private TransferDTO transfer;
+    private AccountDTO account;
+    private byte[] transferJson;
+    private byte[] transferBinary;
+    private byte[] accountJson;
+    private byte[] accountBinary;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = new ObjectMapper();
+        transfer = BenchmarkData.createTransferDTO(1, 2);
+        account = BenchmarkData.createAccountDTO(1);
+        account.setCreatedDate(new Date());
+        transferJson = mapper.writeValueAsBytes(transfer);
+        accountJson = mapper.writeValueAsBytes(account);
+        transferBinary = writeTransferBinary();
+        accountBinary = writeAccountBinary();
+    }
+
+    @Benchmark
+    public byte[] writeTransferJson() throws IOException {
+        return mapper.writeValueAsBytes(transfer);
+    }
+
+    @Benchmark
+    public byte[] writeTransferBinary() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        AccountBinaryCodec.writeTransfer(transfer, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public TransferDTO readTransferJson() throws IOException {
+        return mapper.readValue(transferJson, TransferDTO.class);
+    }
+
+    @Benchmark
+    public TransferDTO readTransferBinary() throws IOException {
+        return AccountBinaryCodec.readTransfer(new DataInputStream(new ByteArrayInputStream(transferBinary)));
+    }
+
+    @Benchmark
+    public byte[] writeAccountJson() throws IOException {
+        return mapper.writeValueAsBytes(account);
+    }
+
+    @Benchmark
+    public byte[] writeAccountBinary() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        AccountBinaryCodec.writeAccount(account, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public AccountDTO readAccountJson() throws IOException {
+        return mapper.readValue(accountJson, AccountDTO.class);
+    }
+
+    @Benchmark
+    public AccountDTO readAccountBinary() throws IOException {
+        return AccountBinaryCodec.readAccount(new DataInputStream(new ByteArrayInputStream(accountBinary)));
+    }
+}
@@ -0,0 +1,51 @@
+package org.account.benchmark;
+
+import org.account.journal.FileJournalImpl;
+import org.account.journal.FsyncPolicy;
+import org.account.journal.Journal;
+import org.account.journal.JournalRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journal append throughput per fsync policy. Appends block until the record is durable
+ * under the chosen policy, so run with -t to see how group commit amortises each fsync.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+
+    @Param({"EVERY_RECORD", "GROUP", "NONE"})
+    public FsyncPolicy fsyncPolicy;
+
+    private Path path;
+    private Journal journal;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        path = Files.createTempFile("journal-benchmark", ".log");
+        journal = new FileJournalImpl(path, fsyncPolicy);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        journal.close();
+        Files.delete(path);
+    }
+
+    @Benchmark
+    public long appendTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return journal.append(JournalRecord.transfer(random.nextInt(1000) + 1, random.nextInt(1000) + 1,
+                BenchmarkData.TRANSFER_AMOUNT));
+    }
+}
@@ -0,0 +1,70 @@
+package org.account.benchmark;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.AccountDAOImpl;
+import org.account.dao.InstrumentedAccountDAO;
+import org.account.metrics.LatencyHistogram;
+import org.account.metrics.MetricsRegistry;
+import org.account.service.AccountService;
+import org.account.service.AccountServiceImpl;
+import org.account.service.InstrumentedAccountService;
+import org.account.transformer.AccountTransformerImpl;
+import org.account.validator.AccountValidatorImpl;
+import org.account.validator.TransferValidatorImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the instrumentation: recording one latency, and an uncontended transfer with and without
+ * the service and store decorators.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @Param({"10000"})
+    public int accounts;
+
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private AccountService service;
+
+    @Setup
+    public void setup() {
+        MetricsRegistry registry = new MetricsRegistry();
+        AccountDAO dao = new AccountDAOImpl();
+        BenchmarkData.populate(dao, accounts);
+        if (instrumented) {
+            dao = new InstrumentedAccountDAO(dao, registry);
+        }
+        service = new AccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                new AccountTransformerImpl(), dao);
+        if (instrumented) {
+            service = new InstrumentedAccountService(service, registry);
+        }
+    }
+
+    @Benchmark
+    public void recordLatency() {
+        histogram.record(ThreadLocalRandom.current().nextInt(1_000_000));
+    }
+
+    @Benchmark
+    public void transferMoney() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int srcId = random.nextInt(accounts) + 1;
+        int dstId = random.nextInt(accounts - 1) + 1;
+        if (dstId >= srcId) {
+            dstId++;
+        }
+        service.transferMoney(BenchmarkData.createTransferDTO(srcId, dstId));
+    }
+}
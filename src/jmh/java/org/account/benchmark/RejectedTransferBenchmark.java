@@ -0,0 +1,93 @@
+package org.account.benchmark;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.AccountDAOImpl;
+import org.account.model.Account;
+import org.account.model.dto.TransferDTO;
+import org.account.service.AccountService;
+import org.account.service.AccountServiceImpl;
+import org.account.transformer.AccountTransformerImpl;
+import org.account.validator.AccountValidatorImpl;
+import org.account.validator.TransferValidatorImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service transfers that are all rejected, as under a misbehaving client: the source cannot cover the
+ * amount, an account does not exist, the currency code is unknown, the accounts are in different
+ * currencies with no exchange rate, or both sides are the same account. rejectTransfer drops the
+ * exception, rejectTransferWithMessage reads its message as the API does when answering.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RejectedTransferBenchmark {
+
+    public enum Rejection { INSUFFICIENT_FUNDS, ACCOUNT_NOT_FOUND, INVALID_CURRENCY, CURRENCY_MISMATCH, SAME_ACCOUNT }
+
+    @Param({"10000"})
+    public int accounts;
+
+    @Param({"INSUFFICIENT_FUNDS", "ACCOUNT_NOT_FOUND", "INVALID_CURRENCY", "CURRENCY_MISMATCH", "SAME_ACCOUNT"})
+    public Rejection rejection;
+
+    private AccountService service;
+
+    @Setup
+    public void setup() {
+        AccountDAO dao = new AccountDAOImpl();
+        BenchmarkData.populate(dao, accounts);
+        Account foreign = BenchmarkData.createAccount(accounts + 1);
+        foreign.setCurrency(Currency.getInstance("USD"));
+        dao.createAccount(foreign);
+        service = new AccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                new AccountTransformerImpl(), dao);
+    }
+
+    @Benchmark
+    public Exception rejectTransfer() {
+        try {
+            service.transferMoney(nextTransfer());
+        }
+        catch (Exception e) {
+            return e;
+        }
+        throw new IllegalStateException("Transfer was not rejected");
+    }
+
+    @Benchmark
+    public String rejectTransferWithMessage() {
+        return rejectTransfer().getMessage();
+    }
+
+    private TransferDTO nextTransfer() {
+        int srcId = ThreadLocalRandom.current().nextInt(accounts) + 1;
+        int dstId = srcId % accounts + 1;
+        TransferDTO transferDTO = BenchmarkData.createTransferDTO(srcId, dstId);
+        switch (rejection) {
+            case INSUFFICIENT_FUNDS:
+                transferDTO.setTransferAmount(BenchmarkData.INITIAL_BALANCE.add(BigDecimal.ONE));
+                break;
+            case ACCOUNT_NOT_FOUND:
+                transferDTO.setDestinationAccountId(accounts + 2 + srcId);
+                break;
+            case INVALID_CURRENCY:
+                transferDTO.setCurrency("XXY");
+                break;
+            case CURRENCY_MISMATCH:
+                transferDTO.setDestinationAccountId(accounts + 1);
+                break;
+            case SAME_ACCOUNT:
+                transferDTO.setDestinationAccountId(srcId);
+                break;
+        }
+        return transferDTO;
+    }
+}
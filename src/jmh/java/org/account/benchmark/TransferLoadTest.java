@@ -0,0 +1,188 @@
+package org.account.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.account.api.AccountBinaryProvider;
+import org.account.codec.AccountBinaryCodec;
+import org.account.model.dto.TransferDTO;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.util.BytesContentProvider;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpMethod;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed loop HTTP load test of the transfer endpoint. Every client keeps one transfer in flight on its
+ * own connection and sends the next as soon as the previous one has been answered, so the number of
+ * clients is the number of concurrent requests the server has to hold.
+ * <p>
+ * Run the server in its own JVM so each side has its own file descriptor limit, for example
+ * java -Daccount.api.async=false -cp target/benchmarks.jar org.account.App, then
+ * java -cp target/benchmarks.jar org.account.benchmark.TransferLoadTest [baseUri] [clients] [seconds] [accounts] [json|binary]
+ * <p>
+ * The last argument picks the content type of the transfer bodies, so the two can be compared end to end.
+ * <p>
+ * Half of the transfers go through a handful of hot accounts so that lock waits hold server threads.
+ */
+public class TransferLoadTest {
+
+    private static final String DEFAULT_BASE_URI = "http://localhost:2223/api/v1/account";
+    private static final int HOT_ACCOUNTS = 4;
+    private static final int MAX_SAMPLES = 10_000_000;
+    private static final long REQUEST_TIMEOUT_SECONDS = 60;
+    private static final String JSON = "application/json";
+    private static final String BINARY = "binary";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String baseUri;
+    private final int clients;
+    private final int accounts;
+    private final boolean binary;
+    private final HttpClient httpClient = new HttpClient();
+    private final long[] latencies = new long[MAX_SAMPLES];
+    private final AtomicInteger samples = new AtomicInteger();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicBoolean recording = new AtomicBoolean();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private TransferLoadTest(String baseUri, int clients, int accounts, boolean binary) {
+        this.baseUri = baseUri;
+        this.clients = clients;
+        this.accounts = accounts;
+        this.binary = binary;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUri = args.length > 0 ? args[0] : DEFAULT_BASE_URI;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int accounts = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        boolean binary = args.length > 4 && BINARY.equals(args[4]);
+        new TransferLoadTest(baseUri, clients, accounts, binary).run(seconds);
+    }
+
+    private void run(int seconds) throws Exception {
+        httpClient.setMaxConnectionsPerDestination(clients);
+        httpClient.setMaxRequestsQueuedPerDestination(clients * 2);
+        httpClient.setConnectTimeout(TimeUnit.SECONDS.toMillis(REQUEST_TIMEOUT_SECONDS));
+        httpClient.start();
+        try {
+            int firstId = createAccounts();
+            for (int i = 0; i < clients; i++) {
+                inFlight.incrementAndGet();
+                sendTransfer(firstId);
+            }
+
+            // Give every client time to connect before measuring
+            Thread.sleep(TimeUnit.SECONDS.toMillis(Math.max(5, seconds / 3)));
+            long errorsBefore = errors.get();
+            recording.set(true);
+            long start = System.nanoTime();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+            recording.set(false);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            report(elapsedSeconds, errors.get() - errorsBefore);
+
+            running.set(false);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(REQUEST_TIMEOUT_SECONDS);
+            while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+        }
+        finally {
+            httpClient.stop();
+        }
+    }
+
+    private int createAccounts() throws Exception {
+        int firstId = -1;
+        for (int i = 1; i <= accounts; i++) {
+            ContentResponse response = httpClient.newRequest(baseUri)
+                    .method(HttpMethod.POST)
+                    .content(new StringContentProvider(mapper.writeValueAsString(BenchmarkData.createAccountDTO(i))), JSON)
+                    .send();
+            int id = mapper.readTree(response.getContent()).get("id").asInt();
+            if (firstId < 0) {
+                firstId = id;
+            }
+        }
+        return firstId;
+    }
+
+    private void sendTransfer(int firstId) {
+        if (!running.get()) {
+            inFlight.decrementAndGet();
+            return;
+        }
+
+        byte[] body;
+        try {
+            body = binary ? binaryBody(nextTransfer(firstId)) : mapper.writeValueAsBytes(nextTransfer(firstId));
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        long start = System.nanoTime();
+        httpClient.newRequest(baseUri)
+                .method(HttpMethod.PUT)
+                .timeout(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .content(new BytesContentProvider(body), binary ? AccountBinaryProvider.APPLICATION_ACCOUNT_BINARY : JSON)
+                .send(result -> {
+                    if (result.isFailed() || result.getResponse().getStatus() != 200) {
+                        errors.incrementAndGet();
+                    }
+                    else if (recording.get()) {
+                        int sample = samples.getAndIncrement();
+                        if (sample < MAX_SAMPLES) {
+                            latencies[sample] = System.nanoTime() - start;
+                        }
+                    }
+                    sendTransfer(firstId);
+                });
+    }
+
+    private static byte[] binaryBody(TransferDTO transfer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(AccountBinaryProvider.VERSION);
+        AccountBinaryCodec.writeTransfer(transfer, out);
+        return bytes.toByteArray();
+    }
+
+    private TransferDTO nextTransfer(int firstId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int range = random.nextBoolean() ? Math.min(HOT_ACCOUNTS, accounts) : accounts;
+        int src = random.nextInt(range);
+        int dst = random.nextInt(range - 1);
+        if (dst >= src) {
+            dst++;
+        }
+        return BenchmarkData.createTransferDTO(firstId + src, firstId + dst);
+    }
+
+    private void report(double elapsedSeconds, long errorCount) {
+        int count = Math.min(samples.get(), MAX_SAMPLES);
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        System.out.println(String.format("clients=%d transfers=%d errors=%d throughput=%.0f/s p50=%.1fms p99=%.1fms p999=%.1fms",
+                clients, count, errorCount, count / elapsedSeconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999)));
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))] / 1e6;
+    }
+}
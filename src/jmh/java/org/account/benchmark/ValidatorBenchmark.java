@@ -0,0 +1,36 @@
+package org.account.benchmark;
+
+import org.account.exception.InvalidParameterException;
+import org.account.exception.RequiredParameterException;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.TransferDTO;
+import org.account.validator.AccountValidatorImpl;
+import org.account.validator.TransferValidatorImpl;
+import org.account.validator.Validator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidatorBenchmark {
+
+    private final Validator<AccountDTO> accountValidator = new AccountValidatorImpl();
+    private final Validator<TransferDTO> transferValidator = new TransferValidatorImpl();
+    private final AccountDTO accountDTO = BenchmarkData.createAccountDTO(1);
+    private final TransferDTO transferDTO = BenchmarkData.createTransferDTO(1, 2);
+
+    @Benchmark
+    public void validateAccount() throws InvalidParameterException, RequiredParameterException {
+        accountValidator.validate(accountDTO);
+    }
+
+    @Benchmark
+    public void validateTransfer() throws InvalidParameterException, RequiredParameterException {
+        transferValidator.validate(transferDTO);
+    }
+}
@@ -1,31 +1,138 @@
 package org.account;
 
+import org.account.model.dto.ThreadPoolStatsDTO;
 import org.account.model.dto.TransferDTO;
 import org.account.validator.TransferValidatorImpl;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.servlet.ServletContainer;
 import org.account.api.AccountApi;
 import org.account.api.AccountApiImpl;
+import org.account.api.AccountBinaryProvider;
+import org.account.cache.AccountJsonCache;
+import org.account.cache.AccountJsonCacheImpl;
+import org.account.cache.NoOpAccountJsonCache;
+import org.account.api.MetricsApi;
+import org.account.api.MetricsApiImpl;
+import org.account.api.RequestMetricsFilter;
+import org.account.api.AdmissionFilter;
+import org.account.api.ReplicaFilter;
+import org.account.admission.AdaptiveConcurrencyLimiter;
+import org.account.admission.ClientRateLimiter;
+import org.account.api.ServerApi;
+import org.account.api.ServerApiImpl;
+import org.account.cluster.ClusterClient;
+import org.account.cluster.ClusterPeer;
+import org.account.cluster.ClusterServer;
+import org.account.cluster.HashRing;
 import org.account.dao.AccountDAO;
+import org.account.config.AdmissionConfig;
+import org.account.config.AppConfig;
+import org.account.config.ClusterConfig;
+import org.account.config.ReplicationConfig;
+import org.account.config.ServerConfig;
 import org.account.dao.AccountDAOImpl;
+import org.account.dao.InstrumentedAccountDAO;
+import org.account.dao.LedgerAccountDAO;
+import org.account.dao.OffHeapAccountDAO;
+import org.account.dao.OwnedAccountDAO;
+import org.account.dao.PartitionedAccountDAO;
+import org.account.fx.CurrencyConverter;
+import org.account.fx.CurrencyConverterImpl;
+import org.account.fx.FileFxRateProvider;
+import org.account.fx.NoOpCurrencyConverter;
+import org.account.idempotency.IdempotencyCache;
+import org.account.idempotency.IdempotencyCacheImpl;
+import org.account.idempotency.NoOpIdempotencyCache;
+import org.account.journal.FileJournalImpl;
+import org.account.ledger.LedgerImpl;
+import org.account.journal.Journal;
+import org.account.journal.JournalReplayer;
+import org.account.journal.NoOpJournal;
+import org.account.lock.AccountLockManager;
+import org.account.lock.AccountLockManagerImpl;
+import org.account.lock.LockStatistics;
+import org.account.metrics.MetricsRegistry;
+import org.account.replication.ReplicationClient;
+import org.account.replication.ReplicationServer;
 import org.account.model.dto.AccountDTO;
+import org.account.snapshot.NoOpSnapshotManager;
+import org.account.snapshot.SnapshotInfo;
+import org.account.snapshot.SnapshotManager;
+import org.account.snapshot.SnapshotManagerImpl;
+import org.account.snapshot.SnapshotReader;
 import org.account.service.AccountService;
 import org.account.service.AccountServiceImpl;
+import org.account.service.AsyncAccountService;
+import org.account.service.AsyncAccountServiceImpl;
+import org.account.service.ClusterAccountServiceImpl;
+import org.account.service.InstrumentedAccountService;
+import org.account.service.InstrumentedAsyncAccountService;
+import org.account.service.OptimisticAccountServiceImpl;
+import org.account.service.PartitionedAccountServiceImpl;
+import org.account.service.SequencedAccountServiceImpl;
 import org.account.transformer.AccountTransformer;
 import org.account.transformer.AccountTransformerImpl;
 import org.account.validator.AccountValidatorImpl;
 import org.account.validator.Validator;
 
+import javax.servlet.DispatcherType;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class AppServer {
 
     private static final String API_PACKAGE = "org.account.api";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final String SERVER_THREAD_POOL = "jetty";
+    private static final String SERVICE_THREAD_POOL = "account-service";
+    private static final String JOURNAL_RECOVERED_MSG = "Recovered %s journal records from %s";
+    private static final String SNAPSHOT_LOADED_MSG = "Loaded %s accounts from snapshot %s in %s ms";
+    private static final String PARTITIONED_STORE_ERR = "PARTITIONED mode only supports the HEAP store, not %s";
+    private static final String CLUSTER_MODE_ERR = "Cluster mode needs the LOCKING or OPTIMISTIC service mode, not %s";
+    private static final String PRIMARY_JOURNAL_ERR = "A replication primary ships its journal, so it needs a journal path";
+    private static final String REPLICA_JOURNAL_ERR = "A replica applies its primary's journal and cannot keep one of its own";
+    private static final String REPLICA_CLUSTER_ERR = "A replica cannot also be a cluster node";
+    private static final String SNAPSHOT_LOAD_ERR = "ERROR: %s, replaying the whole journal instead";
     private Server server;
+    private Journal journal;
+    private SnapshotManager snapshotManager;
+    private CurrencyConverterImpl currencyConverter;
+    private SequencedAccountServiceImpl sequencedService;
+    private PartitionedAccountServiceImpl partitionedService;
+    private ClusterAccountServiceImpl clusterService;
+    private ClusterServer clusterServer;
+    private final List<ClusterClient> clusterClients = new ArrayList<>();
+    private ReplicationServer replicationServer;
+    private ReplicationClient replicationClient;
+    private AdmissionFilter admissionFilter;
+    private ThreadPoolExecutor serviceExecutor;
+    private QueuedThreadPool threadPool;
+    private int threadPoolQueueCapacity;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+
+    public AppServer(int port) throws IOException {
+        this(port, AppConfig.load());
+    }
 
-    public AppServer(int port) {
-        configureServer(port);
+    public AppServer(int port, AppConfig config) throws IOException {
+        configureServer(port, config);
     }
 
     public void runServer() throws Exception {
@@ -35,6 +142,9 @@ public class AppServer {
         }
         finally {
             server.destroy();
+            closeServices();
+            snapshotManager.close();
+            journal.close();
         }
     }
 
@@ -44,34 +154,487 @@ public class AppServer {
 
     public void stopTestServer() throws Exception {
         server.stop();
+        closeServices();
+        snapshotManager.close();
+        journal.close();
     }
 
-    private void configureServer(int port) {
-        AccountApi accountApi = createApi();
-        ServletHolder servlet = configureServlet(accountApi);
-        server = configureServer(servlet, port);
+    /**
+     * @return Current load of the Jetty thread pool and, if there is one, the pool running service calls
+     */
+    public List<ThreadPoolStatsDTO> getThreadPoolStats() {
+        List<ThreadPoolStatsDTO> stats = new ArrayList<>(2);
+        int threads = threadPool.getThreads();
+        int busyThreads = threads - threadPool.getIdleThreads();
+        stats.add(threadPoolStats(SERVER_THREAD_POOL, threadPool.getMinThreads(), threadPool.getMaxThreads(), threads,
+                busyThreads, threadPool.getQueueSize(), threadPoolQueueCapacity, threadPool.isLowOnThreads()));
+        if (serviceExecutor != null) {
+            int activeThreads = serviceExecutor.getActiveCount();
+            stats.add(threadPoolStats(SERVICE_THREAD_POOL, serviceExecutor.getCorePoolSize(),
+                    serviceExecutor.getMaximumPoolSize(), serviceExecutor.getPoolSize(), activeThreads,
+                    serviceExecutor.getQueue().size(), -1, activeThreads >= serviceExecutor.getMaximumPoolSize()));
+        }
+        return stats;
     }
 
-    private AccountApi createApi() {
+    private ThreadPoolStatsDTO threadPoolStats(String name, int minThreads, int maxThreads, int threads, int busyThreads,
+                                               int queuedJobs, int queueCapacity, boolean lowOnThreads) {
+        ThreadPoolStatsDTO dto = new ThreadPoolStatsDTO();
+        dto.setName(name);
+        dto.setMinThreads(minThreads);
+        dto.setMaxThreads(maxThreads);
+        dto.setThreads(threads);
+        dto.setBusyThreads(busyThreads);
+        dto.setQueuedJobs(queuedJobs);
+        dto.setQueueCapacity(queueCapacity);
+        dto.setUtilisation(maxThreads > 0 ? (double) busyThreads / maxThreads : 0);
+        dto.setLowOnThreads(lowOnThreads);
+        return dto;
+    }
+
+    private void configureServer(int port, AppConfig config) throws IOException {
+        AccountApi accountApi = createApi(config);
+        ServerApi serverApi = new ServerApiImpl(this::getThreadPoolStats);
+        MetricsApi metricsApi = new MetricsApiImpl(metrics);
+        ServletHolder servlet = configureServlet(config, accountApi, serverApi, metricsApi);
+        server = configureServer(servlet, port, config.getServerConfig());
+        registerThreadPoolMetrics();
+    }
+
+    private AccountApi createApi(AppConfig config) throws IOException {
         Validator<AccountDTO> accountValidator = new AccountValidatorImpl();
         Validator<TransferDTO> transferValidator = new TransferValidatorImpl();
-        AccountTransformer transformer = new AccountTransformerImpl();
-        AccountDAO dao = new AccountDAOImpl();
-        AccountService service = new AccountServiceImpl(accountValidator, transferValidator, transformer, dao);
-        return new AccountApiImpl(service);
+        AccountTransformer transformer = new AccountTransformerImpl(config.isMinorUnitBalances());
+        checkReplicationConfig(config);
+        ClusterConfig clusterConfig = config.getClusterConfig();
+        HashRing ring = clusterConfig.isEnabled() ? createRing(config) : null;
+        AccountDAO dao = createStore(config);
+        if (ring != null) {
+            // Replay, snapshots and the service all see this node's accounts only, and new IDs are this node's
+            int nodeIndex = clusterConfig.getNodeIndex();
+            dao = new OwnedAccountDAO(dao, id -> ring.ownerOf(id) == nodeIndex);
+        }
+        AccountLockManager lockManager = new AccountLockManagerImpl(config.getLockTimeoutMillis());
+        SnapshotInfo snapshot = loadSnapshot(config, dao);
+        journal = createJournal(config, dao, snapshot);
+        snapshotManager = createSnapshotManager(config, dao);
+        // Recovery and snapshots use the store directly, only the service's calls are recorded and timed
+        AccountDAO serviceDAO = config.isLedgerEnabled() ? createLedgerDAO(dao) : dao;
+        if (config.isMetricsEnabled()) {
+            serviceDAO = new InstrumentedAccountDAO(serviceDAO, metrics);
+        }
+        startReplication(config.getReplicationConfig(), config, serviceDAO);
+        IdempotencyCache idempotencyCache = createIdempotencyCache(config);
+        CurrencyConverter converter = createCurrencyConverter(config);
+        AccountService service;
+        if (config.getServiceMode() == AppConfig.ServiceMode.SEQUENCED) {
+            sequencedService = new SequencedAccountServiceImpl(accountValidator, transferValidator, transformer,
+                    serviceDAO, journal, snapshotManager, SequencedAccountServiceImpl.DEFAULT_BUFFER_SIZE,
+                    idempotencyCache, converter);
+            service = sequencedService;
+        }
+        else if (config.getServiceMode() == AppConfig.ServiceMode.PARTITIONED) {
+            partitionedService = new PartitionedAccountServiceImpl(accountValidator, transferValidator, transformer,
+                    serviceDAO, journal, snapshotManager, config.getPartitions(),
+                    PartitionedAccountServiceImpl.DEFAULT_QUEUE_SIZE, idempotencyCache, converter);
+            registerPartitionMetrics(partitionedService);
+            service = partitionedService;
+        }
+        else if (config.getServiceMode() == AppConfig.ServiceMode.OPTIMISTIC) {
+            OptimisticAccountServiceImpl optimisticService = new OptimisticAccountServiceImpl(accountValidator,
+                    transferValidator, transformer, serviceDAO, lockManager, journal, snapshotManager, idempotencyCache,
+                    converter);
+            registerLockMetrics(lockManager.getStatistics());
+            registerOptimisticMetrics(optimisticService);
+            service = optimisticService;
+        }
+        else {
+            service = new AccountServiceImpl(accountValidator, transferValidator, transformer, serviceDAO,
+                    lockManager, journal, snapshotManager, idempotencyCache, converter);
+            registerLockMetrics(lockManager.getStatistics());
+        }
+        if (ring != null) {
+            service = createClusterService(config, ring, service, transferValidator, serviceDAO, lockManager,
+                    idempotencyCache, converter);
+        }
+        if (config.isMetricsEnabled()) {
+            service = new InstrumentedAccountService(service, metrics);
+        }
+        return new AccountApiImpl(service, createAsyncService(config, service), createJsonCache(config, service),
+                config.getAsyncTimeoutMillis());
+    }
+
+    private void checkReplicationConfig(AppConfig config) {
+        ReplicationConfig replicationConfig = config.getReplicationConfig();
+        if (replicationConfig.isPrimary() && config.getJournalPath() == null) {
+            throw new IllegalArgumentException(PRIMARY_JOURNAL_ERR);
+        }
+        if (replicationConfig.isReplica() && config.getJournalPath() != null) {
+            throw new IllegalArgumentException(REPLICA_JOURNAL_ERR);
+        }
+        if (replicationConfig.isReplica() && config.getClusterConfig().isEnabled()) {
+            throw new IllegalArgumentException(REPLICA_CLUSTER_ERR);
+        }
+    }
+
+    private void startReplication(ReplicationConfig config, AppConfig appConfig, AccountDAO dao) throws IOException {
+        if (config.isPrimary()) {
+            replicationServer = new ReplicationServer(config.getPort(), appConfig.getJournalPath(), journal);
+            replicationServer.start();
+            metrics.gauge("account_replication_replicas", "Replicas following this node's journal",
+                    replicationServer::getReplicas);
+            metrics.counter("account_replication_shipped_bytes_total", "Journal bytes sent to replicas",
+                    replicationServer::getShippedBytes);
+        }
+        if (config.isReplica()) {
+            // Records go through the same store wrappers as service calls, so replicas keep history and metrics too
+            replicationClient = new ReplicationClient(config.getPrimary(), new JournalReplayer(dao),
+                    config.getTimeoutMillis());
+            replicationClient.start();
+            metrics.gauge("account_replication_lag_seconds", "Time since this replica last held every change "
+                    + "journalled by the primary", () -> replicationClient.getStalenessMillis() / 1000.0);
+            metrics.gauge("account_replication_lag_records", "Records journalled by the primary not yet applied here",
+                    replicationClient::getLagRecords);
+        }
+    }
+
+    private HashRing createRing(AppConfig config) {
+        if (config.getServiceMode() != AppConfig.ServiceMode.LOCKING
+                && config.getServiceMode() != AppConfig.ServiceMode.OPTIMISTIC) {
+            // Cross-node transfers take the source account's lock from the lock manager these modes use
+            throw new IllegalArgumentException(String.format(CLUSTER_MODE_ERR, config.getServiceMode()));
+        }
+        ClusterConfig clusterConfig = config.getClusterConfig();
+        return new HashRing(clusterConfig.getNodes(), clusterConfig.getVirtualNodes());
+    }
+
+    private AccountService createClusterService(AppConfig appConfig, HashRing ring, AccountService localService,
+                                                Validator<TransferDTO> transferValidator, AccountDAO dao,
+                                                AccountLockManager lockManager, IdempotencyCache idempotencyCache,
+                                                CurrencyConverter converter) throws IOException {
+        ClusterConfig config = appConfig.getClusterConfig();
+        List<String> nodes = config.getNodes();
+        ClusterPeer[] peers = new ClusterPeer[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i != config.getNodeIndex()) {
+                ClusterClient client = new ClusterClient(nodes.get(i), config.getConnections(), config.getTimeoutMillis());
+                clusterClients.add(client);
+                peers[i] = client;
+            }
+        }
+        clusterService = new ClusterAccountServiceImpl(localService, transferValidator, dao, lockManager, journal,
+                snapshotManager, idempotencyCache, converter, ring, config.getNodeIndex(), peers);
+        if (appConfig.getJournalPath() != null) {
+            // Before other nodes can reach this one, so no credit is delivered or taken twice
+            clusterService.recover(appConfig.getJournalPath());
+        }
+        clusterServer = new ClusterServer(ClusterClient.parseAddress(nodes.get(config.getNodeIndex())).getPort(),
+                clusterService.getLocalPeer());
+        clusterServer.start();
+        metrics.counter("account_cluster_forwarded_calls_total", "Calls passed to the node owning the account",
+                clusterService::getForwardedCalls);
+        metrics.counter("account_cluster_transfers_total", "Transfers between accounts held by different nodes",
+                clusterService::getCrossNodeTransfers);
+        metrics.gauge("account_cluster_pending_credits", "Credits to other nodes waiting to be delivered again",
+                clusterService::getPendingCredits);
+        metrics.gauge("account_cluster_committed_credits", "Credits from other nodes remembered until they are settled",
+                clusterService::getCommittedCredits);
+        return clusterService;
+    }
+
+    private AccountDAO createStore(AppConfig config) {
+        if (config.getServiceMode() == AppConfig.ServiceMode.PARTITIONED) {
+            if (config.getAccountStore() != AppConfig.AccountStore.HEAP) {
+                throw new IllegalArgumentException(String.format(PARTITIONED_STORE_ERR, config.getAccountStore()));
+            }
+            return new PartitionedAccountDAO(config.getPartitions());
+        }
+        if (config.getAccountStore() == AppConfig.AccountStore.HEAP) {
+            return new AccountDAOImpl();
+        }
+        OffHeapAccountDAO store = new OffHeapAccountDAO();
+        metrics.gauge("account_store_offheap_bytes", "Bytes held outside the heap by account records and names",
+                store::getOffHeapBytes);
+        return store;
+    }
+
+    private AccountDAO createLedgerDAO(AccountDAO dao) {
+        LedgerImpl ledger = new LedgerImpl();
+        metrics.counter("account_ledger_entries_total", "Balance changes recorded in the ledger", ledger::getEntryCount);
+        return new LedgerAccountDAO(dao, ledger);
+    }
+
+    private IdempotencyCache createIdempotencyCache(AppConfig config) {
+        if (config.getIdempotencyWindowSeconds() <= 0) {
+            return new NoOpIdempotencyCache();
+        }
+        IdempotencyCacheImpl cache = new IdempotencyCacheImpl(
+                TimeUnit.SECONDS.toMillis(config.getIdempotencyWindowSeconds()), config.getIdempotencyMaxBytes());
+        metrics.gauge("account_idempotency_keys", "Transfer outcomes remembered by idempotency key", cache::size);
+        metrics.gauge("account_idempotency_bytes", "Estimated memory used by remembered transfer outcomes",
+                cache::getEstimatedBytes);
+        return cache;
+    }
+
+    private AccountJsonCache createJsonCache(AppConfig config, AccountService service) {
+        if (config.getJsonCacheSize() <= 0) {
+            return new NoOpAccountJsonCache(service);
+        }
+        AccountJsonCacheImpl cache = new AccountJsonCacheImpl(service, config.getJsonCacheSize());
+        metrics.counter("account_json_cache_hits_total", "Account reads answered with cached JSON", cache::getHits);
+        metrics.counter("account_json_cache_misses_total", "Account reads that serialized the account", cache::getMisses);
+        return cache;
+    }
+
+    private CurrencyConverter createCurrencyConverter(AppConfig config) throws IOException {
+        if (config.getFxRatesPath() == null) {
+            return new NoOpCurrencyConverter();
+        }
+        currencyConverter = new CurrencyConverterImpl(new FileFxRateProvider(config.getFxRatesPath()),
+                config.getFxRoundingMode());
+        currencyConverter.reload();
+        if (config.getFxReloadSeconds() > 0) {
+            currencyConverter.start(TimeUnit.SECONDS.toMillis(config.getFxReloadSeconds()));
+        }
+        metrics.gauge("account_fx_rates", "Currency pairs transfers can be converted between",
+                () -> currencyConverter.getRates().size());
+        return currencyConverter;
+    }
+
+    private AsyncAccountService createAsyncService(AppConfig config, AccountService service) {
+        if (!config.isAsyncApi()) {
+            return new AsyncAccountServiceImpl(service, Runnable::run);
+        }
+        if (sequencedService != null) {
+            // The sequencer completes transfers itself, so no thread waits on them
+            return config.isMetricsEnabled() ? new InstrumentedAsyncAccountService(sequencedService, metrics)
+                    : sequencedService;
+        }
+        if (partitionedService != null) {
+            // Partitions complete transfers themselves, so no thread waits on them
+            return config.isMetricsEnabled() ? new InstrumentedAsyncAccountService(partitionedService, metrics)
+                    : partitionedService;
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        serviceExecutor = new ThreadPoolExecutor(config.getAsyncThreads(), config.getAsyncThreads(), 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(config.getAsyncQueueSize()), runnable -> {
+                    Thread thread = new Thread(runnable, SERVICE_THREAD_POOL + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        return new AsyncAccountServiceImpl(service, serviceExecutor);
+    }
+
+    private void registerLockMetrics(LockStatistics statistics) {
+        metrics.register("account_lock_wait_seconds", "Time a transfer waited to acquire its account locks",
+                statistics.getWaitHistogram());
+        metrics.counter("account_lock_acquisitions_total", "Calls that acquired their account locks",
+                statistics::getAcquisitions);
+        metrics.counter("account_lock_timeouts_total", "Calls that gave up waiting for their account locks",
+                statistics::getTimeouts);
+    }
+
+    private void registerOptimisticMetrics(OptimisticAccountServiceImpl service) {
+        String attempts = "account_optimistic_transfer_attempts_total";
+        String attemptsHelp = "Optimistic transfer attempts by outcome, aborted attempts are retried";
+        metrics.counter(attempts, attemptsHelp, service::getCommits, "outcome", "committed");
+        metrics.counter(attempts, attemptsHelp, service::getConflicts, "outcome", "conflict");
+        metrics.counter(attempts, attemptsHelp, service::getBusy, "outcome", "busy");
+        metrics.counter("account_optimistic_transfer_fallbacks_total",
+                "Transfers that aborted too often and waited for their locks", service::getFallbacks);
+    }
+
+    private void registerPartitionMetrics(PartitionedAccountServiceImpl service) {
+        String transfers = "account_partition_transfers_total";
+        String transfersHelp = "Transfers applied by partitions, by whether both accounts were in the same partition";
+        metrics.counter(transfers, transfersHelp, service::getLocalTransfers, "scope", "local");
+        metrics.counter(transfers, transfersHelp, service::getCrossPartitionTransfers, "scope", "cross");
+        for (int i = 0; i < service.getPartitionCount(); i++) {
+            int partition = i;
+            metrics.gauge("account_partition_queued_commands", "Transfers and deposits waiting for the partition thread",
+                    () -> service.getQueuedCommands(partition), "partition", String.valueOf(partition));
+        }
+    }
+
+    private void registerThreadPoolMetrics() {
+        metrics.gauge("account_threadpool_busy_threads", "Threads running a job", () -> threadPool.getThreads()
+                - threadPool.getIdleThreads(), "pool", SERVER_THREAD_POOL);
+        metrics.gauge("account_threadpool_max_threads", "Most threads the pool will start", threadPool::getMaxThreads,
+                "pool", SERVER_THREAD_POOL);
+        metrics.gauge("account_threadpool_queued_jobs", "Jobs waiting for a free thread", threadPool::getQueueSize,
+                "pool", SERVER_THREAD_POOL);
+        if (serviceExecutor != null) {
+            metrics.gauge("account_threadpool_busy_threads", "Threads running a job", serviceExecutor::getActiveCount,
+                    "pool", SERVICE_THREAD_POOL);
+            metrics.gauge("account_threadpool_max_threads", "Most threads the pool will start",
+                    serviceExecutor::getMaximumPoolSize, "pool", SERVICE_THREAD_POOL);
+            metrics.gauge("account_threadpool_queued_jobs", "Jobs waiting for a free thread",
+                    () -> serviceExecutor.getQueue().size(), "pool", SERVICE_THREAD_POOL);
+        }
+    }
+
+    private void closeServices() {
+        if (serviceExecutor != null) {
+            // Let transfers already handed over finish before the journal is closed under them
+            serviceExecutor.shutdown();
+            try {
+                serviceExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (sequencedService != null) {
+            sequencedService.close();
+        }
+        if (partitionedService != null) {
+            partitionedService.close();
+        }
+        if (clusterServer != null) {
+            // Stop answering other nodes first, then deliver the credits still owed to them
+            clusterServer.close();
+        }
+        if (clusterService != null) {
+            clusterService.close();
+        }
+        for (ClusterClient client : clusterClients) {
+            client.close();
+        }
+        if (replicationServer != null) {
+            replicationServer.close();
+        }
+        if (replicationClient != null) {
+            replicationClient.close();
+        }
+        if (currencyConverter != null) {
+            currencyConverter.close();
+        }
+    }
+
+    private SnapshotInfo loadSnapshot(AppConfig config, AccountDAO dao) {
+        if (config.getJournalPath() == null) {
+            return SnapshotInfo.NONE;
+        }
+
+        long start = System.nanoTime();
+        try {
+            SnapshotInfo snapshot = new SnapshotReader().load(config.getSnapshotPath(), dao);
+            if (snapshot != SnapshotInfo.NONE) {
+                System.out.println(String.format(SNAPSHOT_LOADED_MSG, snapshot.getAccountCount(), config.getSnapshotPath(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            }
+            return snapshot;
+        }
+        catch (IOException e) {
+            // Nothing is stored until the whole snapshot has been verified, so the journal alone can rebuild the store
+            System.out.println(String.format(SNAPSHOT_LOAD_ERR, e.getMessage()));
+            return SnapshotInfo.NONE;
+        }
+    }
+
+    private Journal createJournal(AppConfig config, AccountDAO dao, SnapshotInfo snapshot) throws IOException {
+        if (config.getJournalPath() == null) {
+            return new NoOpJournal();
+        }
+
+        // Opening the journal replays whatever was written after the snapshot into the store
+        JournalReplayer replayer = new JournalReplayer(dao);
+        Journal fileJournal = new FileJournalImpl(config.getJournalPath(), config.getJournalFsyncPolicy(), replayer,
+                snapshot.getJournalPosition(), snapshot.getSequence());
+        System.out.println(String.format(JOURNAL_RECOVERED_MSG, replayer.getReplayed(), config.getJournalPath()));
+        return fileJournal;
+    }
+
+    private SnapshotManager createSnapshotManager(AppConfig config, AccountDAO dao) {
+        if (config.getJournalPath() == null) {
+            return new NoOpSnapshotManager();
+        }
+
+        SnapshotManagerImpl manager = new SnapshotManagerImpl(dao, journal, config.getSnapshotPath());
+        if (config.getSnapshotIntervalSeconds() > 0) {
+            manager.start(TimeUnit.SECONDS.toMillis(config.getSnapshotIntervalSeconds()));
+        }
+        return manager;
     }
 
-    private ServletHolder configureServlet(AccountApi accountApi) {
+    private ServletHolder configureServlet(AppConfig appConfig, AccountApi accountApi, ServerApi serverApi,
+                                           MetricsApi metricsApi) {
         ResourceConfig config = new ResourceConfig();
         config.packages(API_PACKAGE);
         config.register(accountApi);
-       return new ServletHolder(new ServletContainer(config));
+        config.register(serverApi);
+        config.register(metricsApi);
+        config.register(new AccountBinaryProvider());
+        if (appConfig.isMetricsEnabled()) {
+            config.register(new RequestMetricsFilter(metrics));
+        }
+        if (replicationClient != null) {
+            ReplicationConfig replicationConfig = appConfig.getReplicationConfig();
+            config.register(new ReplicaFilter(replicationClient, replicationConfig.getPrimary(),
+                    replicationConfig.getMaxStalenessMillis(), metrics));
+        }
+        admissionFilter = createAdmissionFilter(appConfig.getAdmissionConfig());
+        if (admissionFilter != null) {
+            config.register(admissionFilter);
+        }
+        ServletHolder servlet = new ServletHolder(new ServletContainer(config));
+        servlet.setAsyncSupported(true);
+        return servlet;
     }
 
-    private org.eclipse.jetty.server.Server configureServer(ServletHolder servlet, int port) {
-        org.eclipse.jetty.server.Server server = new org.eclipse.jetty.server.Server(port);
+    private AdmissionFilter createAdmissionFilter(AdmissionConfig config) {
+        ClientRateLimiter rateLimiter = null;
+        if (config.getClientRatePerSecond() > 0) {
+            rateLimiter = new ClientRateLimiter(config.getClientRatePerSecond(), config.getClientBurst(),
+                    config.getMaxClients());
+            metrics.gauge("account_admission_clients", "Clients with a rate limit bucket", rateLimiter::size);
+        }
+        AdaptiveConcurrencyLimiter concurrencyLimiter = null;
+        if (config.getMaxConcurrency() > 0) {
+            concurrencyLimiter = new AdaptiveConcurrencyLimiter(config.getMaxConcurrency(),
+                    config.getMinConcurrency(), config.getMaxConcurrency());
+            metrics.gauge("account_admission_concurrency_limit", "Current limit on account API requests in progress",
+                    concurrencyLimiter::getLimit);
+            metrics.gauge("account_admission_in_flight", "Account API requests in progress",
+                    concurrencyLimiter::getInFlight);
+        }
+        if (rateLimiter == null && concurrencyLimiter == null) {
+            return null;
+        }
+        return new AdmissionFilter(rateLimiter, concurrencyLimiter, metrics);
+    }
+
+    private Server configureServer(ServletHolder servlet, int port, ServerConfig config) {
+        threadPoolQueueCapacity = config.getQueueSize();
+        threadPool = new QueuedThreadPool(config.getMaxThreads(), config.getMinThreads(),
+                config.getThreadIdleTimeoutMillis(),
+                config.getQueueSize() > 0 ? new ArrayBlockingQueue<>(config.getQueueSize()) : null);
+        Server server = new Server(threadPool);
+
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        httpConfig.setOutputBufferSize(config.getOutputBufferSize());
+        httpConfig.setRequestHeaderSize(config.getRequestHeaderSize());
+        httpConfig.setResponseHeaderSize(config.getResponseHeaderSize());
+        if (!config.isKeepAlive()) {
+            // Jetty 9.2 has no switch for this, but it closes the connection after any response marked Connection: close
+            httpConfig.addCustomizer((connector, channelConfig, request) ->
+                    request.getResponse().setHeader(HttpHeader.CONNECTION, HttpHeaderValue.CLOSE.asString()));
+        }
+
+        ServerConnector connector = new ServerConnector(server, config.getAcceptors(), config.getSelectors(),
+                new HttpConnectionFactory(httpConfig));
+        connector.setPort(port);
+        connector.setAcceptQueueSize(config.getAcceptQueueSize());
+        connector.setIdleTimeout(config.getIdleTimeoutMillis());
+        server.addConnector(connector);
+
         ServletContextHandler context = new ServletContextHandler(server, "/*");
         context.addServlet(servlet, "/*");
+        if (admissionFilter != null) {
+            // Gives back concurrency places however Jersey finishes with the request
+            context.addFilter(new FilterHolder(admissionFilter), "/*", EnumSet.of(DispatcherType.REQUEST));
+        }
         return server;
     }
 }
@@ -0,0 +1,115 @@
+package org.account.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of requests in progress, adjusting the limit to observed latency. Latency is
+ * averaged over short windows and compared with the lowest recent average, taken as the latency of
+ * an unloaded server. While requests take no longer than that, the limit grows by about its square
+ * root per window; as they slow down it shrinks in proportion, so queueing moves out of the server
+ * and into rejected requests the client can retry elsewhere.
+ * <p>
+ * Admitting and releasing a request only touch atomic counters. The limit is recalculated by
+ * whichever release closes a window, while other releases carry on.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    /** The unloaded latency is measured afresh this often, in windows, so it can follow drift */
+    private static final int PROBE_WINDOWS = 600;
+    /** Latency this many times the unloaded latency is still treated as unloaded */
+    private static final double TOLERANCE = 1.5;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder windowLatency = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicBoolean updating = new AtomicBoolean();
+    private volatile int limit;
+    private volatile long windowStart;
+
+    // Only touched while updating
+    private double estimatedLimit;
+    private long noLoadLatency = Long.MAX_VALUE;
+    private int windows;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, System::nanoTime);
+    }
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, LongSupplier nanoClock) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.nanoClock = nanoClock;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.estimatedLimit = limit;
+        this.windowStart = nanoClock.getAsLong();
+    }
+
+    /**
+     * @return Whether the request may proceed, in which case {@link #release(long)} must follow
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends a request admitted by {@link #tryAcquire()}
+     * @param latencyNanos How long the request took
+     */
+    public void release(long latencyNanos) {
+        inFlight.decrementAndGet();
+        windowLatency.add(latencyNanos);
+        windowSamples.increment();
+        long now = nanoClock.getAsLong();
+        if (now - windowStart >= WINDOW_NANOS && windowSamples.sum() >= MIN_WINDOW_SAMPLES
+                && updating.compareAndSet(false, true)) {
+            try {
+                update(now);
+            }
+            finally {
+                updating.set(false);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void update(long now) {
+        long samples = windowSamples.sumThenReset();
+        long latency = windowLatency.sumThenReset() / Math.max(1, samples);
+        windowStart = now;
+        if (++windows % PROBE_WINDOWS == 0) {
+            noLoadLatency = latency;
+        }
+        noLoadLatency = Math.max(1, Math.min(noLoadLatency, latency));
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * noLoadLatency / Math.max(1, latency)));
+        double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = Math.min(maxLimit, Math.max(minLimit, estimatedLimit * (1 - SMOOTHING) + target * SMOOTHING));
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,70 @@
+package org.account.admission;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the request rate of each client with its own {@link TokenBucket}. Buckets are created on a
+ * client's first request. Once there are more than the configured number of clients, buckets that
+ * have refilled completely are dropped, since a new bucket behaves exactly the same.
+ */
+public class ClientRateLimiter {
+
+    private final double ratePerSecond;
+    private final int burst;
+    private final int maxClients;
+    private final LongSupplier nanoClock;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public ClientRateLimiter(double ratePerSecond, int burst, int maxClients) {
+        this(ratePerSecond, burst, maxClients, System::nanoTime);
+    }
+
+    public ClientRateLimiter(double ratePerSecond, int burst, int maxClients, LongSupplier nanoClock) {
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.maxClients = maxClients;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Takes a token from the client's bucket
+     * @return 0 if the request is allowed, otherwise how many nanoseconds until the client may retry
+     */
+    public long tryAcquire(String client) {
+        long now = nanoClock.getAsLong();
+        // A plain get first, as computeIfAbsent locks the bin even when the bucket exists
+        TokenBucket bucket = buckets.get(client);
+        if (bucket != null) {
+            return bucket.tryAcquire(now);
+        }
+        bucket = buckets.computeIfAbsent(client, key -> new TokenBucket(ratePerSecond, burst, now));
+        // Taking the token first keeps the new bucket from counting as full and being evicted at once
+        long waitNanos = bucket.tryAcquire(now);
+        if (buckets.size() > maxClients) {
+            evictFull(now);
+        }
+        return waitNanos;
+    }
+
+    /**
+     * @return Number of clients with a bucket
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private void evictFull(long now) {
+        if (evicting.compareAndSet(false, true)) {
+            try {
+                buckets.values().removeIf(bucket -> bucket.isFull(now));
+            }
+            finally {
+                evicting.set(false);
+            }
+        }
+    }
+}
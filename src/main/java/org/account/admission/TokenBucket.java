@@ -0,0 +1,55 @@
+package org.account.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket refilled continuously at a fixed rate, up to a burst of tokens. Rather than a token
+ * count and a refill task, it keeps a single timestamp: the time at which the bucket would be full
+ * again. Taking a token pushes that time forward by one token's worth, and a token is available
+ * while the time stays within one burst of now. Refill is therefore implicit and taking a token is
+ * one compare-and-set, with no lock.
+ */
+public class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * Creates a full bucket
+     * @param ratePerSecond Tokens added per second
+     * @param burst Tokens the bucket holds when full
+     * @param nowNanos Current time on the clock later passed to {@link #tryAcquire(long)}
+     */
+    public TokenBucket(double ratePerSecond, int burst, long nowNanos) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.burstNanos = intervalNanos * Math.max(1, burst);
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes a token if one is available at the given time
+     * @return 0 if a token was taken, otherwise how many nanoseconds until one will be
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            // Compared by difference, as nanosecond clocks may wrap
+            long next = (current - nowNanos > 0 ? current : nowNanos) + intervalNanos;
+            long wait = next - nowNanos - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return Whether the bucket has refilled completely, so forgetting it loses nothing
+     */
+    public boolean isFull(long nowNanos) {
+        return fullAt.get() - nowNanos <= 0;
+    }
+}
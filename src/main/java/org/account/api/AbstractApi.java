@@ -1,11 +1,21 @@
 package org.account.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.account.model.dto.ErrorDTO;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 public abstract class AbstractApi {
 
+    private static final int STREAM_FLUSH_INTERVAL = 1000;
+    private static final ObjectMapper STREAM_MAPPER = new ObjectMapper()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
     protected Response ok() {
         return Response.status(Response.Status.OK).build();
     }
@@ -14,6 +24,31 @@ public abstract class AbstractApi {
         return Response.status(Response.Status.OK).entity(entity).build();
     }
 
+    /**
+     * Writes the entities as a JSON array while the stream is consumed, flushing every so often
+     * so the response is sent in chunks and never buffered whole
+     */
+    protected Response okStream(Stream<?> entities) {
+        StreamingOutput body = output -> {
+            try (Stream<?> stream = entities; JsonGenerator generator = STREAM_MAPPER.getFactory().createGenerator(output)) {
+                generator.writeStartArray();
+                int written = 0;
+                for (Iterator<?> it = stream.iterator(); it.hasNext(); ) {
+                    generator.writeObject(it.next());
+                    if (++written % STREAM_FLUSH_INTERVAL == 0) {
+                        generator.flush();
+                    }
+                }
+                generator.writeEndArray();
+            }
+        };
+        return Response.status(Response.Status.OK).entity(body).build();
+    }
+
+    protected Response status(Response.Status status, Object entity) {
+        return Response.status(status).entity(entity).build();
+    }
+
     protected Response badRequest(String errorMsg) {
         return Response.status(Response.Status.BAD_REQUEST).entity(new ErrorDTO(errorMsg)).build();
     }
@@ -25,4 +60,17 @@ public abstract class AbstractApi {
     protected Response notFound(String errorMsg) {
         return Response.status(Response.Status.NOT_FOUND).entity(new ErrorDTO(errorMsg)).build();
     }
+
+    protected Response preconditionFailed(String errorMsg) {
+        return Response.status(Response.Status.PRECONDITION_FAILED).entity(new ErrorDTO(errorMsg)).build();
+    }
+
+    protected Response serviceUnavailable(String errorMsg) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(new ErrorDTO(errorMsg)).build();
+    }
+
+    protected Response serviceUnavailable(String errorMsg, long retryAfterSeconds) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .entity(new ErrorDTO(errorMsg)).build();
+    }
 }
@@ -3,12 +3,18 @@ package org.account.api;
 import org.account.model.dto.AccountDTO;
 import org.account.model.dto.TransferDTO;
 
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import java.util.List;
 
 public interface AccountApi {
 
     Response getAccounts();
-    Response getAccount(int id);
-    Response createAccount(AccountDTO accountDTO);
-    Response transferMoney(TransferDTO transferDTO);
+    Response getAccountPage(int after, int limit);
+    Response getAccount(int id, Request request);
+    Response getTransactions(int id, long from, long to, int limit);
+    void createAccount(AccountDTO accountDTO, AsyncResponse asyncResponse);
+    void transferMoney(TransferDTO transferDTO, String idempotencyKey, String ifMatch, AsyncResponse asyncResponse);
+    void transferMoneyBatch(List<TransferDTO> transferDTOs, AsyncResponse asyncResponse);
 }
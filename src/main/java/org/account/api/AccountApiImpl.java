@@ -1,47 +1,137 @@
 package org.account.api;
 
+import org.account.cache.AccountJson;
+import org.account.cache.AccountJsonCache;
+import org.account.cache.NoOpAccountJsonCache;
 import org.account.exception.*;
 import org.account.model.dto.AccountDTO;
+import org.account.model.dto.AccountPageDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.TransactionDTO;
 import org.account.model.dto.TransferDTO;
 import org.account.service.AccountService;
+import org.account.service.AsyncAccountService;
+import org.account.service.AsyncAccountServiceImpl;
 
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
-import java.util.Collection;
+import javax.ws.rs.core.Variant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 @Path("api/v1/account")
 public class AccountApiImpl extends AbstractApi implements AccountApi {
 
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String ANY_TAG = "*";
+    /** Tells the binary representation's tag from the JSON one, since a strong tag promises identical bytes */
+    private static final String BINARY_TAG_SUFFIX = "-bin";
+    private static final String BUSY_ERR = "Too many requests in progress, retry later";
+    private static final String TIMEOUT_ERR = "Request timed out, it may still be applied";
+    private static final long RETRY_AFTER_SECONDS = 1;
+    private static final CacheControl REVALIDATE = CacheControl.valueOf("no-cache");
+    /** Ranked below JSON, so clients that accept anything keep getting JSON */
+    private static final String BINARY_PRODUCED = AccountBinaryProvider.APPLICATION_ACCOUNT_BINARY + ";qs=0.5";
+    private static final List<Variant> ACCOUNT_VARIANTS = Variant.mediaTypes(MediaType.APPLICATION_JSON_TYPE,
+            AccountBinaryProvider.APPLICATION_ACCOUNT_BINARY_TYPE).build();
+
     private AccountService accountService;
+    private AsyncAccountService asyncAccountService;
+    private AccountJsonCache accountJsonCache;
+    private long asyncTimeoutMillis;
 
+    /**
+     * Runs write operations on the request thread
+     */
     public AccountApiImpl(AccountService accountService) {
+        this(accountService, new AsyncAccountServiceImpl(accountService, Runnable::run));
+    }
+
+    public AccountApiImpl(AccountService accountService, AsyncAccountService asyncAccountService) {
+        this(accountService, asyncAccountService, new NoOpAccountJsonCache(accountService));
+    }
+
+    public AccountApiImpl(AccountService accountService, AsyncAccountService asyncAccountService,
+                          AccountJsonCache accountJsonCache) {
+        this(accountService, asyncAccountService, accountJsonCache, 0);
+    }
+
+    /**
+     * @param asyncTimeoutMillis How long a suspended request waits for its result, or 0 to wait indefinitely
+     */
+    public AccountApiImpl(AccountService accountService, AsyncAccountService asyncAccountService,
+                          AccountJsonCache accountJsonCache, long asyncTimeoutMillis) {
         this.accountService = accountService;
+        this.asyncAccountService = asyncAccountService;
+        this.accountJsonCache = accountJsonCache;
+        this.asyncTimeoutMillis = asyncTimeoutMillis;
     }
 
     /**
-     * Gets all accounts
-     * @return Response object containing collection of all accounts
+     * Gets all accounts, streamed so that memory use does not grow with the number of accounts
+     * @return Response object streaming a JSON array of all accounts
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     public Response getAccounts() {
-        Collection<AccountDTO> accounts = accountService.getAllAccounts();
-        return ok(accounts);
+        return okStream(accountService.streamAllAccounts());
     }
 
     /**
-     * Gets account with specified ID
+     * Gets a page of accounts in ID order
+     * @param after Only accounts with a greater ID are returned, use nextAfter of the previous page to continue
+     * @param limit Maximum number of accounts in the page
+     * @return Response object containing the page of accounts
+     */
+    @GET
+    @Path("page")
+    @Produces({MediaType.APPLICATION_JSON, BINARY_PRODUCED})
+    public Response getAccountPage(@QueryParam("after") @DefaultValue("0") int after,
+                                   @QueryParam("limit") @DefaultValue("100") int limit) {
+        try {
+            AccountPageDTO page = accountService.getAccountPage(after, limit);
+            return ok(page);
+        }
+        catch (InvalidParameterException e) {
+            return badRequest(e.getMessage());
+        }
+    }
+
+    /**
+     * Gets account with specified ID, tagged with its version so that clients polling it can send
+     * If-None-Match and be answered 304 Not Modified, with no body, while it is unchanged
      * @param id The account ID
      * @return Response object containing the account
      */
     @GET
     @Path("{id}")
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response getAccount(@PathParam("id") int id) {
+    @Produces({MediaType.APPLICATION_JSON, BINARY_PRODUCED})
+    public Response getAccount(@PathParam("id") int id, @Context Request request) {
+        Variant variant = request.selectVariant(ACCOUNT_VARIANTS);
+        if (variant != null && AccountBinaryProvider.APPLICATION_ACCOUNT_BINARY_TYPE.equals(variant.getMediaType())) {
+            return getBinaryAccount(id, request);
+        }
         try {
-            AccountDTO account = accountService.getAccount(id);
-            return ok(account);
+            AccountJson account = accountJsonCache.getAccount(id);
+            EntityTag tag = new EntityTag(account.getEntityTag());
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+            if (notModified != null) {
+                return notModified.tag(tag).cacheControl(REVALIDATE).build();
+            }
+            return Response.ok(account.getJson(), MediaType.APPLICATION_JSON_TYPE).tag(tag).cacheControl(REVALIDATE).build();
         }
         catch (AccountNotFoundException e) {
             return notFound(e.getMessage());
@@ -49,41 +139,168 @@ public class AccountApiImpl extends AbstractApi implements AccountApi {
     }
 
     /**
-     * Creates account from provided account DTO
-     * @param accountDTO The account DTO
-     * @return Response object containing the created account
+     * Binary reads skip the JSON cache, since encoding an account in the binary layout costs little more than a lookup
      */
-    @POST
-    @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response createAccount(AccountDTO accountDTO) {
+    private Response getBinaryAccount(int id, Request request) {
+        try {
+            // Read before the account, so the tag is never newer than the account it is sent with
+            long version = accountService.getAccountVersion(id);
+            EntityTag tag = new EntityTag(AccountJson.entityTag(version) + BINARY_TAG_SUFFIX);
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+            if (notModified != null) {
+                return notModified.tag(tag).cacheControl(REVALIDATE).build();
+            }
+            return Response.ok(accountService.getAccount(id), AccountBinaryProvider.APPLICATION_ACCOUNT_BINARY_TYPE)
+                    .tag(tag).cacheControl(REVALIDATE).build();
+        }
+        catch (AccountNotFoundException e) {
+            return notFound(e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the balance changes of an account in a time range, oldest first
+     * @param id The account ID
+     * @param from Only changes at or after this time, in milliseconds since the epoch, are returned
+     * @param to Only changes before this time, in milliseconds since the epoch, are returned
+     * @param limit Maximum number of changes to return
+     * @return Response object containing the balance changes
+     */
+    @GET
+    @Path("{id}/transactions")
+    @Produces({MediaType.APPLICATION_JSON, BINARY_PRODUCED})
+    public Response getTransactions(@PathParam("id") int id,
+                                    @QueryParam("from") @DefaultValue("0") long from,
+                                    @QueryParam("to") @DefaultValue("9223372036854775807") long to,
+                                    @QueryParam("limit") @DefaultValue("100") int limit) {
         try {
-            AccountDTO account = accountService.createAccount(accountDTO);
-            return ok(account);
+            List<TransactionDTO> transactions = accountService.getTransactions(id, from, to, limit);
+            // Keeps the element type, which the binary writer needs to recognise the list
+            return ok(new GenericEntity<List<TransactionDTO>>(transactions) {});
         }
-        catch (RequiredParameterException | InvalidParameterException e) {
+        catch (AccountNotFoundException e) {
+            return notFound(e.getMessage());
+        }
+        catch (InvalidParameterException e) {
             return badRequest(e.getMessage());
         }
     }
 
+    /**
+     * Creates account from provided account DTO
+     * @param accountDTO The account DTO
+     * @param asyncResponse Resumed with the created account once it has been stored
+     */
+    @POST
+    @Consumes({MediaType.APPLICATION_JSON, AccountBinaryProvider.APPLICATION_ACCOUNT_BINARY})
+    @Produces({MediaType.APPLICATION_JSON, BINARY_PRODUCED})
+    public void createAccount(AccountDTO accountDTO, @Suspended AsyncResponse asyncResponse) {
+        resume(asyncResponse, asyncAccountService.createAccountAsync(accountDTO), this::ok);
+    }
+
     /**
      * Transfers money from one account to another
      * @param transferDTO The transfer DTO
-     * @return Response object
+     * @param idempotencyKey Optional key identifying retries of the same transfer, takes precedence over the DTO's
+     * @param ifMatch Optional ETag of the source account, the transfer is only applied if the account is unchanged
+     * @param asyncResponse Resumed once the transfer has been applied or rejected
      */
     @PUT
-    @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response transferMoney(TransferDTO transferDTO) {
-        try {
-            accountService.transferMoney(transferDTO);
-            return ok();
+    @Consumes({MediaType.APPLICATION_JSON, AccountBinaryProvider.APPLICATION_ACCOUNT_BINARY})
+    @Produces({MediaType.APPLICATION_JSON, BINARY_PRODUCED})
+    public void transferMoney(TransferDTO transferDTO, @HeaderParam(IDEMPOTENCY_KEY_HEADER) String idempotencyKey,
+                              @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch, @Suspended AsyncResponse asyncResponse) {
+        if (transferDTO != null && idempotencyKey != null) {
+            transferDTO.setIdempotencyKey(idempotencyKey);
         }
-        catch (RequiredParameterException | InvalidParameterException | AccountNotFoundException e) {
-            return badRequest(e.getMessage());
+        if (transferDTO != null && ifMatch != null && !ANY_TAG.equals(ifMatch.trim())) {
+            transferDTO.setExpectedVersion(expectedVersion(ifMatch.trim()));
+        }
+        resume(asyncResponse, asyncAccountService.transferMoneyAsync(transferDTO), result -> ok());
+    }
+
+    /**
+     * Transfers money for all of the provided transfers, applying either all of them or none
+     * @param transferDTOs The transfer DTOs, applied in order
+     * @param asyncResponse Resumed with the result of each transfer and the batch timing
+     */
+    @POST
+    @Path("transfers/batch")
+    @Consumes({MediaType.APPLICATION_JSON, AccountBinaryProvider.APPLICATION_ACCOUNT_BINARY})
+    @Produces({MediaType.APPLICATION_JSON, BINARY_PRODUCED})
+    public void transferMoneyBatch(List<TransferDTO> transferDTOs, @Suspended AsyncResponse asyncResponse) {
+        resume(asyncResponse, asyncAccountService.transferMoneyBatchAsync(transferDTOs),
+                result -> result.isCommitted() ? ok(result) : status(Response.Status.NOT_ACCEPTABLE, result));
+    }
+
+    /**
+     * If-Match compares tags strongly, so a weak tag, which has a W/ prefix before its quotes, never matches.
+     * The tags of both representations of the account name its version.
+     * @return Version of the source account the tag was handed out for, or -1 if it was not handed out by this server
+     */
+    private static long expectedVersion(String ifMatch) {
+        String tag = ifMatch;
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        if (tag.endsWith(BINARY_TAG_SUFFIX)) {
+            tag = tag.substring(0, tag.length() - BINARY_TAG_SUFFIX.length());
+        }
+        return AccountJson.parseVersion(tag);
+    }
+
+    /**
+     * Resumes the suspended request on whichever thread completes the future, so the request thread
+     * is released as soon as the work has been handed over. A request still waiting after the timeout is
+     * answered 503, although its work may complete later, so transfers should be retried with an idempotency key
+     */
+    private <T> void resume(AsyncResponse asyncResponse, CompletableFuture<T> future, Function<T, Response> onSuccess) {
+        if (asyncTimeoutMillis > 0 && !future.isDone()) {
+            asyncResponse.setTimeoutHandler(
+                    timedOut -> timedOut.resume(serviceUnavailable(TIMEOUT_ERR, RETRY_AFTER_SECONDS)));
+            asyncResponse.setTimeout(asyncTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        future.whenComplete((result, error) -> {
+            if (error == null) {
+                asyncResponse.resume(onSuccess.apply(result));
+                return;
+            }
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            Response response = errorResponse(cause);
+            if (response != null) {
+                asyncResponse.resume(response);
+            }
+            else {
+                asyncResponse.resume(cause);
+            }
+        });
+    }
+
+    /**
+     * @return Response for an expected failure, or null if the error is unexpected
+     */
+    private Response errorResponse(Throwable error) {
+        if (error instanceof RejectedExecutionException) {
+            return serviceUnavailable(BUSY_ERR, RETRY_AFTER_SECONDS);
+        }
+        if (!(error instanceof BusinessException)) {
+            return null;
         }
-        catch (CurrencyConversionException | InsufficientFundsException e) {
-            return notAcceptable(e.getMessage());
+        switch (((BusinessException) error).getCode()) {
+            case REQUIRED_PARAMETER:
+            case INVALID_PARAMETER:
+            case ACCOUNT_NOT_FOUND:
+                return badRequest(error.getMessage());
+            case CURRENCY_CONVERSION:
+            case INSUFFICIENT_FUNDS:
+                return notAcceptable(error.getMessage());
+            case VERSION_CONFLICT:
+                return preconditionFailed(error.getMessage());
+            case LOCK_TIMEOUT:
+                return serviceUnavailable(error.getMessage());
+            default:
+                return null;
         }
     }
 }
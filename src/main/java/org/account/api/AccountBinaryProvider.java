@@ -0,0 +1,129 @@
+package org.account.api;
+
+import org.account.codec.AccountBinaryCodec;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.AccountPageDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.ErrorDTO;
+import org.account.model.dto.TransactionDTO;
+import org.account.model.dto.TransferDTO;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.*;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Reads and writes account API bodies in the application/x-account-binary content type, for Java
+ * and other non-browser clients that would rather not parse JSON. A body is a format version byte
+ * followed by the DTO in the layout of {@link AccountBinaryCodec}; which DTO it is follows from the
+ * endpoint, exactly as for JSON.
+ */
+@Consumes(AccountBinaryProvider.APPLICATION_ACCOUNT_BINARY)
+@Produces(AccountBinaryProvider.APPLICATION_ACCOUNT_BINARY)
+public class AccountBinaryProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+
+    public static final String APPLICATION_ACCOUNT_BINARY = "application/x-account-binary";
+    public static final MediaType APPLICATION_ACCOUNT_BINARY_TYPE = MediaType.valueOf(APPLICATION_ACCOUNT_BINARY);
+    public static final byte VERSION = 2;
+    private static final String VERSION_ERR = "Unsupported binary format version %s";
+    private static final String MALFORMED_ERR = "Malformed binary body: %s";
+
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return isSupported(type, genericType);
+    }
+
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream) {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(entityStream));
+        try {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException(String.format(VERSION_ERR, version));
+            }
+            if (AccountDTO.class.equals(type)) {
+                return AccountBinaryCodec.readAccount(in);
+            }
+            if (TransferDTO.class.equals(type)) {
+                return AccountBinaryCodec.readTransfer(in);
+            }
+            if (AccountPageDTO.class.equals(type)) {
+                return AccountBinaryCodec.readAccountPage(in);
+            }
+            if (BatchTransferResultDTO.class.equals(type)) {
+                return AccountBinaryCodec.readBatchResult(in);
+            }
+            if (ErrorDTO.class.equals(type)) {
+                return AccountBinaryCodec.readError(in);
+            }
+            if (isListOf(type, genericType, TransferDTO.class)) {
+                return AccountBinaryCodec.readTransfers(in);
+            }
+            return AccountBinaryCodec.readTransactions(in);
+        }
+        catch (IOException | RuntimeException e) {
+            // Truncated bodies, impossible sizes and unknown enum values all mean the sender sent garbage
+            throw new BadRequestException(String.format(MALFORMED_ERR, e.getMessage()));
+        }
+    }
+
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return isSupported(type, genericType);
+    }
+
+    public long getSize(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void writeTo(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(entityStream));
+        out.writeByte(VERSION);
+        if (entity instanceof AccountDTO) {
+            AccountBinaryCodec.writeAccount((AccountDTO) entity, out);
+        }
+        else if (entity instanceof TransferDTO) {
+            AccountBinaryCodec.writeTransfer((TransferDTO) entity, out);
+        }
+        else if (entity instanceof AccountPageDTO) {
+            AccountBinaryCodec.writeAccountPage((AccountPageDTO) entity, out);
+        }
+        else if (entity instanceof BatchTransferResultDTO) {
+            AccountBinaryCodec.writeBatchResult((BatchTransferResultDTO) entity, out);
+        }
+        else if (entity instanceof ErrorDTO) {
+            AccountBinaryCodec.writeError((ErrorDTO) entity, out);
+        }
+        else if (isListOf(type, genericType, TransferDTO.class)) {
+            AccountBinaryCodec.writeTransfers((List<TransferDTO>) entity, out);
+        }
+        else {
+            AccountBinaryCodec.writeTransactions((List<TransactionDTO>) entity, out);
+        }
+        // Only flushed, the container closes its own stream
+        out.flush();
+    }
+
+    /**
+     * The same DTOs are read and written, so Java clients can register this provider as well
+     */
+    private static boolean isSupported(Class<?> type, Type genericType) {
+        return type == AccountDTO.class || type == TransferDTO.class || type == AccountPageDTO.class
+                || type == BatchTransferResultDTO.class || type == ErrorDTO.class
+                || isListOf(type, genericType, TransferDTO.class) || isListOf(type, genericType, TransactionDTO.class);
+    }
+
+    private static boolean isListOf(Class<?> type, Type genericType, Class<?> elementType) {
+        return List.class.isAssignableFrom(type) && genericType instanceof ParameterizedType
+                && ((ParameterizedType) genericType).getActualTypeArguments()[0] == elementType;
+    }
+}
@@ -0,0 +1,170 @@
+package org.account.api;
+
+import org.account.admission.AdaptiveConcurrencyLimiter;
+import org.account.admission.ClientRateLimiter;
+import org.account.metrics.Counter;
+import org.account.metrics.MetricsRegistry;
+import org.account.model.dto.ErrorDTO;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sheds account API requests with 429 Too Many Requests when their client has used up its rate, or
+ * when the server already has as many requests in progress as its concurrency limit allows. It runs
+ * before resource matching, so a shed request costs no more than reading its headers: its body is
+ * never deserialized. Metrics and server endpoints are never shed.
+ * <p>
+ * Clients are told apart by their X-Api-Key header, or by remote address if they send none.
+ * <p>
+ * A request admitted under the concurrency limit holds its place until the container has finished
+ * with it. Jersey skips response filters for exceptions it cannot map and for requests that are
+ * never resumed, so the place is given back by the same filter installed as a servlet filter around
+ * the Jersey servlet: when the request returns from the servlet, or when it completes, times out or
+ * fails if it was suspended.
+ */
+@PreMatching
+public class AdmissionFilter implements ContainerRequestFilter, Filter {
+
+    static final String API_KEY_HEADER = "X-Api-Key";
+    static final int TOO_MANY_REQUESTS = 429;
+    private static final String LIMITED_PATH = "api/v1/account";
+    private static final String ADMITTED_PROPERTY = AdmissionFilter.class.getName() + ".admitted";
+    private static final String RATE_LIMITED_ERR = "Request rate limit exceeded, retry later";
+    private static final String OVERLOADED_ERR = "Server is at its concurrency limit, retry later";
+    private static final String UNKNOWN_CLIENT = "unknown";
+    private static final String REJECTED_METRIC = "account_admission_rejected_total";
+    private static final String REJECTED_HELP = "Requests shed with 429 before being handled";
+
+    private final ClientRateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final Counter rateLimited;
+    private final Counter overloaded;
+
+    @Context
+    private HttpServletRequest servletRequest;
+
+    /**
+     * @param rateLimiter Per-client rate limits, or null for none
+     * @param concurrencyLimiter Limit on requests in progress, or null for none
+     */
+    public AdmissionFilter(ClientRateLimiter rateLimiter, AdaptiveConcurrencyLimiter concurrencyLimiter,
+                           MetricsRegistry registry) {
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.rateLimited = registry.counter(REJECTED_METRIC, REJECTED_HELP, "reason", "rate");
+        this.overloaded = registry.counter(REJECTED_METRIC, REJECTED_HELP, "reason", "concurrency");
+    }
+
+    public void filter(ContainerRequestContext requestContext) {
+        String path = requestContext.getUriInfo().getPath();
+        if (!(path.startsWith(LIMITED_PATH) || path.startsWith("/" + LIMITED_PATH))) {
+            return;
+        }
+
+        if (rateLimiter != null) {
+            long waitNanos = rateLimiter.tryAcquire(client(requestContext));
+            if (waitNanos > 0) {
+                rateLimited.increment();
+                requestContext.abortWith(tooManyRequests(RATE_LIMITED_ERR, waitNanos));
+                return;
+            }
+        }
+        if (concurrencyLimiter != null) {
+            if (!concurrencyLimiter.tryAcquire()) {
+                overloaded.increment();
+                requestContext.abortWith(tooManyRequests(OVERLOADED_ERR, 0));
+                return;
+            }
+            servletRequest.setAttribute(ADMITTED_PROPERTY, System.nanoTime());
+        }
+    }
+
+    public void init(FilterConfig filterConfig) {
+    }
+
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        try {
+            chain.doFilter(request, response);
+        }
+        finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseListener(request));
+            }
+            else {
+                release(request);
+            }
+        }
+    }
+
+    public void destroy() {
+    }
+
+    private void release(ServletRequest request) {
+        // Removed first, so whichever of completion, timeout and error comes first releases it only once
+        Object admitted = request.getAttribute(ADMITTED_PROPERTY);
+        if (admitted != null) {
+            request.removeAttribute(ADMITTED_PROPERTY);
+            concurrencyLimiter.release(System.nanoTime() - (Long) admitted);
+        }
+    }
+
+    private String client(ContainerRequestContext requestContext) {
+        String apiKey = requestContext.getHeaderString(API_KEY_HEADER);
+        if (apiKey != null && !apiKey.isEmpty()) {
+            return apiKey;
+        }
+        return servletRequest != null ? servletRequest.getRemoteAddr() : UNKNOWN_CLIENT;
+    }
+
+    private class ReleaseListener implements AsyncListener {
+
+        private final ServletRequest request;
+
+        ReleaseListener(ServletRequest request) {
+            this.request = request;
+        }
+
+        public void onComplete(AsyncEvent event) {
+            release(request);
+        }
+
+        public void onTimeout(AsyncEvent event) {
+            release(request);
+        }
+
+        public void onError(AsyncEvent event) {
+            release(request);
+        }
+
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private static Response tooManyRequests(String errorMsg, long waitNanos) {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        return Response.status(TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(new ErrorDTO(errorMsg))
+                .build();
+    }
+}
@@ -0,0 +1,8 @@
+package org.account.api;
+
+import javax.ws.rs.core.Response;
+
+public interface MetricsApi {
+
+    Response getMetrics();
+}
@@ -0,0 +1,38 @@
+package org.account.api;
+
+import org.account.metrics.MetricsRegistry;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+@Path("metrics")
+public class MetricsApiImpl extends AbstractApi implements MetricsApi {
+
+    private MetricsRegistry registry;
+
+    public MetricsApiImpl(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Gets every metric of the server
+     * @return Response object containing the metrics in the Prometheus text format
+     */
+    @GET
+    @Produces(MetricsRegistry.CONTENT_TYPE)
+    public Response getMetrics() {
+        StreamingOutput body = output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            registry.writeTo(writer);
+            writer.flush();
+        };
+        return ok(body);
+    }
+}
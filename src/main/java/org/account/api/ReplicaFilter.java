@@ -0,0 +1,75 @@
+package org.account.api;
+
+import org.account.metrics.Counter;
+import org.account.metrics.MetricsRegistry;
+import org.account.model.dto.ErrorDTO;
+import org.account.replication.ReplicationClient;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Keeps a replica's account API read-only and within its staleness bound. Changes are refused with
+ * 405 Method Not Allowed, since only the primary can make them, and reads are refused with 503
+ * Service Unavailable while the replica is further behind the primary than it may be. Like the
+ * admission filter it runs before resource matching, so a refused request body is never read.
+ */
+@PreMatching
+public class ReplicaFilter implements ContainerRequestFilter {
+
+    private static final String REPLICATED_PATH = "api/v1/account";
+    private static final String READ_ONLY_ERR = "This node is a read-only replica, send changes to the primary %s";
+    private static final String STALE_ERR = "Replica is %s ms behind the primary, more than the %s ms allowed";
+    private static final String REJECTED_METRIC = "account_replica_rejected_total";
+    private static final String REJECTED_HELP = "Account API requests a replica refused";
+
+    private final ReplicationClient replication;
+    private final String primary;
+    private final long maxStalenessMillis;
+    private final Counter writes;
+    private final Counter stale;
+
+    /**
+     * @param primary Address of the primary, named in the response to a refused change
+     */
+    public ReplicaFilter(ReplicationClient replication, String primary, long maxStalenessMillis,
+                         MetricsRegistry registry) {
+        this.replication = replication;
+        this.primary = primary;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.writes = registry.counter(REJECTED_METRIC, REJECTED_HELP, "reason", "write");
+        this.stale = registry.counter(REJECTED_METRIC, REJECTED_HELP, "reason", "stale");
+    }
+
+    public void filter(ContainerRequestContext requestContext) {
+        String path = requestContext.getUriInfo().getPath();
+        if (!(path.startsWith(REPLICATED_PATH) || path.startsWith("/" + REPLICATED_PATH))) {
+            return;
+        }
+
+        String method = requestContext.getMethod();
+        if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) {
+            writes.increment();
+            requestContext.abortWith(Response.status(Response.Status.METHOD_NOT_ALLOWED)
+                    .allow(HttpMethod.GET, HttpMethod.HEAD)
+                    .type(MediaType.APPLICATION_JSON_TYPE)
+                    .entity(new ErrorDTO(String.format(READ_ONLY_ERR, primary)))
+                    .build());
+            return;
+        }
+        long stalenessMillis = replication.getStalenessMillis();
+        if (!replication.isSynced() || stalenessMillis > maxStalenessMillis) {
+            stale.increment();
+            requestContext.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, 1)
+                    .type(MediaType.APPLICATION_JSON_TYPE)
+                    .entity(new ErrorDTO(String.format(STALE_ERR, stalenessMillis, maxStalenessMillis)))
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.account.api;
+
+import org.account.metrics.Counter;
+import org.account.metrics.LatencyHistogram;
+import org.account.metrics.MetricsRegistry;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every request from the moment it is matched until its response is ready, per resource method.
+ * Suspended requests are timed until they are resumed, so the async endpoints report their full latency.
+ */
+public class RequestMetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    static final String REQUEST_METRIC = "account_api_request_seconds";
+    static final String RESPONSES_METRIC = "account_api_responses_total";
+    private static final String REQUEST_HELP = "Time taken to handle each API endpoint";
+    private static final String RESPONSES_HELP = "Responses of each API endpoint by status class";
+    private static final String START_PROPERTY = RequestMetricsFilter.class.getName() + ".start";
+    private static final String UNMATCHED = "unmatched";
+
+    private final MetricsRegistry registry;
+    private final Map<Method, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+    private final EndpointMetrics unmatched;
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    public RequestMetricsFilter(MetricsRegistry registry) {
+        this.registry = registry;
+        this.unmatched = new EndpointMetrics(registry, UNMATCHED);
+    }
+
+    public void filter(ContainerRequestContext requestContext) {
+        requestContext.setProperty(START_PROPERTY, System.nanoTime());
+    }
+
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object start = requestContext.getProperty(START_PROPERTY);
+        Method method = resourceInfo.getResourceMethod();
+        EndpointMetrics metrics = method == null ? unmatched
+                : endpoints.computeIfAbsent(method, key -> new EndpointMetrics(registry, key.getName()));
+        if (start != null) {
+            metrics.latency.recordSince((Long) start);
+        }
+        int statusClass = responseContext.getStatus() / 100;
+        if (statusClass >= 1 && statusClass <= 5) {
+            metrics.responses[statusClass].increment();
+        }
+    }
+
+    private static class EndpointMetrics {
+
+        private final LatencyHistogram latency;
+        private final Counter[] responses = new Counter[6];
+
+        private EndpointMetrics(MetricsRegistry registry, String endpoint) {
+            latency = registry.histogram(REQUEST_METRIC, REQUEST_HELP, "endpoint", endpoint);
+            for (int statusClass = 1; statusClass < responses.length; statusClass++) {
+                responses[statusClass] = registry.counter(RESPONSES_METRIC, RESPONSES_HELP,
+                        "endpoint", endpoint, "status", statusClass + "xx");
+            }
+        }
+    }
+}
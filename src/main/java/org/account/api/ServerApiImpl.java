@@ -0,0 +1,32 @@
+package org.account.api;
+
+import org.account.model.dto.ThreadPoolStatsDTO;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.List;
+import java.util.function.Supplier;
+
+@Path("api/v1/server")
+public class ServerApiImpl extends AbstractApi implements ServerApi {
+
+    private Supplier<List<ThreadPoolStatsDTO>> threadPoolStats;
+
+    public ServerApiImpl(Supplier<List<ThreadPoolStatsDTO>> threadPoolStats) {
+        this.threadPoolStats = threadPoolStats;
+    }
+
+    /**
+     * Gets the current load of the server's thread pools, used to size nodes
+     * @return Response object containing the stats of each thread pool
+     */
+    @GET
+    @Path("threadPools")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getThreadPools() {
+        return ok(threadPoolStats.get());
+    }
+}
@@ -0,0 +1,70 @@
+package org.account.cache;
+
+/**
+ * An account serialized to JSON, together with the account version it was serialized at.
+ * <p>
+ * Versions count balance changes since the account was stored and start again from 0 when the
+ * server restarts, so the entity tag also carries the time this server started. A tag handed out
+ * before a restart never matches one handed out after it.
+ */
+public class AccountJson {
+
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private final int id;
+    private final long version;
+    private final byte[] json;
+
+    public AccountJson(int id, long version, byte[] json) {
+        this.id = id;
+        this.version = version;
+        this.json = json;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The serialized account, shared between callers and never to be modified
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    /**
+     * @param entityTag Value of an ETag handed out by this server, without quotes
+     * @return Account version the tag was handed out for, or -1, which no account ever has, if the tag
+     * was handed out before a restart or not by this server
+     */
+    public static long parseVersion(String entityTag) {
+        String prefix = EPOCH + "-";
+        if (!entityTag.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(entityTag.substring(prefix.length()));
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return Opaque value for the ETag header, equal for two reads only if the account did not change between them
+     */
+    public String getEntityTag() {
+        return entityTag(version);
+    }
+
+    /**
+     * @return ETag value for the JSON representation of an account at the given version
+     */
+    public static String entityTag(long version) {
+        return EPOCH + "-" + version;
+    }
+}
@@ -0,0 +1,15 @@
+package org.account.cache;
+
+import org.account.exception.AccountNotFoundException;
+
+/**
+ * Hands out accounts already serialized to JSON, so that reads of an account that has not changed
+ * since it was last read skip transforming and serializing it.
+ */
+public interface AccountJsonCache {
+
+    /**
+     * @return The account serialized at its current version, or at a later one if it changes meanwhile
+     */
+    AccountJson getAccount(int id) throws AccountNotFoundException;
+}
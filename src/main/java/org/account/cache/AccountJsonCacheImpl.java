@@ -0,0 +1,84 @@
+package org.account.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.account.exception.AccountNotFoundException;
+import org.account.service.AccountService;
+
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Direct-mapped cache of serialized accounts: each account can only be held in the slot picked by its
+ * ID, replacing whatever account was there. Memory use is therefore fixed, reads and writes take no
+ * lock, and with sequential IDs the most recently read accounts rarely evict one another.
+ * <p>
+ * A cached account is only used while its version is still the account's current version. The version
+ * is read before the account is serialized, and stores increment it after changing the balance, so a
+ * cached serialization is never older than the version it is filed under.
+ */
+public class AccountJsonCacheImpl implements AccountJsonCache {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String SIZE_ERR = "Cache size must be positive: %s";
+
+    private final AccountService accountService;
+    private final AtomicReferenceArray<AccountJson> slots;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param size Number of accounts held, rounded up to a power of two
+     */
+    public AccountJsonCacheImpl(AccountService accountService, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException(String.format(SIZE_ERR, size));
+        }
+        this.accountService = accountService;
+        int slotCount = Integer.highestOneBit(Math.min(size, 1 << 30));
+        if (slotCount < size) {
+            slotCount <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(slotCount);
+        this.mask = slotCount - 1;
+    }
+
+    public AccountJson getAccount(int id) throws AccountNotFoundException {
+        long version = accountService.getAccountVersion(id);
+        int slot = id & mask;
+        AccountJson cached = slots.get(slot);
+        if (cached != null && cached.getId() == id && cached.getVersion() == version) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        AccountJson json = render(accountService, id, version);
+        slots.set(slot, json);
+        return json;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    static AccountJson render(AccountService accountService, int id) throws AccountNotFoundException {
+        return render(accountService, id, accountService.getAccountVersion(id));
+    }
+
+    private static AccountJson render(AccountService accountService, int id, long version)
+            throws AccountNotFoundException {
+        try {
+            return new AccountJson(id, version, MAPPER.writeValueAsBytes(accountService.getAccount(id)));
+        }
+        catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
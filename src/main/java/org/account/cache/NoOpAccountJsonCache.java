@@ -0,0 +1,21 @@
+package org.account.cache;
+
+import org.account.exception.AccountNotFoundException;
+import org.account.service.AccountService;
+
+/**
+ * Cache used when caching is switched off, every read serializes the account again. Responses are
+ * still tagged with the account version, so unchanged accounts can be answered with 304.
+ */
+public class NoOpAccountJsonCache implements AccountJsonCache {
+
+    private final AccountService accountService;
+
+    public NoOpAccountJsonCache(AccountService accountService) {
+        this.accountService = accountService;
+    }
+
+    public AccountJson getAccount(int id) throws AccountNotFoundException {
+        return AccountJsonCacheImpl.render(accountService, id);
+    }
+}
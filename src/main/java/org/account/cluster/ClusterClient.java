@@ -0,0 +1,287 @@
+package org.account.cluster;
+
+import org.account.codec.AccountBinaryCodec;
+import org.account.exception.*;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.AccountPageDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.TransactionDTO;
+import org.account.model.dto.TransferDTO;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Calls another node of the cluster over the cluster protocol. Each call takes a connection of its own
+ * for one request and response, so concurrent calls never wait for each other; connections are kept
+ * open for the next call up to the pool size.
+ * <p>
+ * Failures the other node reports are rethrown as the same exceptions. If the node cannot be reached
+ * an {@link UncheckedIOException} is thrown, and it is unknown whether a transfer was applied.
+ */
+public class ClusterClient implements ClusterPeer, AutoCloseable {
+
+    private static final String ADDRESS_ERR = "Node address must be host:port, not %s";
+    private static final String PEER_ERR = "Could not reach cluster node %s";
+
+    private final String address;
+    private final InetSocketAddress socketAddress;
+    private final int timeoutMillis;
+    private final BlockingQueue<Connection> idle;
+    private volatile boolean closed;
+
+    /**
+     * @param address Cluster address of the node, as host:port
+     * @param connections Connections kept open between calls
+     * @param timeoutMillis How long to wait to connect and for each response
+     */
+    public ClusterClient(String address, int connections, int timeoutMillis) {
+        this.address = address;
+        this.socketAddress = parseAddress(address);
+        this.timeoutMillis = timeoutMillis;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, connections));
+    }
+
+    /**
+     * @return Host and port of an address given as host:port
+     */
+    public static InetSocketAddress parseAddress(String address) {
+        int separator = address.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException(String.format(ADDRESS_ERR, address));
+        }
+        try {
+            return new InetSocketAddress(address.substring(0, separator),
+                    Integer.parseInt(address.substring(separator + 1)));
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format(ADDRESS_ERR, address));
+        }
+    }
+
+    public AccountDTO getAccount(int id) throws AccountNotFoundException {
+        try {
+            return call(ClusterCodec.GET_ACCOUNT, out -> out.writeInt(id), AccountBinaryCodec::readAccount);
+        }
+        catch (AccountNotFoundException e) {
+            throw e;
+        }
+        catch (BusinessException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    public long getAccountVersion(int id) throws AccountNotFoundException {
+        try {
+            return call(ClusterCodec.GET_ACCOUNT_VERSION, out -> out.writeInt(id), DataInput::readLong);
+        }
+        catch (AccountNotFoundException e) {
+            throw e;
+        }
+        catch (BusinessException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    public AccountPageDTO getLocalAccountPage(int afterId, int limit) throws InvalidParameterException {
+        try {
+            return call(ClusterCodec.GET_LOCAL_ACCOUNT_PAGE, out -> {
+                out.writeInt(afterId);
+                out.writeInt(limit);
+            }, AccountBinaryCodec::readAccountPage);
+        }
+        catch (InvalidParameterException e) {
+            throw e;
+        }
+        catch (BusinessException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    public List<TransactionDTO> getTransactions(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException, InvalidParameterException {
+        try {
+            return call(ClusterCodec.GET_TRANSACTIONS, out -> {
+                out.writeInt(id);
+                out.writeLong(fromMillis);
+                out.writeLong(toMillis);
+                out.writeInt(limit);
+            }, AccountBinaryCodec::readTransactions);
+        }
+        catch (AccountNotFoundException | InvalidParameterException e) {
+            throw e;
+        }
+        catch (BusinessException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    public void transferMoney(TransferDTO transferDTO)
+            throws AccountNotFoundException, InsufficientFundsException,
+                   InvalidParameterException, RequiredParameterException, CurrencyConversionException,
+                   LockTimeoutException, VersionConflictException {
+        try {
+            call(ClusterCodec.TRANSFER, out -> AccountBinaryCodec.writeTransfer(transferDTO, out), in -> null);
+        }
+        catch (AccountNotFoundException | InsufficientFundsException | InvalidParameterException
+                | RequiredParameterException | CurrencyConversionException | LockTimeoutException
+                | VersionConflictException e) {
+            throw e;
+        }
+        catch (BusinessException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    public BatchTransferResultDTO transferMoneyBatch(List<TransferDTO> transferDTOs)
+            throws RequiredParameterException, LockTimeoutException {
+        try {
+            return call(ClusterCodec.TRANSFER_BATCH, out -> AccountBinaryCodec.writeTransfers(transferDTOs, out),
+                    AccountBinaryCodec::readBatchResult);
+        }
+        catch (RequiredParameterException | LockTimeoutException e) {
+            throw e;
+        }
+        catch (BusinessException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    public BigDecimal prepareCredit(long transactionId, int srcId, int dstId, BigDecimal amount, String currency)
+            throws AccountNotFoundException, CurrencyConversionException {
+        try {
+            return call(ClusterCodec.PREPARE_CREDIT, out -> {
+                out.writeLong(transactionId);
+                out.writeInt(srcId);
+                out.writeInt(dstId);
+                AccountBinaryCodec.writeDecimal(amount, out);
+                AccountBinaryCodec.writeString(currency, out);
+            }, AccountBinaryCodec::readDecimal);
+        }
+        catch (AccountNotFoundException | CurrencyConversionException e) {
+            throw e;
+        }
+        catch (BusinessException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    public void commitCredit(long transactionId, long settledBelow, int srcId, int dstId, BigDecimal creditAmount)
+            throws AccountNotFoundException, LockTimeoutException {
+        try {
+            call(ClusterCodec.COMMIT_CREDIT, out -> {
+                out.writeLong(transactionId);
+                out.writeLong(settledBelow);
+                out.writeInt(srcId);
+                out.writeInt(dstId);
+                AccountBinaryCodec.writeDecimal(creditAmount, out);
+            }, in -> null);
+        }
+        catch (AccountNotFoundException | LockTimeoutException e) {
+            throw e;
+        }
+        catch (BusinessException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    private <T> T call(byte operation, RequestWriter request, ResponseReader<T> response) throws BusinessException {
+        Connection connection = null;
+        boolean reusable = false;
+        try {
+            connection = borrow();
+            connection.out.writeByte(operation);
+            request.write(connection.out);
+            connection.out.flush();
+            if (connection.in.readByte() == ClusterCodec.OK) {
+                T result = response.read(connection.in);
+                reusable = true;
+                return result;
+            }
+            // The whole failure is read before it is thrown, so the connection can still be reused
+            reusable = true;
+            throw ClusterCodec.readFailure(connection.in);
+        }
+        catch (IOException e) {
+            reusable = false;
+            throw new UncheckedIOException(String.format(PEER_ERR, address), e);
+        }
+        finally {
+            if (connection != null) {
+                release(connection, reusable);
+            }
+        }
+    }
+
+    private Connection borrow() throws IOException {
+        Connection connection = idle.poll();
+        if (connection != null) {
+            return connection;
+        }
+        Socket socket = new Socket();
+        try {
+            socket.connect(socketAddress, timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            socket.setTcpNoDelay(true);
+            return new Connection(socket);
+        }
+        catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private void release(Connection connection, boolean reusable) {
+        if (!reusable || closed || !idle.offer(connection)) {
+            connection.close();
+        }
+    }
+
+    private interface RequestWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private interface ResponseReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private static final class Connection {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            }
+            catch (IOException e) {
+                // Nothing more can be done with it either way
+            }
+        }
+    }
+}
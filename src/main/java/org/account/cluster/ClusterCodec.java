@@ -0,0 +1,66 @@
+package org.account.cluster;
+
+import org.account.codec.AccountBinaryCodec;
+import org.account.exception.*;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Framing of the cluster protocol. A request is a one byte operation followed by its arguments, and a
+ * response is a status byte followed by the result or, on failure, the error code and message. DTOs
+ * are written in the layout of {@link AccountBinaryCodec}.
+ */
+final class ClusterCodec {
+
+    static final byte GET_ACCOUNT = 1;
+    static final byte GET_ACCOUNT_VERSION = 2;
+    static final byte GET_LOCAL_ACCOUNT_PAGE = 3;
+    static final byte GET_TRANSACTIONS = 4;
+    static final byte TRANSFER = 5;
+    static final byte TRANSFER_BATCH = 6;
+    static final byte PREPARE_CREDIT = 7;
+    static final byte COMMIT_CREDIT = 8;
+
+    static final byte OK = 0;
+    static final byte FAILED = 1;
+    /** Error code sent for failures that are not a {@link BusinessException} */
+    static final byte INTERNAL_ERROR = -1;
+
+    private ClusterCodec() {}
+
+    static void writeFailure(Exception e, DataOutput out) throws IOException {
+        out.writeByte(FAILED);
+        out.writeByte(e instanceof BusinessException ? ((BusinessException) e).getCode().ordinal() : INTERNAL_ERROR);
+        AccountBinaryCodec.writeString(String.valueOf(e.getMessage()), out);
+    }
+
+    /**
+     * @return The exception the peer failed with, rebuilt from its error code
+     * @throws IllegalStateException If the peer failed with an unexpected error
+     */
+    static BusinessException readFailure(DataInput in) throws IOException {
+        byte code = in.readByte();
+        String message = AccountBinaryCodec.readString(in);
+        if (code == INTERNAL_ERROR) {
+            throw new IllegalStateException(message);
+        }
+        switch (ErrorCode.values()[code]) {
+            case REQUIRED_PARAMETER:
+                return new RequiredParameterException(message);
+            case INVALID_PARAMETER:
+                return new InvalidParameterException(message);
+            case ACCOUNT_NOT_FOUND:
+                return new AccountNotFoundException(message);
+            case INSUFFICIENT_FUNDS:
+                return new InsufficientFundsException(message);
+            case CURRENCY_CONVERSION:
+                return new CurrencyConversionException(message);
+            case VERSION_CONFLICT:
+                return new VersionConflictException(message);
+            default:
+                return new LockTimeoutException(message);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.account.cluster;
+
+import org.account.exception.*;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.AccountPageDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.TransactionDTO;
+import org.account.model.dto.TransferDTO;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Calls one node of the cluster answers for the accounts it owns. Implemented by a client talking to
+ * another node over the cluster protocol, and by each node for its own accounts.
+ * <p>
+ * Cross-node transfers are committed in two phases, coordinated by the owner of the source account.
+ * In the first, {@link #prepareCredit} asks the destination's owner whether it can take the money.
+ * Deposits cannot fail once the account is known to exist, so a prepared participant keeps no state
+ * and a transfer the coordinator abandons needs no abort message. In the second, {@link #commitCredit}
+ * deposits the money, which the coordinator repeats until it is acknowledged. The participant remembers
+ * each transaction it committed until the coordinator reports every transaction up to it settled.
+ */
+public interface ClusterPeer {
+
+    AccountDTO getAccount(int id) throws AccountNotFoundException;
+
+    long getAccountVersion(int id) throws AccountNotFoundException;
+
+    /**
+     * @return Page of the accounts held by this node only
+     */
+    AccountPageDTO getLocalAccountPage(int afterId, int limit) throws InvalidParameterException;
+
+    List<TransactionDTO> getTransactions(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException, InvalidParameterException;
+
+    /**
+     * Executes a transfer whose source account this node owns, coordinating it with the destination's
+     * owner if that is another node
+     */
+    void transferMoney(TransferDTO transferDTO)
+            throws AccountNotFoundException, InsufficientFundsException,
+                   InvalidParameterException, RequiredParameterException, CurrencyConversionException,
+                   LockTimeoutException, VersionConflictException;
+
+    /**
+     * Executes a batch whose accounts this node all owns
+     */
+    BatchTransferResultDTO transferMoneyBatch(List<TransferDTO> transferDTOs)
+            throws RequiredParameterException, LockTimeoutException;
+
+    /**
+     * Checks the destination account exists and converts the amount into its currency
+     * @param amount Amount in the transfer currency
+     * @return Amount the destination account will be credited
+     */
+    BigDecimal prepareCredit(long transactionId, int srcId, int dstId, BigDecimal amount, String currency)
+            throws AccountNotFoundException, CurrencyConversionException;
+
+    /**
+     * Journals and deposits a prepared credit. Repeating a transaction already committed does nothing.
+     * @param settledBelow ID below which every transaction the coordinator started has been acknowledged,
+     *                     so will never be repeated
+     */
+    void commitCredit(long transactionId, long settledBelow, int srcId, int dstId, BigDecimal creditAmount)
+            throws AccountNotFoundException, LockTimeoutException;
+}
@@ -0,0 +1,201 @@
+package org.account.cluster;
+
+import org.account.codec.AccountBinaryCodec;
+import org.account.exception.BusinessException;
+import org.account.model.dto.BatchTransferResultDTO;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers the cluster protocol for this node's accounts. Each connection is served by a thread of its
+ * own, reading one request at a time and writing its response before reading the next. Other nodes
+ * keep their connections open between calls, so there are only as many threads as calls they have
+ * had in flight at once.
+ */
+public class ClusterServer implements AutoCloseable {
+
+    private static final String OPERATION_ERR = "Unknown cluster operation %s";
+    private static final String ACCEPT_ERR = "ERROR: Cluster server stopped accepting connections: %s";
+
+    private final ClusterPeer localPeer;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    /**
+     * @param port Port to listen on, 0 for any free port
+     * @param localPeer Answers calls for the accounts this node owns
+     */
+    public ClusterServer(int port, ClusterPeer localPeer) throws IOException {
+        this.localPeer = localPeer;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(new InetSocketAddress(port));
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-connection-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executor.execute(this::accept);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        }
+        catch (IOException e) {
+            // Already closed
+        }
+        for (Socket connection : connections) {
+            closeQuietly(connection);
+        }
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                executor.execute(() -> serve(socket));
+            }
+            catch (IOException e) {
+                if (!closed) {
+                    System.out.println(String.format(ACCEPT_ERR, e.getMessage()));
+                }
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (!closed) {
+                int operation = in.read();
+                if (operation < 0) {
+                    return;
+                }
+                handle((byte) operation, in, out);
+                out.flush();
+            }
+        }
+        catch (EOFException | SocketException e) {
+            // The other node closed the connection, or this server is closing
+        }
+        catch (IOException e) {
+            // The connection is out of step with the protocol, so it cannot be used any more
+        }
+        finally {
+            connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Reads the whole request and calls the local peer before writing anything, so that a failure is
+     * answered in place of the result and the stream stays at the start of the next request
+     */
+    private void handle(byte operation, DataInputStream in, DataOutputStream out) throws IOException {
+        try {
+            switch (operation) {
+                case ClusterCodec.GET_ACCOUNT: {
+                    int id = in.readInt();
+                    AccountBinaryCodec.writeAccount(localPeer.getAccount(id), ok(out));
+                    break;
+                }
+                case ClusterCodec.GET_ACCOUNT_VERSION: {
+                    long version = localPeer.getAccountVersion(in.readInt());
+                    ok(out).writeLong(version);
+                    break;
+                }
+                case ClusterCodec.GET_LOCAL_ACCOUNT_PAGE: {
+                    int afterId = in.readInt();
+                    int limit = in.readInt();
+                    AccountBinaryCodec.writeAccountPage(localPeer.getLocalAccountPage(afterId, limit), ok(out));
+                    break;
+                }
+                case ClusterCodec.GET_TRANSACTIONS: {
+                    int id = in.readInt();
+                    long fromMillis = in.readLong();
+                    long toMillis = in.readLong();
+                    int limit = in.readInt();
+                    AccountBinaryCodec.writeTransactions(localPeer.getTransactions(id, fromMillis, toMillis, limit),
+                            ok(out));
+                    break;
+                }
+                case ClusterCodec.TRANSFER:
+                    localPeer.transferMoney(AccountBinaryCodec.readTransfer(in));
+                    ok(out);
+                    break;
+                case ClusterCodec.TRANSFER_BATCH: {
+                    BatchTransferResultDTO result = localPeer.transferMoneyBatch(AccountBinaryCodec.readTransfers(in));
+                    AccountBinaryCodec.writeBatchResult(result, ok(out));
+                    break;
+                }
+                case ClusterCodec.PREPARE_CREDIT: {
+                    long transactionId = in.readLong();
+                    int srcId = in.readInt();
+                    int dstId = in.readInt();
+                    BigDecimal amount = AccountBinaryCodec.readDecimal(in);
+                    String currency = AccountBinaryCodec.readString(in);
+                    BigDecimal creditAmount = localPeer.prepareCredit(transactionId, srcId, dstId, amount, currency);
+                    AccountBinaryCodec.writeDecimal(creditAmount, ok(out));
+                    break;
+                }
+                case ClusterCodec.COMMIT_CREDIT: {
+                    long transactionId = in.readLong();
+                    long settledBelow = in.readLong();
+                    int srcId = in.readInt();
+                    int dstId = in.readInt();
+                    BigDecimal creditAmount = AccountBinaryCodec.readDecimal(in);
+                    localPeer.commitCredit(transactionId, settledBelow, srcId, dstId, creditAmount);
+                    ok(out);
+                    break;
+                }
+                default:
+                    throw new IOException(String.format(OPERATION_ERR, operation));
+            }
+        }
+        catch (BusinessException | RuntimeException e) {
+            ClusterCodec.writeFailure(e, out);
+        }
+    }
+
+    private static DataOutputStream ok(DataOutputStream out) throws IOException {
+        out.writeByte(ClusterCodec.OK);
+        return out;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        }
+        catch (IOException e) {
+            // Nothing more can be done with it either way
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.account.cluster;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent-hash ring assigning every account ID to one node of the cluster. Each node is placed on
+ * the ring at several points derived from its address, and an account belongs to the node at the first
+ * point at or after the account's hash. Adding or removing a node therefore only moves the accounts
+ * between it and its neighbours, and the virtual points keep every node's share close to even.
+ * <p>
+ * The ring only depends on the node addresses and their order, so every node built from the same
+ * list agrees on who owns which account without talking to the others.
+ */
+public class HashRing {
+
+    private static final String NODES_ERR = "A ring needs at least one node";
+    private static final String VIRTUAL_NODES_ERR = "Number of virtual nodes must be positive: %s";
+
+    private final int[] points;
+    private final int[] owners;
+    private final int nodeCount;
+
+    /**
+     * @param nodes Addresses of the nodes, in the same order on every node
+     * @param virtualNodes Points each node is placed at on the ring
+     */
+    public HashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException(NODES_ERR);
+        }
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException(String.format(VIRTUAL_NODES_ERR, virtualNodes));
+        }
+
+        // Sorting the hash and owner packed together keeps each owner next to its point
+        long[] packed = new long[nodes.size() * virtualNodes];
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                int point = mix((nodes.get(node) + "#" + v).hashCode());
+                packed[node * virtualNodes + v] = ((long) point << 32) | node;
+            }
+        }
+        Arrays.sort(packed);
+
+        points = new int[packed.length];
+        owners = new int[packed.length];
+        for (int i = 0; i < packed.length; i++) {
+            points[i] = (int) (packed[i] >> 32);
+            owners[i] = (int) packed[i];
+        }
+        nodeCount = nodes.size();
+    }
+
+    /**
+     * @return Index in the node list of the node owning the account
+     */
+    public int ownerOf(int accountId) {
+        int index = Arrays.binarySearch(points, mix(accountId));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Finalisation step of MurmurHash3, so sequential IDs land all over the ring
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
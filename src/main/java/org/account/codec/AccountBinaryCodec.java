@@ -0,0 +1,221 @@
+package org.account.codec;
+
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.AccountPageDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.ErrorDTO;
+import org.account.model.dto.TransactionDTO;
+import org.account.model.dto.TransferDTO;
+import org.account.model.dto.TransferResultDTO;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Fixed binary layout of the account DTOs, used by the cluster protocol and by clients of the
+ * application/x-account-binary content type. Fields are written in a fixed order with no names, and
+ * are read straight into DTOs, so a transfer takes a few dozen bytes and no parsing.
+ * <p>
+ * Decimals are the unscaled value's length as an int, its bytes and the scale, strings are modified
+ * UTF-8 after a presence flag, and an absent account ID is written as 0, which no account has.
+ */
+public final class AccountBinaryCodec {
+
+    private static final String SIZE_ERR = "Negative list size %s";
+    private static final String DECIMAL_LENGTH_ERR = "Decimal length %s is out of range";
+    /** Far beyond any validated amount or balance, so a corrupt length is refused rather than allocated */
+    private static final int MAX_DECIMAL_LENGTH = 1024;
+    /** Lists are grown as they are read beyond this, so a corrupt size cannot allocate much up front */
+    private static final int MAX_PREALLOCATED = 1024;
+
+    private AccountBinaryCodec() {}
+
+    public static void writeAccount(AccountDTO account, DataOutput out) throws IOException {
+        out.writeInt(account.getId() != null ? account.getId() : 0);
+        writeString(account.getAccountHolderName(), out);
+        writeString(account.getCurrency(), out);
+        writeDecimal(account.getBalance(), out);
+        out.writeLong(account.getCreatedDate() != null ? account.getCreatedDate().getTime() : Long.MIN_VALUE);
+    }
+
+    public static AccountDTO readAccount(DataInput in) throws IOException {
+        AccountDTO account = new AccountDTO();
+        int id = in.readInt();
+        account.setId(id != 0 ? id : null);
+        account.setAccountHolderName(readString(in));
+        account.setCurrency(readString(in));
+        account.setBalance(readDecimal(in));
+        long createdMillis = in.readLong();
+        account.setCreatedDate(createdMillis != Long.MIN_VALUE ? new Date(createdMillis) : null);
+        return account;
+    }
+
+    public static void writeAccountPage(AccountPageDTO page, DataOutput out) throws IOException {
+        out.writeInt(page.getAccounts().size());
+        for (AccountDTO account : page.getAccounts()) {
+            writeAccount(account, out);
+        }
+        out.writeInt(page.getNextAfter() != null ? page.getNextAfter() : -1);
+    }
+
+    public static AccountPageDTO readAccountPage(DataInput in) throws IOException {
+        int size = readSize(in);
+        List<AccountDTO> accounts = new ArrayList<>(Math.min(size, MAX_PREALLOCATED));
+        for (int i = 0; i < size; i++) {
+            accounts.add(readAccount(in));
+        }
+        int nextAfter = in.readInt();
+        return new AccountPageDTO(accounts, nextAfter >= 0 ? nextAfter : null);
+    }
+
+    public static void writeTransactions(List<TransactionDTO> transactions, DataOutput out) throws IOException {
+        out.writeInt(transactions.size());
+        for (TransactionDTO transaction : transactions) {
+            out.writeLong(transaction.getTimestamp());
+            out.writeInt(transaction.getCounterpartyAccountId());
+            writeDecimal(transaction.getAmount(), out);
+            writeDecimal(transaction.getBalance(), out);
+            writeString(transaction.getCurrency(), out);
+        }
+    }
+
+    public static List<TransactionDTO> readTransactions(DataInput in) throws IOException {
+        int size = readSize(in);
+        List<TransactionDTO> transactions = new ArrayList<>(Math.min(size, MAX_PREALLOCATED));
+        for (int i = 0; i < size; i++) {
+            TransactionDTO transaction = new TransactionDTO();
+            transaction.setTimestamp(in.readLong());
+            transaction.setCounterpartyAccountId(in.readInt());
+            transaction.setAmount(readDecimal(in));
+            transaction.setBalance(readDecimal(in));
+            transaction.setCurrency(readString(in));
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    public static void writeTransfer(TransferDTO transfer, DataOutput out) throws IOException {
+        out.writeInt(transfer.getSourceAccountId());
+        out.writeInt(transfer.getDestinationAccountId());
+        writeDecimal(transfer.getTransferAmount(), out);
+        writeString(transfer.getCurrency(), out);
+        writeString(transfer.getIdempotencyKey(), out);
+        out.writeBoolean(transfer.getExpectedVersion() != null);
+        if (transfer.getExpectedVersion() != null) {
+            out.writeLong(transfer.getExpectedVersion());
+        }
+    }
+
+    public static TransferDTO readTransfer(DataInput in) throws IOException {
+        TransferDTO transfer = new TransferDTO();
+        transfer.setSourceAccountId(in.readInt());
+        transfer.setDestinationAccountId(in.readInt());
+        transfer.setTransferAmount(readDecimal(in));
+        transfer.setCurrency(readString(in));
+        transfer.setIdempotencyKey(readString(in));
+        if (in.readBoolean()) {
+            transfer.setExpectedVersion(in.readLong());
+        }
+        return transfer;
+    }
+
+    public static void writeTransfers(List<TransferDTO> transfers, DataOutput out) throws IOException {
+        out.writeInt(transfers.size());
+        for (TransferDTO transfer : transfers) {
+            writeTransfer(transfer, out);
+        }
+    }
+
+    public static List<TransferDTO> readTransfers(DataInput in) throws IOException {
+        int size = readSize(in);
+        List<TransferDTO> transfers = new ArrayList<>(Math.min(size, MAX_PREALLOCATED));
+        for (int i = 0; i < size; i++) {
+            transfers.add(readTransfer(in));
+        }
+        return transfers;
+    }
+
+    public static void writeBatchResult(BatchTransferResultDTO result, DataOutput out) throws IOException {
+        out.writeBoolean(result.isCommitted());
+        out.writeLong(result.getElapsedMicros());
+        out.writeLong(result.getLockWaitMicros());
+        out.writeInt(result.getResults().size());
+        for (TransferResultDTO transferResult : result.getResults()) {
+            out.writeInt(transferResult.getIndex());
+            out.writeByte(transferResult.getStatus().ordinal());
+            writeString(transferResult.getErrorMessage(), out);
+        }
+    }
+
+    public static BatchTransferResultDTO readBatchResult(DataInput in) throws IOException {
+        BatchTransferResultDTO result = new BatchTransferResultDTO();
+        result.setCommitted(in.readBoolean());
+        result.setElapsedMicros(in.readLong());
+        result.setLockWaitMicros(in.readLong());
+        int size = readSize(in);
+        List<TransferResultDTO> results = new ArrayList<>(Math.min(size, MAX_PREALLOCATED));
+        for (int i = 0; i < size; i++) {
+            results.add(new TransferResultDTO(in.readInt(), TransferResultDTO.Status.values()[in.readByte()],
+                    readString(in)));
+        }
+        result.setResults(results);
+        return result;
+    }
+
+    public static void writeDecimal(BigDecimal value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeInt(unscaled.length);
+        out.write(unscaled);
+        out.writeInt(value.scale());
+    }
+
+    public static BigDecimal readDecimal(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 1 || length > MAX_DECIMAL_LENGTH) {
+            throw new IOException(String.format(DECIMAL_LENGTH_ERR, length));
+        }
+        byte[] unscaled = new byte[length];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), in.readInt());
+    }
+
+    public static void writeString(String value, DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    public static void writeError(ErrorDTO error, DataOutput out) throws IOException {
+        writeString(error.getErrorMessage(), out);
+    }
+
+    public static ErrorDTO readError(DataInput in) throws IOException {
+        return new ErrorDTO(readString(in));
+    }
+
+    private static int readSize(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException(String.format(SIZE_ERR, size));
+        }
+        return size;
+    }
+}
@@ -0,0 +1,94 @@
+package org.account.config;
+
+import java.util.Properties;
+
+/**
+ * Admission control settings for the account API. Both the per-client rate limit and the
+ * concurrency limit are off by default.
+ */
+public class AdmissionConfig {
+
+    public static final String CLIENT_RATE_PROPERTY = "account.admission.clientRatePerSecond";
+    public static final String CLIENT_BURST_PROPERTY = "account.admission.clientBurst";
+    public static final String MAX_CLIENTS_PROPERTY = "account.admission.maxClients";
+    public static final String MAX_CONCURRENCY_PROPERTY = "account.admission.maxConcurrency";
+    public static final String MIN_CONCURRENCY_PROPERTY = "account.admission.minConcurrency";
+
+    private double clientRatePerSecond;
+    private int clientBurst;
+    private int maxClients = 100000;
+    private int maxConcurrency;
+    private int minConcurrency = 4;
+
+    public static AdmissionConfig fromProperties(Properties properties) {
+        AdmissionConfig config = new AdmissionConfig();
+        String clientRate = properties.getProperty(CLIENT_RATE_PROPERTY);
+        if (clientRate != null && !clientRate.trim().isEmpty()) {
+            config.setClientRatePerSecond(Double.parseDouble(clientRate.trim()));
+        }
+        config.setClientBurst(getInt(properties, CLIENT_BURST_PROPERTY, config.getClientBurst()));
+        config.setMaxClients(getInt(properties, MAX_CLIENTS_PROPERTY, config.getMaxClients()));
+        config.setMaxConcurrency(getInt(properties, MAX_CONCURRENCY_PROPERTY, config.getMaxConcurrency()));
+        config.setMinConcurrency(getInt(properties, MIN_CONCURRENCY_PROPERTY, config.getMinConcurrency()));
+        return config;
+    }
+
+    private static int getInt(Properties properties, String name, int defaultValue) {
+        return (int) AppConfig.getLong(properties, name, defaultValue);
+    }
+
+    /**
+     * @return Requests per second each client may make on average, 0 for no limit
+     */
+    public double getClientRatePerSecond() {
+        return clientRatePerSecond;
+    }
+
+    public void setClientRatePerSecond(double clientRatePerSecond) {
+        this.clientRatePerSecond = clientRatePerSecond;
+    }
+
+    /**
+     * @return Requests a client may make at once after being idle, 0 for one second's worth
+     */
+    public int getClientBurst() {
+        return clientBurst > 0 ? clientBurst : (int) Math.max(1, Math.ceil(clientRatePerSecond));
+    }
+
+    public void setClientBurst(int clientBurst) {
+        this.clientBurst = clientBurst;
+    }
+
+    /**
+     * @return Number of clients tracked before those that have been idle for a while are forgotten
+     */
+    public int getMaxClients() {
+        return maxClients;
+    }
+
+    public void setMaxClients(int maxClients) {
+        this.maxClients = maxClients;
+    }
+
+    /**
+     * @return Upper bound of the adaptive limit on requests in progress, 0 for no limit
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * @return Lower bound the adaptive limit never drops below however slow requests become
+     */
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    public void setMinConcurrency(int minConcurrency) {
+        this.minConcurrency = minConcurrency;
+    }
+}
@@ -0,0 +1,418 @@
+package org.account.config;
+
+import org.account.journal.FsyncPolicy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Runtime settings of the account server, read from an optional properties file named by the
+ * account.config system property, with system properties overriding anything set in the file.
+ */
+public class AppConfig {
+
+    /**
+     * How transfers are executed: LOCKING applies them on the request thread under per-account locks,
+     * OPTIMISTIC decides them without locks and only takes the locks, without waiting, to validate and
+     * apply them, SEQUENCED hands them to a single thread through a ring buffer, PARTITIONED splits accounts
+     * by ID between several threads that each alone apply transfers to their own accounts
+     */
+    public enum ServiceMode { LOCKING, OPTIMISTIC, SEQUENCED, PARTITIONED }
+
+    /**
+     * Where accounts are kept: HEAP as ordinary objects, OFF_HEAP as fixed-width records in direct buffers
+     */
+    public enum AccountStore { HEAP, OFF_HEAP }
+
+    public static final String CONFIG_FILE_PROPERTY = "account.config";
+    public static final String LOCK_TIMEOUT_PROPERTY = "account.lock.timeoutMillis";
+    public static final String MINOR_UNIT_BALANCES_PROPERTY = "account.balance.minorUnits";
+    public static final String JOURNAL_PATH_PROPERTY = "account.journal.path";
+    public static final String JOURNAL_FSYNC_PROPERTY = "account.journal.fsync";
+    public static final String SERVICE_MODE_PROPERTY = "account.service.mode";
+    public static final String PARTITIONS_PROPERTY = "account.service.partitions";
+    public static final String SNAPSHOT_PATH_PROPERTY = "account.snapshot.path";
+    public static final String SNAPSHOT_INTERVAL_PROPERTY = "account.snapshot.intervalSeconds";
+    public static final String ASYNC_API_PROPERTY = "account.api.async";
+    public static final String ASYNC_THREADS_PROPERTY = "account.api.asyncThreads";
+    public static final String ASYNC_QUEUE_SIZE_PROPERTY = "account.api.asyncQueueSize";
+    public static final String ASYNC_TIMEOUT_PROPERTY = "account.api.asyncTimeoutMillis";
+    public static final String JSON_CACHE_SIZE_PROPERTY = "account.api.jsonCacheSize";
+    public static final String METRICS_ENABLED_PROPERTY = "account.metrics.enabled";
+    public static final String ACCOUNT_STORE_PROPERTY = "account.store";
+    public static final String LEDGER_ENABLED_PROPERTY = "account.ledger.enabled";
+    public static final String IDEMPOTENCY_WINDOW_PROPERTY = "account.idempotency.windowSeconds";
+    public static final String IDEMPOTENCY_MAX_BYTES_PROPERTY = "account.idempotency.maxBytes";
+    public static final String FX_RATES_PATH_PROPERTY = "account.fx.ratesPath";
+    public static final String FX_RELOAD_INTERVAL_PROPERTY = "account.fx.reloadSeconds";
+    public static final String FX_ROUNDING_PROPERTY = "account.fx.rounding";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private long lockTimeoutMillis;
+    private boolean minorUnitBalances;
+    private Path journalPath;
+    private FsyncPolicy journalFsyncPolicy = FsyncPolicy.GROUP;
+    private Path snapshotPath;
+    private ServiceMode serviceMode = ServiceMode.LOCKING;
+    private int partitions = Runtime.getRuntime().availableProcessors();
+    private long snapshotIntervalSeconds = 300;
+    private boolean asyncApi = true;
+    private int asyncThreads = 256;
+    private int asyncQueueSize = 4096;
+    private long asyncTimeoutMillis = 30000;
+    private int jsonCacheSize = 65536;
+    private boolean metricsEnabled = true;
+    private AccountStore accountStore = AccountStore.HEAP;
+    private boolean ledgerEnabled = true;
+    private long idempotencyWindowSeconds = 3600;
+    private long idempotencyMaxBytes = 64L * 1024 * 1024;
+    private Path fxRatesPath;
+    private long fxReloadSeconds = 60;
+    private RoundingMode fxRoundingMode = RoundingMode.HALF_EVEN;
+    private ServerConfig serverConfig = new ServerConfig();
+    private AdmissionConfig admissionConfig = new AdmissionConfig();
+    private ClusterConfig clusterConfig = new ClusterConfig();
+    private ReplicationConfig replicationConfig = new ReplicationConfig();
+
+    /**
+     * Reads the properties file named by the account.config system property, if set, and applies
+     * system properties on top of it
+     */
+    public static AppConfig load() throws IOException {
+        Properties properties = new Properties();
+        String configFile = System.getProperty(CONFIG_FILE_PROPERTY);
+        if (configFile != null && !configFile.isEmpty()) {
+            try (Reader reader = Files.newBufferedReader(Paths.get(configFile))) {
+                properties.load(reader);
+            }
+        }
+        properties.putAll(System.getProperties());
+        return fromProperties(properties);
+    }
+
+    public static AppConfig fromSystemProperties() {
+        return fromProperties(System.getProperties());
+    }
+
+    public static AppConfig fromProperties(Properties properties) {
+        AppConfig config = new AppConfig();
+        config.setLockTimeoutMillis(getLong(properties, LOCK_TIMEOUT_PROPERTY, 0));
+        config.setMinorUnitBalances(Boolean.parseBoolean(properties.getProperty(MINOR_UNIT_BALANCES_PROPERTY)));
+        String journalPath = properties.getProperty(JOURNAL_PATH_PROPERTY);
+        if (journalPath != null && !journalPath.isEmpty()) {
+            config.setJournalPath(Paths.get(journalPath));
+        }
+        String fsyncPolicy = properties.getProperty(JOURNAL_FSYNC_PROPERTY);
+        if (fsyncPolicy != null) {
+            config.setJournalFsyncPolicy(FsyncPolicy.valueOf(fsyncPolicy.trim().toUpperCase()));
+        }
+        String snapshotPath = properties.getProperty(SNAPSHOT_PATH_PROPERTY);
+        if (snapshotPath != null && !snapshotPath.isEmpty()) {
+            config.setSnapshotPath(Paths.get(snapshotPath));
+        }
+        String serviceMode = properties.getProperty(SERVICE_MODE_PROPERTY);
+        if (serviceMode != null) {
+            config.setServiceMode(ServiceMode.valueOf(serviceMode.trim().toUpperCase()));
+        }
+        config.setPartitions((int) getLong(properties, PARTITIONS_PROPERTY, config.getPartitions()));
+        config.setSnapshotIntervalSeconds(getLong(properties, SNAPSHOT_INTERVAL_PROPERTY, config.getSnapshotIntervalSeconds()));
+        String asyncApi = properties.getProperty(ASYNC_API_PROPERTY);
+        if (asyncApi != null) {
+            config.setAsyncApi(Boolean.parseBoolean(asyncApi.trim()));
+        }
+        config.setAsyncThreads((int) getLong(properties, ASYNC_THREADS_PROPERTY, config.getAsyncThreads()));
+        config.setAsyncQueueSize((int) getLong(properties, ASYNC_QUEUE_SIZE_PROPERTY, config.getAsyncQueueSize()));
+        config.setAsyncTimeoutMillis(getLong(properties, ASYNC_TIMEOUT_PROPERTY, config.getAsyncTimeoutMillis()));
+        config.setJsonCacheSize((int) getLong(properties, JSON_CACHE_SIZE_PROPERTY, config.getJsonCacheSize()));
+        String metricsEnabled = properties.getProperty(METRICS_ENABLED_PROPERTY);
+        if (metricsEnabled != null) {
+            config.setMetricsEnabled(Boolean.parseBoolean(metricsEnabled.trim()));
+        }
+        String accountStore = properties.getProperty(ACCOUNT_STORE_PROPERTY);
+        if (accountStore != null) {
+            config.setAccountStore(AccountStore.valueOf(accountStore.trim().toUpperCase()));
+        }
+        String ledgerEnabled = properties.getProperty(LEDGER_ENABLED_PROPERTY);
+        if (ledgerEnabled != null) {
+            config.setLedgerEnabled(Boolean.parseBoolean(ledgerEnabled.trim()));
+        }
+        config.setIdempotencyWindowSeconds(getLong(properties, IDEMPOTENCY_WINDOW_PROPERTY, config.getIdempotencyWindowSeconds()));
+        config.setIdempotencyMaxBytes(getLong(properties, IDEMPOTENCY_MAX_BYTES_PROPERTY, config.getIdempotencyMaxBytes()));
+        String fxRatesPath = properties.getProperty(FX_RATES_PATH_PROPERTY);
+        if (fxRatesPath != null && !fxRatesPath.isEmpty()) {
+            config.setFxRatesPath(Paths.get(fxRatesPath));
+        }
+        config.setFxReloadSeconds(getLong(properties, FX_RELOAD_INTERVAL_PROPERTY, config.getFxReloadSeconds()));
+        String fxRounding = properties.getProperty(FX_ROUNDING_PROPERTY);
+        if (fxRounding != null) {
+            config.setFxRoundingMode(RoundingMode.valueOf(fxRounding.trim().toUpperCase()));
+        }
+        config.setServerConfig(ServerConfig.fromProperties(properties));
+        config.setAdmissionConfig(AdmissionConfig.fromProperties(properties));
+        config.setClusterConfig(ClusterConfig.fromProperties(properties));
+        config.setReplicationConfig(ReplicationConfig.fromProperties(properties));
+        return config;
+    }
+
+    static long getLong(Properties properties, String name, long defaultValue) {
+        String value = properties.getProperty(name);
+        return value == null || value.trim().isEmpty() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    public long getLockTimeoutMillis() {
+        return lockTimeoutMillis;
+    }
+
+    public void setLockTimeoutMillis(long lockTimeoutMillis) {
+        this.lockTimeoutMillis = lockTimeoutMillis;
+    }
+
+    public boolean isMinorUnitBalances() {
+        return minorUnitBalances;
+    }
+
+    public void setMinorUnitBalances(boolean minorUnitBalances) {
+        this.minorUnitBalances = minorUnitBalances;
+    }
+
+    /**
+     * @return Path of the journal file, or null if journalling is disabled
+     */
+    public Path getJournalPath() {
+        return journalPath;
+    }
+
+    public void setJournalPath(Path journalPath) {
+        this.journalPath = journalPath;
+    }
+
+    public FsyncPolicy getJournalFsyncPolicy() {
+        return journalFsyncPolicy;
+    }
+
+    public void setJournalFsyncPolicy(FsyncPolicy journalFsyncPolicy) {
+        this.journalFsyncPolicy = journalFsyncPolicy;
+    }
+
+    /**
+     * @return Path of the snapshot file, defaulting to one next to the journal, or null if journalling is disabled
+     */
+    public Path getSnapshotPath() {
+        if (snapshotPath == null && journalPath != null) {
+            return journalPath.resolveSibling(journalPath.getFileName() + SNAPSHOT_SUFFIX);
+        }
+        return snapshotPath;
+    }
+
+    public void setSnapshotPath(Path snapshotPath) {
+        this.snapshotPath = snapshotPath;
+    }
+
+    /**
+     * @return Seconds between background snapshots, 0 to only load an existing snapshot on startup
+     */
+    public long getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+
+    public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    public ServiceMode getServiceMode() {
+        return serviceMode;
+    }
+
+    public void setServiceMode(ServiceMode serviceMode) {
+        this.serviceMode = serviceMode;
+    }
+
+    /**
+     * @return Number of partitions, and of threads applying transfers, in PARTITIONED mode
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    /**
+     * @return Whether write requests release the Jetty thread while the service call is in progress
+     */
+    public boolean isAsyncApi() {
+        return asyncApi;
+    }
+
+    public void setAsyncApi(boolean asyncApi) {
+        this.asyncApi = asyncApi;
+    }
+
+    /**
+     * @return Size of the pool running blocking service calls for the async API in LOCKING mode
+     */
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    public void setAsyncThreads(int asyncThreads) {
+        this.asyncThreads = asyncThreads;
+    }
+
+    /**
+     * @return Calls that may wait for a thread of that pool before further calls are answered 503
+     */
+    public int getAsyncQueueSize() {
+        return asyncQueueSize;
+    }
+
+    public void setAsyncQueueSize(int asyncQueueSize) {
+        this.asyncQueueSize = asyncQueueSize;
+    }
+
+    /**
+     * @return How long a suspended request waits for its result before it is answered 503, 0 to wait forever
+     */
+    public long getAsyncTimeoutMillis() {
+        return asyncTimeoutMillis;
+    }
+
+    public void setAsyncTimeoutMillis(long asyncTimeoutMillis) {
+        this.asyncTimeoutMillis = asyncTimeoutMillis;
+    }
+
+    /**
+     * @return Number of accounts kept serialized for GET requests, 0 to serialize on every read
+     */
+    public int getJsonCacheSize() {
+        return jsonCacheSize;
+    }
+
+    public void setJsonCacheSize(int jsonCacheSize) {
+        this.jsonCacheSize = jsonCacheSize;
+    }
+
+    /**
+     * @return Whether API requests, service calls, lock waits and store operations are timed for GET /metrics
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public AccountStore getAccountStore() {
+        return accountStore;
+    }
+
+    public void setAccountStore(AccountStore accountStore) {
+        this.accountStore = accountStore;
+    }
+
+    /**
+     * @return Whether every balance change is kept in memory for GET api/v1/account/{id}/transactions
+     */
+    public boolean isLedgerEnabled() {
+        return ledgerEnabled;
+    }
+
+    public void setLedgerEnabled(boolean ledgerEnabled) {
+        this.ledgerEnabled = ledgerEnabled;
+    }
+
+    /**
+     * @return Seconds for which the outcome of a transfer carrying an idempotency key is remembered, 0 to disable
+     */
+    public long getIdempotencyWindowSeconds() {
+        return idempotencyWindowSeconds;
+    }
+
+    public void setIdempotencyWindowSeconds(long idempotencyWindowSeconds) {
+        this.idempotencyWindowSeconds = idempotencyWindowSeconds;
+    }
+
+    /**
+     * @return Approximate memory the remembered transfer outcomes may use before the oldest are evicted
+     */
+    public long getIdempotencyMaxBytes() {
+        return idempotencyMaxBytes;
+    }
+
+    public void setIdempotencyMaxBytes(long idempotencyMaxBytes) {
+        this.idempotencyMaxBytes = idempotencyMaxBytes;
+    }
+
+    /**
+     * @return File of exchange rates for transfers between accounts in different currencies, or null if
+     * such transfers are rejected
+     */
+    public Path getFxRatesPath() {
+        return fxRatesPath;
+    }
+
+    public void setFxRatesPath(Path fxRatesPath) {
+        this.fxRatesPath = fxRatesPath;
+    }
+
+    /**
+     * @return Seconds between reloads of the exchange rate file, 0 to load it only at startup
+     */
+    public long getFxReloadSeconds() {
+        return fxReloadSeconds;
+    }
+
+    public void setFxReloadSeconds(long fxReloadSeconds) {
+        this.fxReloadSeconds = fxReloadSeconds;
+    }
+
+    /**
+     * @return How converted amounts are rounded to the minor units of the account currency
+     */
+    public RoundingMode getFxRoundingMode() {
+        return fxRoundingMode;
+    }
+
+    public void setFxRoundingMode(RoundingMode fxRoundingMode) {
+        this.fxRoundingMode = fxRoundingMode;
+    }
+
+    public ServerConfig getServerConfig() {
+        return serverConfig;
+    }
+
+    public void setServerConfig(ServerConfig serverConfig) {
+        this.serverConfig = serverConfig;
+    }
+
+    public AdmissionConfig getAdmissionConfig() {
+        return admissionConfig;
+    }
+
+    public void setAdmissionConfig(AdmissionConfig admissionConfig) {
+        this.admissionConfig = admissionConfig;
+    }
+
+    public ClusterConfig getClusterConfig() {
+        return clusterConfig;
+    }
+
+    public void setClusterConfig(ClusterConfig clusterConfig) {
+        this.clusterConfig = clusterConfig;
+    }
+
+    public ReplicationConfig getReplicationConfig() {
+        return replicationConfig;
+    }
+
+    public void setReplicationConfig(ReplicationConfig replicationConfig) {
+        this.replicationConfig = replicationConfig;
+    }
+}
@@ -0,0 +1,105 @@
+package org.account.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Cluster settings. Clustering is off unless the nodes are listed, and every node must be given the
+ * same list in the same order, since the order decides which node owns which account.
+ */
+public class ClusterConfig {
+
+    public static final String NODES_PROPERTY = "account.cluster.nodes";
+    public static final String NODE_INDEX_PROPERTY = "account.cluster.nodeIndex";
+    public static final String VIRTUAL_NODES_PROPERTY = "account.cluster.virtualNodes";
+    public static final String CONNECTIONS_PROPERTY = "account.cluster.connections";
+    public static final String TIMEOUT_PROPERTY = "account.cluster.timeoutMillis";
+
+    private List<String> nodes = Collections.emptyList();
+    private int nodeIndex;
+    private int virtualNodes = 128;
+    private int connections = 16;
+    private int timeoutMillis = 5000;
+
+    public static ClusterConfig fromProperties(Properties properties) {
+        ClusterConfig config = new ClusterConfig();
+        String nodes = properties.getProperty(NODES_PROPERTY);
+        if (nodes != null && !nodes.trim().isEmpty()) {
+            List<String> addresses = new ArrayList<>();
+            for (String address : nodes.split(",")) {
+                addresses.add(address.trim());
+            }
+            config.setNodes(addresses);
+        }
+        config.setNodeIndex(getInt(properties, NODE_INDEX_PROPERTY, config.getNodeIndex()));
+        config.setVirtualNodes(getInt(properties, VIRTUAL_NODES_PROPERTY, config.getVirtualNodes()));
+        config.setConnections(getInt(properties, CONNECTIONS_PROPERTY, config.getConnections()));
+        config.setTimeoutMillis(getInt(properties, TIMEOUT_PROPERTY, config.getTimeoutMillis()));
+        return config;
+    }
+
+    private static int getInt(Properties properties, String name, int defaultValue) {
+        return (int) AppConfig.getLong(properties, name, defaultValue);
+    }
+
+    public boolean isEnabled() {
+        return !nodes.isEmpty();
+    }
+
+    /**
+     * @return Cluster protocol address of every node as host:port, this one included
+     */
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<String> nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * @return Position of this node in the node list, whose port it listens on for other nodes
+     */
+    public int getNodeIndex() {
+        return nodeIndex;
+    }
+
+    public void setNodeIndex(int nodeIndex) {
+        this.nodeIndex = nodeIndex;
+    }
+
+    /**
+     * @return Points each node is placed at on the hash ring, more spread accounts more evenly
+     */
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * @return Connections to each other node kept open between calls
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    public void setConnections(int connections) {
+        this.connections = connections;
+    }
+
+    /**
+     * @return How long to wait to connect to another node and for each of its responses
+     */
+    public int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+}
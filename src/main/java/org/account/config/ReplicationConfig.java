@@ -0,0 +1,85 @@
+package org.account.config;
+
+import java.util.Properties;
+
+/**
+ * Replication settings. A primary ships its journal to replicas once given a port to listen on, and a
+ * node given the address of a primary starts as a read-only replica of it. Both are off by default.
+ */
+public class ReplicationConfig {
+
+    public static final String PORT_PROPERTY = "account.replication.port";
+    public static final String PRIMARY_PROPERTY = "account.replication.primary";
+    public static final String MAX_STALENESS_PROPERTY = "account.replication.maxStalenessMillis";
+    public static final String TIMEOUT_PROPERTY = "account.replication.timeoutMillis";
+
+    private int port;
+    private String primary;
+    private long maxStalenessMillis = 1000;
+    private int timeoutMillis = 5000;
+
+    public static ReplicationConfig fromProperties(Properties properties) {
+        ReplicationConfig config = new ReplicationConfig();
+        config.setPort((int) AppConfig.getLong(properties, PORT_PROPERTY, config.getPort()));
+        String primary = properties.getProperty(PRIMARY_PROPERTY);
+        if (primary != null && !primary.trim().isEmpty()) {
+            config.setPrimary(primary.trim());
+        }
+        config.setMaxStalenessMillis(AppConfig.getLong(properties, MAX_STALENESS_PROPERTY,
+                config.getMaxStalenessMillis()));
+        config.setTimeoutMillis((int) AppConfig.getLong(properties, TIMEOUT_PROPERTY, config.getTimeoutMillis()));
+        return config;
+    }
+
+    public boolean isPrimary() {
+        return port > 0;
+    }
+
+    public boolean isReplica() {
+        return primary != null;
+    }
+
+    /**
+     * @return Port a primary accepts replicas on, 0 if it ships to none
+     */
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * @return Replication address of the primary as host:port, null unless this node is a replica
+     */
+    public String getPrimary() {
+        return primary;
+    }
+
+    public void setPrimary(String primary) {
+        this.primary = primary;
+    }
+
+    /**
+     * @return How far a replica may fall behind the primary before it refuses reads
+     */
+    public long getMaxStalenessMillis() {
+        return maxStalenessMillis;
+    }
+
+    public void setMaxStalenessMillis(long maxStalenessMillis) {
+        this.maxStalenessMillis = maxStalenessMillis;
+    }
+
+    /**
+     * @return How long a replica waits to connect to the primary and to hear from it before reconnecting
+     */
+    public int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+}
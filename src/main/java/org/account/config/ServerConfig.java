@@ -0,0 +1,169 @@
+package org.account.config;
+
+import java.util.Properties;
+
+/**
+ * Jetty thread pool and HTTP connector settings. The defaults are Jetty's own, and -1 leaves
+ * acceptor and selector counts for Jetty to derive from the number of CPUs.
+ */
+public class ServerConfig {
+
+    public static final String MIN_THREADS_PROPERTY = "account.server.threads.min";
+    public static final String MAX_THREADS_PROPERTY = "account.server.threads.max";
+    public static final String THREAD_IDLE_TIMEOUT_PROPERTY = "account.server.threads.idleTimeoutMillis";
+    public static final String QUEUE_SIZE_PROPERTY = "account.server.threads.queueSize";
+    public static final String ACCEPTORS_PROPERTY = "account.server.acceptors";
+    public static final String SELECTORS_PROPERTY = "account.server.selectors";
+    public static final String ACCEPT_QUEUE_SIZE_PROPERTY = "account.server.acceptQueueSize";
+    public static final String IDLE_TIMEOUT_PROPERTY = "account.server.idleTimeoutMillis";
+    public static final String KEEP_ALIVE_PROPERTY = "account.server.keepAlive";
+    public static final String OUTPUT_BUFFER_SIZE_PROPERTY = "account.server.outputBufferSize";
+    public static final String REQUEST_HEADER_SIZE_PROPERTY = "account.server.requestHeaderSize";
+    public static final String RESPONSE_HEADER_SIZE_PROPERTY = "account.server.responseHeaderSize";
+
+    private int minThreads = 8;
+    private int maxThreads = 200;
+    private int threadIdleTimeoutMillis = 60000;
+    private int queueSize = -1;
+    private int acceptors = -1;
+    private int selectors = -1;
+    private int acceptQueueSize;
+    private long idleTimeoutMillis = 30000;
+    private boolean keepAlive = true;
+    private int outputBufferSize = 32 * 1024;
+    private int requestHeaderSize = 8 * 1024;
+    private int responseHeaderSize = 8 * 1024;
+
+    public static ServerConfig fromProperties(Properties properties) {
+        ServerConfig config = new ServerConfig();
+        config.setMinThreads(getInt(properties, MIN_THREADS_PROPERTY, config.getMinThreads()));
+        config.setMaxThreads(getInt(properties, MAX_THREADS_PROPERTY, config.getMaxThreads()));
+        config.setThreadIdleTimeoutMillis(getInt(properties, THREAD_IDLE_TIMEOUT_PROPERTY, config.getThreadIdleTimeoutMillis()));
+        config.setQueueSize(getInt(properties, QUEUE_SIZE_PROPERTY, config.getQueueSize()));
+        config.setAcceptors(getInt(properties, ACCEPTORS_PROPERTY, config.getAcceptors()));
+        config.setSelectors(getInt(properties, SELECTORS_PROPERTY, config.getSelectors()));
+        config.setAcceptQueueSize(getInt(properties, ACCEPT_QUEUE_SIZE_PROPERTY, config.getAcceptQueueSize()));
+        config.setIdleTimeoutMillis(AppConfig.getLong(properties, IDLE_TIMEOUT_PROPERTY, config.getIdleTimeoutMillis()));
+        String keepAlive = properties.getProperty(KEEP_ALIVE_PROPERTY);
+        if (keepAlive != null) {
+            config.setKeepAlive(Boolean.parseBoolean(keepAlive.trim()));
+        }
+        config.setOutputBufferSize(getInt(properties, OUTPUT_BUFFER_SIZE_PROPERTY, config.getOutputBufferSize()));
+        config.setRequestHeaderSize(getInt(properties, REQUEST_HEADER_SIZE_PROPERTY, config.getRequestHeaderSize()));
+        config.setResponseHeaderSize(getInt(properties, RESPONSE_HEADER_SIZE_PROPERTY, config.getResponseHeaderSize()));
+        return config;
+    }
+
+    private static int getInt(Properties properties, String name, int defaultValue) {
+        return (int) AppConfig.getLong(properties, name, defaultValue);
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    public void setMinThreads(int minThreads) {
+        this.minThreads = minThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    public int getThreadIdleTimeoutMillis() {
+        return threadIdleTimeoutMillis;
+    }
+
+    public void setThreadIdleTimeoutMillis(int threadIdleTimeoutMillis) {
+        this.threadIdleTimeoutMillis = threadIdleTimeoutMillis;
+    }
+
+    /**
+     * @return Maximum number of jobs waiting for a pool thread, -1 for no bound. Connections arriving
+     * while the queue is full are closed.
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public int getAcceptors() {
+        return acceptors;
+    }
+
+    public void setAcceptors(int acceptors) {
+        this.acceptors = acceptors;
+    }
+
+    public int getSelectors() {
+        return selectors;
+    }
+
+    public void setSelectors(int selectors) {
+        this.selectors = selectors;
+    }
+
+    /**
+     * @return Backlog of connections the OS holds before they are accepted, 0 for the JVM default of 50
+     */
+    public int getAcceptQueueSize() {
+        return acceptQueueSize;
+    }
+
+    public void setAcceptQueueSize(int acceptQueueSize) {
+        this.acceptQueueSize = acceptQueueSize;
+    }
+
+    /**
+     * @return How long an idle connection, including a kept alive one, stays open
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * @return Whether HTTP/1.1 connections are kept open between requests
+     */
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public int getOutputBufferSize() {
+        return outputBufferSize;
+    }
+
+    public void setOutputBufferSize(int outputBufferSize) {
+        this.outputBufferSize = outputBufferSize;
+    }
+
+    public int getRequestHeaderSize() {
+        return requestHeaderSize;
+    }
+
+    public void setRequestHeaderSize(int requestHeaderSize) {
+        this.requestHeaderSize = requestHeaderSize;
+    }
+
+    public int getResponseHeaderSize() {
+        return responseHeaderSize;
+    }
+
+    public void setResponseHeaderSize(int responseHeaderSize) {
+        this.responseHeaderSize = responseHeaderSize;
+    }
+}
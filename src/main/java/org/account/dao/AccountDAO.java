@@ -2,20 +2,56 @@ package org.account.dao;
 
 import org.account.exception.AccountNotFoundException;
 import org.account.exception.InsufficientFundsException;
+import org.account.ledger.LedgerEntry;
 import org.account.model.Account;
 
 import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.List;
 
 public interface AccountDAO {
 
     Collection<Account> getAllAccounts();
 
+    /**
+     * @return Up to limit accounts with IDs greater than afterId, in ID order
+     */
+    List<Account> getAccounts(int afterId, int limit);
+
     Account getAccount(int id) throws AccountNotFoundException;
 
     Account createAccount(Account account);
 
-    boolean accountWithdraw(int id, BigDecimal amount) throws AccountNotFoundException, InsufficientFundsException;
-
-    boolean accountDeposit(int id, BigDecimal amount) throws AccountNotFoundException;
+    /**
+     * Reserves the ID for an account that will be stored later with {@link #insertAccount(Account)}
+     */
+    int nextAccountId();
+
+    /**
+     * @return Highest account ID handed out so far, or 0 if there is none
+     */
+    int getLastAccountId();
+
+    /**
+     * Stores the account under the ID it already has, e.g. when recovering accounts from a journal
+     */
+    Account insertAccount(Account account);
+
+    /**
+     * @param counterpartyId Account the money is transferred to, recorded in the account's history
+     */
+    boolean accountWithdraw(int id, BigDecimal amount, int counterpartyId)
+            throws AccountNotFoundException, InsufficientFundsException;
+
+    /**
+     * @param counterpartyId Account the money is transferred from, recorded in the account's history
+     */
+    boolean accountDeposit(int id, BigDecimal amount, int counterpartyId) throws AccountNotFoundException;
+
+    /**
+     * @return Up to limit balance changes of the account recorded in the time range, oldest first,
+     * or nothing if the store keeps no history
+     */
+    List<LedgerEntry> getLedgerEntries(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException;
 }
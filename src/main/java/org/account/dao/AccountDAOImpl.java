@@ -2,56 +2,137 @@ package org.account.dao;
 
 import org.account.exception.AccountNotFoundException;
 import org.account.exception.InsufficientFundsException;
+import org.account.ledger.LedgerEntry;
 import org.account.model.Account;
-import org.account.model.dto.TransferDTO;
+import org.account.model.MinorUnits;
 
 import java.math.BigDecimal;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Thread safe in-memory account store. Lookups are lock free array reads, while balance
+ * updates are serialised per account through a set of striped locks so that
+ * operations on unrelated accounts proceed in parallel. Accounts holding their
+ * balance in minor units skip the locks and are updated by compare-and-set. Every balance
+ * change increments the account's version after the new balance is written.
+ */
 public class AccountDAOImpl implements AccountDAO {
 
     private static final String ACCOUNT_NOT_FOUND_ERR = "Account with ID %s not found";
     private static final String INSUFFICIENT_FUNDS_ERR = "Account with ID %s has insufficient funds to perform withdrawal";
     private final AtomicInteger atomicId = new AtomicInteger(0);
-    private final Map<Integer, Account> accountMap = new HashMap<Integer, Account>();
+    private final AccountIndex accountIndex;
+    private final StripedLock locks = new StripedLock();
+
+    public AccountDAOImpl() {
+        this(new AccountIndex());
+    }
+
+    AccountDAOImpl(AccountIndex accountIndex) {
+        this.accountIndex = accountIndex;
+    }
 
     public Collection<Account> getAllAccounts() {
-        return accountMap.values();
+        return Collections.unmodifiableCollection(accountIndex.values());
+    }
+
+    public List<Account> getAccounts(int afterId, int limit) {
+        // IDs are handed out sequentially, so walking them is cheaper than sorting every account
+        List<Account> accounts = new ArrayList<>(Math.min(limit, Math.max(0, atomicId.get() - afterId)));
+        for (int id = afterId + 1; id > 0 && id <= atomicId.get() && accounts.size() < limit; id++) {
+            Account account = accountIndex.get(id);
+            if (account != null) {
+                accounts.add(account);
+            }
+        }
+        return accounts;
     }
 
     public Account getAccount(int id) throws AccountNotFoundException {
-        checkAccountExists(id);
-        return accountMap.get(id);
+        return findAccount(id);
     }
 
     public Account createAccount(Account account) {
         account.setId(atomicId.incrementAndGet());
-        accountMap.put(account.getId(), account);
+        accountIndex.put(account);
+        return account;
+    }
+
+    public int nextAccountId() {
+        return atomicId.incrementAndGet();
+    }
+
+    public int getLastAccountId() {
+        return atomicId.get();
+    }
+
+    public Account insertAccount(Account account) {
+        // Keep IDs handed out later above every ID inserted so far
+        atomicId.accumulateAndGet(account.getId(), Math::max);
+        accountIndex.put(account);
         return account;
     }
 
-    public boolean accountWithdraw(int id, BigDecimal amount) throws AccountNotFoundException, InsufficientFundsException {
-        checkAccountExists(id);
-        Account account = accountMap.get(id);
-        if (account.getBalance().compareTo(amount) < 0) {
-            throw new InsufficientFundsException(String.format(INSUFFICIENT_FUNDS_ERR, id));
+    public boolean accountWithdraw(int id, BigDecimal amount, int counterpartyId)
+            throws AccountNotFoundException, InsufficientFundsException {
+        Account account = findAccount(id);
+        if (account.isMinorUnitBalance()) {
+            if (!account.tryWithdrawMinorUnits(MinorUnits.toMinorUnits(amount, account.getCurrency()))) {
+                throw new InsufficientFundsException(INSUFFICIENT_FUNDS_ERR, id);
+            }
+            account.incrementVersion();
+            return true;
+        }
+
+        ReentrantLock lock = locks.forId(id);
+        lock.lock();
+        try {
+            if (account.getBalance().compareTo(amount) < 0) {
+                throw new InsufficientFundsException(INSUFFICIENT_FUNDS_ERR, id);
+            }
+
+            account.setBalance(account.getBalance().subtract(amount));
+            account.incrementVersion();
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean accountDeposit(int id, BigDecimal amount, int counterpartyId) throws AccountNotFoundException {
+        Account account = findAccount(id);
+        if (account.isMinorUnitBalance()) {
+            account.depositMinorUnits(MinorUnits.toMinorUnits(amount, account.getCurrency()));
+            account.incrementVersion();
+            return true;
         }
 
-        account.setBalance(account.getBalance().subtract(amount));
-        return true;
+        ReentrantLock lock = locks.forId(id);
+        lock.lock();
+        try {
+            account.setBalance(account.getBalance().add(amount));
+            account.incrementVersion();
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
-    public boolean accountDeposit(int id, BigDecimal amount) throws AccountNotFoundException {
-        checkAccountExists(id);
-        Account account = accountMap.get(id);
-        account.setBalance(account.getBalance().add(amount));
-        return true;
+    public List<LedgerEntry> getLedgerEntries(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException {
+        findAccount(id);
+        return Collections.emptyList();
     }
 
-    private void checkAccountExists(int id) throws AccountNotFoundException {
-        if (!accountMap.containsKey(id)) {
-            throw new AccountNotFoundException(String.format(ACCOUNT_NOT_FOUND_ERR, id));
+    private Account findAccount(int id) throws AccountNotFoundException {
+        Account account = accountIndex.get(id);
+        if (account == null) {
+            throw new AccountNotFoundException(ACCOUNT_NOT_FOUND_ERR, id);
         }
+        return account;
     }
 }
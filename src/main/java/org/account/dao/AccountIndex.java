@@ -0,0 +1,163 @@
+package org.account.dao;
+
+import org.account.model.Account;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Accounts indexed directly by ID. IDs are handed out sequentially, so the index is a dense array
+ * split into fixed-size pages: a lookup is two array reads, with no boxing and no per-entry node,
+ * costing about four bytes per account instead of the fifty or so of a hash map entry.
+ * <p>
+ * Reads take no lock. Growing only allocates a new page and, now and then, a larger directory of
+ * pages, copying references to the existing pages but never the accounts in them, so readers are
+ * never stopped.
+ * <p>
+ * An index holding only every stride-th ID, as one partition of a {@link PartitionedAccountDAO} does,
+ * stores ID n in slot n / stride, so it stays dense however many partitions share the IDs.
+ */
+class AccountIndex {
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int stride;
+    private volatile Page[] pages = new Page[0];
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger highestId = new AtomicInteger();
+
+    AccountIndex() {
+        this(1);
+    }
+
+    /**
+     * @param stride Distance between the IDs the index will hold
+     */
+    AccountIndex(int stride) {
+        this.stride = stride;
+    }
+
+    /**
+     * @return The account with the ID, or null if there is none
+     */
+    Account get(int id) {
+        if (id <= 0) {
+            return null;
+        }
+        Account account = getSlot(id / stride);
+        // With a stride the slot may hold a different ID that the index does own
+        return account == null || stride == 1 || account.getId() == id ? account : null;
+    }
+
+    /**
+     * Stores the account under its ID, replacing any account already stored under it
+     * @throws IllegalArgumentException If the ID is not positive
+     */
+    void put(Account account) {
+        int id = account.getId();
+        if (id <= 0) {
+            throw new IllegalArgumentException("Account ID must be positive: " + id);
+        }
+        int slot = id / stride;
+        if (pageFor(slot).accounts.getAndSet(slot & PAGE_MASK, account) == null) {
+            size.incrementAndGet();
+        }
+        if (id > highestId.get()) {
+            highestId.accumulateAndGet(id, Math::max);
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * @return Live view of the stored accounts in ID order
+     */
+    Collection<Account> values() {
+        return new AbstractCollection<Account>() {
+            @Override
+            public Iterator<Account> iterator() {
+                return new AccountIterator();
+            }
+
+            @Override
+            public int size() {
+                return size.get();
+            }
+        };
+    }
+
+    private Account getSlot(int slot) {
+        Page[] current = pages;
+        int pageIndex = slot >>> PAGE_SHIFT;
+        if (pageIndex >= current.length) {
+            return null;
+        }
+        Page page = current[pageIndex];
+        return page == null ? null : page.accounts.get(slot & PAGE_MASK);
+    }
+
+    private Page pageFor(int slot) {
+        int pageIndex = slot >>> PAGE_SHIFT;
+        Page[] current = pages;
+        if (pageIndex < current.length && current[pageIndex] != null) {
+            return current[pageIndex];
+        }
+        return addPage(pageIndex);
+    }
+
+    private synchronized Page addPage(int pageIndex) {
+        Page[] current = pages;
+        if (pageIndex >= current.length) {
+            // Doubling keeps directory copies rare, and they only copy page references
+            current = Arrays.copyOf(current, Math.max(pageIndex + 1, current.length * 2));
+        }
+        else if (current[pageIndex] != null) {
+            return current[pageIndex];
+        }
+        else {
+            current = current.clone();
+        }
+        Page page = new Page();
+        current[pageIndex] = page;
+        pages = current;
+        return page;
+    }
+
+    private static final class Page {
+        private final AtomicReferenceArray<Account> accounts = new AtomicReferenceArray<>(PAGE_SIZE);
+    }
+
+    private class AccountIterator implements Iterator<Account> {
+
+        private final int lastSlot = highestId.get() / stride;
+        private int nextSlot = 0;
+        private Account next;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && nextSlot <= lastSlot) {
+                next = getSlot(nextSlot++);
+            }
+            return next != null;
+        }
+
+        @Override
+        public Account next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Account account = next;
+            next = null;
+            return account;
+        }
+    }
+}
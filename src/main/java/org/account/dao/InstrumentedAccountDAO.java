@@ -0,0 +1,149 @@
+package org.account.dao;
+
+import org.account.exception.AccountNotFoundException;
+import org.account.exception.InsufficientFundsException;
+import org.account.ledger.LedgerEntry;
+import org.account.metrics.LatencyHistogram;
+import org.account.metrics.MetricsRegistry;
+import org.account.model.Account;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Times the reads and balance updates of the wrapped store. Calls that only hand out IDs or views are
+ * passed straight through.
+ * <p>
+ * Store operations take tens of nanoseconds, about as long as reading the clock twice, so only one call
+ * in {@value #SAMPLE_EVERY}, picked at random, is timed and recorded with that weight.
+ */
+public class InstrumentedAccountDAO implements AccountDAO {
+
+    static final String OPERATION_METRIC = "account_dao_operation_seconds";
+    private static final String OPERATION_HELP = "Time spent in each account store operation, sampled";
+    private static final int SAMPLE_EVERY = 16;
+
+    private final AccountDAO accountDAO;
+    private final LatencyHistogram getAccounts;
+    private final LatencyHistogram getAccount;
+    private final LatencyHistogram createAccount;
+    private final LatencyHistogram insertAccount;
+    private final LatencyHistogram accountWithdraw;
+    private final LatencyHistogram accountDeposit;
+
+    public InstrumentedAccountDAO(AccountDAO accountDAO, MetricsRegistry registry) {
+        this.accountDAO = accountDAO;
+        getAccounts = operation(registry, "getAccounts");
+        getAccount = operation(registry, "getAccount");
+        createAccount = operation(registry, "createAccount");
+        insertAccount = operation(registry, "insertAccount");
+        accountWithdraw = operation(registry, "accountWithdraw");
+        accountDeposit = operation(registry, "accountDeposit");
+    }
+
+    public Collection<Account> getAllAccounts() {
+        return accountDAO.getAllAccounts();
+    }
+
+    public List<Account> getAccounts(int afterId, int limit) {
+        if (!sample()) {
+            return accountDAO.getAccounts(afterId, limit);
+        }
+        long start = System.nanoTime();
+        try {
+            return accountDAO.getAccounts(afterId, limit);
+        }
+        finally {
+            getAccounts.record(System.nanoTime() - start, SAMPLE_EVERY);
+        }
+    }
+
+    public Account getAccount(int id) throws AccountNotFoundException {
+        if (!sample()) {
+            return accountDAO.getAccount(id);
+        }
+        long start = System.nanoTime();
+        try {
+            return accountDAO.getAccount(id);
+        }
+        finally {
+            getAccount.record(System.nanoTime() - start, SAMPLE_EVERY);
+        }
+    }
+
+    public Account createAccount(Account account) {
+        if (!sample()) {
+            return accountDAO.createAccount(account);
+        }
+        long start = System.nanoTime();
+        try {
+            return accountDAO.createAccount(account);
+        }
+        finally {
+            createAccount.record(System.nanoTime() - start, SAMPLE_EVERY);
+        }
+    }
+
+    public int nextAccountId() {
+        return accountDAO.nextAccountId();
+    }
+
+    public int getLastAccountId() {
+        return accountDAO.getLastAccountId();
+    }
+
+    public Account insertAccount(Account account) {
+        if (!sample()) {
+            return accountDAO.insertAccount(account);
+        }
+        long start = System.nanoTime();
+        try {
+            return accountDAO.insertAccount(account);
+        }
+        finally {
+            insertAccount.record(System.nanoTime() - start, SAMPLE_EVERY);
+        }
+    }
+
+    public boolean accountWithdraw(int id, BigDecimal amount, int counterpartyId)
+            throws AccountNotFoundException, InsufficientFundsException {
+        if (!sample()) {
+            return accountDAO.accountWithdraw(id, amount, counterpartyId);
+        }
+        long start = System.nanoTime();
+        try {
+            return accountDAO.accountWithdraw(id, amount, counterpartyId);
+        }
+        finally {
+            accountWithdraw.record(System.nanoTime() - start, SAMPLE_EVERY);
+        }
+    }
+
+    public boolean accountDeposit(int id, BigDecimal amount, int counterpartyId) throws AccountNotFoundException {
+        if (!sample()) {
+            return accountDAO.accountDeposit(id, amount, counterpartyId);
+        }
+        long start = System.nanoTime();
+        try {
+            return accountDAO.accountDeposit(id, amount, counterpartyId);
+        }
+        finally {
+            accountDeposit.record(System.nanoTime() - start, SAMPLE_EVERY);
+        }
+    }
+
+    public List<LedgerEntry> getLedgerEntries(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException {
+        return accountDAO.getLedgerEntries(id, fromMillis, toMillis, limit);
+    }
+
+    private static boolean sample() {
+        return ThreadLocalRandom.current().nextInt(SAMPLE_EVERY) == 0;
+    }
+
+    private static LatencyHistogram operation(MetricsRegistry registry, String operation) {
+        return registry.histogram(OPERATION_METRIC, OPERATION_HELP, "operation", operation);
+    }
+}
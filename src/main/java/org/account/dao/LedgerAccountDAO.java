@@ -0,0 +1,117 @@
+package org.account.dao;
+
+import org.account.exception.AccountNotFoundException;
+import org.account.exception.InsufficientFundsException;
+import org.account.ledger.Ledger;
+import org.account.ledger.LedgerEntry;
+import org.account.model.Account;
+import org.account.model.MinorUnits;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Records every withdrawal and deposit made through the wrapped store in a ledger, together with the
+ * counterparty and the resulting balance. Each balance change and its ledger entry are made under the
+ * same striped lock, so the entries of an account are in the order its balance changed. Accounts in
+ * currencies without minor units have no history.
+ * <p>
+ * Only changes made through this store are recorded, so recovering the wrapped store from a journal does
+ * not add entries stamped with the recovery time.
+ */
+public class LedgerAccountDAO implements AccountDAO {
+
+    private final AccountDAO accountDAO;
+    private final Ledger ledger;
+    private final StripedLock locks = new StripedLock();
+
+    public LedgerAccountDAO(AccountDAO accountDAO, Ledger ledger) {
+        this.accountDAO = accountDAO;
+        this.ledger = ledger;
+    }
+
+    public Collection<Account> getAllAccounts() {
+        return accountDAO.getAllAccounts();
+    }
+
+    public List<Account> getAccounts(int afterId, int limit) {
+        return accountDAO.getAccounts(afterId, limit);
+    }
+
+    public Account getAccount(int id) throws AccountNotFoundException {
+        return accountDAO.getAccount(id);
+    }
+
+    public Account createAccount(Account account) {
+        return accountDAO.createAccount(account);
+    }
+
+    public int nextAccountId() {
+        return accountDAO.nextAccountId();
+    }
+
+    public int getLastAccountId() {
+        return accountDAO.getLastAccountId();
+    }
+
+    public Account insertAccount(Account account) {
+        return accountDAO.insertAccount(account);
+    }
+
+    public boolean accountWithdraw(int id, BigDecimal amount, int counterpartyId)
+            throws AccountNotFoundException, InsufficientFundsException {
+        Account account = accountDAO.getAccount(id);
+        if (!MinorUnits.isSupported(account.getCurrency())) {
+            return accountDAO.accountWithdraw(id, amount, counterpartyId);
+        }
+
+        // Converted up front so an amount the ledger cannot hold fails before the balance changes
+        long amountMinorUnits = MinorUnits.toMinorUnits(amount, account.getCurrency());
+        ReentrantLock lock = locks.forId(id);
+        lock.lock();
+        try {
+            boolean withdrawn = accountDAO.accountWithdraw(id, amount, counterpartyId);
+            ledger.record(id, counterpartyId, -amountMinorUnits, balanceMinorUnits(account));
+            return withdrawn;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean accountDeposit(int id, BigDecimal amount, int counterpartyId) throws AccountNotFoundException {
+        Account account = accountDAO.getAccount(id);
+        if (!MinorUnits.isSupported(account.getCurrency())) {
+            return accountDAO.accountDeposit(id, amount, counterpartyId);
+        }
+
+        long amountMinorUnits = MinorUnits.toMinorUnits(amount, account.getCurrency());
+        ReentrantLock lock = locks.forId(id);
+        lock.lock();
+        try {
+            boolean deposited = accountDAO.accountDeposit(id, amount, counterpartyId);
+            ledger.record(id, counterpartyId, amountMinorUnits, balanceMinorUnits(account));
+            return deposited;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public List<LedgerEntry> getLedgerEntries(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException {
+        Account account = accountDAO.getAccount(id);
+        if (!MinorUnits.isSupported(account.getCurrency())) {
+            return Collections.emptyList();
+        }
+        return ledger.getEntries(id, fromMillis, toMillis, limit);
+    }
+
+    private static long balanceMinorUnits(Account account) {
+        return account.isMinorUnitBalance() ? account.getBalanceMinorUnits()
+                : MinorUnits.toMinorUnits(account.getBalance(), account.getCurrency());
+    }
+}
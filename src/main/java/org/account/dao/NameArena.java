@@ -0,0 +1,75 @@
+package org.account.dao;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only store of UTF-8 encoded strings held in direct buffers outside the Java heap.
+ * A string is addressed by the offset returned when it was appended and its encoded length,
+ * and is never moved or removed.
+ * <p>
+ * Appends are serialised. Reads take no lock: a reader must learn the offset of a string through
+ * a volatile read made after the append, which publishes the bytes along with it.
+ */
+class NameArena {
+
+    static final int MAX_LENGTH = 64 * 1024;
+    private static final int CHUNK_SHIFT = 24;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final String TOO_LONG_ERR = "String of %s bytes exceeds the %s byte limit";
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private long end;
+    private volatile long bytes;
+
+    /**
+     * @return Offset of the encoded string, to be passed back to {@link #read(long, int)}
+     * @throws IllegalArgumentException If the encoded string is longer than {@link #MAX_LENGTH}
+     */
+    synchronized long append(byte[] encoded) {
+        if (encoded.length > MAX_LENGTH) {
+            throw new IllegalArgumentException(String.format(TOO_LONG_ERR, encoded.length, MAX_LENGTH));
+        }
+        // Strings never span chunks, so one read always comes from one buffer
+        if ((end & CHUNK_MASK) + encoded.length > CHUNK_SIZE) {
+            end = (end | CHUNK_MASK) + 1;
+        }
+        int chunkIndex = (int) (end >>> CHUNK_SHIFT);
+        ByteBuffer[] current = chunks;
+        if (chunkIndex >= current.length) {
+            current = Arrays.copyOf(current, Math.max(1, current.length * 2));
+            chunks = current;
+        }
+        if (current[chunkIndex] == null) {
+            current[chunkIndex] = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        }
+        ByteBuffer chunk = current[chunkIndex];
+        int position = (int) (end & CHUNK_MASK);
+        for (int i = 0; i < encoded.length; i++) {
+            chunk.put(position + i, encoded[i]);
+        }
+        long offset = end;
+        end += encoded.length;
+        bytes += encoded.length;
+        return offset;
+    }
+
+    String read(long offset, int length) {
+        ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_SHIFT)];
+        int position = (int) (offset & CHUNK_MASK);
+        byte[] encoded = new byte[length];
+        for (int i = 0; i < length; i++) {
+            encoded[i] = chunk.get(position + i);
+        }
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Bytes of string data appended so far
+     */
+    long getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,104 @@
+package org.account.dao;
+
+import org.account.model.Account;
+import org.account.model.MinorUnits;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Date;
+
+/**
+ * Live view of an account held by {@link OffHeapAccountDAO}. Every getter reads the store, so the
+ * view always shows the current balance. Accounts are changed through the store, not the view.
+ */
+class OffHeapAccount extends Account {
+
+    private static final String READ_ONLY_ERR = "Off heap accounts are changed through their store";
+
+    private final OffHeapAccountDAO store;
+
+    OffHeapAccount(OffHeapAccountDAO store, int id) {
+        this.store = store;
+        super.setId(id);
+    }
+
+    @Override
+    public void setId(int id) {
+        throw new UnsupportedOperationException(READ_ONLY_ERR);
+    }
+
+    @Override
+    public String getAccountHolderName() {
+        return store.getAccountHolderName(getId());
+    }
+
+    @Override
+    public void setAccountHolderName(String accountHolderName) {
+        throw new UnsupportedOperationException(READ_ONLY_ERR);
+    }
+
+    @Override
+    public Currency getCurrency() {
+        return store.getCurrency(getId());
+    }
+
+    @Override
+    public void setCurrency(Currency currency) {
+        throw new UnsupportedOperationException(READ_ONLY_ERR);
+    }
+
+    @Override
+    public BigDecimal getBalance() {
+        return MinorUnits.toBigDecimal(getBalanceMinorUnits(), getCurrency());
+    }
+
+    @Override
+    public void setBalance(BigDecimal balance) {
+        throw new UnsupportedOperationException(READ_ONLY_ERR);
+    }
+
+    @Override
+    public boolean isMinorUnitBalance() {
+        return true;
+    }
+
+    @Override
+    public long getBalanceMinorUnits() {
+        return store.getBalanceMinorUnits(getId());
+    }
+
+    @Override
+    public void setBalanceMinorUnits(long balanceMinorUnits) {
+        throw new UnsupportedOperationException(READ_ONLY_ERR);
+    }
+
+    @Override
+    public boolean tryWithdrawMinorUnits(long amount) {
+        return store.tryWithdrawMinorUnits(getId(), amount);
+    }
+
+    @Override
+    public void depositMinorUnits(long amount) {
+        store.depositMinorUnits(getId(), amount);
+    }
+
+    @Override
+    public long getVersion() {
+        return store.getVersion(getId());
+    }
+
+    @Override
+    public void incrementVersion() {
+        store.incrementVersion(getId());
+    }
+
+    @Override
+    public Date getCreatedDate() {
+        return store.getCreatedDate(getId());
+    }
+
+    @Override
+    public void setCreatedDate(Date createdDate) {
+        throw new UnsupportedOperationException(READ_ONLY_ERR);
+    }
+}
@@ -0,0 +1,357 @@
+package org.account.dao;
+
+import org.account.exception.AccountNotFoundException;
+import org.account.exception.InsufficientFundsException;
+import org.account.ledger.LedgerEntry;
+import org.account.model.Account;
+import org.account.model.MinorUnits;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Account store that keeps accounts out of the Java heap, so that tens of millions of them add
+ * nothing for the garbage collector to trace. Each account is a fixed-width record in a direct
+ * buffer holding its creation time, currency index and the location of its holder name, which
+ * is kept in a separate {@link NameArena}. Balances are whole minor units in primitive arrays,
+ * which the collector never scans but which, unlike direct buffers, allow compare-and-set, so
+ * withdrawals and deposits take no lock. Each balance change also increments a version kept
+ * alongside the balance.
+ * <p>
+ * Accounts are handed out as views reading the store, created only when asked for. Only
+ * currencies with minor units can be stored.
+ */
+public class OffHeapAccountDAO implements AccountDAO {
+
+    private static final String ACCOUNT_NOT_FOUND_ERR = "Account with ID %s not found";
+    private static final String INSUFFICIENT_FUNDS_ERR = "Account with ID %s has insufficient funds to perform withdrawal";
+    private static final String UNSUPPORTED_CURRENCY_ERR = "Currency %s has no minor units and cannot be stored off heap";
+    private static final String INVALID_ID_ERR = "Account ID must be positive: %s";
+
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final int CREATED_OFFSET = 0;
+    private static final int NAME_OFFSET = 8;
+    private static final int NAME_LENGTH_OFFSET = 16;
+    private static final int CURRENCY_OFFSET = 20;
+    static final int RECORD_BYTES = 24;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int NO_NAME = -1;
+
+    private static final Currency[] CURRENCIES;
+    private static final Map<Currency, Integer> CURRENCY_INDEXES = new HashMap<>();
+
+    static {
+        List<Currency> currencies = new ArrayList<>(Currency.getAvailableCurrencies());
+        currencies.sort(Comparator.comparing(Currency::getCurrencyCode));
+        CURRENCIES = currencies.toArray(new Currency[0]);
+        for (int i = 0; i < CURRENCIES.length; i++) {
+            CURRENCY_INDEXES.put(CURRENCIES[i], i);
+        }
+    }
+
+    private final AtomicInteger atomicId = new AtomicInteger(0);
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger highestId = new AtomicInteger();
+    private final NameArena names = new NameArena();
+    private volatile Page[] pages = new Page[0];
+
+    public Collection<Account> getAllAccounts() {
+        return Collections.unmodifiableCollection(new AbstractCollection<Account>() {
+            @Override
+            public Iterator<Account> iterator() {
+                return new AccountIterator();
+            }
+
+            @Override
+            public int size() {
+                return size.get();
+            }
+        });
+    }
+
+    public List<Account> getAccounts(int afterId, int limit) {
+        List<Account> accounts = new ArrayList<>(Math.min(limit, Math.max(0, atomicId.get() - afterId)));
+        for (int id = afterId + 1; id > 0 && id <= atomicId.get() && accounts.size() < limit; id++) {
+            Account account = view(id);
+            if (account != null) {
+                accounts.add(account);
+            }
+        }
+        return accounts;
+    }
+
+    public Account getAccount(int id) throws AccountNotFoundException {
+        Account account = view(id);
+        if (account == null) {
+            throw new AccountNotFoundException(ACCOUNT_NOT_FOUND_ERR, id);
+        }
+        return account;
+    }
+
+    /**
+     * Stores the account and returns a view of the stored copy
+     * @throws IllegalArgumentException If the currency has no minor units
+     */
+    public Account createAccount(Account account) {
+        checkCurrency(account);
+        int id = atomicId.incrementAndGet();
+        store(id, account);
+        return new OffHeapAccount(this, id);
+    }
+
+    public int nextAccountId() {
+        return atomicId.incrementAndGet();
+    }
+
+    public int getLastAccountId() {
+        return atomicId.get();
+    }
+
+    /**
+     * Stores the account under its own ID, replacing any account stored under it. A replacement is
+     * not atomic to concurrent readers, so only recovery should replace accounts.
+     * @throws IllegalArgumentException If the ID is not positive or the currency has no minor units
+     */
+    public Account insertAccount(Account account) {
+        if (account.getId() <= 0) {
+            throw new IllegalArgumentException(String.format(INVALID_ID_ERR, account.getId()));
+        }
+        checkCurrency(account);
+        atomicId.accumulateAndGet(account.getId(), Math::max);
+        store(account.getId(), account);
+        return new OffHeapAccount(this, account.getId());
+    }
+
+    public boolean accountWithdraw(int id, BigDecimal amount, int counterpartyId)
+            throws AccountNotFoundException, InsufficientFundsException {
+        Page page = findPage(id);
+        long minorUnits = MinorUnits.toMinorUnits(amount, currency(page, id));
+        if (!page.tryWithdraw(id & PAGE_MASK, minorUnits)) {
+            throw new InsufficientFundsException(INSUFFICIENT_FUNDS_ERR, id);
+        }
+        page.versions.incrementAndGet(id & PAGE_MASK);
+        return true;
+    }
+
+    public boolean accountDeposit(int id, BigDecimal amount, int counterpartyId) throws AccountNotFoundException {
+        Page page = findPage(id);
+        page.deposit(id & PAGE_MASK, MinorUnits.toMinorUnits(amount, currency(page, id)));
+        page.versions.incrementAndGet(id & PAGE_MASK);
+        return true;
+    }
+
+    public List<LedgerEntry> getLedgerEntries(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException {
+        findPage(id);
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return Bytes held outside the heap by account records and holder names
+     */
+    public long getOffHeapBytes() {
+        long pageCount = Arrays.stream(pages).filter(Objects::nonNull).count();
+        return pageCount * PAGE_SIZE * RECORD_BYTES + names.getBytes();
+    }
+
+    String getAccountHolderName(int id) {
+        Page page = page(id);
+        int slot = (id & PAGE_MASK) * RECORD_BYTES;
+        int length = page.records.getInt(slot + NAME_LENGTH_OFFSET);
+        return length == NO_NAME ? null : names.read(page.records.getLong(slot + NAME_OFFSET), length);
+    }
+
+    Currency getCurrency(int id) {
+        return currency(page(id), id);
+    }
+
+    Date getCreatedDate(int id) {
+        long created = page(id).records.getLong((id & PAGE_MASK) * RECORD_BYTES + CREATED_OFFSET);
+        return created == NO_DATE ? null : new Date(created);
+    }
+
+    long getBalanceMinorUnits(int id) {
+        return page(id).balances.get(id & PAGE_MASK);
+    }
+
+    long getVersion(int id) {
+        return page(id).versions.get(id & PAGE_MASK);
+    }
+
+    void incrementVersion(int id) {
+        page(id).versions.incrementAndGet(id & PAGE_MASK);
+    }
+
+    boolean tryWithdrawMinorUnits(int id, long amount) {
+        return page(id).tryWithdraw(id & PAGE_MASK, amount);
+    }
+
+    void depositMinorUnits(int id, long amount) {
+        page(id).deposit(id & PAGE_MASK, amount);
+    }
+
+    private void store(int id, Account account) {
+        Page page = pageFor(id);
+        int index = id & PAGE_MASK;
+        int slot = index * RECORD_BYTES;
+        Currency currency = account.getCurrency();
+        String name = account.getAccountHolderName();
+        if (name == null) {
+            page.records.putInt(slot + NAME_LENGTH_OFFSET, NO_NAME);
+        }
+        else {
+            byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+            page.records.putLong(slot + NAME_OFFSET, names.append(encoded));
+            page.records.putInt(slot + NAME_LENGTH_OFFSET, encoded.length);
+        }
+        Date created = account.getCreatedDate();
+        page.records.putLong(slot + CREATED_OFFSET, created == null ? NO_DATE : created.getTime());
+        page.records.putInt(slot + CURRENCY_OFFSET, CURRENCY_INDEXES.get(currency));
+        BigDecimal balance = account.getBalance();
+        page.balances.set(index, balance == null ? 0 : MinorUnits.toMinorUnits(balance, currency));
+        page.versions.set(index, account.getVersion());
+        // Marking the account present last publishes the record to readers that see the mark
+        if (page.markPresent(index)) {
+            size.incrementAndGet();
+        }
+        if (id > highestId.get()) {
+            highestId.accumulateAndGet(id, Math::max);
+        }
+    }
+
+    private static void checkCurrency(Account account) {
+        Currency currency = account.getCurrency();
+        if (currency == null || !MinorUnits.isSupported(currency) || !CURRENCY_INDEXES.containsKey(currency)) {
+            throw new IllegalArgumentException(String.format(UNSUPPORTED_CURRENCY_ERR, currency));
+        }
+    }
+
+    private static Currency currency(Page page, int id) {
+        return CURRENCIES[page.records.getInt((id & PAGE_MASK) * RECORD_BYTES + CURRENCY_OFFSET)];
+    }
+
+    private Account view(int id) {
+        Page page = existingPage(id);
+        return page != null && page.isPresent(id & PAGE_MASK) ? new OffHeapAccount(this, id) : null;
+    }
+
+    private Page findPage(int id) throws AccountNotFoundException {
+        Page page = existingPage(id);
+        if (page == null || !page.isPresent(id & PAGE_MASK)) {
+            throw new AccountNotFoundException(ACCOUNT_NOT_FOUND_ERR, id);
+        }
+        return page;
+    }
+
+    private Page existingPage(int id) {
+        if (id <= 0) {
+            return null;
+        }
+        Page[] current = pages;
+        int pageIndex = id >>> PAGE_SHIFT;
+        return pageIndex < current.length ? current[pageIndex] : null;
+    }
+
+    private Page page(int id) {
+        return pages[id >>> PAGE_SHIFT];
+    }
+
+    private Page pageFor(int id) {
+        int pageIndex = id >>> PAGE_SHIFT;
+        Page[] current = pages;
+        if (pageIndex < current.length && current[pageIndex] != null) {
+            return current[pageIndex];
+        }
+        return addPage(pageIndex);
+    }
+
+    private synchronized Page addPage(int pageIndex) {
+        Page[] current = pages;
+        if (pageIndex >= current.length) {
+            current = Arrays.copyOf(current, Math.max(pageIndex + 1, current.length * 2));
+        }
+        else if (current[pageIndex] != null) {
+            return current[pageIndex];
+        }
+        else {
+            current = current.clone();
+        }
+        Page page = new Page();
+        current[pageIndex] = page;
+        pages = current;
+        return page;
+    }
+
+    private static final class Page {
+        private final ByteBuffer records = ByteBuffer.allocateDirect(PAGE_SIZE * RECORD_BYTES);
+        private final AtomicLongArray balances = new AtomicLongArray(PAGE_SIZE);
+        private final AtomicLongArray versions = new AtomicLongArray(PAGE_SIZE);
+        private final AtomicLongArray present = new AtomicLongArray(PAGE_SIZE / Long.SIZE);
+
+        boolean isPresent(int index) {
+            return (present.get(index >>> 6) & (1L << index)) != 0;
+        }
+
+        /**
+         * @return Whether the account was not present before
+         */
+        boolean markPresent(int index) {
+            long bit = 1L << index;
+            long current;
+            do {
+                current = present.get(index >>> 6);
+            } while (!present.compareAndSet(index >>> 6, current, current | bit));
+            return (current & bit) == 0;
+        }
+
+        boolean tryWithdraw(int index, long amount) {
+            long current;
+            do {
+                current = balances.get(index);
+                if (current < amount) {
+                    return false;
+                }
+            } while (!balances.compareAndSet(index, current, current - amount));
+            return true;
+        }
+
+        void deposit(int index, long amount) {
+            long current;
+            do {
+                current = balances.get(index);
+            } while (!balances.compareAndSet(index, current, Math.addExact(current, amount)));
+        }
+    }
+
+    private class AccountIterator implements Iterator<Account> {
+
+        private final int lastId = highestId.get();
+        private int nextId = 1;
+        private Account next;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && nextId <= lastId) {
+                next = view(nextId++);
+            }
+            return next != null;
+        }
+
+        @Override
+        public Account next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Account account = next;
+            next = null;
+            return account;
+        }
+    }
+}
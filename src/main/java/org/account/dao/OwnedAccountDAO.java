@@ -0,0 +1,79 @@
+package org.account.dao;
+
+import org.account.exception.AccountNotFoundException;
+import org.account.exception.InsufficientFundsException;
+import org.account.ledger.LedgerEntry;
+import org.account.model.Account;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Store of one node of a cluster, which only hands out IDs the cluster assigns to this node. Every node
+ * counts IDs on its own and skips the ones other nodes own, so no two nodes ever create the same ID
+ * and a new account is always held by the node that created it. Everything else is passed straight
+ * through.
+ */
+public class OwnedAccountDAO implements AccountDAO {
+
+    private final AccountDAO accountDAO;
+    private final IntPredicate owned;
+
+    /**
+     * @param owned Whether an account ID belongs to this node
+     */
+    public OwnedAccountDAO(AccountDAO accountDAO, IntPredicate owned) {
+        this.accountDAO = accountDAO;
+        this.owned = owned;
+    }
+
+    public Collection<Account> getAllAccounts() {
+        return accountDAO.getAllAccounts();
+    }
+
+    public List<Account> getAccounts(int afterId, int limit) {
+        return accountDAO.getAccounts(afterId, limit);
+    }
+
+    public Account getAccount(int id) throws AccountNotFoundException {
+        return accountDAO.getAccount(id);
+    }
+
+    public Account createAccount(Account account) {
+        account.setId(nextAccountId());
+        return accountDAO.insertAccount(account);
+    }
+
+    public int nextAccountId() {
+        int id;
+        do {
+            id = accountDAO.nextAccountId();
+        }
+        while (!owned.test(id));
+        return id;
+    }
+
+    public int getLastAccountId() {
+        return accountDAO.getLastAccountId();
+    }
+
+    public Account insertAccount(Account account) {
+        return accountDAO.insertAccount(account);
+    }
+
+    public boolean accountWithdraw(int id, BigDecimal amount, int counterpartyId)
+            throws AccountNotFoundException, InsufficientFundsException {
+        return accountDAO.accountWithdraw(id, amount, counterpartyId);
+    }
+
+    public boolean accountDeposit(int id, BigDecimal amount, int counterpartyId) throws AccountNotFoundException {
+        return accountDAO.accountDeposit(id, amount, counterpartyId);
+    }
+
+    public List<LedgerEntry> getLedgerEntries(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException {
+        return accountDAO.getLedgerEntries(id, fromMillis, toMillis, limit);
+    }
+}
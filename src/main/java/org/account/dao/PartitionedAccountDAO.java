@@ -0,0 +1,185 @@
+package org.account.dao;
+
+import org.account.exception.AccountNotFoundException;
+import org.account.exception.InsufficientFundsException;
+import org.account.ledger.LedgerEntry;
+import org.account.model.Account;
+import org.account.model.MinorUnits;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Account store split into partitions by account ID, each a separate heap store holding every
+ * account whose ID leaves that remainder when divided by the number of partitions. IDs are handed
+ * out sequentially across the whole store, so accounts spread evenly.
+ * <p>
+ * Each call is routed to the partition owning the account. Partitions share nothing, so a service
+ * that only ever changes a partition's accounts from one thread, as the partitioned service does,
+ * never contends on them. Every account is stored with its balance in minor units, so balance
+ * updates are compare-and-sets and no lock is ever taken, even while a batch and the partition's
+ * own thread both change its accounts.
+ */
+public class PartitionedAccountDAO implements AccountDAO {
+
+    private static final String PARTITIONS_ERR = "Number of partitions must be positive: %s";
+    private static final String UNSUPPORTED_CURRENCY_ERR = "Currency %s has no minor units and cannot be stored in partitions";
+
+    private final AccountDAO[] partitions;
+    private final AtomicInteger atomicId = new AtomicInteger(0);
+
+    public PartitionedAccountDAO(int partitions) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException(String.format(PARTITIONS_ERR, partitions));
+        }
+        this.partitions = new AccountDAO[partitions];
+        for (int i = 0; i < partitions; i++) {
+            this.partitions[i] = new AccountDAOImpl(new AccountIndex(partitions));
+        }
+    }
+
+    /**
+     * @return Index of the partition owning the account with the ID
+     */
+    public static int partitionOf(int id, int partitions) {
+        return Math.floorMod(id, partitions);
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * @return Number of accounts held by the partition
+     */
+    public int getAccountCount(int partition) {
+        return partitions[partition].getAllAccounts().size();
+    }
+
+    public Collection<Account> getAllAccounts() {
+        return Collections.unmodifiableCollection(new AbstractCollection<Account>() {
+            @Override
+            public Iterator<Account> iterator() {
+                return new AccountIterator();
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (AccountDAO partition : partitions) {
+                    size += partition.getAllAccounts().size();
+                }
+                return size;
+            }
+        });
+    }
+
+    public List<Account> getAccounts(int afterId, int limit) {
+        List<Account> accounts = new ArrayList<>(Math.min(limit, Math.max(0, atomicId.get() - afterId)));
+        for (int id = afterId + 1; id > 0 && id <= atomicId.get() && accounts.size() < limit; id++) {
+            Account account = find(id);
+            if (account != null) {
+                accounts.add(account);
+            }
+        }
+        return accounts;
+    }
+
+    public Account getAccount(int id) throws AccountNotFoundException {
+        return partition(id).getAccount(id);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the currency has no minor units
+     */
+    public Account createAccount(Account account) {
+        toMinorUnits(account);
+        account.setId(atomicId.incrementAndGet());
+        return partition(account.getId()).insertAccount(account);
+    }
+
+    public int nextAccountId() {
+        return atomicId.incrementAndGet();
+    }
+
+    public int getLastAccountId() {
+        return atomicId.get();
+    }
+
+    /**
+     * @throws IllegalArgumentException If the currency has no minor units
+     */
+    public Account insertAccount(Account account) {
+        toMinorUnits(account);
+        // Keep IDs handed out later above every ID inserted so far
+        atomicId.accumulateAndGet(account.getId(), Math::max);
+        return partition(account.getId()).insertAccount(account);
+    }
+
+    public boolean accountWithdraw(int id, BigDecimal amount, int counterpartyId)
+            throws AccountNotFoundException, InsufficientFundsException {
+        return partition(id).accountWithdraw(id, amount, counterpartyId);
+    }
+
+    public boolean accountDeposit(int id, BigDecimal amount, int counterpartyId) throws AccountNotFoundException {
+        return partition(id).accountDeposit(id, amount, counterpartyId);
+    }
+
+    public List<LedgerEntry> getLedgerEntries(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException {
+        return partition(id).getLedgerEntries(id, fromMillis, toMillis, limit);
+    }
+
+    private AccountDAO partition(int id) {
+        return partitions[partitionOf(id, partitions.length)];
+    }
+
+    private static void toMinorUnits(Account account) {
+        Currency currency = account.getCurrency();
+        if (currency == null || !MinorUnits.isSupported(currency)) {
+            throw new IllegalArgumentException(String.format(UNSUPPORTED_CURRENCY_ERR, currency));
+        }
+        if (!account.isMinorUnitBalance()) {
+            BigDecimal balance = account.getBalance();
+            account.setBalanceMinorUnits(balance == null ? 0 : MinorUnits.toMinorUnits(balance, currency));
+        }
+    }
+
+    private Account find(int id) {
+        try {
+            return partition(id).getAccount(id);
+        }
+        catch (AccountNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Walks IDs in order across the partitions, so accounts come out in the same order as from a single store
+     */
+    private class AccountIterator implements Iterator<Account> {
+
+        private final int lastId = atomicId.get();
+        private int nextId = 1;
+        private Account next;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && nextId <= lastId) {
+                next = find(nextId++);
+            }
+            return next != null;
+        }
+
+        @Override
+        public Account next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Account account = next;
+            next = null;
+            return account;
+        }
+    }
+}
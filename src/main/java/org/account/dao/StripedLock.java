@@ -0,0 +1,35 @@
+package org.account.dao;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks that account IDs are hashed onto, so that operations on
+ * different accounts rarely contend while memory use stays independent of the
+ * number of accounts.
+ */
+class StripedLock {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    StripedLock() {
+        this(Math.max(DEFAULT_STRIPES, Runtime.getRuntime().availableProcessors() * 4));
+    }
+
+    StripedLock(int minStripes) {
+        int size = Integer.highestOneBit(Math.max(1, minStripes - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    ReentrantLock forId(int id) {
+        // Spread sequential IDs so neighbouring accounts land on different stripes
+        int h = id * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+}
@@ -1,8 +1,12 @@
 package org.account.exception;
 
-public class AccountNotFoundException extends Exception {
+public class AccountNotFoundException extends BusinessException {
 
     public AccountNotFoundException(String message) {
-        super(message);
+        super(ErrorCode.ACCOUNT_NOT_FOUND, message);
+    }
+
+    public AccountNotFoundException(String format, Object... args) {
+        super(ErrorCode.ACCOUNT_NOT_FOUND, format, args);
     }
 }
@@ -0,0 +1,47 @@
+package org.account.exception;
+
+/**
+ * Expected rejection of a request, such as a transfer the source account cannot cover. These are
+ * outcomes rather than faults, so no stack trace is captured and the message is only formatted if
+ * it is read: rejecting a request costs one small allocation, however often clients get it wrong.
+ * <p>
+ * Instances with a fixed message carry no state of their own and may be shared.
+ */
+public abstract class BusinessException extends Exception {
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final ErrorCode code;
+    private final String format;
+    private final Object[] args;
+    private String message;
+
+    protected BusinessException(ErrorCode code, String message) {
+        this(code, message, NO_ARGS);
+    }
+
+    /**
+     * @param format {@link String#format(String, Object...)} pattern of the message, applied when it is first read
+     */
+    protected BusinessException(ErrorCode code, String format, Object... args) {
+        super(null, null, false, false);
+        this.code = code;
+        this.format = format;
+        this.args = args;
+    }
+
+    public ErrorCode getCode() {
+        return code;
+    }
+
+    @Override
+    public String getMessage() {
+        // Formatting twice on a race is harmless, the result is the same
+        String formatted = message;
+        if (formatted == null) {
+            formatted = args.length == 0 ? format : String.format(format, args);
+            message = formatted;
+        }
+        return formatted;
+    }
+}
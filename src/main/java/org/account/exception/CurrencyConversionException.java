@@ -1,8 +1,12 @@
 package org.account.exception;
 
-public class CurrencyConversionException extends Exception {
+public class CurrencyConversionException extends BusinessException {
 
     public CurrencyConversionException(String message) {
-        super(message);
+        super(ErrorCode.CURRENCY_CONVERSION, message);
+    }
+
+    public CurrencyConversionException(String format, Object... args) {
+        super(ErrorCode.CURRENCY_CONVERSION, format, args);
     }
 }
@@ -0,0 +1,15 @@
+package org.account.exception;
+
+/**
+ * Why a request was rejected, so callers can branch on the outcome of an expected failure
+ * without testing its exception type.
+ */
+public enum ErrorCode {
+    REQUIRED_PARAMETER,
+    INVALID_PARAMETER,
+    ACCOUNT_NOT_FOUND,
+    INSUFFICIENT_FUNDS,
+    CURRENCY_CONVERSION,
+    VERSION_CONFLICT,
+    LOCK_TIMEOUT
+}
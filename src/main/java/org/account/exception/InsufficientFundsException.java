@@ -1,8 +1,12 @@
 package org.account.exception;
 
-public class InsufficientFundsException extends Exception {
+public class InsufficientFundsException extends BusinessException {
 
     public InsufficientFundsException(String message) {
-        super(message);
+        super(ErrorCode.INSUFFICIENT_FUNDS, message);
+    }
+
+    public InsufficientFundsException(String format, Object... args) {
+        super(ErrorCode.INSUFFICIENT_FUNDS, format, args);
     }
 }
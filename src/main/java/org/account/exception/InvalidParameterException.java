@@ -1,8 +1,12 @@
 package org.account.exception;
 
-public class InvalidParameterException extends Exception {
+public class InvalidParameterException extends BusinessException {
 
     public InvalidParameterException(String message) {
-        super(message);
+        super(ErrorCode.INVALID_PARAMETER, message);
+    }
+
+    public InvalidParameterException(String format, Object... args) {
+        super(ErrorCode.INVALID_PARAMETER, format, args);
     }
 }
@@ -0,0 +1,12 @@
+package org.account.exception;
+
+public class LockTimeoutException extends BusinessException {
+
+    public LockTimeoutException(String message) {
+        super(ErrorCode.LOCK_TIMEOUT, message);
+    }
+
+    public LockTimeoutException(String format, Object... args) {
+        super(ErrorCode.LOCK_TIMEOUT, format, args);
+    }
+}
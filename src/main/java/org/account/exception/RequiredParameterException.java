@@ -1,8 +1,12 @@
 package org.account.exception;
 
-public class RequiredParameterException extends Exception {
+public class RequiredParameterException extends BusinessException {
 
     public RequiredParameterException(String message) {
-        super(message);
+        super(ErrorCode.REQUIRED_PARAMETER, message);
+    }
+
+    public RequiredParameterException(String format, Object... args) {
+        super(ErrorCode.REQUIRED_PARAMETER, format, args);
     }
 }
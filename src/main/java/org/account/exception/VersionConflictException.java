@@ -0,0 +1,12 @@
+package org.account.exception;
+
+public class VersionConflictException extends BusinessException {
+
+    public VersionConflictException(String message) {
+        super(ErrorCode.VERSION_CONFLICT, message);
+    }
+
+    public VersionConflictException(String format, Object... args) {
+        super(ErrorCode.VERSION_CONFLICT, format, args);
+    }
+}
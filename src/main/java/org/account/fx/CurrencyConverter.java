@@ -0,0 +1,12 @@
+package org.account.fx;
+
+/**
+ * Supplies the exchange rates transfers between accounts in different currencies are converted at
+ */
+public interface CurrencyConverter {
+
+    /**
+     * @return The current rates. Both legs of a transfer must be converted with the same table.
+     */
+    FxRates getRates();
+}
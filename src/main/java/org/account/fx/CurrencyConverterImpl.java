@@ -0,0 +1,65 @@
+package org.account.fx;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the latest rate table from a provider. A reload builds a complete new table and swaps
+ * it in with a single volatile write, so conversions in progress finish on the table they
+ * started with and readers never wait. If a reload fails the previous table stays in use.
+ */
+public class CurrencyConverterImpl implements CurrencyConverter {
+
+    private static final String RELOAD_ERR = "ERROR: Could not reload exchange rates, keeping the previous ones: %s";
+
+    private final FxRateProvider provider;
+    private final RoundingMode roundingMode;
+    private volatile FxRates rates = FxRates.EMPTY;
+    private ScheduledExecutorService scheduler;
+
+    public CurrencyConverterImpl(FxRateProvider provider, RoundingMode roundingMode) {
+        this.provider = provider;
+        this.roundingMode = roundingMode;
+    }
+
+    public FxRates getRates() {
+        return rates;
+    }
+
+    /**
+     * Loads the rates from the provider and makes them current
+     */
+    public void reload() throws IOException {
+        rates = new FxRates(provider.loadRates(), roundingMode);
+    }
+
+    /**
+     * Starts reloading the rates every interval in the background
+     */
+    public synchronized void start(long intervalMillis) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fx-rate-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::reloadScheduled, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void reloadScheduled() {
+        try {
+            reload();
+        }
+        catch (IOException | RuntimeException e) {
+            System.out.println(String.format(RELOAD_ERR, e.getMessage()));
+        }
+    }
+}
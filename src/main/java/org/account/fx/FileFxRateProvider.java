@@ -0,0 +1,73 @@
+package org.account.fx;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Reads rates from a properties file of BASE/QUOTE=rate lines, e.g. GBP/USD=1.2734.
+ * The file is read again on every load, so it can be replaced while the server runs.
+ */
+public class FileFxRateProvider implements FxRateProvider {
+
+    private static final String INVALID_PAIR_ERR = "Invalid currency pair %s in %s, expected BASE/QUOTE";
+    private static final String INVALID_RATE_ERR = "Invalid rate %s for %s in %s, expected a positive number";
+    private static final String NO_MINOR_UNITS_ERR = "Currency %s in %s has no minor units and cannot be converted";
+
+    private final Path path;
+
+    public FileFxRateProvider(Path path) {
+        this.path = path;
+    }
+
+    public List<FxRate> loadRates() throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+
+        List<FxRate> rates = new ArrayList<>(properties.size());
+        for (String pair : properties.stringPropertyNames()) {
+            String[] codes = pair.trim().split("/");
+            if (codes.length != 2) {
+                throw new IOException(String.format(INVALID_PAIR_ERR, pair, path));
+            }
+            rates.add(new FxRate(currency(codes[0], pair), currency(codes[1], pair),
+                    rate(properties.getProperty(pair), pair)));
+        }
+        return rates;
+    }
+
+    private Currency currency(String code, String pair) throws IOException {
+        Currency currency;
+        try {
+            currency = Currency.getInstance(code.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException(String.format(INVALID_PAIR_ERR, pair, path));
+        }
+        if (currency.getDefaultFractionDigits() < 0) {
+            throw new IOException(String.format(NO_MINOR_UNITS_ERR, currency, path));
+        }
+        return currency;
+    }
+
+    private BigDecimal rate(String value, String pair) throws IOException {
+        try {
+            BigDecimal rate = new BigDecimal(value.trim());
+            if (rate.signum() > 0) {
+                return rate;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Reported below along with non-positive rates
+        }
+        throw new IOException(String.format(INVALID_RATE_ERR, value, pair, path));
+    }
+}
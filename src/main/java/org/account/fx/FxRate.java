@@ -0,0 +1,61 @@
+package org.account.fx;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Quoted exchange rate: one unit of the base currency buys {@link #getRate()} units of the quote currency.
+ */
+public final class FxRate {
+
+    private final Currency base;
+    private final Currency quote;
+    private final BigDecimal rate;
+
+    public FxRate(Currency base, Currency quote, BigDecimal rate) {
+        this.base = base;
+        this.quote = quote;
+        this.rate = rate;
+    }
+
+    public Currency getBase() {
+        return base;
+    }
+
+    public Currency getQuote() {
+        return quote;
+    }
+
+    public BigDecimal getRate() {
+        return rate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        FxRate fxRate = (FxRate) o;
+
+        if (!base.equals(fxRate.base)) return false;
+        if (!quote.equals(fxRate.quote)) return false;
+        return rate.equals(fxRate.rate);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = base.hashCode();
+        result = 31 * result + quote.hashCode();
+        result = 31 * result + rate.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "FxRate{" +
+                "base=" + base +
+                ", quote=" + quote +
+                ", rate=" + rate +
+                '}';
+    }
+}
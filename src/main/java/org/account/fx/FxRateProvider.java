@@ -0,0 +1,16 @@
+package org.account.fx;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Source of the exchange rates used to convert transfers between currencies
+ */
+public interface FxRateProvider {
+
+    /**
+     * @return The current quoted rates
+     * @throws IOException If the rates cannot be read or are not valid
+     */
+    List<FxRate> loadRates() throws IOException;
+}
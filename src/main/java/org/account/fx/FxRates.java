@@ -0,0 +1,100 @@
+package org.account.fx;
+
+import org.account.exception.CurrencyConversionException;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable table of exchange rates, replaced as a whole when rates change so that a conversion
+ * never sees a mix of old and new rates and never takes a lock. Each pair keeps its rate together
+ * with the scale and rounding of the quote currency, so a conversion is two map lookups, one
+ * multiplication and one rounding. A pair quoted in only one direction is also usable the other
+ * way round at the inverse rate.
+ */
+public final class FxRates {
+
+    /** Converts nothing but amounts already in the right currency */
+    public static final FxRates EMPTY = new FxRates(Collections.emptyList(), RoundingMode.HALF_EVEN);
+
+    private static final String NO_RATE_ERR = "No exchange rate from %s to %s";
+    private static final String TOO_SMALL_ERR = "Amount %s %s is too small to convert to %s";
+
+    private final Map<Currency, Map<Currency, Conversion>> conversions = new HashMap<>();
+    private final int size;
+
+    public FxRates(Collection<FxRate> rates, RoundingMode roundingMode) {
+        for (FxRate rate : rates) {
+            put(rate.getBase(), rate.getQuote(), rate.getRate(), roundingMode);
+        }
+        for (FxRate rate : rates) {
+            if (find(rate.getQuote(), rate.getBase()) == null) {
+                put(rate.getQuote(), rate.getBase(), BigDecimal.ONE.divide(rate.getRate(), MathContext.DECIMAL128),
+                        roundingMode);
+            }
+        }
+        size = conversions.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * @return The amount in the target currency, rounded to its minor units, or the amount itself
+     * if the currencies are the same
+     * @throws CurrencyConversionException If there is no rate for the pair or the amount converts to nothing
+     */
+    public BigDecimal convert(BigDecimal amount, Currency from, Currency to) throws CurrencyConversionException {
+        if (from.equals(to)) {
+            return amount;
+        }
+        Conversion conversion = find(from, to);
+        if (conversion == null) {
+            throw new CurrencyConversionException(NO_RATE_ERR, from, to);
+        }
+        BigDecimal converted = conversion.apply(amount);
+        if (converted.signum() <= 0) {
+            throw new CurrencyConversionException(TOO_SMALL_ERR, amount, from, to);
+        }
+        return converted;
+    }
+
+    /**
+     * @return Number of currency pairs that can be converted, counting each direction
+     */
+    public int size() {
+        return size;
+    }
+
+    private Conversion find(Currency from, Currency to) {
+        Map<Currency, Conversion> quotes = conversions.get(from);
+        return quotes == null ? null : quotes.get(to);
+    }
+
+    private void put(Currency from, Currency to, BigDecimal rate, RoundingMode roundingMode) {
+        if (from.equals(to)) {
+            return;
+        }
+        conversions.computeIfAbsent(from, currency -> new HashMap<>())
+                .put(to, new Conversion(rate, to.getDefaultFractionDigits(), roundingMode));
+    }
+
+    private static final class Conversion {
+        private final BigDecimal rate;
+        private final int scale;
+        private final RoundingMode roundingMode;
+
+        Conversion(BigDecimal rate, int scale, RoundingMode roundingMode) {
+            this.rate = rate;
+            this.scale = scale;
+            this.roundingMode = roundingMode;
+        }
+
+        BigDecimal apply(BigDecimal amount) {
+            return amount.multiply(rate).setScale(scale, roundingMode);
+        }
+    }
+}
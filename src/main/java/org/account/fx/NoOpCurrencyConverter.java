@@ -0,0 +1,11 @@
+package org.account.fx;
+
+/**
+ * Knows no exchange rates, so transfers are only possible between accounts in the transfer currency
+ */
+public class NoOpCurrencyConverter implements CurrencyConverter {
+
+    public FxRates getRates() {
+        return FxRates.EMPTY;
+    }
+}
@@ -0,0 +1,30 @@
+package org.account.idempotency;
+
+import org.account.exception.InvalidParameterException;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Remembers the outcome of operations carrying a client supplied idempotency key, so that a
+ * retried request is answered with the original outcome instead of being executed again.
+ */
+public interface IdempotencyCache {
+
+    /**
+     * Claims the key for a new execution of the operation described by the fingerprint
+     * @param key The client supplied idempotency key
+     * @param fingerprint Identifies the operation, a key may only be reused for the same operation
+     * @param outcome Completed by the caller once the operation has finished, if the key was claimed
+     * @return null if the caller claimed the key and must execute the operation, otherwise the outcome of the
+     * execution that claimed it first, which may still be in progress
+     * @throws InvalidParameterException If the key is empty, too long or was used for a different operation
+     */
+    CompletableFuture<Void> claim(String key, String fingerprint, CompletableFuture<Void> outcome)
+            throws InvalidParameterException;
+
+    /**
+     * Forgets the outcome claimed under the key, so that a retry executes the operation again.
+     * Used when the operation failed for a transient reason and had no effect.
+     */
+    void abandon(String key, CompletableFuture<Void> outcome);
+}
@@ -0,0 +1,183 @@
+package org.account.idempotency;
+
+import org.account.exception.InvalidParameterException;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory idempotency cache bounded both in time and in memory.
+ * <p>
+ * Keys are hashed onto a fixed set of segments, each guarded by its own lock, so lookups for
+ * different keys rarely contend. Each segment keeps its entries in insertion order, which is
+ * also expiry order, and drops them from the head once they are older than the window or once
+ * the segment grows past its share of the memory budget. The size of an entry is estimated from
+ * the length of its key and fingerprint.
+ * <p>
+ * Outcomes are only kept in memory, so a retry arriving after a restart is executed again.
+ */
+public class IdempotencyCacheImpl implements IdempotencyCache {
+
+    static final int MAX_KEY_LENGTH = 255;
+    private static final String KEY_LENGTH_ERR = "Idempotency key must be between 1 and " + MAX_KEY_LENGTH + " characters";
+    private static final String KEY_REUSED_ERR = "Idempotency key %s was already used for a different transfer";
+    private static final int SEGMENTS = 64;
+    // Entry, map node, future and string headers on a 64-bit JVM, plus two bytes per character
+    private static final int ENTRY_OVERHEAD_BYTES = 200;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long windowNanos;
+    private final long segmentBudgetBytes;
+    private final LongSupplier nanoClock;
+
+    /**
+     * @param windowMillis How long the outcome of an operation is remembered
+     * @param maxBytes Approximate memory the cache may use across all keys
+     */
+    public IdempotencyCacheImpl(long windowMillis, long maxBytes) {
+        this(windowMillis, maxBytes, System::nanoTime);
+    }
+
+    public IdempotencyCacheImpl(long windowMillis, long maxBytes, LongSupplier nanoClock) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.segmentBudgetBytes = Math.max(1, maxBytes / SEGMENTS);
+        this.nanoClock = nanoClock;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    public CompletableFuture<Void> claim(String key, String fingerprint, CompletableFuture<Void> outcome)
+            throws InvalidParameterException {
+
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidParameterException(KEY_LENGTH_ERR);
+        }
+
+        long now = nanoClock.getAsLong();
+        Segment segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            segment.expire(now);
+            Entry existing = segment.entries.get(key);
+            if (existing != null) {
+                if (!existing.fingerprint.equals(fingerprint)) {
+                    throw new InvalidParameterException(KEY_REUSED_ERR, key);
+                }
+                return existing.outcome;
+            }
+
+            Entry entry = new Entry(fingerprint, outcome, now + windowNanos,
+                    ENTRY_OVERHEAD_BYTES + 2 * (key.length() + fingerprint.length()));
+            segment.entries.put(key, entry);
+            segment.bytes += entry.bytes;
+            segment.evictOverBudget(segmentBudgetBytes);
+            return null;
+        }
+        finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public void abandon(String key, CompletableFuture<Void> outcome) {
+        Segment segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            Entry entry = segment.entries.get(key);
+            if (entry != null && entry.outcome == outcome) {
+                segment.entries.remove(key);
+                segment.bytes -= entry.bytes;
+            }
+        }
+        finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of outcomes currently remembered
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.entries.size();
+            }
+            finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return Estimated memory used by the remembered outcomes
+     */
+    public long getEstimatedBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                bytes += segment.bytes;
+            }
+            finally {
+                segment.lock.unlock();
+            }
+        }
+        return bytes;
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static final class Segment {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+        private long bytes;
+
+        void expire(long now) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.expiresAtNanos - now > 0) {
+                    return;
+                }
+                bytes -= entry.bytes;
+                it.remove();
+            }
+        }
+
+        void evictOverBudget(long budgetBytes) {
+            // Never evict the newest entry, it was only just claimed
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (bytes > budgetBytes && entries.size() > 1) {
+                bytes -= it.next().getValue().bytes;
+                it.remove();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final String fingerprint;
+        private final CompletableFuture<Void> outcome;
+        private final long expiresAtNanos;
+        private final int bytes;
+
+        Entry(String fingerprint, CompletableFuture<Void> outcome, long expiresAtNanos, int bytes) {
+            this.fingerprint = fingerprint;
+            this.outcome = outcome;
+            this.expiresAtNanos = expiresAtNanos;
+            this.bytes = bytes;
+        }
+    }
+}
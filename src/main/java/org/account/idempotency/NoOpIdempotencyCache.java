@@ -0,0 +1,15 @@
+package org.account.idempotency;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Cache used when deduplication is switched off, every request is executed.
+ */
+public class NoOpIdempotencyCache implements IdempotencyCache {
+
+    public CompletableFuture<Void> claim(String key, String fingerprint, CompletableFuture<Void> outcome) {
+        return null;
+    }
+
+    public void abandon(String key, CompletableFuture<Void> outcome) {}
+}
@@ -0,0 +1,261 @@
+package org.account.journal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Journal backed by a single append-only file.
+ * <p>
+ * Appending threads only enqueue their record and wait. A dedicated writer
+ * thread drains everything queued so far, writes it with one FileChannel write
+ * and, under the GROUP policy, forces it with a single fsync before releasing
+ * all the waiting threads. While one batch is being forced the next one builds
+ * up, so the cost of an fsync is shared by every transfer in the batch.
+ */
+public class FileJournalImpl implements Journal {
+
+    private static final int MAX_BATCH_SIZE = 4096;
+    private static final String JOURNAL_CLOSED_ERR = "Journal is closed";
+    private static final String JOURNAL_FAILED_ERR = "Journal failed to write, no further records are accepted";
+
+    private final FileChannel channel;
+    private final FsyncPolicy fsyncPolicy;
+    private final BlockingQueue<PendingRecord> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+    private volatile long lastSequence;
+    private volatile long position;
+
+    public FileJournalImpl(Path path, FsyncPolicy fsyncPolicy) throws IOException {
+        this(path, fsyncPolicy, record -> {});
+    }
+
+    /**
+     * Opens the journal, handing every record already in it to the recovery consumer
+     * and discarding any partially written record at the end of the file.
+     */
+    public FileJournalImpl(Path path, FsyncPolicy fsyncPolicy, Consumer<JournalRecord> recovery) throws IOException {
+        this(path, fsyncPolicy, recovery, 0, 0);
+    }
+
+    /**
+     * Opens the journal, handing only the records after the given sequence number to the recovery
+     * consumer. Replay starts straight from the given offset when the record after that sequence
+     * number is found there, otherwise the whole file is scanned.
+     */
+    public FileJournalImpl(Path path, FsyncPolicy fsyncPolicy, Consumer<JournalRecord> recovery,
+                           long afterPosition, long afterSequence) throws IOException {
+        this.fsyncPolicy = fsyncPolicy;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long from = JournalReader.isRecordBoundary(channel, afterPosition, afterSequence + 1) ? afterPosition : 0;
+        JournalReader reader = new JournalReader();
+        reader.read(channel, from, record -> {
+            if (record.getSequence() > afterSequence) {
+                recovery.accept(record);
+            }
+        });
+        channel.truncate(reader.getValidLength());
+        channel.position(reader.getValidLength());
+        position = reader.getValidLength();
+        lastSequence = Math.max(reader.getLastSequence(), afterSequence);
+
+        writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public long append(JournalRecord record) {
+        checkWritable();
+        PendingRecord pending = new PendingRecord(record);
+        queue.add(pending);
+        return await(pending);
+    }
+
+    public long appendAll(List<JournalRecord> records) {
+        checkWritable();
+        List<PendingRecord> pendings = new ArrayList<>(records.size());
+        for (JournalRecord record : records) {
+            pendings.add(new PendingRecord(record));
+        }
+        // Enqueued together so the writer usually drains them into a single batch
+        queue.addAll(pendings);
+        long sequence = lastSequence;
+        for (PendingRecord pending : pendings) {
+            sequence = await(pending);
+        }
+        return sequence;
+    }
+
+    private void checkWritable() {
+        if (!running) {
+            throw new IllegalStateException(JOURNAL_CLOSED_ERR);
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(JOURNAL_FAILED_ERR, failure);
+        }
+    }
+
+    private long await(PendingRecord pending) {
+        try {
+            return pending.result.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalStateException) {
+                throw (IllegalStateException) e.getCause();
+            }
+            throw new UncheckedIOException(JOURNAL_FAILED_ERR, (IOException) e.getCause());
+        }
+    }
+
+    public boolean isEnabled() {
+        return true;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public void close() {
+        running = false;
+        try {
+            writer.join();
+            channel.close();
+            // Fail anything that raced with close and missed the final drain
+            IllegalStateException closed = new IllegalStateException(JOURNAL_CLOSED_ERR);
+            for (PendingRecord pending; (pending = queue.poll()) != null; ) {
+                pending.result.completeExceptionally(closed);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingRecord> batch = new ArrayList<>();
+        FrameEncoder encoder = new FrameEncoder();
+        long sequence = lastSequence;
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+                if (failure != null) {
+                    throw failure;
+                }
+
+                for (PendingRecord pending : batch) {
+                    pending.record.setSequence(++sequence);
+                    encoder.encode(pending.record);
+                    if (fsyncPolicy == FsyncPolicy.EVERY_RECORD) {
+                        writeFully(encoder.drain());
+                        channel.force(false);
+                    }
+                }
+                if (fsyncPolicy != FsyncPolicy.EVERY_RECORD) {
+                    writeFully(encoder.drain());
+                    if (fsyncPolicy == FsyncPolicy.GROUP) {
+                        channel.force(false);
+                    }
+                }
+
+                position = channel.position();
+                lastSequence = sequence;
+                for (PendingRecord pending : batch) {
+                    pending.result.complete(pending.record.getSequence());
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (IOException e) {
+                failure = e;
+                for (PendingRecord pending : batch) {
+                    pending.result.completeExceptionally(e);
+                }
+            }
+            finally {
+                batch.clear();
+                encoder.drain();
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Accumulates framed records for one write, reusing its buffers between batches.
+     */
+    private static class FrameEncoder {
+        private final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        private final DataOutputStream payload = new DataOutputStream(payloadBytes);
+        private final ByteArrayOutputStream frameBytes = new ByteArrayOutputStream();
+        private final DataOutputStream frames = new DataOutputStream(frameBytes);
+        private final CRC32 crc = new CRC32();
+
+        private void encode(JournalRecord record) throws IOException {
+            payloadBytes.reset();
+            JournalCodec.writePayload(record, payload);
+            byte[] encoded = payloadBytes.toByteArray();
+            crc.reset();
+            crc.update(encoded, 0, encoded.length);
+
+            frames.writeInt(encoded.length);
+            frames.writeInt((int) crc.getValue());
+            frames.write(encoded);
+        }
+
+        private ByteBuffer drain() {
+            ByteBuffer buffer = ByteBuffer.wrap(frameBytes.toByteArray());
+            frameBytes.reset();
+            return buffer;
+        }
+    }
+
+    private static class PendingRecord {
+        private final JournalRecord record;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        private PendingRecord(JournalRecord record) {
+            this.record = record;
+        }
+    }
+}
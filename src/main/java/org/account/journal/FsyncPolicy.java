@@ -0,0 +1,10 @@
+package org.account.journal;
+
+public enum FsyncPolicy {
+    /** Force the file to disk after every record */
+    EVERY_RECORD,
+    /** Force the file to disk once per batch of records written together (group commit) */
+    GROUP,
+    /** Never force, leave flushing to the operating system */
+    NONE
+}
@@ -0,0 +1,42 @@
+package org.account.journal;
+
+import java.util.List;
+
+/**
+ * Append-only log of account mutations, written before they are applied so
+ * that the in-memory state can be rebuilt after a restart.
+ */
+public interface Journal extends AutoCloseable {
+
+    /**
+     * Appends the record and waits until it is as durable as the journal's fsync policy allows
+     * @return Sequence number assigned to the record
+     * @throws java.io.UncheckedIOException If the record could not be written
+     */
+    long append(JournalRecord record);
+
+    /**
+     * Appends the records in order, letting them share one write and fsync, and waits until all are durable
+     * @return Sequence number assigned to the last record, or {@link #getLastSequence()} if there are none
+     * @throws java.io.UncheckedIOException If the records could not be written
+     */
+    long appendAll(List<JournalRecord> records);
+
+    /**
+     * @return Whether records are actually persisted
+     */
+    boolean isEnabled();
+
+    /**
+     * @return Sequence number of the last record appended, or 0 if there is none
+     */
+    long getLastSequence();
+
+    /**
+     * @return Byte offset just past the last record appended, used to resume replay from a snapshot
+     */
+    long getPosition();
+
+    @Override
+    void close();
+}
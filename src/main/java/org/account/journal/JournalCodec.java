@@ -0,0 +1,154 @@
+package org.account.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Binary layout of journal records. Each record is framed on disk as
+ * [int payload length][int CRC32 of payload][payload] so that a torn write at
+ * the end of the file can be detected and discarded. Replication ships these frames unchanged.
+ * Decimals are [int scale][unsigned short length][unscaled value bytes].
+ */
+public final class JournalCodec {
+
+    public static final int FRAME_HEADER_SIZE = 8;
+    private static final String CORRUPT_FRAME_ERR = "Journal frame is corrupt";
+    private static final String DECIMAL_TOO_LONG_ERR = "Decimal %s is too long for the journal";
+
+    private JournalCodec() {}
+
+    /**
+     * Reads one whole frame, as shipped to replicas, and decodes its record
+     * @throws IOException If the frame is incomplete or its checksum does not match
+     */
+    public static JournalRecord readFrame(DataInput in) throws IOException {
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length <= 0) {
+            throw new IOException(CORRUPT_FRAME_ERR);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, length);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException(CORRUPT_FRAME_ERR);
+        }
+        return readPayload(new DataInputStream(new ByteArrayInputStream(payload)));
+    }
+
+    static void writePayload(JournalRecord record, DataOutput out) throws IOException {
+        out.writeLong(record.getSequence());
+        out.writeByte(record.getType().ordinal());
+        switch (record.getType()) {
+            case ACCOUNT_CREATED:
+                out.writeInt(record.getAccountId());
+                out.writeUTF(record.getAccountHolderName());
+                out.writeUTF(record.getCurrencyCode());
+                writeDecimal(record.getBalance(), out);
+                out.writeBoolean(record.isMinorUnitBalance());
+                out.writeLong(record.getCreatedMillis());
+                break;
+            case TRANSFER:
+                out.writeInt(record.getTransferCount());
+                for (int i = 0; i < record.getTransferCount(); i++) {
+                    out.writeInt(record.getSourceAccountId(i));
+                    out.writeInt(record.getDestinationAccountId(i));
+                    writeDecimal(record.getAmount(i), out);
+                }
+                break;
+            case CONVERTED_TRANSFER:
+                out.writeInt(record.getTransferCount());
+                for (int i = 0; i < record.getTransferCount(); i++) {
+                    out.writeInt(record.getSourceAccountId(i));
+                    out.writeInt(record.getDestinationAccountId(i));
+                    writeDecimal(record.getAmount(i), out);
+                    writeDecimal(record.getCreditAmount(i), out);
+                }
+                break;
+            case WITHDRAWAL:
+            case DEPOSIT:
+                out.writeInt(record.getSourceAccountId(0));
+                out.writeInt(record.getDestinationAccountId(0));
+                writeDecimal(record.getAmount(0), out);
+                writeDecimal(record.getCreditAmount(0), out);
+                out.writeLong(record.getTransactionId());
+                out.writeLong(record.getSettledBelow());
+                break;
+            case SETTLED:
+                out.writeLong(record.getTransactionId());
+                break;
+        }
+    }
+
+    static JournalRecord readPayload(DataInput in) throws IOException {
+        long sequence = in.readLong();
+        JournalRecord.Type type = JournalRecord.Type.values()[in.readByte()];
+        JournalRecord record;
+        switch (type) {
+            case ACCOUNT_CREATED:
+                record = JournalRecord.accountCreated(in.readInt(), in.readUTF(), in.readUTF(),
+                        readDecimal(in), in.readBoolean(), in.readLong());
+                break;
+            case CONVERTED_TRANSFER:
+                int convertedCount = in.readInt();
+                int[] convertedSourceIds = new int[convertedCount];
+                int[] convertedDestinationIds = new int[convertedCount];
+                BigDecimal[] debitAmounts = new BigDecimal[convertedCount];
+                BigDecimal[] creditAmounts = new BigDecimal[convertedCount];
+                for (int i = 0; i < convertedCount; i++) {
+                    convertedSourceIds[i] = in.readInt();
+                    convertedDestinationIds[i] = in.readInt();
+                    debitAmounts[i] = readDecimal(in);
+                    creditAmounts[i] = readDecimal(in);
+                }
+                record = JournalRecord.convertedTransfers(convertedSourceIds, convertedDestinationIds,
+                        debitAmounts, creditAmounts);
+                break;
+            case WITHDRAWAL:
+            case DEPOSIT:
+                record = JournalRecord.leg(type, in.readInt(), in.readInt(), readDecimal(in), readDecimal(in),
+                        in.readLong(), in.readLong());
+                break;
+            case SETTLED:
+                record = JournalRecord.settled(in.readLong());
+                break;
+            default:
+                int count = in.readInt();
+                int[] sourceIds = new int[count];
+                int[] destinationIds = new int[count];
+                BigDecimal[] amounts = new BigDecimal[count];
+                for (int i = 0; i < count; i++) {
+                    sourceIds[i] = in.readInt();
+                    destinationIds[i] = in.readInt();
+                    amounts[i] = readDecimal(in);
+                }
+                record = JournalRecord.transfers(sourceIds, destinationIds, amounts);
+        }
+        record.setSequence(sequence);
+        return record;
+    }
+
+    private static void writeDecimal(BigDecimal value, DataOutput out) throws IOException {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        if (unscaled.length > 0xFFFF) {
+            throw new IOException(String.format(DECIMAL_TOO_LONG_ERR, value));
+        }
+        out.writeInt(value.scale());
+        out.writeShort(unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static BigDecimal readDecimal(DataInput in) throws IOException {
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readUnsignedShort()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+}
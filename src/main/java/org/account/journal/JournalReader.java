@@ -0,0 +1,98 @@
+package org.account.journal;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Reads framed records from a journal file, stopping at the first incomplete
+ * or corrupt frame.
+ */
+public class JournalReader {
+
+    private long validLength;
+    private long lastSequence;
+    private int frameLength;
+
+    /**
+     * Reads every intact record from the given offset of the channel and hands it to the consumer
+     */
+    void read(FileChannel channel, long from, Consumer<JournalRecord> consumer) throws IOException {
+        channel.position(from);
+        long fileLength = channel.size();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        long position = from;
+        JournalRecord record;
+        while ((record = readRecord(in, fileLength - position)) != null) {
+            consumer.accept(record);
+            lastSequence = record.getSequence();
+            position += frameLength;
+        }
+        validLength = position;
+    }
+
+    /**
+     * Reads every intact record of the journal file and hands it to the consumer, without opening the file for writing
+     */
+    public static void read(Path path, Consumer<JournalRecord> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            new JournalReader().read(channel, 0, consumer);
+        }
+    }
+
+    /**
+     * @return Whether an intact record with the given sequence number starts at the offset,
+     * or the offset is exactly the end of the file
+     */
+    public static boolean isRecordBoundary(FileChannel channel, long offset, long sequence) throws IOException {
+        long fileLength = channel.size();
+        if (offset == fileLength) {
+            return true;
+        }
+        if (offset > fileLength) {
+            return false;
+        }
+        channel.position(offset);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        JournalRecord record = new JournalReader().readRecord(in, fileLength - offset);
+        return record != null && record.getSequence() == sequence;
+    }
+
+    private JournalRecord readRecord(DataInputStream in, long remaining) throws IOException {
+        if (remaining < JournalCodec.FRAME_HEADER_SIZE) {
+            return null;
+        }
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length <= 0 || remaining - JournalCodec.FRAME_HEADER_SIZE < length) {
+            return null;
+        }
+
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, length);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        JournalRecord record = JournalCodec.readPayload(new DataInputStream(new ByteArrayInputStream(payload)));
+        frameLength = JournalCodec.FRAME_HEADER_SIZE + length;
+        return record;
+    }
+
+    /**
+     * @return Length of the file up to the end of the last intact record
+     */
+    long getValidLength() {
+        return validLength;
+    }
+
+    long getLastSequence() {
+        return lastSequence;
+    }
+}
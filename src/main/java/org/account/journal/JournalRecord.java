@@ -0,0 +1,248 @@
+package org.account.journal;
+
+import org.account.model.Account;
+import org.account.model.MinorUnits;
+import org.account.model.dto.TransferDTO;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A single journal entry: either an account creation, or one or more transfers
+ * that must be applied together. A CONVERTED_TRANSFER is a transfer between accounts in different
+ * currencies, so the amount deposited differs from the amount withdrawn. A WITHDRAWAL or DEPOSIT is
+ * one half of a transfer whose other account is held by another node, and is only applied to the
+ * account held here. Both carry the ID of the cross-node transaction, and the node that coordinated
+ * it writes a SETTLED record once the destination's node has acknowledged the credit.
+ */
+public class JournalRecord {
+
+    public enum Type { ACCOUNT_CREATED, TRANSFER, CONVERTED_TRANSFER, WITHDRAWAL, DEPOSIT, SETTLED }
+
+    private final Type type;
+    private long sequence;
+
+    // ACCOUNT_CREATED
+    private int accountId;
+    private String accountHolderName;
+    private String currencyCode;
+    private BigDecimal balance;
+    private boolean minorUnitBalance;
+    private long createdMillis;
+
+    // TRANSFER, CONVERTED_TRANSFER, WITHDRAWAL and DEPOSIT
+    private int[] sourceAccountIds;
+    private int[] destinationAccountIds;
+    private BigDecimal[] amounts;
+    private BigDecimal[] creditAmounts;
+
+    // WITHDRAWAL, DEPOSIT and SETTLED
+    private long transactionId;
+    private long settledBelow;
+
+    JournalRecord(Type type) {
+        this.type = type;
+    }
+
+    public static JournalRecord accountCreated(Account account) {
+        JournalRecord record = new JournalRecord(Type.ACCOUNT_CREATED);
+        record.accountId = account.getId();
+        record.accountHolderName = account.getAccountHolderName();
+        record.currencyCode = account.getCurrency().getCurrencyCode();
+        record.balance = account.getBalance();
+        record.minorUnitBalance = account.isMinorUnitBalance();
+        record.createdMillis = account.getCreatedDate() != null ? account.getCreatedDate().getTime() : 0;
+        return record;
+    }
+
+    public static JournalRecord transfer(int sourceAccountId, int destinationAccountId, BigDecimal amount) {
+        return transfers(new int[] {sourceAccountId}, new int[] {destinationAccountId}, new BigDecimal[] {amount});
+    }
+
+    /**
+     * @return A TRANSFER record if the amounts are equal, otherwise a CONVERTED_TRANSFER record
+     */
+    public static JournalRecord transfer(int sourceAccountId, int destinationAccountId,
+                                         BigDecimal debitAmount, BigDecimal creditAmount) {
+        if (debitAmount.equals(creditAmount)) {
+            return transfer(sourceAccountId, destinationAccountId, debitAmount);
+        }
+        return convertedTransfers(new int[] {sourceAccountId}, new int[] {destinationAccountId},
+                new BigDecimal[] {debitAmount}, new BigDecimal[] {creditAmount});
+    }
+
+    /**
+     * @param creditAmount Amount the destination account is owed, kept so the credit can be delivered after a restart
+     * @return A WITHDRAWAL record taking the debit amount from the source account only
+     */
+    public static JournalRecord withdrawal(int sourceAccountId, int destinationAccountId, BigDecimal debitAmount,
+                                           BigDecimal creditAmount, long transactionId) {
+        return leg(Type.WITHDRAWAL, sourceAccountId, destinationAccountId, debitAmount, creditAmount, transactionId, 0);
+    }
+
+    /**
+     * @param settledBelow ID below which every transaction of the coordinating node was settled when the
+     *                     credit was taken
+     * @return A DEPOSIT record adding the amount to the destination account only
+     */
+    public static JournalRecord deposit(int sourceAccountId, int destinationAccountId, BigDecimal amount,
+                                        long transactionId, long settledBelow) {
+        return leg(Type.DEPOSIT, sourceAccountId, destinationAccountId, amount, amount, transactionId, settledBelow);
+    }
+
+    /**
+     * @return A SETTLED record marking the credit of a transaction coordinated here as acknowledged
+     */
+    public static JournalRecord settled(long transactionId) {
+        JournalRecord record = new JournalRecord(Type.SETTLED);
+        record.transactionId = transactionId;
+        return record;
+    }
+
+    static JournalRecord leg(Type type, int sourceAccountId, int destinationAccountId, BigDecimal amount,
+                             BigDecimal creditAmount, long transactionId, long settledBelow) {
+        JournalRecord record = new JournalRecord(type);
+        record.sourceAccountIds = new int[] {sourceAccountId};
+        record.destinationAccountIds = new int[] {destinationAccountId};
+        record.amounts = new BigDecimal[] {amount};
+        record.creditAmounts = new BigDecimal[] {creditAmount};
+        record.transactionId = transactionId;
+        record.settledBelow = settledBelow;
+        return record;
+    }
+
+    public static JournalRecord transfers(List<TransferDTO> transferDTOs) {
+        int size = transferDTOs.size();
+        int[] sourceIds = new int[size];
+        int[] destinationIds = new int[size];
+        BigDecimal[] amounts = new BigDecimal[size];
+        for (int i = 0; i < size; i++) {
+            TransferDTO transferDTO = transferDTOs.get(i);
+            sourceIds[i] = transferDTO.getSourceAccountId();
+            destinationIds[i] = transferDTO.getDestinationAccountId();
+            amounts[i] = transferDTO.getTransferAmount();
+        }
+        return transfers(sourceIds, destinationIds, amounts);
+    }
+
+    static JournalRecord transfers(int[] sourceIds, int[] destinationIds, BigDecimal[] amounts) {
+        JournalRecord record = new JournalRecord(Type.TRANSFER);
+        record.sourceAccountIds = sourceIds;
+        record.destinationAccountIds = destinationIds;
+        record.amounts = amounts;
+        record.creditAmounts = amounts;
+        return record;
+    }
+
+    static JournalRecord convertedTransfers(int[] sourceIds, int[] destinationIds, BigDecimal[] debitAmounts,
+                                            BigDecimal[] creditAmounts) {
+        JournalRecord record = new JournalRecord(Type.CONVERTED_TRANSFER);
+        record.sourceAccountIds = sourceIds;
+        record.destinationAccountIds = destinationIds;
+        record.amounts = debitAmounts;
+        record.creditAmounts = creditAmounts;
+        return record;
+    }
+
+    static JournalRecord accountCreated(int accountId, String accountHolderName, String currencyCode,
+                                        BigDecimal balance, boolean minorUnitBalance, long createdMillis) {
+        JournalRecord record = new JournalRecord(Type.ACCOUNT_CREATED);
+        record.accountId = accountId;
+        record.accountHolderName = accountHolderName;
+        record.currencyCode = currencyCode;
+        record.balance = balance;
+        record.minorUnitBalance = minorUnitBalance;
+        record.createdMillis = createdMillis;
+        return record;
+    }
+
+    /**
+     * @return A new account matching the one recorded by an ACCOUNT_CREATED record
+     */
+    public Account toAccount() {
+        Account account = new Account();
+        account.setId(accountId);
+        account.setAccountHolderName(accountHolderName);
+        account.setCurrency(Currency.getInstance(currencyCode));
+        if (minorUnitBalance) {
+            account.setBalanceMinorUnits(MinorUnits.toMinorUnits(balance, account.getCurrency()));
+        }
+        else {
+            account.setBalance(balance);
+        }
+        account.setCreatedDate(new Date(createdMillis));
+        return account;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public String getAccountHolderName() {
+        return accountHolderName;
+    }
+
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public boolean isMinorUnitBalance() {
+        return minorUnitBalance;
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    public int getTransferCount() {
+        return sourceAccountIds.length;
+    }
+
+    public int getSourceAccountId(int index) {
+        return sourceAccountIds[index];
+    }
+
+    public int getDestinationAccountId(int index) {
+        return destinationAccountIds[index];
+    }
+
+    /**
+     * @return Amount withdrawn from the source account
+     */
+    public BigDecimal getAmount(int index) {
+        return amounts[index];
+    }
+
+    /**
+     * @return Amount deposited to the destination account
+     */
+    public BigDecimal getCreditAmount(int index) {
+        return creditAmounts[index];
+    }
+
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    public long getSettledBelow() {
+        return settledBelow;
+    }
+}
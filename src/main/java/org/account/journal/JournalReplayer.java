@@ -0,0 +1,62 @@
+package org.account.journal;
+
+import org.account.dao.AccountDAO;
+
+import java.util.function.Consumer;
+
+/**
+ * Rebuilds the account store by re-applying journal records in sequence order.
+ */
+public class JournalReplayer implements Consumer<JournalRecord> {
+
+    private static final String REPLAY_ERR = "ERROR: Could not replay journal record %s: %s";
+
+    private final AccountDAO accountDAO;
+    private long replayed;
+
+    public JournalReplayer(AccountDAO accountDAO) {
+        this.accountDAO = accountDAO;
+    }
+
+    @Override
+    public void accept(JournalRecord record) {
+        try {
+            switch (record.getType()) {
+                case ACCOUNT_CREATED:
+                    accountDAO.insertAccount(record.toAccount());
+                    break;
+                case TRANSFER:
+                case CONVERTED_TRANSFER:
+                    for (int i = 0; i < record.getTransferCount(); i++) {
+                        accountDAO.accountWithdraw(record.getSourceAccountId(i), record.getAmount(i),
+                                record.getDestinationAccountId(i));
+                        accountDAO.accountDeposit(record.getDestinationAccountId(i), record.getCreditAmount(i),
+                                record.getSourceAccountId(i));
+                    }
+                    break;
+                case WITHDRAWAL:
+                    accountDAO.accountWithdraw(record.getSourceAccountId(0), record.getAmount(0),
+                            record.getDestinationAccountId(0));
+                    break;
+                case DEPOSIT:
+                    accountDAO.accountDeposit(record.getDestinationAccountId(0), record.getCreditAmount(0),
+                            record.getSourceAccountId(0));
+                    break;
+                case SETTLED:
+                    // Changes no account, only which credits are owed to other nodes
+                    break;
+            }
+            replayed++;
+        }
+        catch (Exception e) {
+            System.out.println(String.format(REPLAY_ERR, record.getSequence(), e.getMessage()));
+        }
+    }
+
+    /**
+     * @return Number of records applied so far
+     */
+    public long getReplayed() {
+        return replayed;
+    }
+}
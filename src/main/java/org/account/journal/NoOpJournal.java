@@ -0,0 +1,31 @@
+package org.account.journal;
+
+import java.util.List;
+
+/**
+ * Journal used when persistence is switched off, discards every record.
+ */
+public class NoOpJournal implements Journal {
+
+    public long append(JournalRecord record) {
+        return 0;
+    }
+
+    public long appendAll(List<JournalRecord> records) {
+        return 0;
+    }
+
+    public boolean isEnabled() {
+        return false;
+    }
+
+    public long getLastSequence() {
+        return 0;
+    }
+
+    public long getPosition() {
+        return 0;
+    }
+
+    public void close() {}
+}
@@ -0,0 +1,119 @@
+package org.account.ledger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entries of a single account, held column by column in fixed-size chunks of primitive arrays so that an
+ * entry costs 28 bytes and appending never copies more than one chunk. The first chunk starts small and
+ * doubles up to the full chunk size, as most accounts only ever see a few transfers.
+ * <p>
+ * There is a single writer at a time. Readers take no lock: an entry, and any chunk holding it, is
+ * written before the size that covers it is published, and a chunk is only ever replaced by a copy
+ * holding the same entries.
+ */
+class AccountLedger {
+
+    static final int CHUNK_SHIFT = 8;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile int size;
+    private long lastTimestamp;
+
+    void append(long timestampMillis, int counterpartyId, long amountMinorUnits, long balanceMinorUnits) {
+        // Keep entries in time order even if the wall clock steps back, so range lookups can binary search
+        long timestamp = Math.max(timestampMillis, lastTimestamp);
+        lastTimestamp = timestamp;
+
+        int index = size;
+        int chunkIndex = index >>> CHUNK_SHIFT;
+        int offset = index & CHUNK_MASK;
+        Chunk[] current = chunks;
+        Chunk chunk;
+        if (offset == 0) {
+            if (chunkIndex == current.length) {
+                // The directory doubles, so appending stays amortised constant time however long the history gets
+                current = Arrays.copyOf(current, Math.max(1, current.length * 2));
+                chunks = current;
+            }
+            chunk = new Chunk(chunkIndex == 0 ? INITIAL_CAPACITY : CHUNK_SIZE);
+            current[chunkIndex] = chunk;
+        }
+        else {
+            chunk = current[chunkIndex];
+            if (offset == chunk.timestamps.length) {
+                chunk = chunk.grow(Math.min(CHUNK_SIZE, offset * 2));
+                current[chunkIndex] = chunk;
+            }
+        }
+
+        chunk.timestamps[offset] = timestamp;
+        chunk.counterparties[offset] = counterpartyId;
+        chunk.amounts[offset] = amountMinorUnits;
+        chunk.balances[offset] = balanceMinorUnits;
+        size = index + 1;
+    }
+
+    List<LedgerEntry> getEntries(long fromMillis, long toMillis, int limit) {
+        int count = size;
+        Chunk[] current = chunks;
+        List<LedgerEntry> entries = new ArrayList<>(Math.min(limit, count));
+        for (int i = firstAtOrAfter(current, count, fromMillis); i < count && entries.size() < limit; i++) {
+            Chunk chunk = current[i >>> CHUNK_SHIFT];
+            int offset = i & CHUNK_MASK;
+            if (chunk.timestamps[offset] >= toMillis) {
+                break;
+            }
+            entries.add(new LedgerEntry(chunk.timestamps[offset], chunk.counterparties[offset],
+                    chunk.amounts[offset], chunk.balances[offset]));
+        }
+        return entries;
+    }
+
+    /**
+     * Binary searches the time-ordered entries across chunks
+     * @return Index of the first entry recorded at or after the time, or count if there is none
+     */
+    private static int firstAtOrAfter(Chunk[] chunks, int count, long timestampMillis) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (chunks[mid >>> CHUNK_SHIFT].timestamps[mid & CHUNK_MASK] < timestampMillis) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static final class Chunk {
+
+        private final long[] timestamps;
+        private final int[] counterparties;
+        private final long[] amounts;
+        private final long[] balances;
+
+        Chunk(int capacity) {
+            this(new long[capacity], new int[capacity], new long[capacity], new long[capacity]);
+        }
+
+        private Chunk(long[] timestamps, int[] counterparties, long[] amounts, long[] balances) {
+            this.timestamps = timestamps;
+            this.counterparties = counterparties;
+            this.amounts = amounts;
+            this.balances = balances;
+        }
+
+        Chunk grow(int capacity) {
+            return new Chunk(Arrays.copyOf(timestamps, capacity), Arrays.copyOf(counterparties, capacity),
+                    Arrays.copyOf(amounts, capacity), Arrays.copyOf(balances, capacity));
+        }
+    }
+}
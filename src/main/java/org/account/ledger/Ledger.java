@@ -0,0 +1,27 @@
+package org.account.ledger;
+
+import java.util.List;
+
+/**
+ * Append-only history of the balance changes of every account.
+ */
+public interface Ledger {
+
+    /**
+     * Records a balance change, stamped with the current time. Must not be called concurrently for the same account,
+     * so that entries are kept in the order the changes were applied.
+     * @param accountId Account whose balance changed
+     * @param counterpartyId Account on the other side of the transfer
+     * @param amountMinorUnits Signed change in minor units, negative for a withdrawal
+     * @param balanceMinorUnits Balance of the account after the change, in minor units
+     */
+    void record(int accountId, int counterpartyId, long amountMinorUnits, long balanceMinorUnits);
+
+    /**
+     * @param fromMillis Only entries recorded at or after this time are returned
+     * @param toMillis Only entries recorded before this time are returned
+     * @param limit Maximum number of entries to return
+     * @return Entries of the account in the time range, oldest first
+     */
+    List<LedgerEntry> getEntries(int accountId, long fromMillis, long toMillis, int limit);
+}
@@ -0,0 +1,67 @@
+package org.account.ledger;
+
+/**
+ * A single balance change of an account, as recorded in the ledger.
+ */
+public final class LedgerEntry {
+
+    private final long timestampMillis;
+    private final int counterpartyId;
+    private final long amountMinorUnits;
+    private final long balanceMinorUnits;
+
+    public LedgerEntry(long timestampMillis, int counterpartyId, long amountMinorUnits, long balanceMinorUnits) {
+        this.timestampMillis = timestampMillis;
+        this.counterpartyId = counterpartyId;
+        this.amountMinorUnits = amountMinorUnits;
+        this.balanceMinorUnits = balanceMinorUnits;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public int getCounterpartyId() {
+        return counterpartyId;
+    }
+
+    public long getAmountMinorUnits() {
+        return amountMinorUnits;
+    }
+
+    public long getBalanceMinorUnits() {
+        return balanceMinorUnits;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        LedgerEntry that = (LedgerEntry) o;
+
+        if (timestampMillis != that.timestampMillis) return false;
+        if (counterpartyId != that.counterpartyId) return false;
+        if (amountMinorUnits != that.amountMinorUnits) return false;
+        return balanceMinorUnits == that.balanceMinorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (timestampMillis ^ (timestampMillis >>> 32));
+        result = 31 * result + counterpartyId;
+        result = 31 * result + (int) (amountMinorUnits ^ (amountMinorUnits >>> 32));
+        result = 31 * result + (int) (balanceMinorUnits ^ (balanceMinorUnits >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "LedgerEntry{" +
+                "timestampMillis=" + timestampMillis +
+                ", counterpartyId=" + counterpartyId +
+                ", amountMinorUnits=" + amountMinorUnits +
+                ", balanceMinorUnits=" + balanceMinorUnits +
+                '}';
+    }
+}
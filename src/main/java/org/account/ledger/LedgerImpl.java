@@ -0,0 +1,55 @@
+package org.account.ledger;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory ledger keeping the entries of each account in time order, so that a time range is found by
+ * binary search rather than by scanning the account's history. Entries are never removed.
+ */
+public class LedgerImpl implements Ledger {
+
+    private final Map<Integer, AccountLedger> accountLedgers = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+    private final LongAdder entryCount = new LongAdder();
+
+    public LedgerImpl() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock Supplies the time in milliseconds that entries are stamped with
+     */
+    public LedgerImpl(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public void record(int accountId, int counterpartyId, long amountMinorUnits, long balanceMinorUnits) {
+        AccountLedger accountLedger = accountLedgers.get(accountId);
+        if (accountLedger == null) {
+            // computeIfAbsent locks its bin even when the key is present, so only use it for new accounts
+            accountLedger = accountLedgers.computeIfAbsent(accountId, id -> new AccountLedger());
+        }
+        accountLedger.append(clock.getAsLong(), counterpartyId, amountMinorUnits, balanceMinorUnits);
+        entryCount.increment();
+    }
+
+    public List<LedgerEntry> getEntries(int accountId, long fromMillis, long toMillis, int limit) {
+        AccountLedger accountLedger = accountLedgers.get(accountId);
+        if (accountLedger == null) {
+            return Collections.emptyList();
+        }
+        return accountLedger.getEntries(fromMillis, toMillis, limit);
+    }
+
+    /**
+     * @return Number of entries recorded across all accounts
+     */
+    public long getEntryCount() {
+        return entryCount.sum();
+    }
+}
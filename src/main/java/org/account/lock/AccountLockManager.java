@@ -0,0 +1,16 @@
+package org.account.lock;
+
+import org.account.exception.LockTimeoutException;
+
+public interface AccountLockManager {
+
+    AccountLocks lock(int... accountIds) throws LockTimeoutException;
+
+    /**
+     * Acquires the locks of all the accounts only if no other thread holds any of them, without waiting
+     * @return The locks, or null if one of them was held
+     */
+    AccountLocks tryLock(int... accountIds);
+
+    LockStatistics getStatistics();
+}
@@ -0,0 +1,135 @@
+package org.account.lock;
+
+import org.account.exception.LockTimeoutException;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hashes account IDs onto a fixed set of locks and always acquires them in
+ * ascending stripe order. Because every caller uses the same global order, two
+ * transfers in opposite directions between the same accounts cannot deadlock,
+ * while memory use stays independent of the number of accounts and transfers
+ * between disjoint accounts rarely share a lock.
+ */
+public class AccountLockManagerImpl implements AccountLockManager {
+
+    private static final String LOCK_TIMEOUT_ERR = "Timed out after %sms waiting for lock on accounts %s";
+    private static final int DEFAULT_STRIPES = 1024;
+
+    private final Lock[] stripes;
+    private final int mask;
+    private final LockStatistics statistics = new LockStatistics();
+    private final long timeoutNanos;
+
+    public AccountLockManagerImpl() {
+        this(0);
+    }
+
+    /**
+     * @param timeoutMillis Maximum time to wait for all locks of a single call, or 0 to wait indefinitely
+     */
+    public AccountLockManagerImpl(long timeoutMillis) {
+        this(timeoutMillis, DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param timeoutMillis Maximum time to wait for all locks of a single call, or 0 to wait indefinitely
+     * @param minStripes    Number of locks to hash accounts onto, rounded up to a power of two
+     */
+    public AccountLockManagerImpl(long timeoutMillis, int minStripes) {
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int size = minStripes > 1 ? Integer.highestOneBit(minStripes - 1) << 1 : 1;
+        stripes = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    public AccountLocks lock(int... accountIds) throws LockTimeoutException {
+        int[] indexes = stripeIndexes(accountIds);
+
+        Lock[] locks = new Lock[indexes.length];
+        int count = 0;
+        long start = System.nanoTime();
+        long deadline = start + timeoutNanos;
+        try {
+            for (int i = 0; i < indexes.length; i++) {
+                if (i > 0 && indexes[i] == indexes[i - 1]) {
+                    continue;
+                }
+                Lock lock = stripes[indexes[i]];
+                if (!acquire(lock, deadline)) {
+                    statistics.recordTimeout();
+                    throw new LockTimeoutException(LOCK_TIMEOUT_ERR,
+                            TimeUnit.NANOSECONDS.toMillis(timeoutNanos), Arrays.toString(accountIds));
+                }
+                locks[count++] = lock;
+            }
+        }
+        catch (LockTimeoutException | RuntimeException e) {
+            new AccountLocks(locks, count, 0).close();
+            throw e;
+        }
+
+        long waitNanos = System.nanoTime() - start;
+        statistics.recordAcquired(waitNanos);
+        return new AccountLocks(locks, count, waitNanos);
+    }
+
+    public AccountLocks tryLock(int... accountIds) {
+        int[] indexes = stripeIndexes(accountIds);
+
+        Lock[] locks = new Lock[indexes.length];
+        int count = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            if (i > 0 && indexes[i] == indexes[i - 1]) {
+                continue;
+            }
+            Lock lock = stripes[indexes[i]];
+            if (!lock.tryLock()) {
+                new AccountLocks(locks, count, 0).close();
+                return null;
+            }
+            locks[count++] = lock;
+        }
+        statistics.recordAcquired(0);
+        return new AccountLocks(locks, count, 0);
+    }
+
+    public LockStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return The stripes of the accounts in ascending order, so that equal stripes are adjacent
+     */
+    private int[] stripeIndexes(int[] accountIds) {
+        int[] indexes = new int[accountIds.length];
+        for (int i = 0; i < accountIds.length; i++) {
+            // Spread sequential IDs so neighbouring accounts land on different stripes
+            int h = accountIds[i] * 0x9E3779B9;
+            indexes[i] = (h ^ (h >>> 16)) & mask;
+        }
+        Arrays.sort(indexes);
+        return indexes;
+    }
+
+    private boolean acquire(Lock lock, long deadline) {
+        if (timeoutNanos <= 0) {
+            lock.lock();
+            return true;
+        }
+
+        try {
+            return lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
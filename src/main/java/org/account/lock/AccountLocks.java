@@ -0,0 +1,34 @@
+package org.account.lock;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Set of account locks held by the current thread, released in reverse
+ * acquisition order on close.
+ */
+public class AccountLocks implements AutoCloseable {
+
+    private final Lock[] locks;
+    private final int count;
+    private final long waitNanos;
+
+    AccountLocks(Lock[] locks, int count, long waitNanos) {
+        this.locks = locks;
+        this.count = count;
+        this.waitNanos = waitNanos;
+    }
+
+    /**
+     * @return Time spent waiting to acquire all the locks, in nanoseconds
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    @Override
+    public void close() {
+        for (int i = count - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+}
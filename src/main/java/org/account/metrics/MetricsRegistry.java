@@ -0,0 +1,161 @@
+package org.account.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Named metrics of the server, written out in the Prometheus text exposition format. Metrics are looked up
+ * once when the instrumented component is built, so the hot path only touches the metric itself.
+ * <p>
+ * Labels are passed as alternating names and values. Histograms are exposed as summaries with a fixed set
+ * of quantiles, all in seconds.
+ */
+public class MetricsRegistry {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String LABELS_ERR = "Labels must be name and value pairs";
+    private static final String TYPE_ERR = "Metric %s is already registered as a %s";
+
+    private enum Type { COUNTER, GAUGE, SUMMARY }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.SUMMARY)
+                .metrics.computeIfAbsent(formatLabels(labels), key -> new LatencyHistogram());
+    }
+
+    /**
+     * Exposes a histogram that is owned and recorded into by another component
+     */
+    public void register(String name, String help, LatencyHistogram histogram, String... labels) {
+        family(name, help, Type.SUMMARY).metrics.put(formatLabels(labels), histogram);
+    }
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER)
+                .metrics.computeIfAbsent(formatLabels(labels), key -> new Counter());
+    }
+
+    /**
+     * Exposes a count that is kept by another component
+     */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).metrics.put(formatLabels(labels), value);
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).metrics.put(formatLabels(labels), value);
+    }
+
+    public void writeTo(Writer writer) throws IOException {
+        StringBuilder line = new StringBuilder(128);
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            writer.write("# HELP " + name + " " + family.help + "\n");
+            writer.write("# TYPE " + name + " " + family.type.name().toLowerCase() + "\n");
+            for (Map.Entry<String, Object> metric : new ConcurrentSkipListMap<>(family.metrics).entrySet()) {
+                line.setLength(0);
+                appendSamples(line, name, metric.getKey(), metric.getValue());
+                writer.write(line.toString());
+            }
+        }
+    }
+
+    private void appendSamples(StringBuilder line, String name, String labels, Object metric) {
+        if (metric instanceof LatencyHistogram) {
+            LatencyHistogram histogram = (LatencyHistogram) metric;
+            for (double quantile : QUANTILES) {
+                String quantileLabel = "quantile=\"" + quantile + "\"";
+                String withQuantile = labels.isEmpty() ? "{" + quantileLabel + "}"
+                        : labels.substring(0, labels.length() - 1) + "," + quantileLabel + "}";
+                appendSample(line, name, withQuantile, seconds(histogram.getValueAtQuantile(quantile)));
+            }
+            appendSample(line, name + "_sum", labels, seconds(histogram.getSumNanos()));
+            appendSample(line, name + "_count", labels, histogram.getCount());
+        }
+        else if (metric instanceof Counter) {
+            appendSample(line, name, labels, ((Counter) metric).get());
+        }
+        else if (metric instanceof LongSupplier) {
+            appendSample(line, name, labels, ((LongSupplier) metric).getAsLong());
+        }
+        else {
+            appendSample(line, name, labels, ((DoubleSupplier) metric).getAsDouble());
+        }
+    }
+
+    private static void appendSample(StringBuilder line, String name, String labels, double value) {
+        line.append(name).append(labels).append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            line.append((long) value);
+        }
+        else {
+            line.append(value);
+        }
+        line.append('\n');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException(String.format(TYPE_ERR, name, family.type));
+        }
+        return family;
+    }
+
+    private static String formatLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException(LABELS_ERR);
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+
+        StringBuilder formatted = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                formatted.append(',');
+            }
+            formatted.append(labels[i]).append("=\"");
+            for (char c : labels[i + 1].toCharArray()) {
+                if (c == '\\' || c == '"') {
+                    formatted.append('\\').append(c);
+                }
+                else if (c == '\n') {
+                    formatted.append("\\n");
+                }
+                else {
+                    formatted.append(c);
+                }
+            }
+            formatted.append('"');
+        }
+        return formatted.append('}').toString();
+    }
+
+    private static class Family {
+
+        private final String help;
+        private final Type type;
+        private final Map<String, Object> metrics = new ConcurrentHashMap<>();
+
+        private Family(String help, Type type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
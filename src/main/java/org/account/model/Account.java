@@ -3,14 +3,23 @@ package org.account.model;
 import java.math.BigDecimal;
 import java.util.Currency;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 public class Account {
 
+    private static final AtomicLongFieldUpdater<Account> MINOR_UNITS =
+            AtomicLongFieldUpdater.newUpdater(Account.class, "balanceMinorUnits");
+    private static final AtomicLongFieldUpdater<Account> VERSION =
+            AtomicLongFieldUpdater.newUpdater(Account.class, "version");
+
     private int id;
     private String accountHolderName;
     private Currency currency;
-    private BigDecimal balance;
+    private volatile BigDecimal balance;
+    private volatile long balanceMinorUnits;
+    private volatile boolean minorUnitBalance;
     private Date createdDate;
+    private volatile long version;
 
     public Account() {}
 
@@ -39,11 +48,61 @@ public class Account {
     }
 
     public BigDecimal getBalance() {
+        if (minorUnitBalance) {
+            return MinorUnits.toBigDecimal(balanceMinorUnits, currency);
+        }
         return balance;
     }
 
     public void setBalance(BigDecimal balance) {
         this.balance = balance;
+        this.minorUnitBalance = false;
+    }
+
+    /**
+     * @return Whether the balance is held as a long of minor currency units rather than a BigDecimal
+     */
+    public boolean isMinorUnitBalance() {
+        return minorUnitBalance;
+    }
+
+    public long getBalanceMinorUnits() {
+        return balanceMinorUnits;
+    }
+
+    /**
+     * Switches the account to the minor unit balance representation. The currency must be set first.
+     */
+    public void setBalanceMinorUnits(long balanceMinorUnits) {
+        this.balanceMinorUnits = balanceMinorUnits;
+        this.balance = null;
+        this.minorUnitBalance = true;
+    }
+
+    /**
+     * Atomically withdraws the amount unless that would overdraw the account
+     * @return Whether the withdrawal was made
+     */
+    public boolean tryWithdrawMinorUnits(long amount) {
+        long current;
+        do {
+            current = balanceMinorUnits;
+            if (current < amount) {
+                return false;
+            }
+        } while (!MINOR_UNITS.compareAndSet(this, current, current - amount));
+        return true;
+    }
+
+    /**
+     * Atomically deposits the amount
+     * @throws ArithmeticException If the balance would overflow
+     */
+    public void depositMinorUnits(long amount) {
+        long current;
+        do {
+            current = balanceMinorUnits;
+        } while (!MINOR_UNITS.compareAndSet(this, current, Math.addExact(current, amount)));
     }
 
     public Date getCreatedDate() {
@@ -54,6 +113,20 @@ public class Account {
         this.createdDate = createdDate;
     }
 
+    /**
+     * @return Number of balance changes made to the account since it was stored
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Records a balance change, called by the store once the new balance is visible
+     */
+    public void incrementVersion() {
+        VERSION.incrementAndGet(this);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -61,20 +134,32 @@ public class Account {
 
         Account account = (Account) o;
 
-        if (id != account.id) return false;
-        if (accountHolderName != null ? !accountHolderName.equals(account.accountHolderName) : account.accountHolderName != null)
+        if (getId() != account.getId()) return false;
+        String name = getAccountHolderName();
+        String otherName = account.getAccountHolderName();
+        if (name != null ? !name.equals(otherName) : otherName != null)
             return false;
-        if (currency != null ? !currency.equals(account.currency) : account.currency != null) return false;
-        if (balance != null ? !balance.equals(account.balance) : account.balance != null) return false;
-        return !(createdDate != null ? !createdDate.equals(account.createdDate) : account.createdDate != null);
+        Currency currency = getCurrency();
+        Currency otherCurrency = account.getCurrency();
+        if (currency != null ? !currency.equals(otherCurrency) : otherCurrency != null) return false;
+        BigDecimal balance = getBalance();
+        BigDecimal otherBalance = account.getBalance();
+        if (balance != null ? !balance.equals(otherBalance) : otherBalance != null) return false;
+        Date createdDate = getCreatedDate();
+        Date otherCreatedDate = account.getCreatedDate();
+        return !(createdDate != null ? !createdDate.equals(otherCreatedDate) : otherCreatedDate != null);
     }
 
     @Override
     public int hashCode() {
-        int result = id;
-        result = 31 * result + (accountHolderName != null ? accountHolderName.hashCode() : 0);
+        int result = getId();
+        String name = getAccountHolderName();
+        result = 31 * result + (name != null ? name.hashCode() : 0);
+        Currency currency = getCurrency();
         result = 31 * result + (currency != null ? currency.hashCode() : 0);
+        BigDecimal balance = getBalance();
         result = 31 * result + (balance != null ? balance.hashCode() : 0);
+        Date createdDate = getCreatedDate();
         result = 31 * result + (createdDate != null ? createdDate.hashCode() : 0);
         return result;
     }
@@ -82,11 +167,11 @@ public class Account {
     @Override
     public String toString() {
         return "Account{" +
-                "id=" + id +
-                ", accountHolderName='" + accountHolderName + '\'' +
-                ", currency=" + currency +
-                ", balance=" + balance +
-                ", createdDate=" + createdDate +
+                "id=" + getId() +
+                ", accountHolderName='" + getAccountHolderName() + '\'' +
+                ", currency=" + getCurrency() +
+                ", balance=" + getBalance() +
+                ", createdDate=" + getCreatedDate() +
                 '}';
     }
 }
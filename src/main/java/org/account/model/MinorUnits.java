@@ -0,0 +1,31 @@
+package org.account.model;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Conversions between decimal amounts and whole minor currency units (e.g. pence),
+ * scaled by the currency's default number of fraction digits.
+ */
+public final class MinorUnits {
+
+    private MinorUnits() {}
+
+    /**
+     * @return Whether amounts in the given currency can be held as minor units
+     */
+    public static boolean isSupported(Currency currency) {
+        return currency.getDefaultFractionDigits() >= 0;
+    }
+
+    /**
+     * @throws ArithmeticException If the amount has more precision than the currency allows or overflows a long
+     */
+    public static long toMinorUnits(BigDecimal amount, Currency currency) {
+        return amount.movePointRight(currency.getDefaultFractionDigits()).longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long minorUnits, Currency currency) {
+        return BigDecimal.valueOf(minorUnits, currency.getDefaultFractionDigits());
+    }
+}
@@ -0,0 +1,62 @@
+package org.account.model.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class AccountPageDTO implements Serializable {
+
+    private List<AccountDTO> accounts;
+    private Integer nextAfter;
+
+    public AccountPageDTO() {}
+
+    public AccountPageDTO(List<AccountDTO> accounts, Integer nextAfter) {
+        this.accounts = accounts;
+        this.nextAfter = nextAfter;
+    }
+
+    public List<AccountDTO> getAccounts() {
+        return accounts;
+    }
+
+    public void setAccounts(List<AccountDTO> accounts) {
+        this.accounts = accounts;
+    }
+
+    /**
+     * @return Cursor to pass as the after parameter to get the next page, or null if this is the last page
+     */
+    public Integer getNextAfter() {
+        return nextAfter;
+    }
+
+    public void setNextAfter(Integer nextAfter) {
+        this.nextAfter = nextAfter;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        AccountPageDTO that = (AccountPageDTO) o;
+
+        if (accounts != null ? !accounts.equals(that.accounts) : that.accounts != null) return false;
+        return !(nextAfter != null ? !nextAfter.equals(that.nextAfter) : that.nextAfter != null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = accounts != null ? accounts.hashCode() : 0;
+        result = 31 * result + (nextAfter != null ? nextAfter.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountPageDTO{" +
+                "accounts=" + accounts +
+                ", nextAfter=" + nextAfter +
+                '}';
+    }
+}
@@ -0,0 +1,78 @@
+package org.account.model.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class BatchTransferResultDTO implements Serializable {
+
+    private boolean committed;
+    private List<TransferResultDTO> results;
+    private long elapsedMicros;
+    private long lockWaitMicros;
+
+    public BatchTransferResultDTO() {}
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    public void setCommitted(boolean committed) {
+        this.committed = committed;
+    }
+
+    public List<TransferResultDTO> getResults() {
+        return results;
+    }
+
+    public void setResults(List<TransferResultDTO> results) {
+        this.results = results;
+    }
+
+    public long getElapsedMicros() {
+        return elapsedMicros;
+    }
+
+    public void setElapsedMicros(long elapsedMicros) {
+        this.elapsedMicros = elapsedMicros;
+    }
+
+    public long getLockWaitMicros() {
+        return lockWaitMicros;
+    }
+
+    public void setLockWaitMicros(long lockWaitMicros) {
+        this.lockWaitMicros = lockWaitMicros;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        BatchTransferResultDTO that = (BatchTransferResultDTO) o;
+
+        if (committed != that.committed) return false;
+        if (elapsedMicros != that.elapsedMicros) return false;
+        if (lockWaitMicros != that.lockWaitMicros) return false;
+        return !(results != null ? !results.equals(that.results) : that.results != null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (committed ? 1 : 0);
+        result = 31 * result + (results != null ? results.hashCode() : 0);
+        result = 31 * result + (int) (elapsedMicros ^ (elapsedMicros >>> 32));
+        result = 31 * result + (int) (lockWaitMicros ^ (lockWaitMicros >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchTransferResultDTO{" +
+                "committed=" + committed +
+                ", results=" + results +
+                ", elapsedMicros=" + elapsedMicros +
+                ", lockWaitMicros=" + lockWaitMicros +
+                '}';
+    }
+}
@@ -0,0 +1,151 @@
+package org.account.model.dto;
+
+import java.io.Serializable;
+
+public class ThreadPoolStatsDTO implements Serializable {
+
+    private String name;
+    private int minThreads;
+    private int maxThreads;
+    private int threads;
+    private int busyThreads;
+    private int queuedJobs;
+    private int queueCapacity;
+    private double utilisation;
+    private boolean lowOnThreads;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    public void setMinThreads(int minThreads) {
+        this.minThreads = minThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * @return Threads currently started, busy or idle
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getBusyThreads() {
+        return busyThreads;
+    }
+
+    public void setBusyThreads(int busyThreads) {
+        this.busyThreads = busyThreads;
+    }
+
+    /**
+     * @return Jobs waiting for a free thread
+     */
+    public int getQueuedJobs() {
+        return queuedJobs;
+    }
+
+    public void setQueuedJobs(int queuedJobs) {
+        this.queuedJobs = queuedJobs;
+    }
+
+    /**
+     * @return Maximum number of waiting jobs, -1 if unbounded
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @return Fraction of the maximum number of threads that are busy
+     */
+    public double getUtilisation() {
+        return utilisation;
+    }
+
+    public void setUtilisation(double utilisation) {
+        this.utilisation = utilisation;
+    }
+
+    /**
+     * @return Whether every thread is, or is about to be, busy so new work has to queue
+     */
+    public boolean isLowOnThreads() {
+        return lowOnThreads;
+    }
+
+    public void setLowOnThreads(boolean lowOnThreads) {
+        this.lowOnThreads = lowOnThreads;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ThreadPoolStatsDTO that = (ThreadPoolStatsDTO) o;
+
+        if (minThreads != that.minThreads) return false;
+        if (maxThreads != that.maxThreads) return false;
+        if (threads != that.threads) return false;
+        if (busyThreads != that.busyThreads) return false;
+        if (queuedJobs != that.queuedJobs) return false;
+        if (queueCapacity != that.queueCapacity) return false;
+        if (Double.compare(that.utilisation, utilisation) != 0) return false;
+        if (lowOnThreads != that.lowOnThreads) return false;
+        return !(name != null ? !name.equals(that.name) : that.name != null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = name != null ? name.hashCode() : 0;
+        result = 31 * result + minThreads;
+        result = 31 * result + maxThreads;
+        result = 31 * result + threads;
+        result = 31 * result + busyThreads;
+        result = 31 * result + queuedJobs;
+        result = 31 * result + queueCapacity;
+        long temp = Double.doubleToLongBits(utilisation);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        result = 31 * result + (lowOnThreads ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ThreadPoolStatsDTO{" +
+                "name='" + name + '\'' +
+                ", minThreads=" + minThreads +
+                ", maxThreads=" + maxThreads +
+                ", threads=" + threads +
+                ", busyThreads=" + busyThreads +
+                ", queuedJobs=" + queuedJobs +
+                ", queueCapacity=" + queueCapacity +
+                ", utilisation=" + utilisation +
+                ", lowOnThreads=" + lowOnThreads +
+                '}';
+    }
+}
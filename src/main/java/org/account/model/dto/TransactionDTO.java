@@ -0,0 +1,99 @@
+package org.account.model.dto;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+public class TransactionDTO implements Serializable {
+
+    private long timestamp;
+    private int counterpartyAccountId;
+    private BigDecimal amount;
+    private BigDecimal balance;
+    private String currency;
+
+    public TransactionDTO() {}
+
+    /**
+     * @return Milliseconds since the epoch at which the balance changed
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public int getCounterpartyAccountId() {
+        return counterpartyAccountId;
+    }
+
+    public void setCounterpartyAccountId(int counterpartyAccountId) {
+        this.counterpartyAccountId = counterpartyAccountId;
+    }
+
+    /**
+     * @return Change in balance, negative for money leaving the account
+     */
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    /**
+     * @return Balance of the account straight after the change
+     */
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        TransactionDTO that = (TransactionDTO) o;
+
+        if (timestamp != that.timestamp) return false;
+        if (counterpartyAccountId != that.counterpartyAccountId) return false;
+        if (amount != null ? !amount.equals(that.amount) : that.amount != null) return false;
+        if (balance != null ? !balance.equals(that.balance) : that.balance != null) return false;
+        return !(currency != null ? !currency.equals(that.currency) : that.currency != null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (timestamp ^ (timestamp >>> 32));
+        result = 31 * result + counterpartyAccountId;
+        result = 31 * result + (amount != null ? amount.hashCode() : 0);
+        result = 31 * result + (balance != null ? balance.hashCode() : 0);
+        result = 31 * result + (currency != null ? currency.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionDTO{" +
+                "timestamp=" + timestamp +
+                ", counterpartyAccountId=" + counterpartyAccountId +
+                ", amount=" + amount +
+                ", balance=" + balance +
+                ", currency='" + currency + '\'' +
+                '}';
+    }
+}
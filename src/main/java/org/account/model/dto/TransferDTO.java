@@ -9,6 +9,8 @@ public class TransferDTO implements Serializable {
     private int destinationAccountId;
     private BigDecimal transferAmount;
     private String currency;
+    private String idempotencyKey;
+    private Long expectedVersion;
 
     public int getSourceAccountId() {
         return sourceAccountId;
@@ -42,6 +44,28 @@ public class TransferDTO implements Serializable {
         this.currency = currency;
     }
 
+    /**
+     * Optional client supplied key, retries carrying the same key are applied at most once
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * Optional version the source account must still be at, the transfer is rejected if it has changed since
+     */
+    public Long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public void setExpectedVersion(Long expectedVersion) {
+        this.expectedVersion = expectedVersion;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -52,7 +76,9 @@ public class TransferDTO implements Serializable {
         if (sourceAccountId != that.sourceAccountId) return false;
         if (destinationAccountId != that.destinationAccountId) return false;
         if (transferAmount != null ? !transferAmount.equals(that.transferAmount) : that.transferAmount != null) return false;
-        return !(currency != null ? !currency.equals(that.currency) : that.currency != null);
+        if (currency != null ? !currency.equals(that.currency) : that.currency != null) return false;
+        if (idempotencyKey != null ? !idempotencyKey.equals(that.idempotencyKey) : that.idempotencyKey != null) return false;
+        return !(expectedVersion != null ? !expectedVersion.equals(that.expectedVersion) : that.expectedVersion != null);
     }
 
     @Override
@@ -61,6 +87,8 @@ public class TransferDTO implements Serializable {
         result = 31 * result + destinationAccountId;
         result = 31 * result + (transferAmount != null ? transferAmount.hashCode() : 0);
         result = 31 * result + (currency != null ? currency.hashCode() : 0);
+        result = 31 * result + (idempotencyKey != null ? idempotencyKey.hashCode() : 0);
+        result = 31 * result + (expectedVersion != null ? expectedVersion.hashCode() : 0);
         return result;
     }
 
@@ -71,6 +99,8 @@ public class TransferDTO implements Serializable {
                 ", destinationAccountId=" + destinationAccountId +
                 ", transferAmount=" + transferAmount +
                 ", currency='" + currency + '\'' +
+                ", idempotencyKey='" + idempotencyKey + '\'' +
+                ", expectedVersion=" + expectedVersion +
                 '}';
     }
 }
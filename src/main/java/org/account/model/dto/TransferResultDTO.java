@@ -0,0 +1,80 @@
+package org.account.model.dto;
+
+import java.io.Serializable;
+
+public class TransferResultDTO implements Serializable {
+
+    public enum Status {
+        /** Transfer was applied */
+        OK,
+        /** Transfer was invalid or could not be applied */
+        FAILED,
+        /** Transfer was valid but not applied, or rolled back, because another transfer in the batch failed */
+        ABORTED
+    }
+
+    private int index;
+    private Status status;
+    private String errorMessage;
+
+    public TransferResultDTO() {}
+
+    public TransferResultDTO(int index, Status status, String errorMessage) {
+        this.index = index;
+        this.status = status;
+        this.errorMessage = errorMessage;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        TransferResultDTO that = (TransferResultDTO) o;
+
+        if (index != that.index) return false;
+        if (status != that.status) return false;
+        return !(errorMessage != null ? !errorMessage.equals(that.errorMessage) : that.errorMessage != null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = index;
+        result = 31 * result + (status != null ? status.hashCode() : 0);
+        result = 31 * result + (errorMessage != null ? errorMessage.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferResultDTO{" +
+                "index=" + index +
+                ", status=" + status +
+                ", errorMessage='" + errorMessage + '\'' +
+                '}';
+    }
+}
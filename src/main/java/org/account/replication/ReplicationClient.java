@@ -0,0 +1,193 @@
+package org.account.replication;
+
+import org.account.cluster.ClusterClient;
+import org.account.journal.JournalCodec;
+import org.account.journal.JournalRecord;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Follows a primary's journal from a replica, handing every record to the applier in journal order on
+ * a thread of its own. The connection is reopened whenever it drops, resuming after the last record
+ * applied, unless the primary no longer has that record or a record cannot be applied; the replica then
+ * stops following and serves what it has until it is restarted.
+ * <p>
+ * The replica counts itself caught up whenever it has applied every record the primary had journalled
+ * when it last heard from it, and its staleness is the time since then on the replica's own clock.
+ */
+public class ReplicationClient implements AutoCloseable {
+
+    private static final long RECONNECT_MILLIS = 500;
+    private static final String DISCONNECTED_ERR = "ERROR: Lost replication stream from %s: %s, reconnecting";
+    private static final String RESYNC_ERR = "ERROR: Primary %s no longer has journal record %s, this replica must be restarted";
+    private static final String APPLY_ERR = "ERROR: Failed to apply journal record %s from %s: %s, this replica must be restarted";
+    private static final String MESSAGE_ERR = "Unknown replication message %s";
+
+    private final String primary;
+    private final InetSocketAddress primaryAddress;
+    private final Consumer<JournalRecord> applier;
+    private final int timeoutMillis;
+    private final Thread thread;
+    private volatile Socket socket;
+    private volatile boolean closed;
+    private volatile long appliedSequence;
+    private volatile long position;
+    private volatile long primarySequence;
+    private volatile long caughtUpNanos;
+    private volatile boolean synced;
+
+    /**
+     * @param primary Replication address of the primary, as host:port
+     * @param applier Applies each record to this replica's store
+     * @param timeoutMillis How long to wait to connect and to hear from the primary before reconnecting
+     */
+    public ReplicationClient(String primary, Consumer<JournalRecord> applier, int timeoutMillis) {
+        this.primary = primary;
+        this.primaryAddress = ClusterClient.parseAddress(primary);
+        this.applier = applier;
+        this.timeoutMillis = timeoutMillis;
+        this.caughtUpNanos = System.nanoTime();
+        this.thread = new Thread(this::follow, "replication-client");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * @return Whether this replica has caught up with the primary at least once
+     */
+    public boolean isSynced() {
+        return synced;
+    }
+
+    /**
+     * @return Time since this replica last held every change the primary had journalled, or since it
+     * started if it never has
+     */
+    public long getStalenessMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - caughtUpNanos);
+    }
+
+    /**
+     * @return Records the primary had journalled when last heard from that are not applied here yet
+     */
+    public long getLagRecords() {
+        return Math.max(0, primarySequence - appliedSequence);
+    }
+
+    /**
+     * @return Sequence number of the last record applied
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Socket current = socket;
+        if (current != null) {
+            closeQuietly(current);
+        }
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void follow() {
+        while (!closed) {
+            try (Socket current = new Socket()) {
+                socket = current;
+                current.connect(primaryAddress, timeoutMillis);
+                current.setSoTimeout(timeoutMillis);
+                current.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(current.getOutputStream()));
+                out.writeLong(appliedSequence);
+                out.writeLong(position);
+                out.flush();
+                if (!receive(new DataInputStream(new BufferedInputStream(current.getInputStream())))) {
+                    System.out.println(String.format(RESYNC_ERR, primary, appliedSequence + 1));
+                    return;
+                }
+            }
+            catch (IOException e) {
+                if (!closed) {
+                    System.out.println(String.format(DISCONNECTED_ERR, primary, e.getMessage()));
+                }
+            }
+            catch (RuntimeException e) {
+                // The store may hold part of the record, so reapplying it after a reconnect could be wrong too
+                System.out.println(String.format(APPLY_ERR, appliedSequence + 1, primary, e.getMessage()));
+                return;
+            }
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Applies the stream until it ends
+     * @return False if the primary cannot continue from this replica's position
+     */
+    private boolean receive(DataInputStream in) throws IOException {
+        while (!closed) {
+            byte message = in.readByte();
+            switch (message) {
+                case ReplicationProtocol.RECORDS:
+                    applyRecords(in);
+                    break;
+                case ReplicationProtocol.HEARTBEAT:
+                    long sequence = in.readLong();
+                    primarySequence = sequence;
+                    if (appliedSequence >= sequence) {
+                        caughtUpNanos = System.nanoTime();
+                        synced = true;
+                    }
+                    break;
+                case ReplicationProtocol.RESYNC:
+                    return false;
+                default:
+                    throw new IOException(String.format(MESSAGE_ERR, message));
+            }
+        }
+        return true;
+    }
+
+    private void applyRecords(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        byte[] frames = new byte[length];
+        in.readFully(frames);
+        // The position moves past each record as it is applied, so a reconnect never applies one twice
+        long start = position;
+        DataInputStream records = new DataInputStream(new ByteArrayInputStream(frames));
+        while (records.available() > 0) {
+            JournalRecord record = JournalCodec.readFrame(records);
+            applier.accept(record);
+            appliedSequence = record.getSequence();
+            position = start + length - records.available();
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        }
+        catch (IOException e) {
+            // Nothing more can be done with it either way
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.account.replication;
+
+/**
+ * Messages of the replication stream. A replica opens it by sending the sequence number of the last
+ * journal record it has applied and the journal offset just past it, both 0 if it has none. The
+ * primary then only ever writes, starting from that offset:
+ * <ul>
+ * <li>RECORDS: [int length][whole journal frames, exactly as in the primary's journal file]</li>
+ * <li>HEARTBEAT: [long sequence] - every record up to this sequence number has been sent</li>
+ * <li>RESYNC: the replica's offset is not a record boundary of this journal, so the replica cannot
+ * continue and the primary closes the stream</li>
+ * </ul>
+ */
+final class ReplicationProtocol {
+
+    static final byte RECORDS = 1;
+    static final byte HEARTBEAT = 2;
+    static final byte RESYNC = 3;
+
+    static final long HEARTBEAT_MILLIS = 100;
+
+    private ReplicationProtocol() {}
+}
@@ -0,0 +1,221 @@
+package org.account.replication;
+
+import org.account.journal.Journal;
+import org.account.journal.JournalCodec;
+import org.account.journal.JournalReader;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ships the primary's journal to its replicas. Each replica is served by a thread of its own that
+ * reads the journal file from where the replica left off and sends every frame the journal has
+ * finished writing, which under the GROUP and EVERY_RECORD policies means every frame already on
+ * disk. Frames are sent exactly as written, so the primary never decodes or encodes a record, and a
+ * replica catching up reads the file in large chunks.
+ * <p>
+ * The journal file is never truncated, so a new replica is sent the whole of it and replays every
+ * change since the journal was created, just as a restart without a snapshot does.
+ */
+public class ReplicationServer implements AutoCloseable {
+
+    private static final int CHUNK_SIZE = 256 << 10;
+    private static final long POLL_MILLIS = 1;
+    private static final String ACCEPT_ERR = "ERROR: Replication server stopped accepting replicas: %s";
+    private static final String RESYNC_MSG = "Replica %s asked for journal record %s at offset %s, which this journal does not have";
+
+    private final Path journalPath;
+    private final Journal journal;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final Set<Socket> replicas = ConcurrentHashMap.newKeySet();
+    private final LongAdder shippedBytes = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * @param port Port to accept replicas on, 0 for any free port
+     * @param journalPath File the journal writes to
+     * @param journal Journal writing that file, telling how much of it is complete
+     */
+    public ReplicationServer(int port, Path journalPath, Journal journal) throws IOException {
+        this.journalPath = journalPath;
+        this.journal = journal;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(new InetSocketAddress(port));
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "replication-sender-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executor.execute(this::accept);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Replicas currently connected
+     */
+    public int getReplicas() {
+        return replicas.size();
+    }
+
+    /**
+     * @return Journal bytes sent to replicas so far
+     */
+    public long getShippedBytes() {
+        return shippedBytes.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        }
+        catch (IOException e) {
+            // Already closed
+        }
+        for (Socket replica : replicas) {
+            closeQuietly(replica);
+        }
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                replicas.add(socket);
+                executor.execute(() -> serve(socket));
+            }
+            catch (IOException e) {
+                if (!closed) {
+                    System.out.println(String.format(ACCEPT_ERR, e.getMessage()));
+                }
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            long appliedSequence = in.readLong();
+            long position = in.readLong();
+            if (position > journal.getPosition() || !JournalReader.isRecordBoundary(channel, position, appliedSequence + 1)) {
+                System.out.println(String.format(RESYNC_MSG, socket.getRemoteSocketAddress(), appliedSequence + 1, position));
+                out.writeByte(ReplicationProtocol.RESYNC);
+                out.flush();
+                return;
+            }
+            stream(channel, position, out);
+        }
+        catch (EOFException | SocketException e) {
+            // The replica went away, or this server is closing
+        }
+        catch (IOException e) {
+            // Nothing more can be sent on this connection, the replica will reconnect
+        }
+        finally {
+            replicas.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private void stream(FileChannel channel, long position, DataOutputStream out) throws IOException {
+        long heartbeatNanos = 0;
+        while (!closed) {
+            // Read in this order, every record up to the sequence number ends at or before the position
+            long sequence = journal.getLastSequence();
+            long end = journal.getPosition();
+            boolean shipped = position < end;
+            while (position < end) {
+                position = sendRecords(channel, position, end, out);
+            }
+            long now = System.nanoTime();
+            if (shipped || now - heartbeatNanos >= TimeUnit.MILLISECONDS.toNanos(ReplicationProtocol.HEARTBEAT_MILLIS)) {
+                out.writeByte(ReplicationProtocol.HEARTBEAT);
+                out.writeLong(sequence);
+                out.flush();
+                heartbeatNanos = now;
+            }
+            else {
+                try {
+                    Thread.sleep(POLL_MILLIS);
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends as many whole frames starting at the position as fit in a chunk, or the one frame there if
+     * it is larger than a chunk
+     * @return Position just past the last frame sent
+     */
+    private long sendRecords(FileChannel channel, long position, long end, DataOutputStream out) throws IOException {
+        ByteBuffer buffer = read(channel, position, (int) Math.min(CHUNK_SIZE, end - position));
+        int length = 0;
+        while (length + JournalCodec.FRAME_HEADER_SIZE <= buffer.limit()) {
+            int frame = JournalCodec.FRAME_HEADER_SIZE + buffer.getInt(length);
+            if (length + frame > buffer.limit()) {
+                break;
+            }
+            length += frame;
+        }
+        if (length == 0) {
+            length = JournalCodec.FRAME_HEADER_SIZE + buffer.getInt(0);
+            buffer = read(channel, position, length);
+        }
+        out.writeByte(ReplicationProtocol.RECORDS);
+        out.writeInt(length);
+        out.write(buffer.array(), 0, length);
+        shippedBytes.add(length);
+        return position + length;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        }
+        catch (IOException e) {
+            // Nothing more can be done with it either way
+        }
+    }
+}
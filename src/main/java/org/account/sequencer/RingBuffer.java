@@ -0,0 +1,153 @@
+package org.account.sequencer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Bounded multi-producer, single-consumer ring of pre-allocated entries.
+ * <p>
+ * Producers claim a sequence number, fill in the entry for it and publish it. The consumer
+ * waits for a run of published entries and processes them as one batch, then releases them
+ * so their slots can be reused. Entries are never allocated after construction, so publishing
+ * creates no garbage. A consumer with nothing to do parks rather than spins, so the ring can
+ * share a machine with the threads feeding it.
+ */
+public class RingBuffer<E> {
+
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = 100_000;
+    private static final String HALTED_ERR = "Ring buffer is halted";
+
+    private final Object[] entries;
+    private final int mask;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private volatile long released = -1;
+    private volatile Thread waitingConsumer;
+    private volatile boolean halted;
+
+    /**
+     * @param minSize Minimum number of entries, rounded up to a power of two
+     * @param factory Creates the entries up front
+     */
+    public RingBuffer(int minSize, Supplier<E> factory) {
+        int size = Integer.highestOneBit(Math.max(1, minSize - 1)) << 1;
+        entries = new Object[size];
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            entries[i] = factory.get();
+            published.set(i, -1);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Claims the next entry, waiting while the ring is full
+     * @return Sequence number of the claimed entry, to be passed to {@link #get(long)} and {@link #publish(long)}
+     * @throws IllegalStateException If the ring is halted while waiting, since no slot will be released again
+     */
+    public long claim() {
+        long sequence = claimed.incrementAndGet();
+        while (sequence - entries.length > released) {
+            if (halted) {
+                throw new IllegalStateException(HALTED_ERR);
+            }
+            LockSupport.parkNanos(1);
+        }
+        return sequence;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) entries[(int) sequence & mask];
+    }
+
+    /**
+     * Makes a claimed entry visible to the consumer
+     */
+    public void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Waits until the entry with the given sequence number is published
+     * @return Highest sequence number such that it and every entry before it are published,
+     * or a lower number if the ring was halted while waiting
+     * @throws InterruptedException If the consumer thread is interrupted while waiting
+     */
+    public long waitFor(long sequence) throws InterruptedException {
+        int spins = 0;
+        long available;
+        while ((available = getHighestPublished(sequence)) < sequence && !halted) {
+            if (spins++ < SPIN_TRIES) {
+                Thread.yield();
+                continue;
+            }
+            // Announce the wait before checking again, so a producer publishing now sees it and unparks us
+            waitingConsumer = Thread.currentThread();
+            if (getHighestPublished(sequence) < sequence && !halted) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            waitingConsumer = null;
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Hands every entry up to and including the sequence number back to producers
+     */
+    public void release(long sequence) {
+        released = sequence;
+    }
+
+    /**
+     * Wakes the consumer and makes it stop waiting for entries
+     */
+    public void halt() {
+        halted = true;
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * @return Highest sequence number claimed so far, published or not
+     */
+    public long getClaimed() {
+        return claimed.get();
+    }
+
+    /**
+     * @return Whether the entry with the given sequence number has been published and not yet reused
+     */
+    public boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == sequence;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * @return Highest sequence number such that it and every entry from the given one on are published,
+     * or one less than the given number if that entry is not published yet
+     */
+    public long getHighestPublished(long from) {
+        long limit = claimed.get();
+        long sequence = from;
+        while (sequence <= limit && published.get((int) sequence & mask) == sequence) {
+            sequence++;
+        }
+        return sequence - 1;
+    }
+}
@@ -0,0 +1,553 @@
+package org.account.service;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.PartitionedAccountDAO;
+import org.account.exception.AccountNotFoundException;
+import org.account.exception.InsufficientFundsException;
+import org.account.exception.VersionConflictException;
+import org.account.journal.Journal;
+import org.account.journal.JournalRecord;
+import org.account.sequencer.MpscArrayQueue;
+import org.account.snapshot.SnapshotManager;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One partition of {@link PartitionedAccountServiceImpl}: a thread that alone decides and applies
+ * transfers out of the partition's accounts, and deposits into them, so they are never locked.
+ * Balances in a {@link PartitionedAccountDAO} are changed by compare-and-set, which
+ * keeps the credits a paused partition still applies safe alongside the batch that paused it.
+ * <p>
+ * Request threads queue transfers, which the thread drains in batches: it decides each against
+ * running balances, journals the accepted ones with one append and applies them. A transfer to an
+ * account of another partition is a reservation followed by a commit: the source partition
+ * withdraws the money and passes the transfer to the destination partition, which deposits it
+ * and completes the transfer. Partitions pass transfers through bounded queues and never wait on
+ * each other: a transfer that does not fit is held back and offered again.
+ * <p>
+ * The snapshot update a transfer is journalled under is only ended once its credit is applied,
+ * so no snapshot sees money in flight between partitions.
+ */
+class AccountPartition {
+
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final long IDLE_PARK_NANOS = 100_000;
+    static final String PARTITION_STOPPED_ERR = "Account partition is not running";
+    private static final String PARTITION_ERR = "ERROR: Account partition %s failed to process a batch: %s";
+    private static final String WITHDRAW_ERR = "ERROR: Withdrawal of %s from account %s failed: %s";
+    private static final String CREDIT_ERR = "ERROR: Deposit of %s to account %s failed, refunding account %s: %s";
+    private static final String REFUND_ERR = "ERROR: Refund of %s to account %s failed: %s";
+
+    private final int index;
+    private final AccountPartition[] partitions;
+    private final AccountDAO accountDAO;
+    private final Journal journal;
+    private final SnapshotManager snapshotManager;
+    private final AccountServiceImpl delegate;
+    private final AtomicInteger inFlight;
+    private final MpscArrayQueue<PartitionCommand> requests;
+    private final MpscArrayQueue<PartitionCommand> inbox;
+    private final Thread thread;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final LongAdder localTransfers = new LongAdder();
+    private final LongAdder crossTransfers = new LongAdder();
+    private volatile boolean accepting = true;
+    private volatile boolean closed;
+    private volatile boolean idle;
+
+    // Only touched by the partition thread
+    private final List<PartitionCommand> batch = new ArrayList<>();
+    private final Deque<PartitionCommand> outbox = new ArrayDeque<>();
+    private final Map<Integer, BigDecimal> runningBalances = new HashMap<>();
+    private final Map<Integer, Long> pendingChanges = new HashMap<>();
+    private final List<JournalRecord> records = new ArrayList<>();
+    private Pause pause;
+    private Pause pendingPause;
+
+    /**
+     * @param partitions Every partition of the service, indexed by partition, this one included
+     * @param inFlight Transfers withdrawn by one partition and not yet deposited by another, across all partitions
+     */
+    AccountPartition(int index, AccountPartition[] partitions, AccountDAO accountDAO, Journal journal,
+                     SnapshotManager snapshotManager, AccountServiceImpl delegate, AtomicInteger inFlight,
+                     int queueSize) {
+        this.index = index;
+        this.partitions = partitions;
+        this.accountDAO = accountDAO;
+        this.journal = journal;
+        this.snapshotManager = snapshotManager;
+        this.delegate = delegate;
+        this.inFlight = inFlight;
+        this.requests = new MpscArrayQueue<>(queueSize);
+        this.inbox = new MpscArrayQueue<>(queueSize);
+        this.thread = new Thread(this::run, "account-partition-" + index);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Queues a transfer or pause, waiting while the queue is full
+     * @throws IllegalStateException If the partition has stopped taking transfers
+     */
+    void submit(PartitionCommand command) {
+        checkAccepting();
+        while (!requests.offer(command)) {
+            checkAccepting();
+            LockSupport.parkNanos(1);
+        }
+        wake();
+    }
+
+    void checkAccepting() {
+        if (!accepting) {
+            throw new IllegalStateException(PARTITION_STOPPED_ERR);
+        }
+    }
+
+    /**
+     * Stops taking transfers, failing the ones still queued. Credits and refunds are still applied.
+     */
+    void stopAccepting() {
+        accepting = false;
+        wake();
+    }
+
+    /**
+     * Waits until the partition has failed its queued transfers and will take no more
+     */
+    void awaitStopped() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Lets the thread exit once no transfer is in flight between partitions
+     */
+    void close() throws InterruptedException {
+        closed = true;
+        wake();
+        thread.join();
+    }
+
+    void wake() {
+        if (idle) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    long getLocalTransfers() {
+        return localTransfers.sum();
+    }
+
+    long getCrossTransfers() {
+        return crossTransfers.sum();
+    }
+
+    int getQueuedCommands() {
+        return requests.size() + inbox.size();
+    }
+
+    /**
+     * Called by other partition threads, so it must never wait
+     * @return False if the inbox is full and the command must be offered again later
+     */
+    private boolean offerMessage(PartitionCommand command) {
+        if (!inbox.offer(command)) {
+            return false;
+        }
+        wake();
+        return true;
+    }
+
+    private void run() {
+        boolean failedQueued = false;
+        while (true) {
+            boolean worked = flushOutbox();
+            worked |= drainInbox();
+            if (pause != null && pause.resumed) {
+                pause = null;
+            }
+            if (accepting) {
+                if (pause == null) {
+                    worked |= processRequests();
+                }
+            }
+            else {
+                if (!failedQueued) {
+                    failQueued();
+                    failedQueued = true;
+                    stopped.countDown();
+                }
+                else if (requests.size() > 0) {
+                    failQueued();
+                }
+                if (closed && inFlight.get() == 0 && outbox.isEmpty()) {
+                    return;
+                }
+            }
+            if (!worked) {
+                idle();
+            }
+        }
+    }
+
+    private void idle() {
+        idle = true;
+        if (inbox.size() == 0 && (pause != null || !accepting || batch.isEmpty() && requests.size() == 0)) {
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        else {
+            // Waiting for a snapshot to be cut or for room in another partition's inbox
+            Thread.yield();
+        }
+        idle = false;
+    }
+
+    private boolean processRequests() {
+        if (batch.isEmpty()) {
+            PartitionCommand command;
+            while (pendingPause == null && batch.size() < MAX_BATCH_SIZE && (command = requests.poll()) != null) {
+                if (command.type == PartitionCommand.Type.PAUSE) {
+                    pendingPause = command.pause;
+                }
+                else {
+                    batch.add(command);
+                }
+            }
+            if (batch.isEmpty()) {
+                return takePause();
+            }
+        }
+
+        long stamp = snapshotManager.tryBeginUpdate();
+        if (stamp == 0) {
+            return false;
+        }
+        SharedUpdate update = new SharedUpdate(snapshotManager, stamp);
+        try {
+            process(update);
+        }
+        catch (RuntimeException e) {
+            System.out.println(String.format(PARTITION_ERR, index, e.getMessage()));
+            for (PartitionCommand command : batch) {
+                if (!command.result.isDone() && command.type == PartitionCommand.Type.TRANSFER) {
+                    command.result.completeExceptionally(e);
+                }
+            }
+        }
+        finally {
+            update.release();
+        }
+        batch.clear();
+        takePause();
+        return true;
+    }
+
+    private boolean takePause() {
+        if (pendingPause == null) {
+            return false;
+        }
+        pause = pendingPause;
+        pendingPause = null;
+        pause.paused.countDown();
+        return true;
+    }
+
+    /**
+     * Decides, journals and applies the batch of transfers
+     */
+    private void process(SharedUpdate update) {
+        runningBalances.clear();
+        pendingChanges.clear();
+        records.clear();
+        boolean anyAccepted = false;
+        for (PartitionCommand command : batch) {
+            decide(command);
+            if (command.rejection == null) {
+                anyAccepted = true;
+                if (journal.isEnabled()) {
+                    records.add(JournalRecord.transfer(command.sourceAccountId, command.destinationAccountId,
+                            command.amount, command.creditAmount));
+                }
+            }
+        }
+
+        if (anyAccepted) {
+            try {
+                for (PartitionCommand command : batch) {
+                    if (command.rejection == null) {
+                        snapshotManager.beforeUpdate(command.sourceAccountId);
+                        snapshotManager.beforeUpdate(command.destinationAccountId);
+                    }
+                }
+                journal.appendAll(records);
+            }
+            catch (RuntimeException e) {
+                // Journalling failed, so nothing is applied
+                for (PartitionCommand command : batch) {
+                    if (command.rejection == null) {
+                        command.rejection = e;
+                    }
+                }
+            }
+        }
+
+        for (PartitionCommand command : batch) {
+            if (command.rejection != null) {
+                command.result.completeExceptionally(command.rejection);
+            }
+            else if (isLocal(command.destinationAccountId)) {
+                delegate.applyTransfer(command.sourceAccountId, command.destinationAccountId, command.amount,
+                        command.creditAmount);
+                localTransfers.increment();
+                command.result.complete(null);
+            }
+            else {
+                reserve(command, update);
+            }
+        }
+    }
+
+    private void decide(PartitionCommand command) {
+        command.rejection = null;
+        int srcId = command.sourceAccountId;
+        int dstId = command.destinationAccountId;
+        if (command.expectedVersion != null) {
+            long version = version(srcId);
+            if (version != command.expectedVersion) {
+                command.rejection = new VersionConflictException(
+                        AccountServiceImpl.VERSION_CONFLICT_ERR, srcId, version, command.expectedVersion);
+                return;
+            }
+        }
+        BigDecimal srcBalance = balance(srcId);
+        if (srcBalance.compareTo(command.amount) < 0) {
+            command.rejection = new InsufficientFundsException(AccountServiceImpl.INSUFFICIENT_FOUNDS_ERR, srcId);
+            return;
+        }
+        runningBalances.put(srcId, srcBalance.subtract(command.amount));
+        pendingChanges.merge(srcId, 1L, Long::sum);
+        // Accounts of other partitions are theirs to track
+        if (isLocal(dstId)) {
+            runningBalances.put(dstId, balance(dstId).add(command.creditAmount));
+            pendingChanges.merge(dstId, 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Withdraws a journalled cross-partition transfer from its source and passes it on to be credited,
+     * keeping the snapshot update open until it is
+     */
+    private void reserve(PartitionCommand command, SharedUpdate update) {
+        try {
+            accountDAO.accountWithdraw(command.sourceAccountId, command.amount, command.destinationAccountId);
+        }
+        catch (Exception e) {
+            System.out.println(String.format(WITHDRAW_ERR, command.amount, command.sourceAccountId, e.getMessage()));
+            journalReversal(command);
+            command.result.completeExceptionally(e instanceof RuntimeException ? e : new IllegalStateException(e));
+            return;
+        }
+        command.type = PartitionCommand.Type.CREDIT;
+        command.update = update.retain();
+        inFlight.incrementAndGet();
+        send(command);
+    }
+
+    private void credit(PartitionCommand command) {
+        try {
+            accountDAO.accountDeposit(command.destinationAccountId, command.creditAmount, command.sourceAccountId);
+        }
+        catch (Exception e) {
+            System.out.println(String.format(CREDIT_ERR, command.creditAmount, command.destinationAccountId,
+                    command.sourceAccountId, e.getMessage()));
+            journalReversal(command);
+            command.type = PartitionCommand.Type.REFUND;
+            command.rejection = e instanceof RuntimeException ? e : new IllegalStateException(e);
+            send(command);
+            return;
+        }
+        crossTransfers.increment();
+        finish(command);
+        command.result.complete(null);
+    }
+
+    private void refund(PartitionCommand command) {
+        try {
+            accountDAO.accountDeposit(command.sourceAccountId, command.amount, command.destinationAccountId);
+        }
+        catch (Exception e) {
+            System.out.println(String.format(REFUND_ERR, command.amount, command.sourceAccountId, e.getMessage()));
+        }
+        finish(command);
+        command.result.completeExceptionally(command.rejection);
+    }
+
+    private void finish(PartitionCommand command) {
+        command.update.release();
+        command.update = null;
+        inFlight.decrementAndGet();
+    }
+
+    private void journalReversal(PartitionCommand command) {
+        // The transfer was already journalled, so journal its reversal to make replay net to zero
+        try {
+            journal.append(JournalRecord.transfer(command.destinationAccountId, command.sourceAccountId,
+                    command.creditAmount, command.amount));
+        }
+        catch (RuntimeException e) {
+            System.out.println(String.format(PARTITION_ERR, index, e.getMessage()));
+        }
+    }
+
+    private void send(PartitionCommand command) {
+        if (!outbox.isEmpty() || !target(command).offerMessage(command)) {
+            outbox.addLast(command);
+        }
+    }
+
+    private boolean flushOutbox() {
+        boolean sent = false;
+        while (!outbox.isEmpty() && target(outbox.peekFirst()).offerMessage(outbox.peekFirst())) {
+            outbox.removeFirst();
+            sent = true;
+        }
+        return sent;
+    }
+
+    private AccountPartition target(PartitionCommand command) {
+        int accountId = command.type == PartitionCommand.Type.CREDIT
+                ? command.destinationAccountId : command.sourceAccountId;
+        return partitions[PartitionedAccountDAO.partitionOf(accountId, partitions.length)];
+    }
+
+    private boolean drainInbox() {
+        boolean worked = false;
+        PartitionCommand command;
+        while ((command = inbox.poll()) != null) {
+            worked = true;
+            if (command.type == PartitionCommand.Type.CREDIT) {
+                credit(command);
+            }
+            else {
+                refund(command);
+            }
+        }
+        return worked;
+    }
+
+    private void failQueued() {
+        IllegalStateException stopped = new IllegalStateException(PARTITION_STOPPED_ERR);
+        for (PartitionCommand command : batch) {
+            command.result.completeExceptionally(stopped);
+        }
+        batch.clear();
+        if (pendingPause != null) {
+            pendingPause.reject();
+            pendingPause = null;
+        }
+        PartitionCommand command;
+        while ((command = requests.poll()) != null) {
+            if (command.type == PartitionCommand.Type.PAUSE) {
+                command.pause.reject();
+            }
+            else {
+                command.result.completeExceptionally(stopped);
+            }
+        }
+    }
+
+    private boolean isLocal(int accountId) {
+        return PartitionedAccountDAO.partitionOf(accountId, partitions.length) == index;
+    }
+
+    /**
+     * @return Version the account will be at once the transfers accepted so far in this batch are applied
+     */
+    private long version(int accountId) {
+        try {
+            return accountDAO.getAccount(accountId).getVersion() + pendingChanges.getOrDefault(accountId, 0L);
+        }
+        catch (AccountNotFoundException e) {
+            // Already checked by the request thread and accounts are never removed
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private BigDecimal balance(int accountId) {
+        BigDecimal balance = runningBalances.get(accountId);
+        if (balance == null) {
+            try {
+                balance = accountDAO.getAccount(accountId).getBalance();
+            }
+            catch (AccountNotFoundException e) {
+                // Already checked by the request thread and accounts are never removed
+                throw new IllegalStateException(e);
+            }
+        }
+        return balance;
+    }
+
+    /**
+     * Snapshot update shared by a batch and the credits it sends to other partitions, ended by whichever
+     * releases it last. A read stamp may be released by any thread.
+     */
+    static final class SharedUpdate {
+
+        private final SnapshotManager snapshotManager;
+        private final long stamp;
+        private final AtomicInteger holders = new AtomicInteger(1);
+
+        SharedUpdate(SnapshotManager snapshotManager, long stamp) {
+            this.snapshotManager = snapshotManager;
+            this.stamp = stamp;
+        }
+
+        SharedUpdate retain() {
+            holders.incrementAndGet();
+            return this;
+        }
+
+        void release() {
+            if (holders.decrementAndGet() == 0) {
+                snapshotManager.endUpdate(stamp);
+            }
+        }
+    }
+
+    /**
+     * Holds a partition between batches so another thread can change its accounts. A paused
+     * partition still applies credits and refunds, which only ever add money.
+     */
+    static final class Pause {
+
+        final CountDownLatch paused = new CountDownLatch(1);
+        private volatile boolean resumed;
+        private volatile boolean rejected;
+
+        /**
+         * @return False if the partition stopped before it paused
+         */
+        boolean await() throws InterruptedException {
+            paused.await();
+            return !rejected;
+        }
+
+        void resume(AccountPartition partition) {
+            resumed = true;
+            partition.wake();
+        }
+
+        private void reject() {
+            rejected = true;
+            paused.countDown();
+        }
+    }
+}
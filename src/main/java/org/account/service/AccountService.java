@@ -2,20 +2,57 @@ package org.account.service;
 
 import org.account.exception.*;
 import org.account.model.dto.AccountDTO;
+import org.account.model.dto.AccountPageDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.TransactionDTO;
 import org.account.model.dto.TransferDTO;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 public interface AccountService {
 
     Collection<AccountDTO> getAllAccounts();
 
+    /**
+     * Lazily transforms accounts as the stream is consumed, so the whole list is never held in memory
+     */
+    Stream<AccountDTO> streamAllAccounts();
+
+    /**
+     * @param afterId Only accounts with a greater ID are returned, 0 to start from the first account
+     * @param limit Maximum number of accounts to return
+     */
+    AccountPageDTO getAccountPage(int afterId, int limit) throws InvalidParameterException;
+
     AccountDTO getAccount(int id) throws AccountNotFoundException;
 
+    /**
+     * @return Number of balance changes made to the account, which changes whenever its DTO would
+     */
+    long getAccountVersion(int id) throws AccountNotFoundException;
+
+    /**
+     * @param fromMillis Only balance changes at or after this time are returned
+     * @param toMillis Only balance changes before this time are returned
+     * @param limit Maximum number of balance changes to return
+     * @return Balance changes of the account in the time range, oldest first
+     */
+    List<TransactionDTO> getTransactions(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException, InvalidParameterException;
+
     AccountDTO createAccount(AccountDTO accountDTO)
             throws RequiredParameterException, InvalidParameterException;
 
     void transferMoney(TransferDTO transferDTO)
             throws AccountNotFoundException, InsufficientFundsException,
-            InvalidParameterException, RequiredParameterException, CurrencyConversionException;
+            InvalidParameterException, RequiredParameterException, CurrencyConversionException,
+            LockTimeoutException, VersionConflictException;
+
+    /**
+     * Applies all the transfers atomically: either every transfer is applied or none are.
+     */
+    BatchTransferResultDTO transferMoneyBatch(List<TransferDTO> transferDTOs)
+            throws RequiredParameterException, LockTimeoutException;
 }
@@ -2,115 +2,555 @@ package org.account.service;
 
 import org.account.dao.AccountDAO;
 import org.account.exception.*;
+import org.account.fx.CurrencyConverter;
+import org.account.fx.FxRates;
+import org.account.fx.NoOpCurrencyConverter;
+import org.account.idempotency.IdempotencyCache;
+import org.account.idempotency.NoOpIdempotencyCache;
+import org.account.journal.Journal;
+import org.account.journal.JournalRecord;
+import org.account.journal.NoOpJournal;
+import org.account.snapshot.NoOpSnapshotManager;
+import org.account.snapshot.SnapshotManager;
+import org.account.lock.AccountLockManager;
+import org.account.lock.AccountLockManagerImpl;
+import org.account.lock.AccountLocks;
 import org.account.model.Account;
 import org.account.model.dto.AccountDTO;
+import org.account.model.dto.AccountPageDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.TransactionDTO;
 import org.account.model.dto.TransferDTO;
+import org.account.model.dto.TransferResultDTO;
 import org.account.transformer.AccountTransformer;
 import org.account.validator.Validator;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Currency;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class AccountServiceImpl implements AccountService {
 
-    private static final String INSUFFICIENT_FOUNDS_ERR = "Account %s has insufficient funds to perform this transaction";
+    static final String INSUFFICIENT_FOUNDS_ERR = "Account %s has insufficient funds to perform this transaction";
     private static final String NOT_MATCHING_CURRENCY_ERR = "Transfer currency must be the same as the currency of accounts involved in transaction";
     private static final String MONEY_TRANSFER_ERR = "An error occurred while transferring money between accounts %s and %s. Will attempt to rollback.";
     private static final String ROLLBACK_ERR = "ERROR: Rollback of %s failed. AccountID: %s, Amount: %s";
+    private static final String BATCH_REQUIRED_ERR = "transfers is a required parameter";
+    private static final String BATCH_ABORTED_ERR = "Transfer %s in the batch failed";
+    private static final String PAGE_AFTER_ERR = "after cannot be negative";
+    private static final String PAGE_LIMIT_ERR = "limit must be between 1 and %s";
+    private static final String TIME_RANGE_ERR = "from must not be negative or after to";
+    static final String VERSION_CONFLICT_ERR = "Account %s is at version %s, not the expected version %s";
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final CurrencyConversionException NOT_MATCHING_CURRENCY =
+            new CurrencyConversionException(NOT_MATCHING_CURRENCY_ERR);
 
     private Validator<AccountDTO> accountValidator;
     private Validator<TransferDTO> transferValidator;
     private AccountTransformer accountTransformer;
     private AccountDAO accountDAO;
+    private AccountLockManager lockManager;
+    private Journal journal;
+    private SnapshotManager snapshotManager;
+    private IdempotencyCache idempotencyCache;
+    private CurrencyConverter currencyConverter;
 
     public AccountServiceImpl(
             Validator<AccountDTO> accountValidator,
             Validator<TransferDTO> transferValidator,
             AccountTransformer accountTransformer,
             AccountDAO accountDAO) {
+        this(accountValidator, transferValidator, accountTransformer, accountDAO, new AccountLockManagerImpl());
+    }
+
+    public AccountServiceImpl(
+            Validator<AccountDTO> accountValidator,
+            Validator<TransferDTO> transferValidator,
+            AccountTransformer accountTransformer,
+            AccountDAO accountDAO,
+            AccountLockManager lockManager) {
+        this(accountValidator, transferValidator, accountTransformer, accountDAO, lockManager, new NoOpJournal());
+    }
+
+    public AccountServiceImpl(
+            Validator<AccountDTO> accountValidator,
+            Validator<TransferDTO> transferValidator,
+            AccountTransformer accountTransformer,
+            AccountDAO accountDAO,
+            AccountLockManager lockManager,
+            Journal journal) {
+        this(accountValidator, transferValidator, accountTransformer, accountDAO, lockManager, journal,
+                new NoOpSnapshotManager());
+    }
+
+    public AccountServiceImpl(
+            Validator<AccountDTO> accountValidator,
+            Validator<TransferDTO> transferValidator,
+            AccountTransformer accountTransformer,
+            AccountDAO accountDAO,
+            AccountLockManager lockManager,
+            Journal journal,
+            SnapshotManager snapshotManager) {
+        this(accountValidator, transferValidator, accountTransformer, accountDAO, lockManager, journal,
+                snapshotManager, new NoOpIdempotencyCache());
+    }
+
+    public AccountServiceImpl(
+            Validator<AccountDTO> accountValidator,
+            Validator<TransferDTO> transferValidator,
+            AccountTransformer accountTransformer,
+            AccountDAO accountDAO,
+            AccountLockManager lockManager,
+            Journal journal,
+            SnapshotManager snapshotManager,
+            IdempotencyCache idempotencyCache) {
+        this(accountValidator, transferValidator, accountTransformer, accountDAO, lockManager, journal,
+                snapshotManager, idempotencyCache, new NoOpCurrencyConverter());
+    }
+
+    public AccountServiceImpl(
+            Validator<AccountDTO> accountValidator,
+            Validator<TransferDTO> transferValidator,
+            AccountTransformer accountTransformer,
+            AccountDAO accountDAO,
+            AccountLockManager lockManager,
+            Journal journal,
+            SnapshotManager snapshotManager,
+            IdempotencyCache idempotencyCache,
+            CurrencyConverter currencyConverter) {
         this.accountValidator = accountValidator;
         this.transferValidator = transferValidator;
         this.accountTransformer = accountTransformer;
         this.accountDAO = accountDAO;
+        this.lockManager = lockManager;
+        this.journal = journal;
+        this.snapshotManager = snapshotManager;
+        this.idempotencyCache = idempotencyCache;
+        this.currencyConverter = currencyConverter;
     }
 
     public Collection<AccountDTO> getAllAccounts() {
         return accountDAO.getAllAccounts().stream().map(accountTransformer::toDTO).collect(Collectors.toList());
     }
 
+    public Stream<AccountDTO> streamAllAccounts() {
+        return accountDAO.getAllAccounts().stream().map(accountTransformer::toDTO);
+    }
+
+    public AccountPageDTO getAccountPage(int afterId, int limit) throws InvalidParameterException {
+        if (afterId < 0) {
+            throw new InvalidParameterException(PAGE_AFTER_ERR);
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidParameterException(PAGE_LIMIT_ERR, MAX_PAGE_SIZE);
+        }
+
+        List<Account> accounts = accountDAO.getAccounts(afterId, limit);
+        List<AccountDTO> accountDTOs = accounts.stream().map(accountTransformer::toDTO).collect(Collectors.toList());
+        Integer nextAfter = accounts.size() < limit ? null : accounts.get(accounts.size() - 1).getId();
+        return new AccountPageDTO(accountDTOs, nextAfter);
+    }
+
     public AccountDTO getAccount(int id) throws AccountNotFoundException {
         Account a = accountDAO.getAccount(id);
         return accountTransformer.toDTO(a);
     }
 
+    public long getAccountVersion(int id) throws AccountNotFoundException {
+        return accountDAO.getAccount(id).getVersion();
+    }
+
+    public List<TransactionDTO> getTransactions(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException, InvalidParameterException {
+        if (fromMillis < 0 || fromMillis > toMillis) {
+            throw new InvalidParameterException(TIME_RANGE_ERR);
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidParameterException(PAGE_LIMIT_ERR, MAX_PAGE_SIZE);
+        }
+
+        Currency currency = accountDAO.getAccount(id).getCurrency();
+        return accountDAO.getLedgerEntries(id, fromMillis, toMillis, limit).stream()
+                .map(entry -> accountTransformer.toDTO(entry, currency)).collect(Collectors.toList());
+    }
+
     public AccountDTO createAccount(AccountDTO accountDTO) throws RequiredParameterException, InvalidParameterException {
         accountValidator.validate(accountDTO);
         Account account = accountTransformer.fromDTO(accountDTO);
         account.setCreatedDate(new Date());
-        Account createdAccount = accountDAO.createAccount(account);
+        Account createdAccount;
+        if (journal.isEnabled()) {
+            // Journal the account under its final ID before it becomes visible to transfers
+            long stamp = snapshotManager.beginUpdate();
+            try {
+                account.setId(accountDAO.nextAccountId());
+                journal.append(JournalRecord.accountCreated(account));
+                createdAccount = accountDAO.insertAccount(account);
+            }
+            finally {
+                snapshotManager.endUpdate(stamp);
+            }
+        }
+        else {
+            createdAccount = accountDAO.createAccount(account);
+        }
         return accountTransformer.toDTO(createdAccount);
     }
 
     public void transferMoney(TransferDTO transferDTO)
             throws AccountNotFoundException, InsufficientFundsException,
-                   InvalidParameterException, RequiredParameterException, CurrencyConversionException {
+                   InvalidParameterException, RequiredParameterException, CurrencyConversionException,
+                   LockTimeoutException, VersionConflictException {
+
+        String key = IdempotentTransfers.key(transferDTO);
+        if (key == null) {
+            executeTransfer(transferDTO);
+            return;
+        }
+
+        CompletableFuture<Void> outcome = new CompletableFuture<>();
+        CompletableFuture<Void> previous = idempotencyCache.claim(key, IdempotentTransfers.fingerprint(transferDTO), outcome);
+        if (previous != null) {
+            IdempotentTransfers.await(previous);
+            return;
+        }
+
+        try {
+            executeTransfer(transferDTO);
+            outcome.complete(null);
+        }
+        catch (LockTimeoutException | RuntimeException | Error e) {
+            // Nothing was applied, so let a retry execute the transfer again
+            idempotencyCache.abandon(key, outcome);
+            outcome.completeExceptionally(e);
+            throw e;
+        }
+        catch (Exception e) {
+            outcome.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void executeTransfer(TransferDTO transferDTO)
+            throws AccountNotFoundException, InsufficientFundsException,
+                   InvalidParameterException, RequiredParameterException, CurrencyConversionException,
+                   LockTimeoutException, VersionConflictException {
 
         transferValidator.validate(transferDTO);
         Account srcAccount = accountDAO.getAccount(transferDTO.getSourceAccountId());
         Account dstAccount = accountDAO.getAccount(transferDTO.getDestinationAccountId());
+        Currency currency = Currency.getInstance(transferDTO.getCurrency());
         BigDecimal amount = transferDTO.getTransferAmount();
+        // Convert both legs with the same rates, even if new ones are loaded in between
+        FxRates rates = getRates();
+        BigDecimal debitAmount = rates.convert(amount, currency, srcAccount.getCurrency());
+        BigDecimal creditAmount = rates.convert(amount, currency, dstAccount.getCurrency());
+
+        doTransfer(srcAccount, dstAccount, debitAmount, creditAmount, transferDTO.getExpectedVersion());
+    }
+
+    public BatchTransferResultDTO transferMoneyBatch(List<TransferDTO> transferDTOs)
+            throws RequiredParameterException, LockTimeoutException {
 
-        if (!srcAccount.getCurrency().getCurrencyCode().equals(transferDTO.getCurrency()) ||
-                !dstAccount.getCurrency().getCurrencyCode().equals(transferDTO.getCurrency())) {
-            throw new CurrencyConversionException(NOT_MATCHING_CURRENCY_ERR);
+        if (transferDTOs == null || transferDTOs.isEmpty()) {
+            throw new RequiredParameterException(BATCH_REQUIRED_ERR);
         }
 
-        doTransfer(srcAccount, dstAccount, amount);
+        long start = System.nanoTime();
+        List<TransferResultDTO> results = new ArrayList<>(transferDTOs.size());
+        int[] accountIds = new int[transferDTOs.size() * 2];
+
+        // Validate everything up front so an invalid batch never takes any locks
+        int failedIndex = validateBatch(transferDTOs, results, accountIds);
+        long lockWaitNanos = 0;
+        if (failedIndex < 0) {
+            try (AccountLocks locks = lockManager.lock(accountIds)) {
+                lockWaitNanos = locks.getWaitNanos();
+                failedIndex = checkBatchFunds(transferDTOs, results);
+                if (failedIndex < 0) {
+                    long stamp = snapshotManager.beginUpdate();
+                    try {
+                        for (int accountId : accountIds) {
+                            snapshotManager.beforeUpdate(accountId);
+                        }
+                        journal.append(JournalRecord.transfers(transferDTOs));
+                        failedIndex = applyBatch(transferDTOs, results);
+                    }
+                    finally {
+                        snapshotManager.endUpdate(stamp);
+                    }
+                }
+            }
+        }
+
+        return batchResult(results, failedIndex, start, lockWaitNanos);
+    }
+
+    /**
+     * Validates every transfer in the batch, recording a result for each and the IDs of the accounts involved
+     * @return Index of the first invalid transfer, or -1 if they are all valid
+     */
+    int validateBatch(List<TransferDTO> transferDTOs, List<TransferResultDTO> results, int[] accountIds) {
+        int failedIndex = -1;
+        for (int i = 0; i < transferDTOs.size(); i++) {
+            TransferDTO transferDTO = transferDTOs.get(i);
+            try {
+                transferValidator.validate(transferDTO);
+                // Batches are checked and journalled in a single currency, so they are never converted
+                checkCurrency(accountDAO.getAccount(transferDTO.getSourceAccountId()),
+                        accountDAO.getAccount(transferDTO.getDestinationAccountId()),
+                        transferDTO.getCurrency());
+                results.add(new TransferResultDTO(i, TransferResultDTO.Status.OK, null));
+            }
+            catch (RequiredParameterException | InvalidParameterException
+                    | AccountNotFoundException | CurrencyConversionException e) {
+                results.add(new TransferResultDTO(i, TransferResultDTO.Status.FAILED, e.getMessage()));
+                failedIndex = failedIndex < 0 ? i : failedIndex;
+                continue;
+            }
+            accountIds[i * 2] = transferDTO.getSourceAccountId();
+            accountIds[i * 2 + 1] = transferDTO.getDestinationAccountId();
+        }
+        return failedIndex;
     }
 
-    private void doTransfer(Account srcAccount, Account dstAccount, BigDecimal amount) throws InsufficientFundsException {
-        synchronized (srcAccount) {
-            synchronized (dstAccount) {
-                if (srcAccount.getBalance().compareTo(amount) < 0) {
-                    throw new InsufficientFundsException(String.format(INSUFFICIENT_FOUNDS_ERR, srcAccount.getId()));
+    /**
+     * Builds the outcome of a batch that took no account locks
+     */
+    BatchTransferResultDTO batchResult(List<TransferResultDTO> results, int failedIndex, long startNanos) {
+        return batchResult(results, failedIndex, startNanos, 0);
+    }
+
+    /**
+     * Builds the outcome of a batch, marking every transfer that did not fail itself as aborted if any did
+     * @param lockWaitNanos Time the batch waited for its account locks
+     */
+    BatchTransferResultDTO batchResult(List<TransferResultDTO> results, int failedIndex, long startNanos,
+                                       long lockWaitNanos) {
+        if (failedIndex >= 0) {
+            for (TransferResultDTO result : results) {
+                if (result.getStatus() == TransferResultDTO.Status.OK) {
+                    result.setStatus(TransferResultDTO.Status.ABORTED);
+                    result.setErrorMessage(String.format(BATCH_ABORTED_ERR, failedIndex));
                 }
+            }
+        }
 
-                boolean withdrawSuccess = false;
-                boolean depositSuccess = false;
+        BatchTransferResultDTO batchResult = new BatchTransferResultDTO();
+        batchResult.setCommitted(failedIndex < 0);
+        batchResult.setResults(results);
+        batchResult.setElapsedMicros(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        batchResult.setLockWaitMicros(TimeUnit.NANOSECONDS.toMicros(lockWaitNanos));
+        return batchResult;
+    }
+
+    /**
+     * Checks the running balance of every source account across the batch, so that the batch
+     * is only journalled when it can be applied in full. Must be called while holding the locks.
+     * @return Index of the first transfer that would overdraw its source account, or -1 if there is none
+     */
+    private int checkBatchFunds(List<TransferDTO> transferDTOs, List<TransferResultDTO> results) {
+        Map<Integer, BigDecimal> balances = new HashMap<>();
+        for (int i = 0; i < transferDTOs.size(); i++) {
+            TransferDTO transferDTO = transferDTOs.get(i);
+            BigDecimal amount = transferDTO.getTransferAmount();
+            BigDecimal srcBalance = currentBalance(balances, transferDTO.getSourceAccountId());
+            if (srcBalance.compareTo(amount) < 0) {
+                TransferResultDTO failed = results.get(i);
+                failed.setStatus(TransferResultDTO.Status.FAILED);
+                failed.setErrorMessage(String.format(INSUFFICIENT_FOUNDS_ERR, transferDTO.getSourceAccountId()));
+                return i;
+            }
+            balances.put(transferDTO.getSourceAccountId(), srcBalance.subtract(amount));
+            balances.put(transferDTO.getDestinationAccountId(),
+                    currentBalance(balances, transferDTO.getDestinationAccountId()).add(amount));
+        }
+        return -1;
+    }
+
+    private BigDecimal currentBalance(Map<Integer, BigDecimal> balances, int accountId) {
+        BigDecimal balance = balances.get(accountId);
+        if (balance == null) {
+            try {
+                balance = accountDAO.getAccount(accountId).getBalance();
+            }
+            catch (AccountNotFoundException e) {
+                // Already checked during validation and accounts are never removed
+                throw new IllegalStateException(e);
+            }
+        }
+        return balance;
+    }
+
+    /**
+     * Applies every transfer in order, undoing the ones already applied if any of them fails.
+     * Must be called while holding the locks of all accounts involved.
+     * @return Index of the transfer that failed, or -1 if the whole batch was applied
+     */
+    int applyBatch(List<TransferDTO> transferDTOs, List<TransferResultDTO> results) {
+        int applied = 0;
+        try {
+            for (; applied < transferDTOs.size(); applied++) {
+                TransferDTO transferDTO = transferDTOs.get(applied);
+                accountDAO.accountWithdraw(transferDTO.getSourceAccountId(), transferDTO.getTransferAmount(),
+                        transferDTO.getDestinationAccountId());
                 try {
-                    withdrawSuccess = accountDAO.accountWithdraw(srcAccount.getId(), amount);
-                    depositSuccess = accountDAO.accountDeposit(dstAccount.getId(), amount);
+                    accountDAO.accountDeposit(transferDTO.getDestinationAccountId(), transferDTO.getTransferAmount(),
+                            transferDTO.getSourceAccountId());
                 }
                 catch (Exception e) {
-                    System.out.print(String.format(MONEY_TRANSFER_ERR, srcAccount.getId(), dstAccount.getId()));
+                    rollback(transferDTO.getSourceAccountId(), transferDTO.getDestinationAccountId(),
+                            transferDTO.getTransferAmount(), true);
+                    throw e;
                 }
-                finally {
-                    // If one of the actions did not complete, we need to rollback.
-                    // Normally we would let the DB handle the transaction rollback,
-                    // but since everything is stored in memory we can't do this.
-                    // Below code is not ideal as the rollback could also fail...
-                    if (!(withdrawSuccess && depositSuccess)) {
-                        if (withdrawSuccess) {
-                            try {
-                                accountDAO.accountDeposit(srcAccount.getId(), amount);
-                            }
-                            catch (Exception e) {
-                                System.out.println(String.format(ROLLBACK_ERR, "withdraw", srcAccount.getId(), amount));
-                            }
-                        }
-                        if (depositSuccess) {
-                            try {
-                                accountDAO.accountWithdraw(dstAccount.getId(), amount);
-                            }
-                            catch (Exception e) {
-                                System.out.println(String.format(ROLLBACK_ERR, "deposit", srcAccount.getId(), amount));
-                            }
-                        }
+            }
+            return -1;
+        }
+        catch (Exception e) {
+            TransferResultDTO failed = results.get(applied);
+            failed.setStatus(TransferResultDTO.Status.FAILED);
+            failed.setErrorMessage(e.getMessage());
+
+            for (int i = applied - 1; i >= 0; i--) {
+                TransferDTO transferDTO = transferDTOs.get(i);
+                rollback(transferDTO.getDestinationAccountId(), transferDTO.getSourceAccountId(),
+                        transferDTO.getTransferAmount(), false);
+                rollback(transferDTO.getSourceAccountId(), transferDTO.getDestinationAccountId(),
+                        transferDTO.getTransferAmount(), true);
+            }
+            // The batch was journalled as a whole, so journal its reversal to make replay net to zero
+            for (int i = applied - 1; i >= 0; i--) {
+                TransferDTO transferDTO = transferDTOs.get(i);
+                journal.append(JournalRecord.transfer(transferDTO.getDestinationAccountId(),
+                        transferDTO.getSourceAccountId(), transferDTO.getTransferAmount()));
+            }
+            return applied;
+        }
+    }
+
+    private void rollback(int accountId, int counterpartyId, BigDecimal amount, boolean deposit) {
+        try {
+            if (deposit) {
+                accountDAO.accountDeposit(accountId, amount, counterpartyId);
+            }
+            else {
+                accountDAO.accountWithdraw(accountId, amount, counterpartyId);
+            }
+        }
+        catch (Exception e) {
+            System.out.println(String.format(ROLLBACK_ERR, deposit ? "withdraw" : "deposit", accountId, amount));
+        }
+    }
+
+    /**
+     * @return Current exchange rates for converting single transfers between currencies
+     */
+    FxRates getRates() {
+        return currencyConverter.getRates();
+    }
+
+    void checkCurrency(Account srcAccount, Account dstAccount, String currency) throws CurrencyConversionException {
+        if (!srcAccount.getCurrency().getCurrencyCode().equals(currency) ||
+                !dstAccount.getCurrency().getCurrencyCode().equals(currency)) {
+            throw NOT_MATCHING_CURRENCY;
+        }
+    }
+
+    /**
+     * Withdraws the debit amount from the source and deposits the credit amount, which differs if the
+     * accounts are in different currencies, to the destination, undoing whichever half succeeded if the
+     * other did not. Must be called while no other thread can change either account.
+     */
+    void applyTransfer(int srcId, int dstId, BigDecimal debitAmount, BigDecimal creditAmount) {
+        boolean withdrawSuccess = false;
+        boolean depositSuccess = false;
+        try {
+            withdrawSuccess = accountDAO.accountWithdraw(srcId, debitAmount, dstId);
+            depositSuccess = accountDAO.accountDeposit(dstId, creditAmount, srcId);
+        }
+        catch (Exception e) {
+            System.out.print(String.format(MONEY_TRANSFER_ERR, srcId, dstId));
+        }
+        finally {
+            // If one of the actions did not complete, we need to rollback.
+            // Normally we would let the DB handle the transaction rollback,
+            // but since everything is stored in memory we can't do this.
+            // Below code is not ideal as the rollback could also fail...
+            if (!(withdrawSuccess && depositSuccess)) {
+                if (withdrawSuccess) {
+                    try {
+                        accountDAO.accountDeposit(srcId, debitAmount, dstId);
+                    }
+                    catch (Exception e) {
+                        System.out.println(String.format(ROLLBACK_ERR, "withdraw", srcId, debitAmount));
+                    }
+                }
+                if (depositSuccess) {
+                    try {
+                        accountDAO.accountWithdraw(dstId, creditAmount, srcId);
+                    }
+                    catch (Exception e) {
+                        System.out.println(String.format(ROLLBACK_ERR, "deposit", srcId, creditAmount));
                     }
                 }
+                // The transfer was already journalled, so journal its reversal to make replay net to zero
+                journal.append(JournalRecord.transfer(dstId, srcId, creditAmount, debitAmount));
+            }
+        }
+    }
+
+    /**
+     * @param expectedVersion Version the source account must be at, or null to accept any
+     */
+    void doTransfer(Account srcAccount, Account dstAccount, BigDecimal debitAmount, BigDecimal creditAmount,
+                    Long expectedVersion)
+            throws InsufficientFundsException, LockTimeoutException, VersionConflictException {
+        // Locks are always taken in account ID order, so opposite transfers between the same accounts cannot deadlock
+        AccountLocks locks = lockManager.lock(srcAccount.getId(), dstAccount.getId());
+        try {
+            checkVersion(srcAccount, srcAccount.getVersion(), expectedVersion);
+            if (srcAccount.getBalance().compareTo(debitAmount) < 0) {
+                throw new InsufficientFundsException(INSUFFICIENT_FOUNDS_ERR, srcAccount.getId());
             }
+            commitTransfer(srcAccount.getId(), dstAccount.getId(), debitAmount, creditAmount);
+        }
+        finally {
+            locks.close();
+        }
+    }
+
+    /**
+     * Journals and applies a transfer that has been checked. Must be called while holding the locks of both accounts.
+     */
+    void commitTransfer(int srcId, int dstId, BigDecimal debitAmount, BigDecimal creditAmount) {
+        long stamp = snapshotManager.beginUpdate();
+        try {
+            snapshotManager.beforeUpdate(srcId);
+            snapshotManager.beforeUpdate(dstId);
+            journal.append(JournalRecord.transfer(srcId, dstId, debitAmount, creditAmount));
+            applyTransfer(srcId, dstId, debitAmount, creditAmount);
+        }
+        finally {
+            snapshotManager.endUpdate(stamp);
+        }
+    }
+
+    static void checkVersion(Account account, long version, Long expectedVersion) throws VersionConflictException {
+        if (expectedVersion != null && version != expectedVersion) {
+            throw new VersionConflictException(VERSION_CONFLICT_ERR, account.getId(), version, expectedVersion);
         }
     }
+
+    AccountLockManager getLockManager() {
+        return lockManager;
+    }
 }
@@ -0,0 +1,24 @@
+package org.account.service;
+
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.TransferDTO;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of the {@link AccountService} write operations. The returned futures fail with
+ * the same checked exceptions that the blocking calls throw.
+ */
+public interface AsyncAccountService {
+
+    CompletableFuture<AccountDTO> createAccountAsync(AccountDTO accountDTO);
+
+    CompletableFuture<Void> transferMoneyAsync(TransferDTO transferDTO);
+
+    /**
+     * Applies all the transfers atomically: either every transfer is applied or none are.
+     */
+    CompletableFuture<BatchTransferResultDTO> transferMoneyBatchAsync(List<TransferDTO> transferDTOs);
+}
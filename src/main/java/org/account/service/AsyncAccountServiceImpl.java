@@ -0,0 +1,60 @@
+package org.account.service;
+
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.TransferDTO;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs the blocking calls of an {@link AccountService} on an executor, so that lock and journal waits hold
+ * one of its threads rather than the caller's. With a direct executor such as Runnable::run the calls run
+ * on the caller's thread and the futures are already complete when returned.
+ */
+public class AsyncAccountServiceImpl implements AsyncAccountService {
+
+    private final AccountService accountService;
+    private final Executor executor;
+
+    public AsyncAccountServiceImpl(AccountService accountService, Executor executor) {
+        this.accountService = accountService;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<AccountDTO> createAccountAsync(AccountDTO accountDTO) {
+        return submit(() -> accountService.createAccount(accountDTO));
+    }
+
+    public CompletableFuture<Void> transferMoneyAsync(TransferDTO transferDTO) {
+        return submit(() -> {
+            accountService.transferMoney(transferDTO);
+            return null;
+        });
+    }
+
+    public CompletableFuture<BatchTransferResultDTO> transferMoneyBatchAsync(List<TransferDTO> transferDTOs) {
+        return submit(() -> accountService.transferMoneyBatch(transferDTOs));
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(call.call());
+                }
+                catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,667 @@
+package org.account.service;
+
+import org.account.cluster.ClusterPeer;
+import org.account.cluster.HashRing;
+import org.account.dao.AccountDAO;
+import org.account.exception.*;
+import org.account.fx.CurrencyConverter;
+import org.account.idempotency.IdempotencyCache;
+import org.account.journal.Journal;
+import org.account.journal.JournalReader;
+import org.account.journal.JournalRecord;
+import org.account.lock.AccountLockManager;
+import org.account.lock.AccountLocks;
+import org.account.model.Account;
+import org.account.model.dto.*;
+import org.account.snapshot.SnapshotManager;
+import org.account.validator.Validator;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Account service of one node of a cluster, in which every account is held by the node the
+ * {@link HashRing} assigns its ID to. Calls for another node's accounts are forwarded to that node,
+ * so any node can answer any request. Accounts are created on the node receiving the request, which
+ * only hands out IDs it owns. Listing accounts asks every node for its share.
+ * <p>
+ * A transfer is executed by the owner of its source account. If the destination is held there too
+ * the local service executes it as usual. Otherwise the source's owner coordinates a two-phase commit,
+ * see {@link ClusterPeer}: it asks the destination's owner to prepare the credit, then, holding the
+ * source account's lock, checks the funds and journals and withdraws the debit, which is the
+ * decision to commit. The credit is then delivered and journalled by the destination's owner, and
+ * retried in the background until it is acknowledged, when the coordinator journals the transaction
+ * as settled. Should the destination have vanished, the debit is deposited back instead. Each node's journal holds its own half of the transfer, so each node recovers its own
+ * accounts.
+ * <p>
+ * Both halves are journalled with the transaction ID, and {@link #recover} rebuilds from the journal
+ * what the two phases keep in memory: the coordinator delivers again every credit it withdrew but
+ * never settled, and the participant remembers every credit it took, so a retry is never taken twice.
+ * Each delivery carries the ID below which all of the coordinator's transactions are settled, and the
+ * participant forgets the credits below it, as they will never be retried. Snapshots are cut by each
+ * node on its own, so a transfer can be in the snapshot of one node and not yet in the other's. Batches
+ * are only executed if all their accounts are held by one node.
+ */
+public class ClusterAccountServiceImpl implements AccountService, AutoCloseable {
+
+    private static final String BATCH_REQUIRED_ERR = "transfers is a required parameter";
+    private static final String BATCH_NODES_ERR = "Accounts %s and %s are held by different nodes, so cannot be in one batch";
+    private static final String BATCH_ABORTED_ERR = "Transfer %s in the batch failed";
+    private static final String WITHDRAW_ERR = "Withdrawal of %s from account %s failed after it was journalled";
+    private static final String CREDIT_LOST_ERR = "ERROR: Credit of %s to account %s from account %s could not be delivered, "
+            + "returning it: %s";
+    private static final String REFUND_LOST_ERR = "ERROR: Withdrawal of %s from account %s could not be returned: %s";
+    private static final String CREDITS_PENDING_ERR = "ERROR: %s credits to other nodes were still pending on shutdown, "
+            + "they are delivered again when the journal is recovered";
+    private static final String CREDITS_RECOVERED_MSG = "Recovered %s credits to other nodes and %s credits from them";
+    private static final String NODE_INDEX_ERR = "Node index %s is not one of the %s nodes";
+    private static final int PAGE_SIZE = 1000;
+    private static final int MAX_NODES = 256;
+    private static final long RETRY_MILLIS = 100;
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final AccountService localService;
+    private final Validator<TransferDTO> transferValidator;
+    private final AccountDAO accountDAO;
+    private final AccountLockManager lockManager;
+    private final Journal journal;
+    private final SnapshotManager snapshotManager;
+    private final IdempotencyCache idempotencyCache;
+    private final CurrencyConverter currencyConverter;
+    private final HashRing ring;
+    private final int nodeIndex;
+    private final ClusterPeer[] peers;
+    private final LocalPeer localPeer = new LocalPeer();
+    // Unique across nodes, and across restarts as long as fewer than 4096 transactions start per millisecond
+    private final AtomicLong transactionSequence = new AtomicLong(System.currentTimeMillis() << 12);
+    // Transactions coordinated here whose credit is not yet acknowledged, guarded by itself
+    private final NavigableSet<Long> unsettled = new TreeSet<>();
+    // Credits taken from each coordinating node, indexed like the ring's nodes
+    private final CommittedCredits[] committedCredits;
+    private final Queue<PendingCredit> pendingCredits = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService retryExecutor;
+    private final LongAdder forwardedCalls = new LongAdder();
+    private final LongAdder crossNodeTransfers = new LongAdder();
+
+    /**
+     * @param localService Service executing calls for this node's accounts, which must take the
+     *                     lock manager's locks to change balances
+     * @param accountDAO Store holding this node's accounts
+     * @param peers Clients for the other nodes, indexed like the ring's nodes. The entry for this node is ignored.
+     */
+    public ClusterAccountServiceImpl(
+            AccountService localService,
+            Validator<TransferDTO> transferValidator,
+            AccountDAO accountDAO,
+            AccountLockManager lockManager,
+            Journal journal,
+            SnapshotManager snapshotManager,
+            IdempotencyCache idempotencyCache,
+            CurrencyConverter currencyConverter,
+            HashRing ring,
+            int nodeIndex,
+            ClusterPeer[] peers) {
+        if (nodeIndex < 0 || nodeIndex >= ring.getNodeCount() || nodeIndex >= MAX_NODES) {
+            throw new IllegalArgumentException(String.format(NODE_INDEX_ERR, nodeIndex, ring.getNodeCount()));
+        }
+        this.localService = localService;
+        this.transferValidator = transferValidator;
+        this.accountDAO = accountDAO;
+        this.lockManager = lockManager;
+        this.journal = journal;
+        this.snapshotManager = snapshotManager;
+        this.idempotencyCache = idempotencyCache;
+        this.currencyConverter = currencyConverter;
+        this.ring = ring;
+        this.nodeIndex = nodeIndex;
+        this.peers = Arrays.copyOf(peers, ring.getNodeCount());
+        this.peers[nodeIndex] = localPeer;
+        this.committedCredits = new CommittedCredits[ring.getNodeCount()];
+        for (int i = 0; i < committedCredits.length; i++) {
+            committedCredits[i] = new CommittedCredits();
+        }
+        this.retryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-credit-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        retryExecutor.scheduleWithFixedDelay(this::retryCredits, RETRY_MILLIS, RETRY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Answers calls other nodes make for this node's accounts
+     */
+    public ClusterPeer getLocalPeer() {
+        return localPeer;
+    }
+
+    public Collection<AccountDTO> getAllAccounts() {
+        List<AccountDTO> accounts = new ArrayList<>();
+        try {
+            AccountPageDTO page = getAccountPage(0, PAGE_SIZE);
+            accounts.addAll(page.getAccounts());
+            while (page.getNextAfter() != null) {
+                page = getAccountPage(page.getNextAfter(), PAGE_SIZE);
+                accounts.addAll(page.getAccounts());
+            }
+        }
+        catch (InvalidParameterException e) {
+            // The page bounds are always valid
+            throw new IllegalStateException(e);
+        }
+        return accounts;
+    }
+
+    public Stream<AccountDTO> streamAllAccounts() {
+        return getAllAccounts().stream();
+    }
+
+    /**
+     * Merges the first page of every node, which together hold the first page of the whole cluster
+     */
+    public AccountPageDTO getAccountPage(int afterId, int limit) throws InvalidParameterException {
+        List<AccountDTO> accounts = new ArrayList<>();
+        for (int node = 0; node < peers.length; node++) {
+            if (node != nodeIndex) {
+                forwardedCalls.increment();
+            }
+            accounts.addAll(peers[node].getLocalAccountPage(afterId, limit).getAccounts());
+        }
+        accounts.sort(Comparator.comparing(AccountDTO::getId));
+        if (accounts.size() < limit) {
+            return new AccountPageDTO(accounts, null);
+        }
+        List<AccountDTO> page = new ArrayList<>(accounts.subList(0, limit));
+        return new AccountPageDTO(page, page.get(limit - 1).getId());
+    }
+
+    public AccountDTO getAccount(int id) throws AccountNotFoundException {
+        return owner(id).getAccount(id);
+    }
+
+    public long getAccountVersion(int id) throws AccountNotFoundException {
+        return owner(id).getAccountVersion(id);
+    }
+
+    public List<TransactionDTO> getTransactions(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException, InvalidParameterException {
+        return owner(id).getTransactions(id, fromMillis, toMillis, limit);
+    }
+
+    public AccountDTO createAccount(AccountDTO accountDTO) throws RequiredParameterException, InvalidParameterException {
+        return localService.createAccount(accountDTO);
+    }
+
+    public void transferMoney(TransferDTO transferDTO)
+            throws AccountNotFoundException, InsufficientFundsException,
+                   InvalidParameterException, RequiredParameterException, CurrencyConversionException,
+                   LockTimeoutException, VersionConflictException {
+        owner(transferDTO.getSourceAccountId()).transferMoney(transferDTO);
+    }
+
+    public BatchTransferResultDTO transferMoneyBatch(List<TransferDTO> transferDTOs)
+            throws RequiredParameterException, LockTimeoutException {
+        if (transferDTOs == null || transferDTOs.isEmpty()) {
+            throw new RequiredParameterException(BATCH_REQUIRED_ERR);
+        }
+
+        int firstId = transferDTOs.get(0) != null ? transferDTOs.get(0).getSourceAccountId() : 0;
+        int node = ring.ownerOf(firstId);
+        for (int i = 0; i < transferDTOs.size(); i++) {
+            TransferDTO transferDTO = transferDTOs.get(i);
+            if (transferDTO == null) {
+                continue;
+            }
+            for (int accountId : new int[] {transferDTO.getSourceAccountId(), transferDTO.getDestinationAccountId()}) {
+                if (ring.ownerOf(accountId) != node) {
+                    return rejectBatch(transferDTOs.size(), i, String.format(BATCH_NODES_ERR, firstId, accountId));
+                }
+            }
+        }
+        if (node != nodeIndex) {
+            forwardedCalls.increment();
+        }
+        return peers[node].transferMoneyBatch(transferDTOs);
+    }
+
+    /**
+     * @return Calls forwarded to the node owning the account
+     */
+    public long getForwardedCalls() {
+        return forwardedCalls.sum();
+    }
+
+    /**
+     * @return Transfers this node coordinated with another node
+     */
+    public long getCrossNodeTransfers() {
+        return crossNodeTransfers.sum();
+    }
+
+    /**
+     * @return Credits committed but not yet acknowledged by the destination's node
+     */
+    public int getPendingCredits() {
+        return pendingCredits.size();
+    }
+
+    /**
+     * @return Credits taken from other nodes that their coordinator may still deliver again
+     */
+    public int getCommittedCredits() {
+        int committed = 0;
+        for (CommittedCredits credits : committedCredits) {
+            committed += credits.size();
+        }
+        return committed;
+    }
+
+    /**
+     * Rebuilds the state of cross-node transfers from every record of this node's journal. Must be called
+     * before other nodes can reach this one: credits withdrawn here but never settled are queued to be
+     * delivered again, and credits taken here are remembered until their coordinator has settled them.
+     */
+    public void recover(Path journalPath) throws IOException {
+        Map<Long, PendingCredit> withdrawn = new LinkedHashMap<>();
+        JournalReader.read(journalPath, record -> {
+            long transactionId = record.getTransactionId();
+            switch (record.getType()) {
+                case WITHDRAWAL:
+                    int dstId = record.getDestinationAccountId(0);
+                    withdrawn.put(transactionId, new PendingCredit(peers[ring.ownerOf(dstId)], transactionId,
+                            record.getSourceAccountId(0), dstId, record.getAmount(0), record.getCreditAmount(0)));
+                    break;
+                case DEPOSIT:
+                    if (coordinatorOf(transactionId) == nodeIndex) {
+                        // The reversal of a withdrawal that failed, or the refund of a credit that could not be
+                        // delivered
+                        withdrawn.remove(transactionId);
+                    }
+                    else {
+                        committedCredits[coordinatorOf(transactionId)].recover(transactionId, record.getSettledBelow());
+                    }
+                    break;
+                case SETTLED:
+                    withdrawn.remove(transactionId);
+                    break;
+                default:
+                    break;
+            }
+        });
+        synchronized (unsettled) {
+            for (long transactionId : withdrawn.keySet()) {
+                unsettled.add(transactionId);
+                transactionSequence.accumulateAndGet(transactionId >>> 8, Math::max);
+            }
+        }
+        pendingCredits.addAll(withdrawn.values());
+        System.out.println(String.format(CREDITS_RECOVERED_MSG, withdrawn.size(), getCommittedCredits()));
+    }
+
+    /**
+     * Makes a last attempt to deliver pending credits and stops retrying
+     */
+    public void close() {
+        // Not interrupted, as an interrupt fails a journal append whose record may be written all the same
+        retryExecutor.shutdown();
+        try {
+            retryExecutor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        retryCredits();
+        if (!pendingCredits.isEmpty()) {
+            System.out.println(String.format(CREDITS_PENDING_ERR, pendingCredits.size()));
+        }
+    }
+
+    private ClusterPeer owner(int accountId) {
+        int node = ring.ownerOf(accountId);
+        if (node != nodeIndex) {
+            forwardedCalls.increment();
+        }
+        return peers[node];
+    }
+
+    private BatchTransferResultDTO rejectBatch(int size, int failedIndex, String message) {
+        List<TransferResultDTO> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(i == failedIndex
+                    ? new TransferResultDTO(i, TransferResultDTO.Status.FAILED, message)
+                    : new TransferResultDTO(i, TransferResultDTO.Status.ABORTED,
+                            String.format(BATCH_ABORTED_ERR, failedIndex)));
+        }
+        BatchTransferResultDTO result = new BatchTransferResultDTO();
+        result.setCommitted(false);
+        result.setResults(results);
+        return result;
+    }
+
+    /**
+     * First phase, run by the source account's node: has the destination's node prepare the credit, then
+     * checks the source and journals and withdraws the debit under the source's lock. Preparing changes
+     * nothing, so the lock is not held while waiting for the other node.
+     */
+    private void coordinateTransfer(TransferDTO transferDTO)
+            throws AccountNotFoundException, InsufficientFundsException,
+                   InvalidParameterException, RequiredParameterException, CurrencyConversionException,
+                   LockTimeoutException, VersionConflictException {
+
+        transferValidator.validate(transferDTO);
+        int srcId = transferDTO.getSourceAccountId();
+        int dstId = transferDTO.getDestinationAccountId();
+        Account srcAccount = accountDAO.getAccount(srcId);
+        BigDecimal amount = transferDTO.getTransferAmount();
+        BigDecimal debitAmount = currencyConverter.getRates().convert(amount,
+                Currency.getInstance(transferDTO.getCurrency()), srcAccount.getCurrency());
+        ClusterPeer participant = peers[ring.ownerOf(dstId)];
+        long transactionId = beginTransaction();
+
+        BigDecimal creditAmount;
+        boolean withdrawn = false;
+        try {
+            // Nothing has changed yet, so a refusal or failure here simply abandons the transfer
+            creditAmount = participant.prepareCredit(transactionId, srcId, dstId, amount, transferDTO.getCurrency());
+            AccountLocks locks = lockManager.lock(srcId);
+            try {
+                AccountServiceImpl.checkVersion(srcAccount, srcAccount.getVersion(), transferDTO.getExpectedVersion());
+                if (srcAccount.getBalance().compareTo(debitAmount) < 0) {
+                    throw new InsufficientFundsException(AccountServiceImpl.INSUFFICIENT_FOUNDS_ERR, srcId);
+                }
+                withdraw(transactionId, srcId, dstId, debitAmount, creditAmount);
+                withdrawn = true;
+            }
+            finally {
+                locks.close();
+            }
+        }
+        finally {
+            if (!withdrawn) {
+                // No credit was committed, so no participant remembers the transaction
+                endTransaction(transactionId);
+            }
+        }
+        crossNodeTransfers.increment();
+        deliverCredit(new PendingCredit(participant, transactionId, srcId, dstId, debitAmount, creditAmount));
+    }
+
+    private void withdraw(long transactionId, int srcId, int dstId, BigDecimal debitAmount, BigDecimal creditAmount) {
+        long stamp = snapshotManager.beginUpdate();
+        try {
+            snapshotManager.beforeUpdate(srcId);
+            journal.append(JournalRecord.withdrawal(srcId, dstId, debitAmount, creditAmount, transactionId));
+            try {
+                accountDAO.accountWithdraw(srcId, debitAmount, dstId);
+            }
+            catch (AccountNotFoundException | InsufficientFundsException e) {
+                // Checked under the lock, so only a broken store gets here. Journal the reversal so replay nets to
+                // zero, and recovery knows the credit is not owed.
+                journal.append(JournalRecord.deposit(dstId, srcId, debitAmount, transactionId, 0));
+                throw new IllegalStateException(String.format(WITHDRAW_ERR, debitAmount, srcId), e);
+            }
+        }
+        finally {
+            snapshotManager.endUpdate(stamp);
+        }
+    }
+
+    /**
+     * Second phase: delivers the credit and journals the transaction as settled, leaving it to be retried
+     * if the destination's node cannot take it now, or returning the withdrawal if the destination is gone
+     */
+    private boolean deliverCredit(PendingCredit credit) {
+        try {
+            try {
+                credit.participant.commitCredit(credit.transactionId, settledBelow(), credit.srcId, credit.dstId,
+                        credit.creditAmount);
+            }
+            catch (AccountNotFoundException e) {
+                // The account was there when the credit was prepared and accounts are never removed, so only a
+                // broken store gets here. Give the money back rather than settle a transfer nobody was credited by.
+                System.out.println(String.format(CREDIT_LOST_ERR, credit.creditAmount, credit.dstId, credit.srcId,
+                        e.getMessage()));
+                refund(credit);
+            }
+            // Journalled before the participant can be told to forget the transaction, so it is never retried after
+            journal.append(JournalRecord.settled(credit.transactionId));
+            endTransaction(credit.transactionId);
+            return true;
+        }
+        catch (LockTimeoutException | RuntimeException e) {
+            pendingCredits.add(credit);
+            return false;
+        }
+    }
+
+    /**
+     * Deposits the debit back into the source account, journalled with the transaction ID like the reversal
+     * of a failed withdrawal, so recovery knows the credit is not owed
+     */
+    private void refund(PendingCredit credit) throws LockTimeoutException {
+        AccountLocks locks = lockManager.lock(credit.srcId);
+        try {
+            long stamp = snapshotManager.beginUpdate();
+            try {
+                snapshotManager.beforeUpdate(credit.srcId);
+                accountDAO.getAccount(credit.srcId);
+                journal.append(JournalRecord.deposit(credit.dstId, credit.srcId, credit.debitAmount,
+                        credit.transactionId, 0));
+                accountDAO.accountDeposit(credit.srcId, credit.debitAmount, credit.dstId);
+            }
+            catch (AccountNotFoundException e) {
+                System.out.println(String.format(REFUND_LOST_ERR, credit.debitAmount, credit.srcId, e.getMessage()));
+            }
+            finally {
+                snapshotManager.endUpdate(stamp);
+            }
+        }
+        finally {
+            locks.close();
+        }
+    }
+
+    private long beginTransaction() {
+        // Started and counted as unsettled at once, so settledBelow() never passes a transaction being started
+        synchronized (unsettled) {
+            long transactionId = (transactionSequence.incrementAndGet() << 8) | nodeIndex;
+            unsettled.add(transactionId);
+            return transactionId;
+        }
+    }
+
+    private void endTransaction(long transactionId) {
+        synchronized (unsettled) {
+            unsettled.remove(transactionId);
+        }
+    }
+
+    /**
+     * @return ID below which every transaction this node coordinated is settled
+     */
+    private long settledBelow() {
+        synchronized (unsettled) {
+            return unsettled.isEmpty() ? (transactionSequence.get() + 1) << 8 : unsettled.first();
+        }
+    }
+
+    private static int coordinatorOf(long transactionId) {
+        return (int) (transactionId & (MAX_NODES - 1));
+    }
+
+    private void retryCredits() {
+        // Only retry the credits pending now, failures are added back for the next round
+        for (int pending = pendingCredits.size(); pending > 0; pending--) {
+            PendingCredit credit = pendingCredits.poll();
+            if (credit == null || !deliverCredit(credit)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Executes calls for this node's accounts, whether made here or forwarded by another node
+     */
+    private class LocalPeer implements ClusterPeer {
+
+        public AccountDTO getAccount(int id) throws AccountNotFoundException {
+            return localService.getAccount(id);
+        }
+
+        public long getAccountVersion(int id) throws AccountNotFoundException {
+            return localService.getAccountVersion(id);
+        }
+
+        public AccountPageDTO getLocalAccountPage(int afterId, int limit) throws InvalidParameterException {
+            return localService.getAccountPage(afterId, limit);
+        }
+
+        public List<TransactionDTO> getTransactions(int id, long fromMillis, long toMillis, int limit)
+                throws AccountNotFoundException, InvalidParameterException {
+            return localService.getTransactions(id, fromMillis, toMillis, limit);
+        }
+
+        public void transferMoney(TransferDTO transferDTO)
+                throws AccountNotFoundException, InsufficientFundsException,
+                       InvalidParameterException, RequiredParameterException, CurrencyConversionException,
+                       LockTimeoutException, VersionConflictException {
+
+            if (ring.ownerOf(transferDTO.getDestinationAccountId()) == nodeIndex) {
+                localService.transferMoney(transferDTO);
+                return;
+            }
+
+            String key = IdempotentTransfers.key(transferDTO);
+            if (key == null) {
+                coordinateTransfer(transferDTO);
+                return;
+            }
+
+            CompletableFuture<Void> outcome = new CompletableFuture<>();
+            CompletableFuture<Void> previous = idempotencyCache.claim(key, IdempotentTransfers.fingerprint(transferDTO), outcome);
+            if (previous != null) {
+                IdempotentTransfers.await(previous);
+                return;
+            }
+
+            try {
+                coordinateTransfer(transferDTO);
+                outcome.complete(null);
+            }
+            catch (LockTimeoutException | RuntimeException | Error e) {
+                // Nothing was withdrawn, so let a retry execute the transfer again
+                idempotencyCache.abandon(key, outcome);
+                outcome.completeExceptionally(e);
+                throw e;
+            }
+            catch (Exception e) {
+                outcome.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        public BatchTransferResultDTO transferMoneyBatch(List<TransferDTO> transferDTOs)
+                throws RequiredParameterException, LockTimeoutException {
+            return localService.transferMoneyBatch(transferDTOs);
+        }
+
+        public BigDecimal prepareCredit(long transactionId, int srcId, int dstId, BigDecimal amount, String currency)
+                throws AccountNotFoundException, CurrencyConversionException {
+            Account dstAccount = accountDAO.getAccount(dstId);
+            return currencyConverter.getRates().convert(amount, Currency.getInstance(currency), dstAccount.getCurrency());
+        }
+
+        public void commitCredit(long transactionId, long settledBelow, int srcId, int dstId, BigDecimal creditAmount)
+                throws AccountNotFoundException, LockTimeoutException {
+            CommittedCredits committed = committedCredits[coordinatorOf(transactionId)];
+            // Retries of a credit carry the same destination, so holding its lock serializes them
+            AccountLocks locks = lockManager.lock(dstId);
+            try {
+                if (committed.isCommitted(transactionId, settledBelow)) {
+                    // A retry of a credit whose acknowledgement was lost
+                    return;
+                }
+                long stamp = snapshotManager.beginUpdate();
+                try {
+                    snapshotManager.beforeUpdate(dstId);
+                    accountDAO.getAccount(dstId);
+                    journal.append(JournalRecord.deposit(srcId, dstId, creditAmount, transactionId, settledBelow));
+                    accountDAO.accountDeposit(dstId, creditAmount, srcId);
+                    committed.add(transactionId);
+                }
+                finally {
+                    snapshotManager.endUpdate(stamp);
+                }
+            }
+            finally {
+                locks.close();
+            }
+        }
+    }
+
+    /**
+     * Credits taken from one coordinating node, each remembered until the coordinator reports it settled
+     */
+    private static final class CommittedCredits {
+
+        private final TreeSet<Long> transactionIds = new TreeSet<>();
+        private long settledBelow;
+
+        /**
+         * Forgets the transactions the coordinator has settled
+         * @return Whether the credit was already taken
+         */
+        synchronized boolean isCommitted(long transactionId, long coordinatorSettledBelow) {
+            settle(coordinatorSettledBelow);
+            return transactionId < settledBelow || transactionIds.contains(transactionId);
+        }
+
+        synchronized void add(long transactionId) {
+            transactionIds.add(transactionId);
+        }
+
+        synchronized void recover(long transactionId, long coordinatorSettledBelow) {
+            settle(coordinatorSettledBelow);
+            if (transactionId >= settledBelow) {
+                transactionIds.add(transactionId);
+            }
+        }
+
+        synchronized int size() {
+            return transactionIds.size();
+        }
+
+        private void settle(long coordinatorSettledBelow) {
+            if (coordinatorSettledBelow > settledBelow) {
+                settledBelow = coordinatorSettledBelow;
+                transactionIds.headSet(coordinatorSettledBelow).clear();
+            }
+        }
+    }
+
+    private static final class PendingCredit {
+
+        private final ClusterPeer participant;
+        private final long transactionId;
+        private final int srcId;
+        private final int dstId;
+        private final BigDecimal debitAmount;
+        private final BigDecimal creditAmount;
+
+        private PendingCredit(ClusterPeer participant, long transactionId, int srcId, int dstId,
+                              BigDecimal debitAmount, BigDecimal creditAmount) {
+            this.participant = participant;
+            this.transactionId = transactionId;
+            this.srcId = srcId;
+            this.dstId = dstId;
+            this.debitAmount = debitAmount;
+            this.creditAmount = creditAmount;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.account.service;
+
+import org.account.exception.*;
+import org.account.model.dto.TransferDTO;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helpers shared by the services for transfers carrying an idempotency key.
+ */
+final class IdempotentTransfers {
+
+    private IdempotentTransfers() {}
+
+    /**
+     * @return The key of the transfer, or null if it has none and must always be executed
+     */
+    static String key(TransferDTO transferDTO) {
+        return transferDTO == null ? null : transferDTO.getIdempotencyKey();
+    }
+
+    /**
+     * Identifies what the transfer does, including the version it expects, so that a key reused for a
+     * different transfer or precondition is rejected rather than answered with an unrelated outcome
+     */
+    static String fingerprint(TransferDTO transferDTO) {
+        return transferDTO.getSourceAccountId() + ":" + transferDTO.getDestinationAccountId() + ":" +
+                (transferDTO.getTransferAmount() == null ? null
+                        : transferDTO.getTransferAmount().stripTrailingZeros().toPlainString()) + ":" +
+                transferDTO.getCurrency() + ":" + transferDTO.getExpectedVersion();
+    }
+
+    /**
+     * Waits for the outcome of an earlier execution and rethrows the exception it failed with, if any
+     */
+    static void await(CompletableFuture<Void> outcome)
+            throws AccountNotFoundException, InsufficientFundsException, InvalidParameterException,
+                   RequiredParameterException, CurrencyConversionException, LockTimeoutException,
+                   VersionConflictException {
+
+        try {
+            outcome.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AccountNotFoundException) throw (AccountNotFoundException) cause;
+            if (cause instanceof InsufficientFundsException) throw (InsufficientFundsException) cause;
+            if (cause instanceof InvalidParameterException) throw (InvalidParameterException) cause;
+            if (cause instanceof RequiredParameterException) throw (RequiredParameterException) cause;
+            if (cause instanceof CurrencyConversionException) throw (CurrencyConversionException) cause;
+            if (cause instanceof LockTimeoutException) throw (LockTimeoutException) cause;
+            if (cause instanceof VersionConflictException) throw (VersionConflictException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
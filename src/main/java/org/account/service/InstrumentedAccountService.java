@@ -0,0 +1,136 @@
+package org.account.service;
+
+import org.account.exception.*;
+import org.account.metrics.MetricsRegistry;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.AccountPageDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.TransactionDTO;
+import org.account.model.dto.TransferDTO;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Times every call of the wrapped service and counts transfer outcomes.
+ */
+public class InstrumentedAccountService implements AccountService {
+
+    private final AccountService accountService;
+    private final ServiceMetrics metrics;
+
+    public InstrumentedAccountService(AccountService accountService, MetricsRegistry registry) {
+        this.accountService = accountService;
+        this.metrics = new ServiceMetrics(registry);
+    }
+
+    public Collection<AccountDTO> getAllAccounts() {
+        long start = System.nanoTime();
+        try {
+            return accountService.getAllAccounts();
+        }
+        finally {
+            metrics.getAllAccounts.recordSince(start);
+        }
+    }
+
+    public Stream<AccountDTO> streamAllAccounts() {
+        // Only covers building the stream, the accounts are read while the response is written
+        long start = System.nanoTime();
+        try {
+            return accountService.streamAllAccounts();
+        }
+        finally {
+            metrics.streamAllAccounts.recordSince(start);
+        }
+    }
+
+    public AccountPageDTO getAccountPage(int afterId, int limit) throws InvalidParameterException {
+        long start = System.nanoTime();
+        try {
+            return accountService.getAccountPage(afterId, limit);
+        }
+        finally {
+            metrics.getAccountPage.recordSince(start);
+        }
+    }
+
+    public AccountDTO getAccount(int id) throws AccountNotFoundException {
+        long start = System.nanoTime();
+        try {
+            return accountService.getAccount(id);
+        }
+        finally {
+            metrics.getAccount.recordSince(start);
+        }
+    }
+
+    public long getAccountVersion(int id) throws AccountNotFoundException {
+        long start = System.nanoTime();
+        try {
+            return accountService.getAccountVersion(id);
+        }
+        finally {
+            metrics.getAccountVersion.recordSince(start);
+        }
+    }
+
+    public List<TransactionDTO> getTransactions(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException, InvalidParameterException {
+        long start = System.nanoTime();
+        try {
+            return accountService.getTransactions(id, fromMillis, toMillis, limit);
+        }
+        finally {
+            metrics.getTransactions.recordSince(start);
+        }
+    }
+
+    public AccountDTO createAccount(AccountDTO accountDTO) throws RequiredParameterException, InvalidParameterException {
+        long start = System.nanoTime();
+        try {
+            return accountService.createAccount(accountDTO);
+        }
+        finally {
+            metrics.createAccount.recordSince(start);
+        }
+    }
+
+    public void transferMoney(TransferDTO transferDTO)
+            throws AccountNotFoundException, InsufficientFundsException,
+                   InvalidParameterException, RequiredParameterException, CurrencyConversionException,
+                   LockTimeoutException, VersionConflictException {
+
+        long start = System.nanoTime();
+        try {
+            accountService.transferMoney(transferDTO);
+            metrics.recordTransfer(null);
+        }
+        catch (Exception e) {
+            metrics.recordTransfer(e);
+            throw e;
+        }
+        finally {
+            metrics.transferMoney.recordSince(start);
+        }
+    }
+
+    public BatchTransferResultDTO transferMoneyBatch(List<TransferDTO> transferDTOs)
+            throws RequiredParameterException, LockTimeoutException {
+
+        long start = System.nanoTime();
+        try {
+            BatchTransferResultDTO result = accountService.transferMoneyBatch(transferDTOs);
+            metrics.recordBatch(result, null);
+            return result;
+        }
+        catch (Exception e) {
+            metrics.recordBatch(null, e);
+            throw e;
+        }
+        finally {
+            metrics.transferMoneyBatch.recordSince(start);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.account.service;
+
+import org.account.metrics.MetricsRegistry;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.TransferDTO;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Times every call of the wrapped service from the call until its future completes, and counts transfer
+ * outcomes. Records into the same metrics as {@link InstrumentedAccountService}, so only one of the two
+ * should see any given call.
+ */
+public class InstrumentedAsyncAccountService implements AsyncAccountService {
+
+    private final AsyncAccountService asyncAccountService;
+    private final ServiceMetrics metrics;
+
+    public InstrumentedAsyncAccountService(AsyncAccountService asyncAccountService, MetricsRegistry registry) {
+        this.asyncAccountService = asyncAccountService;
+        this.metrics = new ServiceMetrics(registry);
+    }
+
+    public CompletableFuture<AccountDTO> createAccountAsync(AccountDTO accountDTO) {
+        long start = System.nanoTime();
+        CompletableFuture<AccountDTO> result = asyncAccountService.createAccountAsync(accountDTO);
+        result.whenComplete((account, e) -> metrics.createAccount.recordSince(start));
+        return result;
+    }
+
+    public CompletableFuture<Void> transferMoneyAsync(TransferDTO transferDTO) {
+        long start = System.nanoTime();
+        CompletableFuture<Void> result = asyncAccountService.transferMoneyAsync(transferDTO);
+        result.whenComplete((ignored, e) -> {
+            metrics.recordTransfer(e);
+            metrics.transferMoney.recordSince(start);
+        });
+        return result;
+    }
+
+    public CompletableFuture<BatchTransferResultDTO> transferMoneyBatchAsync(List<TransferDTO> transferDTOs) {
+        long start = System.nanoTime();
+        CompletableFuture<BatchTransferResultDTO> result = asyncAccountService.transferMoneyBatchAsync(transferDTOs);
+        result.whenComplete((batchResult, e) -> {
+            metrics.recordBatch(batchResult, e);
+            metrics.transferMoneyBatch.recordSince(start);
+        });
+        return result;
+    }
+}
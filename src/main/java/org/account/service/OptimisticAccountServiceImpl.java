@@ -0,0 +1,134 @@
+package org.account.service;
+
+import org.account.dao.AccountDAO;
+import org.account.exception.InsufficientFundsException;
+import org.account.exception.LockTimeoutException;
+import org.account.exception.VersionConflictException;
+import org.account.fx.CurrencyConverter;
+import org.account.idempotency.IdempotencyCache;
+import org.account.journal.Journal;
+import org.account.lock.AccountLockManager;
+import org.account.lock.AccountLocks;
+import org.account.model.Account;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.TransferDTO;
+import org.account.snapshot.SnapshotManager;
+import org.account.transformer.AccountTransformer;
+import org.account.validator.Validator;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Account service that decides transfers without holding any lock. A transfer reads the source
+ * account's version and balance, and is rejected straight away if the balance is too low or the
+ * version is not the one the client expected. Otherwise it tries to take both account locks
+ * without waiting, checks that the source version has not moved since it was read, and only then
+ * journals and applies the transfer. A busy lock or a moved version aborts the attempt, which is
+ * retried from the start. The last of {@link #MAX_ATTEMPTS} attempts waits for the locks like
+ * {@link AccountServiceImpl} and decides under them, so a transfer cannot be starved.
+ * <p>
+ * Only the source is validated: a deposit does not depend on the balance it is added to, so a
+ * change to the destination does not invalidate the decision. Batches are applied as in
+ * {@link AccountServiceImpl}, under the same locks.
+ */
+public class OptimisticAccountServiceImpl extends AccountServiceImpl {
+
+    static final int MAX_ATTEMPTS = 8;
+
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder busy = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public OptimisticAccountServiceImpl(
+            Validator<AccountDTO> accountValidator,
+            Validator<TransferDTO> transferValidator,
+            AccountTransformer accountTransformer,
+            AccountDAO accountDAO,
+            AccountLockManager lockManager,
+            Journal journal,
+            SnapshotManager snapshotManager,
+            IdempotencyCache idempotencyCache,
+            CurrencyConverter currencyConverter) {
+        super(accountValidator, transferValidator, accountTransformer, accountDAO, lockManager, journal,
+                snapshotManager, idempotencyCache, currencyConverter);
+    }
+
+    @Override
+    void doTransfer(Account srcAccount, Account dstAccount, BigDecimal debitAmount, BigDecimal creditAmount,
+                    Long expectedVersion)
+            throws InsufficientFundsException, LockTimeoutException, VersionConflictException {
+        for (int attempt = 1; ; attempt++) {
+            // Stores bump the version after writing the balance, so the balance is at least as new as the version
+            long version = srcAccount.getVersion();
+            checkVersion(srcAccount, version, expectedVersion);
+            if (srcAccount.getBalance().compareTo(debitAmount) < 0) {
+                throw new InsufficientFundsException(INSUFFICIENT_FOUNDS_ERR, srcAccount.getId());
+            }
+
+            AccountLocks locks;
+            if (attempt < MAX_ATTEMPTS) {
+                locks = getLockManager().tryLock(srcAccount.getId(), dstAccount.getId());
+                if (locks == null) {
+                    busy.increment();
+                    Thread.yield();
+                    continue;
+                }
+            }
+            else {
+                fallbacks.increment();
+                locks = getLockManager().lock(srcAccount.getId(), dstAccount.getId());
+            }
+
+            try {
+                long current = srcAccount.getVersion();
+                if (current != version) {
+                    // Changed between the read and the locks, decide again against the new balance
+                    conflicts.increment();
+                    if (attempt < MAX_ATTEMPTS) {
+                        continue;
+                    }
+                    checkVersion(srcAccount, current, expectedVersion);
+                    if (srcAccount.getBalance().compareTo(debitAmount) < 0) {
+                        throw new InsufficientFundsException(INSUFFICIENT_FOUNDS_ERR, srcAccount.getId());
+                    }
+                }
+                commitTransfer(srcAccount.getId(), dstAccount.getId(), debitAmount, creditAmount);
+                commits.increment();
+                return;
+            }
+            finally {
+                locks.close();
+            }
+        }
+    }
+
+    /**
+     * @return Transfers applied
+     */
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    /**
+     * @return Attempts aborted because the source account changed after it was read
+     */
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    /**
+     * @return Attempts aborted because another transfer held one of the locks
+     */
+    public long getBusy() {
+        return busy.sum();
+    }
+
+    /**
+     * @return Transfers that aborted too often and waited for the locks instead
+     */
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+}
@@ -0,0 +1,58 @@
+package org.account.service;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Message handled by the thread of an {@link AccountPartition}. A cross-partition transfer is one
+ * command passed between the two partitions, changing type as it goes.
+ */
+class PartitionCommand {
+
+    enum Type {
+        /** Transfer out of an account of the partition, decided and journalled there */
+        TRANSFER,
+        /** Deposit into an account of the partition of money another partition has already withdrawn */
+        CREDIT,
+        /** Deposit back into the source account of a transfer whose credit failed */
+        REFUND,
+        /** Stop deciding transfers until the pause is lifted */
+        PAUSE
+    }
+
+    Type type;
+    int sourceAccountId;
+    int destinationAccountId;
+    BigDecimal amount;
+    /** Amount deposited, which differs from the amount withdrawn when the accounts' currencies differ */
+    BigDecimal creditAmount;
+    /** Version the source account must be at when the transfer is decided, or null for any */
+    Long expectedVersion;
+    CompletableFuture<Void> result;
+
+    /** Outcome decided by the source partition, or the failure a refund reports */
+    Exception rejection;
+    /** Snapshot update a credit or refund must end once applied */
+    AccountPartition.SharedUpdate update;
+    AccountPartition.Pause pause;
+
+    static PartitionCommand transfer(int sourceAccountId, int destinationAccountId, BigDecimal amount,
+                                     BigDecimal creditAmount, Long expectedVersion) {
+        PartitionCommand command = new PartitionCommand();
+        command.type = Type.TRANSFER;
+        command.sourceAccountId = sourceAccountId;
+        command.destinationAccountId = destinationAccountId;
+        command.amount = amount;
+        command.creditAmount = creditAmount;
+        command.expectedVersion = expectedVersion;
+        command.result = new CompletableFuture<>();
+        return command;
+    }
+
+    static PartitionCommand pause(AccountPartition.Pause pause) {
+        PartitionCommand command = new PartitionCommand();
+        command.type = Type.PAUSE;
+        command.pause = pause;
+        return command;
+    }
+}
@@ -0,0 +1,355 @@
+package org.account.service;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.PartitionedAccountDAO;
+import org.account.exception.*;
+import org.account.fx.CurrencyConverter;
+import org.account.fx.FxRates;
+import org.account.fx.NoOpCurrencyConverter;
+import org.account.idempotency.IdempotencyCache;
+import org.account.idempotency.NoOpIdempotencyCache;
+import org.account.journal.Journal;
+import org.account.lock.AccountLockManagerImpl;
+import org.account.model.Account;
+import org.account.model.dto.*;
+import org.account.snapshot.SnapshotManager;
+import org.account.transformer.AccountTransformer;
+import org.account.validator.Validator;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Account service in which accounts are split into partitions by ID, as in {@link PartitionedAccountDAO},
+ * each owned by one thread that alone applies transfers out of and into its accounts. Outside batches no
+ * account locks are taken and partitions share nothing, so throughput grows with the number of cores.
+ * <p>
+ * A transfer between accounts of the same partition is decided, journalled and applied by that
+ * partition. A transfer between partitions is decided and journalled by the source partition,
+ * which withdraws the money and passes the transfer to the destination partition to deposit it,
+ * see {@link AccountPartition}. Batches may span partitions, so they are applied by the calling
+ * thread while every partition they touch is paused. Reads and account creation do not touch
+ * balances and run on the request thread as in {@link AccountServiceImpl}.
+ * <p>
+ * The asynchronous calls return as soon as the transfer is queued, and their futures complete on a
+ * small pool of completion threads so that callbacks never run on a partition thread.
+ */
+public class PartitionedAccountServiceImpl implements AccountService, AsyncAccountService, AutoCloseable {
+
+    public static final int DEFAULT_QUEUE_SIZE = 4096;
+    private static final String BATCH_REQUIRED_ERR = "transfers is a required parameter";
+    private static final String PARTITIONS_ERR = "Number of partitions must be positive: %s";
+
+    private final Validator<TransferDTO> transferValidator;
+    private final AccountDAO accountDAO;
+    private final AccountServiceImpl delegate;
+    private final AccountPartition[] partitions;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ExecutorService completionExecutor;
+    private final AsyncAccountService asyncDelegate;
+    private final IdempotencyCache idempotencyCache;
+    private final Object batchLock = new Object();
+
+    public PartitionedAccountServiceImpl(
+            Validator<AccountDTO> accountValidator,
+            Validator<TransferDTO> transferValidator,
+            AccountTransformer accountTransformer,
+            AccountDAO accountDAO,
+            Journal journal,
+            SnapshotManager snapshotManager,
+            int partitions) {
+        this(accountValidator, transferValidator, accountTransformer, accountDAO, journal, snapshotManager,
+                partitions, DEFAULT_QUEUE_SIZE, new NoOpIdempotencyCache(), new NoOpCurrencyConverter());
+    }
+
+    /**
+     * @param partitions Number of partitions, which should match the store's if it is a {@link PartitionedAccountDAO}
+     * @param queueSize Transfers each partition can hold queued before callers wait
+     */
+    public PartitionedAccountServiceImpl(
+            Validator<AccountDTO> accountValidator,
+            Validator<TransferDTO> transferValidator,
+            AccountTransformer accountTransformer,
+            AccountDAO accountDAO,
+            Journal journal,
+            SnapshotManager snapshotManager,
+            int partitions,
+            int queueSize,
+            IdempotencyCache idempotencyCache,
+            CurrencyConverter currencyConverter) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException(String.format(PARTITIONS_ERR, partitions));
+        }
+        this.transferValidator = transferValidator;
+        this.accountDAO = accountDAO;
+        this.idempotencyCache = idempotencyCache;
+        this.delegate = new AccountServiceImpl(accountValidator, transferValidator, accountTransformer, accountDAO,
+                new AccountLockManagerImpl(), journal, snapshotManager, new NoOpIdempotencyCache(), currencyConverter);
+        this.completionExecutor = createCompletionExecutor();
+        this.asyncDelegate = new AsyncAccountServiceImpl(this, completionExecutor);
+
+        this.partitions = new AccountPartition[partitions];
+        for (int i = 0; i < partitions; i++) {
+            this.partitions[i] = new AccountPartition(i, this.partitions, accountDAO, journal, snapshotManager,
+                    delegate, inFlight, queueSize);
+        }
+        for (AccountPartition partition : this.partitions) {
+            partition.start();
+        }
+    }
+
+    public Collection<AccountDTO> getAllAccounts() {
+        return delegate.getAllAccounts();
+    }
+
+    public Stream<AccountDTO> streamAllAccounts() {
+        return delegate.streamAllAccounts();
+    }
+
+    public AccountPageDTO getAccountPage(int afterId, int limit) throws InvalidParameterException {
+        return delegate.getAccountPage(afterId, limit);
+    }
+
+    public AccountDTO getAccount(int id) throws AccountNotFoundException {
+        return delegate.getAccount(id);
+    }
+
+    public long getAccountVersion(int id) throws AccountNotFoundException {
+        return delegate.getAccountVersion(id);
+    }
+
+    public List<TransactionDTO> getTransactions(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException, InvalidParameterException {
+        return delegate.getTransactions(id, fromMillis, toMillis, limit);
+    }
+
+    public AccountDTO createAccount(AccountDTO accountDTO) throws RequiredParameterException, InvalidParameterException {
+        return delegate.createAccount(accountDTO);
+    }
+
+    public void transferMoney(TransferDTO transferDTO)
+            throws AccountNotFoundException, InsufficientFundsException,
+                   InvalidParameterException, RequiredParameterException, CurrencyConversionException,
+                   LockTimeoutException, VersionConflictException {
+
+        if (IdempotentTransfers.key(transferDTO) != null) {
+            IdempotentTransfers.await(transferMoneyAsync(transferDTO));
+            return;
+        }
+
+        try {
+            publishTransfer(transferDTO).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InsufficientFundsException) throw (InsufficientFundsException) cause;
+            if (cause instanceof VersionConflictException) throw (VersionConflictException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Pauses every partition the batch touches, in no particular order. Batches are applied one at a time,
+     * so two of them can never each hold a partition the other is waiting for.
+     */
+    public BatchTransferResultDTO transferMoneyBatch(List<TransferDTO> transferDTOs)
+            throws RequiredParameterException, LockTimeoutException {
+
+        if (transferDTOs == null || transferDTOs.isEmpty()) {
+            throw new RequiredParameterException(BATCH_REQUIRED_ERR);
+        }
+
+        long start = System.nanoTime();
+        List<TransferResultDTO> results = new ArrayList<>(transferDTOs.size());
+        int[] accountIds = new int[transferDTOs.size() * 2];
+        int failedIndex = delegate.validateBatch(transferDTOs, results, accountIds);
+        if (failedIndex >= 0) {
+            return delegate.batchResult(results, failedIndex, start);
+        }
+
+        Set<Integer> touched = new TreeSet<>();
+        for (int accountId : accountIds) {
+            touched.add(PartitionedAccountDAO.partitionOf(accountId, partitions.length));
+        }
+        synchronized (batchLock) {
+            Map<AccountPartition, AccountPartition.Pause> pauses = new LinkedHashMap<>();
+            try {
+                for (int index : touched) {
+                    AccountPartition.Pause pause = new AccountPartition.Pause();
+                    partitions[index].submit(PartitionCommand.pause(pause));
+                    pauses.put(partitions[index], pause);
+                }
+                for (AccountPartition.Pause pause : pauses.values()) {
+                    if (!pause.await()) {
+                        throw new IllegalStateException(AccountPartition.PARTITION_STOPPED_ERR);
+                    }
+                }
+                return delegate.transferMoneyBatch(transferDTOs);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            finally {
+                pauses.forEach((partition, pause) -> pause.resume(partition));
+            }
+        }
+    }
+
+    public CompletableFuture<AccountDTO> createAccountAsync(AccountDTO accountDTO) {
+        // Account creation waits on the journal rather than a partition, so keep it off the caller's thread
+        return asyncDelegate.createAccountAsync(accountDTO);
+    }
+
+    public CompletableFuture<Void> transferMoneyAsync(TransferDTO transferDTO) {
+        String key = IdempotentTransfers.key(transferDTO);
+        if (key == null) {
+            return executeTransferAsync(transferDTO);
+        }
+
+        CompletableFuture<Void> outcome = new CompletableFuture<>();
+        CompletableFuture<Void> previous;
+        try {
+            previous = idempotencyCache.claim(key, IdempotentTransfers.fingerprint(transferDTO), outcome);
+        }
+        catch (InvalidParameterException e) {
+            outcome.completeExceptionally(e);
+            return outcome;
+        }
+        if (previous != null) {
+            // Hand out a dependent future so callers cannot complete the shared outcome
+            return previous.thenApply(Function.identity());
+        }
+
+        executeTransferAsync(transferDTO).whenComplete((result, e) -> {
+            if (e == null) {
+                outcome.complete(null);
+                return;
+            }
+            if (e instanceof RuntimeException || e instanceof Error) {
+                // No partition decided the transfer, so let a retry execute it again
+                idempotencyCache.abandon(key, outcome);
+            }
+            outcome.completeExceptionally(e);
+        });
+        return outcome;
+    }
+
+    private CompletableFuture<Void> executeTransferAsync(TransferDTO transferDTO) {
+        CompletableFuture<Void> response = new CompletableFuture<>();
+        try {
+            publishTransfer(transferDTO).whenCompleteAsync((result, e) -> {
+                if (e != null) {
+                    response.completeExceptionally(e);
+                }
+                else {
+                    response.complete(null);
+                }
+            }, completionExecutor);
+        }
+        catch (Exception e) {
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    public CompletableFuture<BatchTransferResultDTO> transferMoneyBatchAsync(List<TransferDTO> transferDTOs) {
+        // Pausing partitions blocks, so run batches on a completion thread
+        return asyncDelegate.transferMoneyBatchAsync(transferDTOs);
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * @return Transfers applied by a single partition
+     */
+    public long getLocalTransfers() {
+        long sum = 0;
+        for (AccountPartition partition : partitions) {
+            sum += partition.getLocalTransfers();
+        }
+        return sum;
+    }
+
+    /**
+     * @return Transfers withdrawn by one partition and deposited by another
+     */
+    public long getCrossPartitionTransfers() {
+        long sum = 0;
+        for (AccountPartition partition : partitions) {
+            sum += partition.getCrossTransfers();
+        }
+        return sum;
+    }
+
+    /**
+     * @return Transfers and deposits waiting to be handled by the partition
+     */
+    public int getQueuedCommands(int partition) {
+        return partitions[partition].getQueuedCommands();
+    }
+
+    /**
+     * Stops every partition once the batch it is working on is finished and every transfer in flight
+     * between partitions has been deposited. Transfers still queued fail with an IllegalStateException.
+     */
+    public void close() {
+        try {
+            for (AccountPartition partition : partitions) {
+                partition.stopAccepting();
+            }
+            for (AccountPartition partition : partitions) {
+                partition.awaitStopped();
+            }
+            for (AccountPartition partition : partitions) {
+                partition.close();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Already queued completions still run, so no caller is left waiting
+        completionExecutor.shutdown();
+    }
+
+    private CompletableFuture<Void> publishTransfer(TransferDTO transferDTO)
+            throws AccountNotFoundException, InvalidParameterException, RequiredParameterException,
+                   CurrencyConversionException {
+
+        transferValidator.validate(transferDTO);
+        Account srcAccount = accountDAO.getAccount(transferDTO.getSourceAccountId());
+        Account dstAccount = accountDAO.getAccount(transferDTO.getDestinationAccountId());
+        Currency currency = Currency.getInstance(transferDTO.getCurrency());
+        FxRates rates = delegate.getRates();
+        BigDecimal debitAmount = rates.convert(transferDTO.getTransferAmount(), currency, srcAccount.getCurrency());
+        BigDecimal creditAmount = rates.convert(transferDTO.getTransferAmount(), currency, dstAccount.getCurrency());
+
+        PartitionCommand command = PartitionCommand.transfer(srcAccount.getId(), dstAccount.getId(), debitAmount,
+                creditAmount, transferDTO.getExpectedVersion());
+        partitions[PartitionedAccountDAO.partitionOf(srcAccount.getId(), partitions.length)].submit(command);
+        return command.result;
+    }
+
+    private static ExecutorService createCompletionExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+            Thread thread = new Thread(runnable, "transfer-completion-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
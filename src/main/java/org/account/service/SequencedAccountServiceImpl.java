@@ -0,0 +1,603 @@
+package org.account.service;
+
+import org.account.dao.AccountDAO;
+import org.account.exception.*;
+import org.account.fx.CurrencyConverter;
+import org.account.fx.FxRates;
+import org.account.fx.NoOpCurrencyConverter;
+import org.account.idempotency.IdempotencyCache;
+import org.account.idempotency.NoOpIdempotencyCache;
+import org.account.journal.Journal;
+import org.account.journal.JournalRecord;
+import org.account.lock.AccountLockManagerImpl;
+import org.account.model.Account;
+import org.account.model.dto.*;
+import org.account.sequencer.RingBuffer;
+import org.account.snapshot.SnapshotManager;
+import org.account.transformer.AccountTransformer;
+import org.account.validator.Validator;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Account service in which a single sequencer thread applies every transfer, so balances are
+ * never contended and no account locks are taken.
+ * <p>
+ * Request threads validate a transfer, publish it into a pre-allocated ring buffer and wait on a
+ * future for the outcome. The sequencer drains whatever has been published as one batch: it
+ * decides every transfer against running balances, journals the accepted ones with a single
+ * append, applies them and completes the futures. Reads and account creation do not touch
+ * balances and run on the request thread as in {@link AccountServiceImpl}.
+ * <p>
+ * The asynchronous calls return as soon as the transfer is published, and their futures complete
+ * on a small pool of completion threads so that callbacks never run on the sequencer.
+ */
+public class SequencedAccountServiceImpl implements AccountService, AsyncAccountService, AutoCloseable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 4096;
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final String BATCH_REQUIRED_ERR = "transfers is a required parameter";
+    private static final String SEQUENCER_STOPPED_ERR = "Transfer sequencer is not running";
+    private static final String SEQUENCER_ERR = "ERROR: Transfer sequencer failed to process a batch: %s";
+
+    private final Validator<TransferDTO> transferValidator;
+    private final AccountDAO accountDAO;
+    private final Journal journal;
+    private final SnapshotManager snapshotManager;
+    private final AccountServiceImpl delegate;
+    private final RingBuffer<TransferCommand> ringBuffer;
+    private final Thread sequencer;
+    private final ExecutorService completionExecutor;
+    private final AsyncAccountService asyncDelegate;
+    private final IdempotencyCache idempotencyCache;
+    private volatile boolean running = true;
+    /** Set by the sequencer once it will look at no more entries */
+    private volatile boolean stopped;
+
+    // Only touched by the sequencer thread
+    private final Map<Integer, BigDecimal> runningBalances = new HashMap<>();
+    private final Map<Integer, BigDecimal> batchBalances = new HashMap<>();
+    private final Map<Integer, Long> pendingChanges = new HashMap<>();
+    private final List<JournalRecord> records = new ArrayList<>();
+
+    public SequencedAccountServiceImpl(
+            Validator<AccountDTO> accountValidator,
+            Validator<TransferDTO> transferValidator,
+            AccountTransformer accountTransformer,
+            AccountDAO accountDAO,
+            Journal journal,
+            SnapshotManager snapshotManager) {
+        this(accountValidator, transferValidator, accountTransformer, accountDAO, journal, snapshotManager,
+                DEFAULT_BUFFER_SIZE);
+    }
+
+    public SequencedAccountServiceImpl(
+            Validator<AccountDTO> accountValidator,
+            Validator<TransferDTO> transferValidator,
+            AccountTransformer accountTransformer,
+            AccountDAO accountDAO,
+            Journal journal,
+            SnapshotManager snapshotManager,
+            int bufferSize) {
+        this(accountValidator, transferValidator, accountTransformer, accountDAO, journal, snapshotManager,
+                bufferSize, new NoOpIdempotencyCache());
+    }
+
+    public SequencedAccountServiceImpl(
+            Validator<AccountDTO> accountValidator,
+            Validator<TransferDTO> transferValidator,
+            AccountTransformer accountTransformer,
+            AccountDAO accountDAO,
+            Journal journal,
+            SnapshotManager snapshotManager,
+            int bufferSize,
+            IdempotencyCache idempotencyCache) {
+        this(accountValidator, transferValidator, accountTransformer, accountDAO, journal, snapshotManager,
+                bufferSize, idempotencyCache, new NoOpCurrencyConverter());
+    }
+
+    public SequencedAccountServiceImpl(
+            Validator<AccountDTO> accountValidator,
+            Validator<TransferDTO> transferValidator,
+            AccountTransformer accountTransformer,
+            AccountDAO accountDAO,
+            Journal journal,
+            SnapshotManager snapshotManager,
+            int bufferSize,
+            IdempotencyCache idempotencyCache,
+            CurrencyConverter currencyConverter) {
+        this.transferValidator = transferValidator;
+        this.accountDAO = accountDAO;
+        this.journal = journal;
+        this.snapshotManager = snapshotManager;
+        this.idempotencyCache = idempotencyCache;
+        this.delegate = new AccountServiceImpl(accountValidator, transferValidator, accountTransformer, accountDAO,
+                new AccountLockManagerImpl(), journal, snapshotManager, new NoOpIdempotencyCache(), currencyConverter);
+        this.ringBuffer = new RingBuffer<>(bufferSize, TransferCommand::new);
+        this.completionExecutor = createCompletionExecutor();
+        this.asyncDelegate = new AsyncAccountServiceImpl(delegate, completionExecutor);
+
+        sequencer = new Thread(this::sequenceLoop, "transfer-sequencer");
+        sequencer.setDaemon(true);
+        sequencer.start();
+    }
+
+    public Collection<AccountDTO> getAllAccounts() {
+        return delegate.getAllAccounts();
+    }
+
+    public Stream<AccountDTO> streamAllAccounts() {
+        return delegate.streamAllAccounts();
+    }
+
+    public AccountPageDTO getAccountPage(int afterId, int limit) throws InvalidParameterException {
+        return delegate.getAccountPage(afterId, limit);
+    }
+
+    public AccountDTO getAccount(int id) throws AccountNotFoundException {
+        return delegate.getAccount(id);
+    }
+
+    public long getAccountVersion(int id) throws AccountNotFoundException {
+        return delegate.getAccountVersion(id);
+    }
+
+    public List<TransactionDTO> getTransactions(int id, long fromMillis, long toMillis, int limit)
+            throws AccountNotFoundException, InvalidParameterException {
+        return delegate.getTransactions(id, fromMillis, toMillis, limit);
+    }
+
+    public AccountDTO createAccount(AccountDTO accountDTO) throws RequiredParameterException, InvalidParameterException {
+        return delegate.createAccount(accountDTO);
+    }
+
+    public void transferMoney(TransferDTO transferDTO)
+            throws AccountNotFoundException, InsufficientFundsException,
+                   InvalidParameterException, RequiredParameterException, CurrencyConversionException,
+                   LockTimeoutException, VersionConflictException {
+
+        if (IdempotentTransfers.key(transferDTO) != null) {
+            IdempotentTransfers.await(transferMoneyAsync(transferDTO));
+            return;
+        }
+
+        CompletableFuture<Integer> result = publishTransfer(transferDTO);
+        try {
+            await(result);
+        }
+        catch (InsufficientFundsException | VersionConflictException | RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public BatchTransferResultDTO transferMoneyBatch(List<TransferDTO> transferDTOs) throws RequiredParameterException {
+        if (transferDTOs == null || transferDTOs.isEmpty()) {
+            throw new RequiredParameterException(BATCH_REQUIRED_ERR);
+        }
+
+        long start = System.nanoTime();
+        List<TransferResultDTO> results = new ArrayList<>(transferDTOs.size());
+        int failedIndex = delegate.validateBatch(transferDTOs, results, new int[transferDTOs.size() * 2]);
+        if (failedIndex < 0) {
+            CompletableFuture<Integer> result = publishBatch(transferDTOs, results);
+            try {
+                failedIndex = await(result);
+            }
+            catch (RuntimeException e) {
+                throw e;
+            }
+            catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return delegate.batchResult(results, failedIndex, start);
+    }
+
+    public CompletableFuture<AccountDTO> createAccountAsync(AccountDTO accountDTO) {
+        // Account creation waits on the journal rather than the sequencer, so keep it off the caller's thread
+        return asyncDelegate.createAccountAsync(accountDTO);
+    }
+
+    public CompletableFuture<Void> transferMoneyAsync(TransferDTO transferDTO) {
+        String key = IdempotentTransfers.key(transferDTO);
+        if (key == null) {
+            return executeTransferAsync(transferDTO);
+        }
+
+        CompletableFuture<Void> outcome = new CompletableFuture<>();
+        CompletableFuture<Void> previous;
+        try {
+            previous = idempotencyCache.claim(key, IdempotentTransfers.fingerprint(transferDTO), outcome);
+        }
+        catch (InvalidParameterException e) {
+            outcome.completeExceptionally(e);
+            return outcome;
+        }
+        if (previous != null) {
+            // Hand out a dependent future so callers cannot complete the shared outcome
+            return previous.thenApply(Function.identity());
+        }
+
+        executeTransferAsync(transferDTO).whenComplete((result, e) -> {
+            if (e == null) {
+                outcome.complete(null);
+                return;
+            }
+            if (e instanceof RuntimeException || e instanceof Error) {
+                // The sequencer never saw the transfer, so let a retry execute it again
+                idempotencyCache.abandon(key, outcome);
+            }
+            outcome.completeExceptionally(e);
+        });
+        return outcome;
+    }
+
+    private CompletableFuture<Void> executeTransferAsync(TransferDTO transferDTO) {
+        CompletableFuture<Void> response = new CompletableFuture<>();
+        try {
+            publishTransfer(transferDTO).whenCompleteAsync((failedIndex, e) -> {
+                if (e != null) {
+                    response.completeExceptionally(e);
+                }
+                else {
+                    response.complete(null);
+                }
+            }, completionExecutor);
+        }
+        catch (Exception e) {
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    public CompletableFuture<BatchTransferResultDTO> transferMoneyBatchAsync(List<TransferDTO> transferDTOs) {
+        CompletableFuture<BatchTransferResultDTO> response = new CompletableFuture<>();
+        if (transferDTOs == null || transferDTOs.isEmpty()) {
+            response.completeExceptionally(new RequiredParameterException(BATCH_REQUIRED_ERR));
+            return response;
+        }
+
+        long start = System.nanoTime();
+        List<TransferResultDTO> results = new ArrayList<>(transferDTOs.size());
+        try {
+            int invalidIndex = delegate.validateBatch(transferDTOs, results, new int[transferDTOs.size() * 2]);
+            if (invalidIndex >= 0) {
+                response.complete(delegate.batchResult(results, invalidIndex, start));
+                return response;
+            }
+            publishBatch(transferDTOs, results).whenCompleteAsync((failedIndex, e) -> {
+                if (e != null) {
+                    response.completeExceptionally(e);
+                }
+                else {
+                    response.complete(delegate.batchResult(results, failedIndex, start));
+                }
+            }, completionExecutor);
+        }
+        catch (RuntimeException e) {
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    /**
+     * Stops the sequencer once it has finished the batch it is working on. Transfers still waiting
+     * in the ring buffer fail with an IllegalStateException.
+     */
+    public void close() {
+        running = false;
+        ringBuffer.halt();
+        try {
+            sequencer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Already queued completions still run, so no caller is left waiting
+        completionExecutor.shutdown();
+    }
+
+    private CompletableFuture<Integer> publishTransfer(TransferDTO transferDTO)
+            throws AccountNotFoundException, InvalidParameterException, RequiredParameterException,
+                   CurrencyConversionException {
+
+        transferValidator.validate(transferDTO);
+        Account srcAccount = accountDAO.getAccount(transferDTO.getSourceAccountId());
+        Account dstAccount = accountDAO.getAccount(transferDTO.getDestinationAccountId());
+        Currency currency = Currency.getInstance(transferDTO.getCurrency());
+        FxRates rates = delegate.getRates();
+        BigDecimal debitAmount = rates.convert(transferDTO.getTransferAmount(), currency, srcAccount.getCurrency());
+        BigDecimal creditAmount = rates.convert(transferDTO.getTransferAmount(), currency, dstAccount.getCurrency());
+
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        long sequence = claim();
+        TransferCommand command = ringBuffer.get(sequence);
+        command.setTransfer(srcAccount.getId(), dstAccount.getId(), debitAmount, creditAmount);
+        command.expectedVersion = transferDTO.getExpectedVersion();
+        command.result = result;
+        publish(sequence, result);
+        return result;
+    }
+
+    private CompletableFuture<Integer> publishBatch(List<TransferDTO> transferDTOs, List<TransferResultDTO> results) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        long sequence = claim();
+        TransferCommand command = ringBuffer.get(sequence);
+        command.setBatch(transferDTOs, results);
+        command.result = result;
+        publish(sequence, result);
+        return result;
+    }
+
+    /**
+     * The sequencer may stop between the running check in {@link #claim()} and the publish, in which case it
+     * never sees the entry. It sets stopped before its final look at the ring and this checks it after
+     * publishing, so at least one of the two fails the entry; failing it twice is harmless.
+     */
+    private void publish(long sequence, CompletableFuture<Integer> result) {
+        ringBuffer.publish(sequence);
+        if (stopped) {
+            result.completeExceptionally(new IllegalStateException(SEQUENCER_STOPPED_ERR));
+        }
+    }
+
+    private long claim() {
+        if (!running) {
+            throw new IllegalStateException(SEQUENCER_STOPPED_ERR);
+        }
+        return ringBuffer.claim();
+    }
+
+    private static ExecutorService createCompletionExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+            Thread thread = new Thread(runnable, "transfer-completion-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private int await(CompletableFuture<Integer> result) throws Exception {
+        try {
+            return result.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private void sequenceLoop() {
+        long next = 0;
+        try {
+            while (running) {
+                long available = ringBuffer.waitFor(next);
+                if (available < next) {
+                    break;
+                }
+                long last = Math.min(available, next + MAX_BATCH_SIZE - 1);
+                try {
+                    process(next, last);
+                }
+                catch (RuntimeException e) {
+                    System.out.println(String.format(SEQUENCER_ERR, e.getMessage()));
+                    fail(next, last, e);
+                }
+                ringBuffer.release(last);
+                next = last + 1;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stopped = true;
+        // Entries behind one that is still being filled in are published too, so look at each of them
+        IllegalStateException stoppedError = new IllegalStateException(SEQUENCER_STOPPED_ERR);
+        long last = Math.min(ringBuffer.getClaimed(), next + ringBuffer.size() - 1);
+        for (long sequence = next; sequence <= last; sequence++) {
+            if (ringBuffer.isPublished(sequence)) {
+                fail(sequence, sequence, stoppedError);
+            }
+        }
+    }
+
+    private void fail(long first, long last, RuntimeException e) {
+        for (long sequence = first; sequence <= last; sequence++) {
+            TransferCommand command = ringBuffer.get(sequence);
+            if (command.result != null) {
+                command.result.completeExceptionally(e);
+            }
+            command.clear();
+        }
+    }
+
+    /**
+     * Decides, journals and applies every command in the range of sequence numbers
+     */
+    private void process(long first, long last) {
+        runningBalances.clear();
+        pendingChanges.clear();
+        records.clear();
+        boolean anyAccepted = false;
+        for (long sequence = first; sequence <= last; sequence++) {
+            TransferCommand command = ringBuffer.get(sequence);
+            decide(command);
+            if (command.isAccepted()) {
+                anyAccepted = true;
+                if (journal.isEnabled()) {
+                    records.add(command.isBatch()
+                            ? JournalRecord.transfers(command.batch)
+                            : JournalRecord.transfer(command.sourceAccountId, command.destinationAccountId,
+                                    command.amount, command.creditAmount));
+                }
+            }
+        }
+
+        if (anyAccepted) {
+            long stamp = snapshotManager.beginUpdate();
+            try {
+                beforeUpdate(first, last);
+                journal.appendAll(records);
+                apply(first, last);
+            }
+            catch (RuntimeException e) {
+                // Journalling failed, so nothing was applied
+                reject(first, last, e);
+            }
+            finally {
+                snapshotManager.endUpdate(stamp);
+            }
+        }
+
+        for (long sequence = first; sequence <= last; sequence++) {
+            TransferCommand command = ringBuffer.get(sequence);
+            if (command.rejection != null) {
+                command.result.completeExceptionally(command.rejection);
+            }
+            else {
+                command.result.complete(command.failedIndex);
+            }
+            command.clear();
+        }
+    }
+
+    private void decide(TransferCommand command) {
+        command.rejection = null;
+        command.failedIndex = -1;
+        if (!command.isBatch()) {
+            if (command.expectedVersion != null) {
+                long version = version(command.sourceAccountId);
+                if (version != command.expectedVersion) {
+                    command.rejection = new VersionConflictException(
+                            AccountServiceImpl.VERSION_CONFLICT_ERR, command.sourceAccountId, version, command.expectedVersion);
+                    return;
+                }
+            }
+            BigDecimal srcBalance = balance(runningBalances, command.sourceAccountId);
+            if (srcBalance.compareTo(command.amount) < 0) {
+                command.rejection = new InsufficientFundsException(
+                        AccountServiceImpl.INSUFFICIENT_FOUNDS_ERR, command.sourceAccountId);
+                return;
+            }
+            runningBalances.put(command.sourceAccountId, srcBalance.subtract(command.amount));
+            runningBalances.put(command.destinationAccountId,
+                    balance(runningBalances, command.destinationAccountId).add(command.creditAmount));
+            pendingChanges.merge(command.sourceAccountId, 1L, Long::sum);
+            pendingChanges.merge(command.destinationAccountId, 1L, Long::sum);
+            return;
+        }
+
+        // A batch only moves the running balances if every one of its transfers fits
+        batchBalances.clear();
+        for (int i = 0; i < command.batch.size(); i++) {
+            TransferDTO transferDTO = command.batch.get(i);
+            BigDecimal amount = transferDTO.getTransferAmount();
+            BigDecimal srcBalance = batchBalance(transferDTO.getSourceAccountId());
+            if (srcBalance.compareTo(amount) < 0) {
+                TransferResultDTO failed = command.batchResults.get(i);
+                failed.setStatus(TransferResultDTO.Status.FAILED);
+                failed.setErrorMessage(String.format(AccountServiceImpl.INSUFFICIENT_FOUNDS_ERR, transferDTO.getSourceAccountId()));
+                command.failedIndex = i;
+                return;
+            }
+            batchBalances.put(transferDTO.getSourceAccountId(), srcBalance.subtract(amount));
+            batchBalances.put(transferDTO.getDestinationAccountId(),
+                    batchBalance(transferDTO.getDestinationAccountId()).add(amount));
+        }
+        runningBalances.putAll(batchBalances);
+        for (TransferDTO transferDTO : command.batch) {
+            pendingChanges.merge(transferDTO.getSourceAccountId(), 1L, Long::sum);
+            pendingChanges.merge(transferDTO.getDestinationAccountId(), 1L, Long::sum);
+        }
+    }
+
+    /**
+     * @return Version the account will be at once the transfers accepted so far in this batch are applied
+     */
+    private long version(int accountId) {
+        try {
+            return accountDAO.getAccount(accountId).getVersion() + pendingChanges.getOrDefault(accountId, 0L);
+        }
+        catch (AccountNotFoundException e) {
+            // Already checked by the request thread and accounts are never removed
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private BigDecimal batchBalance(int accountId) {
+        BigDecimal balance = batchBalances.get(accountId);
+        return balance != null ? balance : balance(runningBalances, accountId);
+    }
+
+    private BigDecimal balance(Map<Integer, BigDecimal> balances, int accountId) {
+        BigDecimal balance = balances.get(accountId);
+        if (balance == null) {
+            try {
+                balance = accountDAO.getAccount(accountId).getBalance();
+            }
+            catch (AccountNotFoundException e) {
+                // Already checked by the request thread and accounts are never removed
+                throw new IllegalStateException(e);
+            }
+        }
+        return balance;
+    }
+
+    private void beforeUpdate(long first, long last) {
+        for (long sequence = first; sequence <= last; sequence++) {
+            TransferCommand command = ringBuffer.get(sequence);
+            if (!command.isAccepted()) {
+                continue;
+            }
+            if (command.isBatch()) {
+                for (TransferDTO transferDTO : command.batch) {
+                    snapshotManager.beforeUpdate(transferDTO.getSourceAccountId());
+                    snapshotManager.beforeUpdate(transferDTO.getDestinationAccountId());
+                }
+            }
+            else {
+                snapshotManager.beforeUpdate(command.sourceAccountId);
+                snapshotManager.beforeUpdate(command.destinationAccountId);
+            }
+        }
+    }
+
+    private void apply(long first, long last) {
+        for (long sequence = first; sequence <= last; sequence++) {
+            TransferCommand command = ringBuffer.get(sequence);
+            if (!command.isAccepted()) {
+                continue;
+            }
+            if (command.isBatch()) {
+                command.failedIndex = delegate.applyBatch(command.batch, command.batchResults);
+            }
+            else {
+                delegate.applyTransfer(command.sourceAccountId, command.destinationAccountId, command.amount,
+                        command.creditAmount);
+            }
+        }
+    }
+
+    private void reject(long first, long last, RuntimeException e) {
+        for (long sequence = first; sequence <= last; sequence++) {
+            TransferCommand command = ringBuffer.get(sequence);
+            if (command.isAccepted()) {
+                command.rejection = e;
+            }
+        }
+    }
+}
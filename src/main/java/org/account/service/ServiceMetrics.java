@@ -0,0 +1,112 @@
+package org.account.service;
+
+import org.account.exception.*;
+import org.account.metrics.Counter;
+import org.account.metrics.LatencyHistogram;
+import org.account.metrics.MetricsRegistry;
+import org.account.model.dto.BatchTransferResultDTO;
+
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metrics shared by the instrumented account services: call latency per method and transfer outcomes
+ * by exception type.
+ */
+class ServiceMetrics {
+
+    static final String CALL_METRIC = "account_service_call_seconds";
+    static final String TRANSFERS_METRIC = "account_transfers_total";
+    static final String BATCHES_METRIC = "account_batch_transfers_total";
+    private static final String CALL_HELP = "Time spent in each AccountService method";
+    private static final String TRANSFERS_HELP = "Single transfers by outcome, either success or the exception that rejected them";
+    private static final String BATCHES_HELP = "Batch transfers by outcome, committed, aborted or the exception that rejected them";
+    private static final String SUCCESS = "success";
+    private static final String COMMITTED = "committed";
+    private static final String ABORTED = "aborted";
+
+    final LatencyHistogram getAllAccounts;
+    final LatencyHistogram streamAllAccounts;
+    final LatencyHistogram getAccountPage;
+    final LatencyHistogram getAccount;
+    final LatencyHistogram getAccountVersion;
+    final LatencyHistogram getTransactions;
+    final LatencyHistogram createAccount;
+    final LatencyHistogram transferMoney;
+    final LatencyHistogram transferMoneyBatch;
+
+    private final MetricsRegistry registry;
+    private final Counter transfersSucceeded;
+    private final Counter batchesCommitted;
+    private final Counter batchesAborted;
+    private final Map<Class<?>, Counter> transfersFailed = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Counter> batchesFailed = new ConcurrentHashMap<>();
+
+    ServiceMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+        getAllAccounts = call(registry, "getAllAccounts");
+        streamAllAccounts = call(registry, "streamAllAccounts");
+        getAccountPage = call(registry, "getAccountPage");
+        getAccount = call(registry, "getAccount");
+        getAccountVersion = call(registry, "getAccountVersion");
+        getTransactions = call(registry, "getTransactions");
+        createAccount = call(registry, "createAccount");
+        transferMoney = call(registry, "transferMoney");
+        transferMoneyBatch = call(registry, "transferMoneyBatch");
+        transfersSucceeded = registry.counter(TRANSFERS_METRIC, TRANSFERS_HELP, "outcome", SUCCESS);
+        batchesCommitted = registry.counter(BATCHES_METRIC, BATCHES_HELP, "outcome", COMMITTED);
+        batchesAborted = registry.counter(BATCHES_METRIC, BATCHES_HELP, "outcome", ABORTED);
+
+        // Registered up front so that every expected outcome is exported, even before it first happens
+        for (Class<?> type : new Class<?>[] {InsufficientFundsException.class, CurrencyConversionException.class,
+                AccountNotFoundException.class, InvalidParameterException.class, RequiredParameterException.class,
+                LockTimeoutException.class, VersionConflictException.class}) {
+            transferFailed(type);
+        }
+        batchFailed(RequiredParameterException.class);
+        batchFailed(LockTimeoutException.class);
+    }
+
+    void recordTransfer(Throwable error) {
+        if (error == null) {
+            transfersSucceeded.increment();
+        }
+        else {
+            transferFailed(unwrap(error).getClass()).increment();
+        }
+    }
+
+    void recordBatch(BatchTransferResultDTO result, Throwable error) {
+        if (error != null) {
+            batchFailed(unwrap(error).getClass()).increment();
+        }
+        else if (result.isCommitted()) {
+            batchesCommitted.increment();
+        }
+        else {
+            batchesAborted.increment();
+        }
+    }
+
+    private Counter transferFailed(Class<?> type) {
+        // computeIfAbsent locks its bin even when the key is present, so rejections would contend on it
+        Counter counter = transfersFailed.get(type);
+        return counter != null ? counter : transfersFailed.computeIfAbsent(type,
+                key -> registry.counter(TRANSFERS_METRIC, TRANSFERS_HELP, "outcome", key.getSimpleName()));
+    }
+
+    private Counter batchFailed(Class<?> type) {
+        Counter counter = batchesFailed.get(type);
+        return counter != null ? counter : batchesFailed.computeIfAbsent(type,
+                key -> registry.counter(BATCHES_METRIC, BATCHES_HELP, "outcome", key.getSimpleName()));
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static LatencyHistogram call(MetricsRegistry registry, String method) {
+        return registry.histogram(CALL_METRIC, CALL_HELP, "method", method);
+    }
+}
@@ -0,0 +1,70 @@
+package org.account.service;
+
+import org.account.model.dto.TransferDTO;
+import org.account.model.dto.TransferResultDTO;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reusable ring buffer entry describing one transfer, or one batch of transfers, to be applied
+ * by the sequencer thread.
+ */
+class TransferCommand {
+
+    int sourceAccountId;
+    int destinationAccountId;
+    BigDecimal amount;
+    /** Amount deposited, which differs from the amount withdrawn when the accounts' currencies differ */
+    BigDecimal creditAmount;
+    /** Version the source account must be at when the transfer is decided, or null for any */
+    Long expectedVersion;
+
+    /** Set instead of the single transfer fields for a batch */
+    List<TransferDTO> batch;
+    List<TransferResultDTO> batchResults;
+
+    /** Completes with the index of the failed batch transfer, -1 on success, or exceptionally */
+    CompletableFuture<Integer> result;
+
+    /** Outcome decided by the sequencer before anything is journalled or applied */
+    Exception rejection;
+    int failedIndex;
+
+    void setTransfer(int sourceAccountId, int destinationAccountId, BigDecimal amount, BigDecimal creditAmount) {
+        this.sourceAccountId = sourceAccountId;
+        this.destinationAccountId = destinationAccountId;
+        this.amount = amount;
+        this.creditAmount = creditAmount;
+        this.expectedVersion = null;
+        this.batch = null;
+        this.batchResults = null;
+    }
+
+    void setBatch(List<TransferDTO> batch, List<TransferResultDTO> batchResults) {
+        this.batch = batch;
+        this.batchResults = batchResults;
+        this.amount = null;
+        this.creditAmount = null;
+        this.expectedVersion = null;
+    }
+
+    boolean isBatch() {
+        return batch != null;
+    }
+
+    boolean isAccepted() {
+        return rejection == null && failedIndex < 0;
+    }
+
+    void clear() {
+        amount = null;
+        creditAmount = null;
+        expectedVersion = null;
+        batch = null;
+        batchResults = null;
+        result = null;
+        rejection = null;
+    }
+}
@@ -0,0 +1,25 @@
+package org.account.snapshot;
+
+/**
+ * Snapshot manager used when snapshots are switched off, never writes anything.
+ */
+public class NoOpSnapshotManager implements SnapshotManager {
+
+    public long beginUpdate() {
+        return 0;
+    }
+
+    public long tryBeginUpdate() {
+        return 1;
+    }
+
+    public void beforeUpdate(int accountId) {}
+
+    public void endUpdate(long stamp) {}
+
+    public SnapshotInfo takeSnapshot() {
+        return SnapshotInfo.NONE;
+    }
+
+    public void close() {}
+}
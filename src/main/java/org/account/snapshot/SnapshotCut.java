@@ -0,0 +1,77 @@
+package org.account.snapshot;
+
+import org.account.model.Account;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Consistent cut of the account state at a journal sequence number, taken without stopping updates.
+ * <p>
+ * The snapshot writer visits accounts in ID order. An update to an account the writer has not
+ * visited yet first saves a copy of the account as it was at the cut, and the writer uses that copy
+ * instead of the live account. Copies are dropped once written, so only accounts updated while a
+ * snapshot is in progress are held twice.
+ */
+class SnapshotCut {
+
+    private final SnapshotInfo position;
+    private final int lastAccountId;
+    private final Map<Integer, Account> preImages = new ConcurrentHashMap<>();
+    private volatile int written;
+
+    SnapshotCut(long sequence, long journalPosition, int lastAccountId) {
+        this.position = new SnapshotInfo(sequence, journalPosition, 0);
+        this.lastAccountId = lastAccountId;
+    }
+
+    SnapshotInfo getPosition() {
+        return position;
+    }
+
+    int getLastAccountId() {
+        return lastAccountId;
+    }
+
+    /**
+     * Called by an update before it changes the account
+     */
+    void beforeUpdate(Account account) {
+        int id = account.getId();
+        if (id > written && id <= lastAccountId) {
+            preImages.putIfAbsent(id, copyOf(account));
+        }
+    }
+
+    /**
+     * Called by the writer to get the account as it was at the cut
+     */
+    Account imageOf(Account account) {
+        Account copy = copyOf(account);
+        Account preImage = preImages.putIfAbsent(account.getId(), copy);
+        return preImage != null ? preImage : copy;
+    }
+
+    /**
+     * Called by the writer once the account has been written, after which updates no longer copy it
+     */
+    void written(int id) {
+        written = id;
+        preImages.remove(id);
+    }
+
+    private static Account copyOf(Account account) {
+        Account copy = new Account();
+        copy.setId(account.getId());
+        copy.setAccountHolderName(account.getAccountHolderName());
+        copy.setCurrency(account.getCurrency());
+        copy.setCreatedDate(account.getCreatedDate());
+        if (account.isMinorUnitBalance()) {
+            copy.setBalanceMinorUnits(account.getBalanceMinorUnits());
+        }
+        else {
+            copy.setBalance(account.getBalance());
+        }
+        return copy;
+    }
+}
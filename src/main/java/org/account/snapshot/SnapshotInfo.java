@@ -0,0 +1,46 @@
+package org.account.snapshot;
+
+/**
+ * Position in the journal that a snapshot corresponds to.
+ */
+public class SnapshotInfo {
+
+    public static final SnapshotInfo NONE = new SnapshotInfo(0, 0, 0);
+
+    private final long sequence;
+    private final long journalPosition;
+    private final int accountCount;
+
+    public SnapshotInfo(long sequence, long journalPosition, int accountCount) {
+        this.sequence = sequence;
+        this.journalPosition = journalPosition;
+        this.accountCount = accountCount;
+    }
+
+    /**
+     * @return Sequence number of the last journal record included in the snapshot
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return Byte offset in the journal just past the last record included in the snapshot
+     */
+    public long getJournalPosition() {
+        return journalPosition;
+    }
+
+    public int getAccountCount() {
+        return accountCount;
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotInfo{" +
+                "sequence=" + sequence +
+                ", journalPosition=" + journalPosition +
+                ", accountCount=" + accountCount +
+                '}';
+    }
+}
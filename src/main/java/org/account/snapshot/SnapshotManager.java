@@ -0,0 +1,44 @@
+package org.account.snapshot;
+
+import java.io.IOException;
+
+/**
+ * Periodically writes the full account state to a snapshot file, so that startup
+ * only has to replay the journal written after it.
+ * <p>
+ * Every journalled update must run between {@link #beginUpdate()} and {@link #endUpdate(long)}
+ * and report the accounts it changes through {@link #beforeUpdate(int)} before changing them.
+ * This lets a snapshot take a consistent cut at a journal sequence number without stopping updates.
+ */
+public interface SnapshotManager extends AutoCloseable {
+
+    /**
+     * Marks the start of an update that will be journalled
+     * @return Stamp to pass to {@link #endUpdate(long)}
+     */
+    long beginUpdate();
+
+    /**
+     * Like {@link #beginUpdate()}, but never waits. An update whose end depends on other threads, such as
+     * one handed between partition threads, must begin this way: otherwise it could queue behind a snapshot
+     * that is itself waiting for an update those threads are holding open.
+     * @return Stamp to pass to {@link #endUpdate(long)}, or 0 if a snapshot is being cut and the update must be retried
+     */
+    long tryBeginUpdate();
+
+    /**
+     * Must be called before the account with the given ID is changed by the current update
+     */
+    void beforeUpdate(int accountId);
+
+    void endUpdate(long stamp);
+
+    /**
+     * Writes a snapshot of every account as of the last journal record
+     * @return Description of the snapshot written
+     */
+    SnapshotInfo takeSnapshot() throws IOException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,114 @@
+package org.account.snapshot;
+
+import org.account.dao.AccountDAO;
+import org.account.exception.AccountNotFoundException;
+import org.account.journal.Journal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Writes snapshots to a single file, either on demand or on a fixed schedule.
+ * <p>
+ * Updates hold a shared lock only while they journal and apply a change. Taking a snapshot
+ * holds the exclusive lock just long enough to read the journal position, so at that instant no
+ * journalled change is half applied. The accounts themselves are then written while updates carry
+ * on, see {@link SnapshotCut}.
+ */
+public class SnapshotManagerImpl implements SnapshotManager {
+
+    private static final String SNAPSHOT_MSG = "Wrote snapshot of %s accounts up to journal record %s in %s ms";
+    private static final String SNAPSHOT_ERR = "ERROR: Could not write snapshot %s: %s";
+
+    private final AccountDAO accountDAO;
+    private final Journal journal;
+    private final Path path;
+    private final StampedLock barrier = new StampedLock();
+    private volatile SnapshotCut cut;
+    private volatile boolean cutPending;
+    private ScheduledExecutorService scheduler;
+
+    public SnapshotManagerImpl(AccountDAO accountDAO, Journal journal, Path path) {
+        this.accountDAO = accountDAO;
+        this.journal = journal;
+        this.path = path;
+    }
+
+    /**
+     * Starts writing a snapshot every interval in the background
+     */
+    public synchronized void start(long intervalMillis) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::takeScheduledSnapshot, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public long beginUpdate() {
+        return barrier.readLock();
+    }
+
+    public long tryBeginUpdate() {
+        // Give way to a snapshot waiting for the exclusive lock, which a read lock would otherwise barge past
+        return cutPending ? 0 : barrier.tryReadLock();
+    }
+
+    public void beforeUpdate(int accountId) {
+        SnapshotCut current = cut;
+        if (current != null) {
+            try {
+                current.beforeUpdate(accountDAO.getAccount(accountId));
+            }
+            catch (AccountNotFoundException e) {
+                // Nothing to preserve, the update itself will fail
+            }
+        }
+    }
+
+    public void endUpdate(long stamp) {
+        barrier.unlockRead(stamp);
+    }
+
+    public synchronized SnapshotInfo takeSnapshot() throws IOException {
+        cutPending = true;
+        long stamp = barrier.writeLock();
+        cutPending = false;
+        try {
+            cut = new SnapshotCut(journal.getLastSequence(), journal.getPosition(), accountDAO.getLastAccountId());
+        }
+        finally {
+            barrier.unlockWrite(stamp);
+        }
+
+        try {
+            return new SnapshotWriter().write(path, cut, accountDAO);
+        }
+        finally {
+            cut = null;
+        }
+    }
+
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void takeScheduledSnapshot() {
+        long start = System.nanoTime();
+        try {
+            SnapshotInfo snapshot = takeSnapshot();
+            System.out.println(String.format(SNAPSHOT_MSG, snapshot.getAccountCount(), snapshot.getSequence(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        }
+        catch (IOException e) {
+            System.out.println(String.format(SNAPSHOT_ERR, path, e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.account.snapshot;
+
+import org.account.dao.AccountDAO;
+import org.account.model.Account;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Currency;
+import java.util.Date;
+import java.util.zip.CRC32;
+
+/**
+ * Loads snapshot files written by {@link SnapshotWriter} through memory-mapped windows of the file,
+ * so that large snapshots are read without copying them through heap buffers first.
+ */
+public class SnapshotReader {
+
+    private static final long WINDOW_SIZE = 256L << 20;
+    private static final String CORRUPT_SNAPSHOT_ERR = "Snapshot %s is corrupt: %s";
+
+    private final long windowSize;
+
+    public SnapshotReader() {
+        this(WINDOW_SIZE);
+    }
+
+    SnapshotReader(long windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Stores every account in the snapshot into the DAO. The checksum of the whole file is verified
+     * before any account is stored, so a corrupt snapshot leaves the DAO untouched.
+     * @return Position in the journal to resume replay from, or {@link SnapshotInfo#NONE} if there is no snapshot
+     * @throws IOException If the snapshot could not be read or is corrupt
+     */
+    public SnapshotInfo load(Path path, AccountDAO accountDAO) throws IOException {
+        if (!Files.exists(path)) {
+            return SnapshotInfo.NONE;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < SnapshotWriter.HEADER_SIZE + SnapshotWriter.TRAILER_SIZE) {
+                throw corrupt(path, "truncated");
+            }
+            verifyChecksum(path, channel, size);
+
+            long base = 0;
+            ByteBuffer buffer = map(channel, base, size);
+            if (buffer.getInt() != SnapshotWriter.MAGIC || buffer.getInt() != SnapshotWriter.VERSION) {
+                throw corrupt(path, "unknown format");
+            }
+            long sequence = buffer.getLong();
+            long journalPosition = buffer.getLong();
+
+            int loaded = 0;
+            while (true) {
+                int start = buffer.position();
+                try {
+                    int id = buffer.getInt();
+                    if (id == 0) {
+                        int count = buffer.getInt();
+                        if (count != loaded) {
+                            throw corrupt(path, "expected " + count + " accounts but found " + loaded);
+                        }
+                        return new SnapshotInfo(sequence, journalPosition, count);
+                    }
+                    accountDAO.insertAccount(readAccount(id, buffer));
+                    loaded++;
+                }
+                catch (BufferUnderflowException e) {
+                    // Record crosses the end of the window, map the next window starting at the record
+                    if (start == 0) {
+                        throw corrupt(path, "record larger than the read window");
+                    }
+                    base += start;
+                    buffer = map(channel, base, size);
+                }
+            }
+        }
+    }
+
+    private void verifyChecksum(Path path, FileChannel channel, long size) throws IOException {
+        long checkedSize = size - 4;
+        CRC32 crc = new CRC32();
+        for (long offset = 0; offset < checkedSize; offset += windowSize) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowSize, checkedSize - offset)));
+        }
+        ByteBuffer expected = channel.map(FileChannel.MapMode.READ_ONLY, checkedSize, 4);
+        if (expected.getInt() != (int) crc.getValue()) {
+            throw corrupt(path, "checksum mismatch");
+        }
+    }
+
+    private ByteBuffer map(FileChannel channel, long from, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(windowSize, size - from));
+    }
+
+    private Account readAccount(int id, ByteBuffer buffer) {
+        boolean minorUnits = (buffer.get() & SnapshotWriter.FLAG_MINOR_UNITS) != 0;
+        byte[] currencyCode = new byte[3];
+        buffer.get(currencyCode);
+        long createdMillis = buffer.getLong();
+        byte[] name = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(name);
+
+        Account account = new Account();
+        account.setId(id);
+        account.setAccountHolderName(new String(name, StandardCharsets.UTF_8));
+        account.setCurrency(Currency.getInstance(new String(currencyCode, StandardCharsets.US_ASCII)));
+        account.setCreatedDate(new Date(createdMillis));
+        if (minorUnits) {
+            account.setBalanceMinorUnits(buffer.getLong());
+        }
+        else {
+            int scale = buffer.getInt();
+            byte[] unscaled = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(unscaled);
+            account.setBalance(new BigDecimal(new BigInteger(unscaled), scale));
+        }
+        return account;
+    }
+
+    private IOException corrupt(Path path, String reason) {
+        return new IOException(String.format(CORRUPT_SNAPSHOT_ERR, path, reason));
+    }
+}
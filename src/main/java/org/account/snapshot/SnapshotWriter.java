@@ -0,0 +1,102 @@
+package org.account.snapshot;
+
+import org.account.dao.AccountDAO;
+import org.account.exception.AccountNotFoundException;
+import org.account.model.Account;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes snapshot files. The file is written next to the target and moved over it once
+ * complete and synced, so a crash mid-write leaves the previous snapshot in place.
+ * <p>
+ * Layout: [int magic][int version][long sequence][long journal position], then one record per
+ * account in ID order, then [int 0][int account count][int CRC32 of everything before it].
+ * An account record is [int id][byte flags][3 byte currency code][long created millis]
+ * [unsigned short name length][UTF-8 name] followed by either [long minor units] or
+ * [int scale][unsigned short length][unscaled value bytes].
+ */
+class SnapshotWriter {
+
+    static final int MAGIC = 0x41434E54;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 24;
+    static final int TRAILER_SIZE = 12;
+    static final byte FLAG_MINOR_UNITS = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String NAME_TOO_LONG_ERR = "Account holder name of account %s is too long for a snapshot";
+    private static final String BALANCE_TOO_LONG_ERR = "Balance of account %s is too long for a snapshot";
+
+    SnapshotInfo write(Path path, SnapshotCut cut, AccountDAO accountDAO) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        SnapshotInfo position = cut.getPosition();
+        int count = 0;
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            BufferedOutputStream buffered = new BufferedOutputStream(file, BUFFER_SIZE);
+            CheckedOutputStream checked = new CheckedOutputStream(buffered, new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(position.getSequence());
+            out.writeLong(position.getJournalPosition());
+
+            for (int id = 1; id <= cut.getLastAccountId(); id++) {
+                Account account;
+                try {
+                    account = accountDAO.getAccount(id);
+                }
+                catch (AccountNotFoundException e) {
+                    // ID was reserved but the account was never stored
+                    continue;
+                }
+                writeAccount(cut.imageOf(account), out);
+                cut.written(id);
+                count++;
+            }
+
+            out.writeInt(0);
+            out.writeInt(count);
+            out.flush();
+            new DataOutputStream(buffered).writeInt((int) checked.getChecksum().getValue());
+            buffered.flush();
+            file.getChannel().force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new SnapshotInfo(position.getSequence(), position.getJournalPosition(), count);
+    }
+
+    private void writeAccount(Account account, DataOutputStream out) throws IOException {
+        byte[] name = account.getAccountHolderName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > 0xFFFF) {
+            throw new IOException(String.format(NAME_TOO_LONG_ERR, account.getId()));
+        }
+
+        out.writeInt(account.getId());
+        out.writeByte(account.isMinorUnitBalance() ? FLAG_MINOR_UNITS : 0);
+        out.write(account.getCurrency().getCurrencyCode().getBytes(StandardCharsets.US_ASCII));
+        out.writeLong(account.getCreatedDate() != null ? account.getCreatedDate().getTime() : 0);
+        out.writeShort(name.length);
+        out.write(name);
+        if (account.isMinorUnitBalance()) {
+            out.writeLong(account.getBalanceMinorUnits());
+        }
+        else {
+            BigDecimal balance = account.getBalance();
+            byte[] unscaled = balance.unscaledValue().toByteArray();
+            if (unscaled.length > 0xFFFF) {
+                throw new IOException(String.format(BALANCE_TOO_LONG_ERR, account.getId()));
+            }
+            out.writeInt(balance.scale());
+            out.writeShort(unscaled.length);
+            out.write(unscaled);
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package org.account.transformer;
 
+import org.account.ledger.LedgerEntry;
 import org.account.model.Account;
 import org.account.model.dto.AccountDTO;
+import org.account.model.dto.TransactionDTO;
+
+import java.util.Currency;
 
 public interface AccountTransformer {
 
     Account fromDTO(AccountDTO accountDTO);
     AccountDTO toDTO(Account account);
+    TransactionDTO toDTO(LedgerEntry entry, Currency currency);
 }
@@ -1,12 +1,28 @@
 package org.account.transformer;
 
+import org.account.ledger.LedgerEntry;
 import org.account.model.Account;
+import org.account.model.MinorUnits;
 import org.account.model.dto.AccountDTO;
+import org.account.model.dto.TransactionDTO;
 
 import java.util.Currency;
 
 public class AccountTransformerImpl implements AccountTransformer {
 
+    private final boolean minorUnitBalances;
+
+    public AccountTransformerImpl() {
+        this(false);
+    }
+
+    /**
+     * @param minorUnitBalances Whether created accounts hold their balance as a long of minor currency units
+     */
+    public AccountTransformerImpl(boolean minorUnitBalances) {
+        this.minorUnitBalances = minorUnitBalances;
+    }
+
     public Account fromDTO(AccountDTO accountDTO) {
         Account o = new Account();
         if (accountDTO.getId() != null) {
@@ -14,7 +30,12 @@ public class AccountTransformerImpl implements AccountTransformer {
         }
         o.setAccountHolderName(accountDTO.getAccountHolderName());
         o.setCurrency(Currency.getInstance(accountDTO.getCurrency()));
-        o.setBalance(accountDTO.getBalance());
+        if (minorUnitBalances && accountDTO.getBalance() != null && MinorUnits.isSupported(o.getCurrency())) {
+            o.setBalanceMinorUnits(MinorUnits.toMinorUnits(accountDTO.getBalance(), o.getCurrency()));
+        }
+        else {
+            o.setBalance(accountDTO.getBalance());
+        }
         return o;
     }
 
@@ -23,9 +44,23 @@ public class AccountTransformerImpl implements AccountTransformer {
         dto.setId(account.getId());
         dto.setAccountHolderName(account.getAccountHolderName());
         dto.setCurrency(account.getCurrency().getCurrencyCode());
-        dto.setBalance(account.getBalance());
+        if (account.isMinorUnitBalance()) {
+            dto.setBalance(MinorUnits.toBigDecimal(account.getBalanceMinorUnits(), account.getCurrency()));
+        }
+        else {
+            dto.setBalance(account.getBalance());
+        }
         dto.setCreatedDate(account.getCreatedDate());
         return dto;
     }
 
+    public TransactionDTO toDTO(LedgerEntry entry, Currency currency) {
+        TransactionDTO dto = new TransactionDTO();
+        dto.setTimestamp(entry.getTimestampMillis());
+        dto.setCounterpartyAccountId(entry.getCounterpartyId());
+        dto.setAmount(MinorUnits.toBigDecimal(entry.getAmountMinorUnits(), currency));
+        dto.setBalance(MinorUnits.toBigDecimal(entry.getBalanceMinorUnits(), currency));
+        dto.setCurrency(currency.getCurrencyCode());
+        return dto;
+    }
 }
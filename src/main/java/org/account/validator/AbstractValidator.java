@@ -4,38 +4,63 @@ import org.account.exception.InvalidParameterException;
 import org.account.exception.RequiredParameterException;
 
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.Currency;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public abstract class AbstractValidator<T> implements Validator<T> {
 
     private static final String REQUIRED_FIELD_ERR = "%s is a required parameter";
     private static final String INVALID_CURRENCY_ERR = "%s is not a valid currency code";
     private static final String NEGATIVE_VALUE_ERR = "Cannot have negative value";
+    private static final String CURRENCY_PRECISION_ERR = "%s has more decimal places than %s allows";
+    private static final String MAX_DIGITS_ERR = "%s has more than %s digits";
+    /** The digits of a decimal128, which keeps every encoded amount and balance to a few bytes */
+    private static final int MAX_DIGITS = 34;
+    private static final InvalidParameterException NEGATIVE_VALUE = new InvalidParameterException(NEGATIVE_VALUE_ERR);
+
+    /** Looked up instead of calling Currency.getInstance, which rejects an unknown code by throwing */
+    private static final Map<String, Currency> CURRENCIES = Collections.unmodifiableMap(Currency.getAvailableCurrencies()
+            .stream().collect(Collectors.toMap(Currency::getCurrencyCode, Function.identity())));
 
     protected void assertRequiredParam(String fieldName, String s) throws RequiredParameterException {
         if (s == null || s.isEmpty()) {
-            throw new RequiredParameterException(String.format(REQUIRED_FIELD_ERR, fieldName));
+            throw new RequiredParameterException(REQUIRED_FIELD_ERR, fieldName);
         }
     }
 
     protected void assertRequiredParam(String fieldName, Number d) throws RequiredParameterException {
         if (d == null) {
-            throw new RequiredParameterException(String.format(REQUIRED_FIELD_ERR, fieldName));
+            throw new RequiredParameterException(REQUIRED_FIELD_ERR, fieldName);
         }
     }
 
     protected void assertValidCurrency(String currencyCode) throws InvalidParameterException {
-        try {
-            Currency.getInstance(currencyCode);
-        }
-        catch (IllegalArgumentException e) {
-            throw new InvalidParameterException(String.format(INVALID_CURRENCY_ERR, currencyCode));
+        if (!CURRENCIES.containsKey(currencyCode)) {
+            throw new InvalidParameterException(INVALID_CURRENCY_ERR, currencyCode);
         }
     }
 
     protected void assertPositive(BigDecimal value) throws InvalidParameterException {
         if (value.signum() < 0) {
-            throw new InvalidParameterException(NEGATIVE_VALUE_ERR);
+            throw NEGATIVE_VALUE;
+        }
+    }
+
+    protected void assertCurrencyPrecision(String fieldName, BigDecimal value, String currencyCode) throws InvalidParameterException {
+        int fractionDigits = CURRENCIES.get(currencyCode).getDefaultFractionDigits();
+        if (fractionDigits >= 0 && value.stripTrailingZeros().scale() > fractionDigits) {
+            throw new InvalidParameterException(CURRENCY_PRECISION_ERR, fieldName, currencyCode);
+        }
+    }
+
+    protected void assertMaxDigits(String fieldName, BigDecimal value) throws InvalidParameterException {
+        BigDecimal stripped = value.stripTrailingZeros();
+        // A negative scale hides integer digits, as in 1E+50
+        if (Math.max(stripped.precision(), stripped.precision() - stripped.scale()) > MAX_DIGITS) {
+            throw new InvalidParameterException(MAX_DIGITS_ERR, fieldName, MAX_DIGITS);
         }
     }
 }
@@ -12,5 +12,7 @@ public class AccountValidatorImpl extends AbstractValidator<AccountDTO> {
         assertRequiredParam("currency", accountDTO.getCurrency());
         assertValidCurrency(accountDTO.getCurrency());
         assertPositive(accountDTO.getBalance());
+        assertMaxDigits("balance", accountDTO.getBalance());
+        assertCurrencyPrecision("balance", accountDTO.getBalance(), accountDTO.getCurrency());
     }
 }
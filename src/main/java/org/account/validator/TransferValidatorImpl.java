@@ -7,15 +7,18 @@ import org.account.model.dto.TransferDTO;
 public class TransferValidatorImpl extends AbstractValidator<TransferDTO> {
 
     private static final String SRC_DST_SAME_ACCOUNT_ERR = "Source and destination accounts must not have same ID";
+    private static final InvalidParameterException SRC_DST_SAME_ACCOUNT = new InvalidParameterException(SRC_DST_SAME_ACCOUNT_ERR);
 
     public void validate(TransferDTO transferDTO) throws RequiredParameterException, InvalidParameterException {
         assertRequiredParam("transferAmount", transferDTO.getTransferAmount());
         assertRequiredParam("currency", transferDTO.getCurrency());
         assertValidCurrency(transferDTO.getCurrency());
         assertPositive(transferDTO.getTransferAmount());
+        assertMaxDigits("transferAmount", transferDTO.getTransferAmount());
+        assertCurrencyPrecision("transferAmount", transferDTO.getTransferAmount(), transferDTO.getCurrency());
 
         if (transferDTO.getSourceAccountId() == transferDTO.getDestinationAccountId()) {
-            throw new InvalidParameterException(SRC_DST_SAME_ACCOUNT_ERR);
+            throw SRC_DST_SAME_ACCOUNT;
         }
     }
 }
@@ -1,110 +1,271 @@
 package integration;
 
 import org.account.exception.*;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.account.model.dto.AccountDTO;
+import org.account.model.dto.AccountPageDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.TransactionDTO;
 import org.account.model.dto.TransferDTO;
 import org.account.validator.TransferValidatorImpl;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
 import org.account.api.AccountApi;
 import org.account.api.AccountApiImpl;
+import org.account.cache.NoOpAccountJsonCache;
 import org.account.dao.AccountDAO;
 import org.account.dao.AccountDAOImpl;
+import org.account.dao.LedgerAccountDAO;
+import org.account.idempotency.IdempotencyCacheImpl;
+import org.account.journal.NoOpJournal;
+import org.account.ledger.LedgerImpl;
+import org.account.lock.AccountLockManagerImpl;
 import org.account.service.AccountService;
 import org.account.service.AccountServiceImpl;
+import org.account.service.AsyncAccountServiceImpl;
+import org.account.snapshot.NoOpSnapshotManager;
 import org.account.transformer.AccountTransformer;
 import org.account.transformer.AccountTransformerImpl;
 import org.account.validator.AccountValidatorImpl;
 import org.account.validator.Validator;
 import util.AccountTestHelper;
 
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class AccountApiIntegrationTest {
 
+    private static final long RESUME_TIMEOUT_MILLIS = 5000;
+
     private AccountApi api;
+    private AccountService service;
 
     @Before
     public void before() {
         Validator<AccountDTO> accountValidator = new AccountValidatorImpl();
         Validator<TransferDTO> transferValidator = new TransferValidatorImpl();
         AccountTransformer transformer = new AccountTransformerImpl();
-        AccountDAO dao = new AccountDAOImpl();
-        AccountService service = new AccountServiceImpl(accountValidator, transferValidator, transformer, dao);
+        AccountDAO dao = new LedgerAccountDAO(new AccountDAOImpl(), new LedgerImpl());
+        service = new AccountServiceImpl(accountValidator, transferValidator, transformer, dao,
+                new AccountLockManagerImpl(), new NoOpJournal(), new NoOpSnapshotManager(),
+                new IdempotencyCacheImpl(60000, 1024 * 1024));
         api = new AccountApiImpl(service);
     }
 
     @Test
-    public void getAccounts_whenNoAccounts_returnsNothing() {
+    public void transferMoney_whenRunOnExecutor_resumesFromServiceThread() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            api = new AccountApiImpl(service, new AsyncAccountServiceImpl(service, executor));
+            insertAccounts(2);
+            TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
+
+            Assert.assertEquals(Response.Status.OK.getStatusCode(), transferMoney(transferDTO).getStatus());
+            transferDTO.setTransferAmount(new BigDecimal("1000000"));
+            Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), transferMoney(transferDTO).getStatus());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void transferMoney_whenExecutorRejects_givesServiceUnavailableWithRetryAfter() throws Exception {
+        insertAccounts(2);
+        api = new AccountApiImpl(service, new AsyncAccountServiceImpl(service, runnable -> {
+            throw new RejectedExecutionException();
+        }));
+
+        Response response = transferMoney(AccountTestHelper.createTransferDTO());
+        Assert.assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+        Assert.assertNotNull(response.getHeaderString(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    public void transferMoney_whenNotCompletedInTime_timesOutWithServiceUnavailable() throws Exception {
+        insertAccounts(2);
+        // Never runs the transfer, as if every thread of the pool were stuck
+        api = new AccountApiImpl(service, new AsyncAccountServiceImpl(service, runnable -> {}),
+                new NoOpAccountJsonCache(service), 50);
+        AsyncResponse asyncResponse = Mockito.mock(AsyncResponse.class);
+        api.transferMoney(AccountTestHelper.createTransferDTO(), null, null, asyncResponse);
+
+        ArgumentCaptor<TimeoutHandler> handler = ArgumentCaptor.forClass(TimeoutHandler.class);
+        Mockito.verify(asyncResponse).setTimeoutHandler(handler.capture());
+        Mockito.verify(asyncResponse).setTimeout(50, TimeUnit.MILLISECONDS);
+        handler.getValue().handleTimeout(asyncResponse);
+        Response response = resumedWith(asyncResponse);
+        Assert.assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+        Assert.assertNotNull(response.getHeaderString(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    public void transferMoney_whenRetriedWithIdempotencyKey_appliesTransferOnce() throws Exception {
+        insertAccounts(2);
+        TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
+        transferDTO.setTransferAmount(new BigDecimal("50"));
+
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), transferMoney(transferDTO, "retry").getStatus());
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), transferMoney(transferDTO, "retry").getStatus());
+        Assert.assertEquals(0, new BigDecimal("50.5").compareTo(service.getAccount(1).getBalance()));
+
+        transferDTO.setTransferAmount(new BigDecimal("10"));
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), transferMoney(transferDTO, "retry").getStatus());
+    }
+
+    @Test
+    public void getTransactions_afterTransfers_returnsBalanceChangesWithCounterparty() throws Exception {
+        insertAccounts(2);
+        TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
+        transferDTO.setTransferAmount(new BigDecimal("12.34"));
+        transferMoney(transferDTO);
+        transferDTO.setTransferAmount(new BigDecimal("1000"));
+        transferMoney(transferDTO);
+
+        Response response = api.getTransactions(1, 0, Long.MAX_VALUE, 100);
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        @SuppressWarnings("unchecked")
+        List<TransactionDTO> transactions = (List<TransactionDTO>) response.getEntity();
+        // The rejected transfer left no trace
+        Assert.assertEquals(1, transactions.size());
+        Assert.assertEquals(2, transactions.get(0).getCounterpartyAccountId());
+        Assert.assertEquals(new BigDecimal("-12.34"), transactions.get(0).getAmount());
+        Assert.assertEquals(new BigDecimal("88.16"), transactions.get(0).getBalance());
+
+        @SuppressWarnings("unchecked")
+        List<TransactionDTO> deposits = (List<TransactionDTO>) api.getTransactions(2, 0, Long.MAX_VALUE, 100).getEntity();
+        Assert.assertEquals(new BigDecimal("212.84"), deposits.get(0).getBalance());
+        Assert.assertEquals(1, deposits.get(0).getCounterpartyAccountId());
+    }
+
+    @Test
+    public void getTransactions_withInvalidParameters_givesErrors() {
+        insertAccounts(1);
+        Assert.assertEquals(Response.Status.NOT_FOUND.getStatusCode(), api.getTransactions(2, 0, 10, 10).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.getTransactions(1, 10, 0, 10).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.getTransactions(1, 0, 10, 0).getStatus());
+    }
+
+    @Test
+    public void getAccounts_whenNoAccounts_returnsNothing() throws IOException {
         Response response = api.getAccounts();
         Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
-        Assert.assertTrue(((List) response.getEntity()).isEmpty());
+        Assert.assertTrue(readStream(response).isEmpty());
     }
 
     @Test
-    public void getAccounts_whenMultipleAccounts_returnsAll() {
-        insertAccounts(10);
+    public void getAccounts_whenMultipleAccounts_returnsAll() throws IOException {
+        List<AccountDTO> insertedDTOs = insertAccounts(10);
         Response response = api.getAccounts();
         Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
-        Assert.assertEquals(10, ((List) response.getEntity()).size());
+        // Created dates are only serialised to the second, so compare everything else
+        List<AccountDTO> streamedDTOs = readStream(response);
+        insertedDTOs.forEach(dto -> dto.setCreatedDate(null));
+        streamedDTOs.forEach(dto -> dto.setCreatedDate(null));
+        Assert.assertEquals(new HashSet<>(insertedDTOs), new HashSet<>(streamedDTOs));
+    }
+
+    @Test
+    public void getAccountPage_whenWalkedToTheEnd_returnsEveryAccountOnce() {
+        List<AccountDTO> insertedDTOs = insertAccounts(25);
+        List<AccountDTO> pagedDTOs = new ArrayList<>();
+        Integer after = 0;
+        int pages = 0;
+        while (after != null) {
+            Response response = api.getAccountPage(after, 10);
+            Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            AccountPageDTO page = (AccountPageDTO) response.getEntity();
+            pagedDTOs.addAll(page.getAccounts());
+            after = page.getNextAfter();
+            pages++;
+        }
+        Assert.assertEquals(3, pages);
+        Assert.assertEquals(insertedDTOs, pagedDTOs);
+    }
+
+    @Test
+    public void getAccountPage_withInvalidLimit_givesBadRequest() {
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.getAccountPage(0, 0).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.getAccountPage(0, 100000).getStatus());
+    }
+
+    @Test
+    public void getAccountPage_withNegativeAfter_givesBadRequest() {
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.getAccountPage(-1, 10).getStatus());
     }
 
     @Test
     public void getAccount_whenNotFound_givesNotFound() {
-        Assert.assertEquals(Response.Status.NOT_FOUND.getStatusCode(), api.getAccount(1).getStatus());
+        Assert.assertEquals(Response.Status.NOT_FOUND.getStatusCode(), getAccount(1).getStatus());
     }
 
     @Test
-    public void getAccount_whenFound_returnsAccount() {
+    public void getAccount_whenFound_returnsAccount() throws IOException {
         List<AccountDTO> insertedDTOs = insertAccounts(1);
-        Response response = api.getAccount(1);
+        Response response = getAccount(1);
         Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
-        Assert.assertEquals(insertedDTOs.get(0), response.getEntity());
+        Assert.assertArrayEquals(new ObjectMapper().writeValueAsBytes(insertedDTOs.get(0)), (byte[]) response.getEntity());
     }
 
     @Test
     public void createAccount_withMissingAccountHolderName_givesBadRequest() {
         AccountDTO dto = AccountTestHelper.createAccountDTO();
         dto.setAccountHolderName(null);
-        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.createAccount(dto).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), createAccount(dto).getStatus());
     }
 
     @Test
     public void createAccount_withMissingCurrency_givesBadRequest() {
         AccountDTO dto = AccountTestHelper.createAccountDTO();
         dto.setCurrency(null);
-        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.createAccount(dto).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), createAccount(dto).getStatus());
     }
 
     @Test
     public void createAccount_withInvalidCurrency_givesBadRequest() {
         AccountDTO dto = AccountTestHelper.createAccountDTO();
         dto.setCurrency("GBPXYZ");
-        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.createAccount(dto).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), createAccount(dto).getStatus());
     }
 
     @Test
     public void createAccount_withMissingBalance_givesBadRequest() {
         AccountDTO dto = AccountTestHelper.createAccountDTO();
         dto.setBalance(null);
-        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.createAccount(dto).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), createAccount(dto).getStatus());
     }
 
     @Test
     public void createAccount_withNegativeBalance_givesBadRequest() {
         AccountDTO dto = AccountTestHelper.createAccountDTO();
         dto.setBalance(BigDecimal.valueOf(-1));
-        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.createAccount(dto).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), createAccount(dto).getStatus());
     }
 
     @Test
     public void createAccount_withValidFields_returnsCreatedAccount() {
         AccountDTO dto = AccountTestHelper.createAccountDTO();
-        Response response = api.createAccount(dto);
+        Response response = createAccount(dto);
         AccountDTO responseDto = (AccountDTO)response.getEntity();
         dto.setId(responseDto.getId());
         dto.setCreatedDate(responseDto.getCreatedDate());
@@ -116,49 +277,49 @@ public class AccountApiIntegrationTest {
     public void transferMoney_whenMissingTransferAmount_givesBadRequest() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         transferDTO.setTransferAmount(null);
-        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),  api.transferMoney(transferDTO).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),  transferMoney(transferDTO).getStatus());
     }
 
     @Test
     public void transferMoney_whenMissingCurrency_givesBadRequest() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         transferDTO.setCurrency(null);
-        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.transferMoney(transferDTO).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), transferMoney(transferDTO).getStatus());
     }
 
     @Test
     public void transferMoney_whenNegativeTransferAmount_givesBadRequest() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         transferDTO.setTransferAmount(BigDecimal.valueOf(-1));
-        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.transferMoney(transferDTO).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), transferMoney(transferDTO).getStatus());
     }
 
     @Test
     public void transferMoney_whenInvalidCurrencyCode_givesBadRequest() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         transferDTO.setCurrency("GBPXYZ");
-        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.transferMoney(transferDTO).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), transferMoney(transferDTO).getStatus());
     }
 
     @Test
     public void transferMoney_whenSourceAndDestinationAccountsIdsSame_givesBadRequest() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         transferDTO.setDestinationAccountId(transferDTO.getSourceAccountId());
-        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.transferMoney(transferDTO).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), transferMoney(transferDTO).getStatus());
     }
 
     @Test
     public void transferMoney_whenSourceAccountNotFound_givesBadRequest() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
-        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.transferMoney(transferDTO).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), transferMoney(transferDTO).getStatus());
     }
 
     @Test
     public void transferMoney_whenDestinationAccountNotFound_givesBadRequest() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         AccountDTO srcAccountDTO = AccountTestHelper.createAccountDTO();
-        Assert.assertEquals(Response.Status.OK.getStatusCode(), api.createAccount(srcAccountDTO).getStatus());
-        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), api.transferMoney(transferDTO).getStatus());
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), createAccount(srcAccountDTO).getStatus());
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), transferMoney(transferDTO).getStatus());
     }
 
     @Test
@@ -167,9 +328,9 @@ public class AccountApiIntegrationTest {
         AccountDTO srcAccountDTO = AccountTestHelper.createAccountDTO(1);
         srcAccountDTO.setCurrency("USD");
         AccountDTO dstAccountDTO = AccountTestHelper.createAccountDTO(2);
-        Assert.assertEquals(Response.Status.OK.getStatusCode(), api.createAccount(srcAccountDTO).getStatus());
-        Assert.assertEquals(Response.Status.OK.getStatusCode(), api.createAccount(dstAccountDTO).getStatus());
-        Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), api.transferMoney(transferDTO).getStatus());
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), createAccount(srcAccountDTO).getStatus());
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), createAccount(dstAccountDTO).getStatus());
+        Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), transferMoney(transferDTO).getStatus());
     }
 
     @Test
@@ -178,9 +339,9 @@ public class AccountApiIntegrationTest {
         AccountDTO srcAccountDTO = AccountTestHelper.createAccountDTO(1);
         AccountDTO dstAccountDTO = AccountTestHelper.createAccountDTO(2);
         dstAccountDTO.setCurrency("USD");
-        Assert.assertEquals(Response.Status.OK.getStatusCode(), api.createAccount(srcAccountDTO).getStatus());
-        Assert.assertEquals(Response.Status.OK.getStatusCode(), api.createAccount(dstAccountDTO).getStatus());
-        Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), api.transferMoney(transferDTO).getStatus());
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), createAccount(srcAccountDTO).getStatus());
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), createAccount(dstAccountDTO).getStatus());
+        Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), transferMoney(transferDTO).getStatus());
     }
 
     @Test
@@ -189,31 +350,99 @@ public class AccountApiIntegrationTest {
         AccountDTO srcAccountDTO = AccountTestHelper.createAccountDTO(1);
         srcAccountDTO.setBalance(BigDecimal.ZERO);
         AccountDTO dstAccountDTO = AccountTestHelper.createAccountDTO(2);
-        Assert.assertEquals(Response.Status.OK.getStatusCode(), api.createAccount(srcAccountDTO).getStatus());
-        Assert.assertEquals(Response.Status.OK.getStatusCode(), api.createAccount(dstAccountDTO).getStatus());
-        Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), api.transferMoney(transferDTO).getStatus());
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), createAccount(srcAccountDTO).getStatus());
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), createAccount(dstAccountDTO).getStatus());
+        Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), transferMoney(transferDTO).getStatus());
     }
 
     @Test
-    public void transferMoney_whenSuccessful_accountBalancedUpdatedCorrectly() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenSuccessful_accountBalancedUpdatedCorrectly() throws IOException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         AccountDTO srcAccountDTO = AccountTestHelper.createAccountDTO(1);
         AccountDTO dstAccountDTO = AccountTestHelper.createAccountDTO(2);
         BigDecimal srcAccountExpectedFinalBalance = srcAccountDTO.getBalance().subtract(transferDTO.getTransferAmount());
         BigDecimal dstAccountExpectedFinalBalance = dstAccountDTO.getBalance().add(transferDTO.getTransferAmount());
-        Assert.assertEquals(Response.Status.OK.getStatusCode(), api.createAccount(srcAccountDTO).getStatus());
-        Assert.assertEquals(Response.Status.OK.getStatusCode(), api.createAccount(dstAccountDTO).getStatus());
-        Assert.assertEquals(Response.Status.OK.getStatusCode(), api.transferMoney(transferDTO).getStatus());
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), createAccount(srcAccountDTO).getStatus());
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), createAccount(dstAccountDTO).getStatus());
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), transferMoney(transferDTO).getStatus());
+
+        Assert.assertEquals(srcAccountExpectedFinalBalance, readAccount(getAccount(1)).getBalance());
+        Assert.assertEquals(dstAccountExpectedFinalBalance, readAccount(getAccount(2)).getBalance());
+    }
+
+    @Test
+    public void transferMoneyBatch_whenEmpty_givesBadRequest() {
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), transferMoneyBatch(Collections.emptyList()).getStatus());
+    }
+
+    @Test
+    public void transferMoneyBatch_whenAnyTransferFails_givesNotAcceptable() {
+        insertAccounts(2);
+        TransferDTO valid = AccountTestHelper.createTransferDTO();
+        TransferDTO insufficientFunds = AccountTestHelper.createTransferDTO();
+        insufficientFunds.setTransferAmount(BigDecimal.valueOf(10000));
+        Response response = transferMoneyBatch(Arrays.asList(valid, insufficientFunds));
+        Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), response.getStatus());
+        Assert.assertFalse(((BatchTransferResultDTO) response.getEntity()).isCommitted());
+    }
+
+    @Test
+    public void transferMoneyBatch_whenSuccessful_givesOk() {
+        insertAccounts(2);
+        TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
+        transferDTO.setTransferAmount(BigDecimal.valueOf(50));
+        Response response = transferMoneyBatch(Arrays.asList(transferDTO, transferDTO));
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        Assert.assertTrue(((BatchTransferResultDTO) response.getEntity()).isCommitted());
+    }
+
+    private List<AccountDTO> readStream(Response response) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(output);
+        return new ObjectMapper().readValue(output.toByteArray(), new TypeReference<List<AccountDTO>>() {});
+    }
+
+    private Response getAccount(int id) {
+        return api.getAccount(id, Mockito.mock(Request.class));
+    }
+
+    private AccountDTO readAccount(Response response) throws IOException {
+        return new ObjectMapper().readValue((byte[]) response.getEntity(), AccountDTO.class);
+    }
+
+    private Response createAccount(AccountDTO accountDTO) {
+        AsyncResponse asyncResponse = Mockito.mock(AsyncResponse.class);
+        api.createAccount(accountDTO, asyncResponse);
+        return resumedWith(asyncResponse);
+    }
+
+    private Response transferMoney(TransferDTO transferDTO) {
+        return transferMoney(transferDTO, null);
+    }
+
+    private Response transferMoney(TransferDTO transferDTO, String idempotencyKey) {
+        AsyncResponse asyncResponse = Mockito.mock(AsyncResponse.class);
+        api.transferMoney(transferDTO, idempotencyKey, null, asyncResponse);
+        return resumedWith(asyncResponse);
+    }
+
+    private Response transferMoneyBatch(List<TransferDTO> transferDTOs) {
+        AsyncResponse asyncResponse = Mockito.mock(AsyncResponse.class);
+        api.transferMoneyBatch(transferDTOs, asyncResponse);
+        return resumedWith(asyncResponse);
+    }
 
-        Assert.assertEquals(srcAccountExpectedFinalBalance, ((AccountDTO)api.getAccount(1).getEntity()).getBalance());
-        Assert.assertEquals(dstAccountExpectedFinalBalance, ((AccountDTO)api.getAccount(2).getEntity()).getBalance());
+    private Response resumedWith(AsyncResponse asyncResponse) {
+        ArgumentCaptor<Object> response = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(asyncResponse, Mockito.timeout(RESUME_TIMEOUT_MILLIS)).resume(response.capture());
+        return (Response) response.getValue();
     }
 
     private List<AccountDTO> insertAccounts(int n) {
         List<AccountDTO> createdAccounts = new ArrayList<>();
         for (int i = 1; i <= n; i++) {
             AccountDTO dto = AccountTestHelper.createAccountDTO(i);
-            Response response = api.createAccount(dto);
+            Response response = createAccount(dto);
             createdAccounts.add((AccountDTO)response.getEntity());
         }
 
@@ -0,0 +1,208 @@
+package integration;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.AccountDAOImpl;
+import org.account.dao.LedgerAccountDAO;
+import org.account.dao.OffHeapAccountDAO;
+import org.account.exception.InsufficientFundsException;
+import org.account.ledger.LedgerEntry;
+import org.account.ledger.LedgerImpl;
+import org.account.model.Account;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import util.AccountTestHelper;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class AccountDAOConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 10000;
+
+    private AccountDAO accountDAO;
+    private ExecutorService executor;
+
+    @Before
+    public void before() {
+        accountDAO = new AccountDAOImpl();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @Test
+    public void createAccount_whenCalledConcurrently_noAccountsLost() throws Exception {
+        runConcurrently(() -> accountDAO.createAccount(AccountTestHelper.createAccount()));
+
+        Set<Integer> ids = accountDAO.getAllAccounts().stream().map(Account::getId).collect(Collectors.toSet());
+        Assert.assertEquals(THREADS * OPERATIONS_PER_THREAD, ids.size());
+        Assert.assertEquals(THREADS * OPERATIONS_PER_THREAD, accountDAO.getAllAccounts().size());
+    }
+
+    @Test
+    public void accountDeposit_whenCalledConcurrently_noUpdatesLost() throws Exception {
+        Account account = accountDAO.createAccount(AccountTestHelper.createAccount());
+        BigDecimal initialBalance = account.getBalance();
+
+        runConcurrently(() -> accountDAO.accountDeposit(account.getId(), BigDecimal.ONE, 0));
+
+        BigDecimal expected = initialBalance.add(BigDecimal.valueOf(THREADS * OPERATIONS_PER_THREAD));
+        Assert.assertEquals(expected, accountDAO.getAccount(account.getId()).getBalance());
+    }
+
+    @Test
+    public void accountWithdraw_whenCalledConcurrently_neverOverdraws() throws Exception {
+        Account account = AccountTestHelper.createAccount();
+        account.setBalance(BigDecimal.valueOf(OPERATIONS_PER_THREAD));
+        accountDAO.createAccount(account);
+        AtomicInteger successes = new AtomicInteger();
+
+        runConcurrently(() -> {
+            try {
+                accountDAO.accountWithdraw(account.getId(), BigDecimal.ONE, 0);
+                successes.incrementAndGet();
+            }
+            catch (InsufficientFundsException e) {
+                // Expected once the balance is exhausted
+            }
+            return null;
+        });
+
+        Assert.assertEquals(OPERATIONS_PER_THREAD, successes.get());
+        Assert.assertEquals(0, BigDecimal.ZERO.compareTo(accountDAO.getAccount(account.getId()).getBalance()));
+    }
+
+    @Test
+    public void accountWithdraw_whenMinorUnitBalanceAndCalledConcurrently_neverOverdraws() throws Exception {
+        Account account = AccountTestHelper.createAccount();
+        account.setBalanceMinorUnits(OPERATIONS_PER_THREAD);
+        accountDAO.createAccount(account);
+        AtomicInteger successes = new AtomicInteger();
+
+        runConcurrently(() -> {
+            try {
+                accountDAO.accountWithdraw(account.getId(), new BigDecimal("0.01"), 0);
+                successes.incrementAndGet();
+            }
+            catch (InsufficientFundsException e) {
+                // Expected once the balance is exhausted
+            }
+            return null;
+        });
+
+        Assert.assertEquals(OPERATIONS_PER_THREAD, successes.get());
+        Assert.assertEquals(0, accountDAO.getAccount(account.getId()).getBalanceMinorUnits());
+    }
+
+    @Test
+    public void accountWithdraw_whenStoredOffHeapAndCalledConcurrently_neverOverdraws() throws Exception {
+        accountDAO = new OffHeapAccountDAO();
+        Account account = AccountTestHelper.createAccount();
+        account.setBalanceMinorUnits(OPERATIONS_PER_THREAD);
+        accountDAO.createAccount(account);
+        AtomicInteger successes = new AtomicInteger();
+
+        runConcurrently(() -> {
+            try {
+                accountDAO.accountWithdraw(1, new BigDecimal("0.01"), 0);
+                successes.incrementAndGet();
+            }
+            catch (InsufficientFundsException e) {
+                // Expected once the balance is exhausted
+            }
+            return null;
+        });
+
+        Assert.assertEquals(OPERATIONS_PER_THREAD, successes.get());
+        Assert.assertEquals(0, accountDAO.getAccount(1).getBalanceMinorUnits());
+    }
+
+    @Test
+    public void mixedOperations_whenCalledConcurrently_totalBalanceConserved() throws Exception {
+        List<Account> accounts = AccountTestHelper.createAccounts(16);
+        accounts.forEach(accountDAO::createAccount);
+        BigDecimal initialTotal = totalBalance();
+
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int id = accounts.get(random.nextInt(accounts.size())).getId();
+            try {
+                int otherId = accounts.get(random.nextInt(accounts.size())).getId();
+                accountDAO.accountWithdraw(id, BigDecimal.ONE, otherId);
+                accountDAO.accountDeposit(otherId, BigDecimal.ONE, id);
+            }
+            catch (InsufficientFundsException e) {
+                // Nothing was withdrawn so there is nothing to deposit
+            }
+            return null;
+        });
+
+        Assert.assertEquals(0, initialTotal.compareTo(totalBalance()));
+    }
+
+    @Test
+    public void ledger_whenBalancesChangedConcurrently_recordsEveryChangeInOrder() throws Exception {
+        accountDAO = new LedgerAccountDAO(accountDAO, new LedgerImpl());
+        List<Account> accounts = AccountTestHelper.createAccounts(4);
+        accounts.forEach(accountDAO::createAccount);
+        AtomicInteger changes = new AtomicInteger();
+
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int id = accounts.get(random.nextInt(accounts.size())).getId();
+            int otherId = accounts.get(random.nextInt(accounts.size())).getId();
+            try {
+                accountDAO.accountWithdraw(id, BigDecimal.ONE, otherId);
+                accountDAO.accountDeposit(otherId, BigDecimal.ONE, id);
+                changes.addAndGet(2);
+            }
+            catch (InsufficientFundsException e) {
+                // Nothing was withdrawn so there is nothing to deposit
+            }
+            return null;
+        });
+
+        int recorded = 0;
+        for (Account account : accounts) {
+            List<LedgerEntry> entries = accountDAO.getLedgerEntries(account.getId(), 0, Long.MAX_VALUE, Integer.MAX_VALUE);
+            // Every entry continues the running balance of the one before it
+            for (int i = 1; i < entries.size(); i++) {
+                Assert.assertEquals(entries.get(i - 1).getBalanceMinorUnits() + entries.get(i).getAmountMinorUnits(),
+                        entries.get(i).getBalanceMinorUnits());
+            }
+            Assert.assertEquals(account.getBalance().movePointRight(2).longValueExact(),
+                    entries.get(entries.size() - 1).getBalanceMinorUnits());
+            recorded += entries.size();
+        }
+        Assert.assertEquals(changes.get(), recorded);
+    }
+
+    private BigDecimal totalBalance() {
+        return accountDAO.getAllAccounts().stream().map(Account::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private void runConcurrently(Callable<?> operation) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    operation.call();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+}
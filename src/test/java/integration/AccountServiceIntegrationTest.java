@@ -3,8 +3,13 @@ package integration;
 import org.account.dao.AccountDAO;
 import org.account.dao.AccountDAOImpl;
 import org.account.exception.*;
+import org.account.lock.AccountLockManager;
+import org.account.lock.AccountLockManagerImpl;
+import org.account.lock.AccountLocks;
 import org.account.model.dto.AccountDTO;
+import org.account.model.dto.BatchTransferResultDTO;
 import org.account.model.dto.TransferDTO;
+import org.account.model.dto.TransferResultDTO;
 import org.account.service.AccountService;
 import org.account.service.AccountServiceImpl;
 import org.account.transformer.AccountTransformer;
@@ -19,7 +24,13 @@ import util.AccountTestHelper;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class AccountServiceIntegrationTest {
 
@@ -103,48 +114,48 @@ public class AccountServiceIntegrationTest {
     }
 
     @Test(expected = RequiredParameterException.class)
-    public void transferMoney_whenMissingTransferAmount_throwsRequiredParameterException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenMissingTransferAmount_throwsRequiredParameterException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         transferDTO.setTransferAmount(null);
         service.transferMoney(transferDTO);
     }
 
     @Test(expected = RequiredParameterException.class)
-    public void transferMoney_whenMissingCurrency_throwsRequiredParameterException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenMissingCurrency_throwsRequiredParameterException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         transferDTO.setCurrency(null);
         service.transferMoney(transferDTO);
     }
 
     @Test(expected = InvalidParameterException.class)
-    public void transferMoney_whenNegativeTransferAmount_throwsInvalidParameterException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenNegativeTransferAmount_throwsInvalidParameterException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         transferDTO.setTransferAmount(BigDecimal.valueOf(-1));
         service.transferMoney(transferDTO);
     }
 
     @Test(expected = InvalidParameterException.class)
-    public void transferMoney_whenInvalidCurrencyCode_throwsInvalidParameterException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenInvalidCurrencyCode_throwsInvalidParameterException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         transferDTO.setCurrency("GBPXYZ");
         service.transferMoney(transferDTO);
     }
 
     @Test(expected = InvalidParameterException.class)
-    public void transferMoney_whenSourceAndDestinationAccountsIdsSame_throwsInvalidParameterException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenSourceAndDestinationAccountsIdsSame_throwsInvalidParameterException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         transferDTO.setDestinationAccountId(transferDTO.getSourceAccountId());
         service.transferMoney(transferDTO);
     }
 
     @Test(expected = AccountNotFoundException.class)
-    public void transferMoney_whenSourceAccountNotFound_throwsAccountNotFoundException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenSourceAccountNotFound_throwsAccountNotFoundException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         service.transferMoney(transferDTO);
     }
 
     @Test(expected = AccountNotFoundException.class)
-    public void transferMoney_whenDestinationAccountNotFound_throwsAccountNotFoundException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenDestinationAccountNotFound_throwsAccountNotFoundException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         AccountDTO srcAccountDTO = AccountTestHelper.createAccountDTO();
         service.createAccount(srcAccountDTO);
@@ -152,7 +163,7 @@ public class AccountServiceIntegrationTest {
     }
 
     @Test(expected = CurrencyConversionException.class)
-    public void transferMoney_whenSourceAccountCurrencyNotSameAsTransferCurrency_throwsCurrencyConversionException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenSourceAccountCurrencyNotSameAsTransferCurrency_throwsCurrencyConversionException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         AccountDTO srcAccountDTO = AccountTestHelper.createAccountDTO(1);
         srcAccountDTO.setCurrency("USD");
@@ -163,7 +174,7 @@ public class AccountServiceIntegrationTest {
     }
 
     @Test(expected = CurrencyConversionException.class)
-    public void transferMoney_whenDestinationAccountCurrencyNotSameAsTransferCurrency_throwsCurrencyConversionException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenDestinationAccountCurrencyNotSameAsTransferCurrency_throwsCurrencyConversionException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         AccountDTO srcAccountDTO = AccountTestHelper.createAccountDTO(1);
         AccountDTO dstAccountDTO = AccountTestHelper.createAccountDTO(2);
@@ -174,7 +185,7 @@ public class AccountServiceIntegrationTest {
     }
 
     @Test(expected = InsufficientFundsException.class)
-    public void transferMoney_whenSourceAccountHasInsufficientFundsForTransfer_throwsInsufficientFundsException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenSourceAccountHasInsufficientFundsForTransfer_throwsInsufficientFundsException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         AccountDTO srcAccountDTO = AccountTestHelper.createAccountDTO(1);
         srcAccountDTO.setBalance(BigDecimal.ZERO);
@@ -185,7 +196,7 @@ public class AccountServiceIntegrationTest {
     }
 
     @Test
-    public void transferMoney_whenSuccessful_accountBalanceUpdatedCorrectly() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenSuccessful_accountBalanceUpdatedCorrectly() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         AccountDTO srcAccountDTO = AccountTestHelper.createAccountDTO(1);
         AccountDTO dstAccountDTO = AccountTestHelper.createAccountDTO(2);
@@ -199,6 +210,113 @@ public class AccountServiceIntegrationTest {
         Assert.assertEquals(dstAccountExpectedFinalBalance, service.getAccount(2).getBalance());
     }
 
+    @Test(expected = RequiredParameterException.class)
+    public void transferMoneyBatch_whenEmpty_throwsRequiredParameterException() throws RequiredParameterException, LockTimeoutException {
+        service.transferMoneyBatch(Collections.emptyList());
+    }
+
+    @Test
+    public void transferMoneyBatch_whenAllSucceed_appliesAllTransfers() throws Exception {
+        insertAccounts(3);
+        BatchTransferResultDTO result = service.transferMoneyBatch(Arrays.asList(
+                AccountTestHelper.createTransferDTO(1, 2, "50"), AccountTestHelper.createTransferDTO(2, 3, "100"),
+                AccountTestHelper.createTransferDTO(3, 1, "10")));
+
+        Assert.assertTrue(result.isCommitted());
+        for (TransferResultDTO itemResult : result.getResults()) {
+            Assert.assertEquals(TransferResultDTO.Status.OK, itemResult.getStatus());
+        }
+        Assert.assertEquals(0, new BigDecimal("60.5").compareTo(service.getAccount(1).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("150.5").compareTo(service.getAccount(2).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("390.5").compareTo(service.getAccount(3).getBalance()));
+    }
+
+    @Test
+    public void transferMoneyBatch_whenLaterTransferHasInsufficientFunds_rollsBackEarlierTransfers() throws Exception {
+        List<AccountDTO> accounts = insertAccounts(3);
+        BatchTransferResultDTO result = service.transferMoneyBatch(Arrays.asList(
+                AccountTestHelper.createTransferDTO(1, 2, "50"), AccountTestHelper.createTransferDTO(2, 3, "10000")));
+
+        Assert.assertFalse(result.isCommitted());
+        Assert.assertEquals(TransferResultDTO.Status.ABORTED, result.getResults().get(0).getStatus());
+        Assert.assertEquals(TransferResultDTO.Status.FAILED, result.getResults().get(1).getStatus());
+        for (AccountDTO account : accounts) {
+            Assert.assertEquals(0, account.getBalance().compareTo(service.getAccount(account.getId()).getBalance()));
+        }
+    }
+
+    @Test
+    public void transferMoneyBatch_whenTransferInvalid_appliesNothing() throws Exception {
+        List<AccountDTO> accounts = insertAccounts(2);
+        BatchTransferResultDTO result = service.transferMoneyBatch(Arrays.asList(
+                AccountTestHelper.createTransferDTO(1, 2, "50"), AccountTestHelper.createTransferDTO(1, 99, "10")));
+
+        Assert.assertFalse(result.isCommitted());
+        Assert.assertEquals(TransferResultDTO.Status.ABORTED, result.getResults().get(0).getStatus());
+        Assert.assertEquals(TransferResultDTO.Status.FAILED, result.getResults().get(1).getStatus());
+        for (AccountDTO account : accounts) {
+            Assert.assertEquals(0, account.getBalance().compareTo(service.getAccount(account.getId()).getBalance()));
+        }
+    }
+
+    @Test
+    public void transferMoneyBatch_whenLocksHeldElsewhere_reportsLockWait() throws Exception {
+        AccountLockManager lockManager = new AccountLockManagerImpl();
+        service = new AccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                new AccountTransformerImpl(), new AccountDAOImpl(), lockManager);
+        insertAccounts(2);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<BatchTransferResultDTO> batch;
+        AccountLocks held = lockManager.lock(1);
+        try {
+            batch = executor.submit(() -> service.transferMoneyBatch(
+                    Collections.singletonList(AccountTestHelper.createTransferDTO(1, 2, "50"))));
+            Thread.sleep(50);
+            Assert.assertFalse(batch.isDone());
+        }
+        finally {
+            held.close();
+        }
+        BatchTransferResultDTO result = batch.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        Assert.assertTrue(result.isCommitted());
+        Assert.assertTrue(result.getLockWaitMicros() >= TimeUnit.MILLISECONDS.toMicros(40));
+        Assert.assertTrue(result.getLockWaitMicros() <= result.getElapsedMicros());
+    }
+
+    @Test
+    public void transferMoney_whenConcurrentOppositeTransfers_completesWithoutDeadlock() throws Exception {
+        insertAccounts(2);
+        BigDecimal initialTotal = service.getAccount(1).getBalance().add(service.getAccount(2).getBalance());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> forward = executor.submit(() -> transferRepeatedly(1, 2));
+        Future<?> backward = executor.submit(() -> transferRepeatedly(2, 1));
+
+        forward.get(30, TimeUnit.SECONDS);
+        backward.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        BigDecimal finalTotal = service.getAccount(1).getBalance().add(service.getAccount(2).getBalance());
+        Assert.assertEquals(0, initialTotal.compareTo(finalTotal));
+    }
+
+    private Void transferRepeatedly(int srcId, int dstId) throws Exception {
+        TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
+        transferDTO.setSourceAccountId(srcId);
+        transferDTO.setDestinationAccountId(dstId);
+        transferDTO.setTransferAmount(BigDecimal.ONE);
+        for (int i = 0; i < 10000; i++) {
+            try {
+                service.transferMoney(transferDTO);
+            }
+            catch (InsufficientFundsException e) {
+                // Balances drift between the two accounts, an occasional rejection is fine
+            }
+        }
+        return null;
+    }
+
     private List<AccountDTO> insertAccounts(int n) {
         List<AccountDTO> createdAccounts = new ArrayList<>();
         for (int i = 1; i <= n; i++) {
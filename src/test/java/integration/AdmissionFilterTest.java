@@ -0,0 +1,106 @@
+package integration;
+
+import org.account.admission.AdaptiveConcurrencyLimiter;
+import org.account.api.AdmissionFilter;
+import org.account.metrics.MetricsRegistry;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.servlet.ServletContainer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.DispatcherType;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Response;
+import java.util.EnumSet;
+
+public class AdmissionFilterTest {
+
+    private static final int PORT = 2262;
+    private static final long TIMEOUT_MILLIS = 1000;
+    private static final String BASE_URI = "http://localhost:" + PORT + "/api/v1/account";
+
+    private AdaptiveConcurrencyLimiter limiter;
+    private Server server;
+    private Client client;
+
+    @Before
+    public void before() throws Exception {
+        limiter = new AdaptiveConcurrencyLimiter(10, 1, 10);
+        AdmissionFilter filter = new AdmissionFilter(null, limiter, new MetricsRegistry());
+        ResourceConfig config = new ResourceConfig();
+        config.register(new FailingApi());
+        config.register(filter);
+        ServletHolder servlet = new ServletHolder(new ServletContainer(config));
+        servlet.setAsyncSupported(true);
+
+        // Wired as AppServer wires it
+        server = new Server(PORT);
+        ServletContextHandler context = new ServletContextHandler(server, "/*");
+        context.addServlet(servlet, "/*");
+        context.addFilter(new FilterHolder(filter), "/*", EnumSet.of(DispatcherType.REQUEST));
+        server.start();
+        client = ClientBuilder.newClient();
+    }
+
+    @After
+    public void after() throws Exception {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void doFilter_whenResourceThrowsUnmappedException_releasesPlace() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            Response response = client.target(BASE_URI).path("sync").request().get();
+            Assert.assertEquals(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), response.getStatus());
+            response.close();
+        }
+        awaitNoneInFlight();
+    }
+
+    @Test
+    public void doFilter_whenSuspendedRequestFails_releasesPlace() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            Response response = client.target(BASE_URI).path("async").request().get();
+            Assert.assertEquals(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), response.getStatus());
+            response.close();
+        }
+        awaitNoneInFlight();
+    }
+
+    private void awaitNoneInFlight() throws InterruptedException {
+        // The response can reach the client before the container has finished with the request
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (limiter.getInFlight() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Path("api/v1/account")
+    public static class FailingApi {
+
+        @GET
+        @Path("sync")
+        public String sync() {
+            throw new IllegalStateException("Unmapped");
+        }
+
+        @GET
+        @Path("async")
+        public void async(@Suspended AsyncResponse asyncResponse) {
+            new Thread(() -> asyncResponse.resume(new IllegalStateException("Unmapped"))).start();
+        }
+    }
+}
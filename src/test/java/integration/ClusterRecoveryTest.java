@@ -0,0 +1,266 @@
+package integration;
+
+import org.account.cluster.ClusterPeer;
+import org.account.cluster.HashRing;
+import org.account.dao.AccountDAO;
+import org.account.dao.AccountDAOImpl;
+import org.account.dao.OwnedAccountDAO;
+import org.account.exception.*;
+import org.account.fx.NoOpCurrencyConverter;
+import org.account.idempotency.NoOpIdempotencyCache;
+import org.account.journal.FileJournalImpl;
+import org.account.journal.FsyncPolicy;
+import org.account.journal.Journal;
+import org.account.journal.JournalReplayer;
+import org.account.lock.AccountLockManager;
+import org.account.lock.AccountLockManagerImpl;
+import org.account.lock.AccountLocks;
+import org.account.model.dto.*;
+import org.account.service.AccountServiceImpl;
+import org.account.service.ClusterAccountServiceImpl;
+import org.account.snapshot.NoOpSnapshotManager;
+import org.account.transformer.AccountTransformerImpl;
+import org.account.validator.AccountValidatorImpl;
+import org.account.validator.TransferValidatorImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.AccountTestHelper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ClusterRecoveryTest {
+
+    private static final long TIMEOUT_MILLIS = 2000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final HashRing ring = new HashRing(Arrays.asList("localhost:1", "localhost:2"), 128);
+    private final Node[] nodes = new Node[2];
+    // How node 0 reaches node 1, and node 1 reaches node 0
+    private final FlakyPeer toNode1 = new FlakyPeer();
+    private final FlakyPeer toNode0 = new FlakyPeer();
+    private int srcId;
+    private int dstId;
+
+    @Before
+    public void before() throws IOException, BusinessException {
+        start(0, folder.newFile().toPath());
+        start(1, folder.newFile().toPath());
+        srcId = nodes[0].service.createAccount(AccountTestHelper.createAccountDTO(1)).getId();
+        dstId = nodes[1].service.createAccount(AccountTestHelper.createAccountDTO(2)).getId();
+    }
+
+    @After
+    public void after() {
+        for (Node node : nodes) {
+            node.stop();
+        }
+    }
+
+    @Test
+    public void recover_whenCoordinatorStoppedWithCreditPending_deliversCredit() throws Exception {
+        toNode1.refuseCommits = true;
+        nodes[0].service.transferMoney(AccountTestHelper.createTransferDTO(srcId, dstId, "50"));
+        Assert.assertEquals(1, nodes[0].service.getPendingCredits());
+
+        restart(0);
+        toNode1.refuseCommits = false;
+
+        awaitSettled();
+        Assert.assertEquals(0, new BigDecimal("50.5").compareTo(nodes[0].service.getAccount(srcId).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("250.5").compareTo(nodes[1].service.getAccount(dstId).getBalance()));
+    }
+
+    @Test
+    public void recover_whenParticipantRestartedBeforeAcknowledging_takesCreditOnce() throws Exception {
+        toNode1.loseNextAcknowledgement = true;
+        nodes[0].service.transferMoney(AccountTestHelper.createTransferDTO(srcId, dstId, "50"));
+        Assert.assertEquals(1, nodes[0].service.getPendingCredits());
+
+        restart(1);
+        Assert.assertEquals(1, nodes[1].service.getCommittedCredits());
+        toNode1.refuseCommits = false;
+
+        awaitSettled();
+        Assert.assertEquals(0, new BigDecimal("250.5").compareTo(nodes[1].service.getAccount(dstId).getBalance()));
+    }
+
+    @Test
+    public void commitCredit_whenCoordinatorSettles_forgetsCredit() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            nodes[0].service.transferMoney(AccountTestHelper.createTransferDTO(srcId, dstId, "1"));
+        }
+        // Only the last credit may still be retried as far as node 1 knows
+        Assert.assertEquals(1, nodes[1].service.getCommittedCredits());
+
+        restart(1);
+        Assert.assertEquals(1, nodes[1].service.getCommittedCredits());
+        Assert.assertEquals(0, new BigDecimal("220.5").compareTo(nodes[1].service.getAccount(dstId).getBalance()));
+    }
+
+    @Test
+    public void transferMoney_whenDestinationVanishesBeforeCredit_returnsWithdrawal() throws Exception {
+        toNode1.loseDestination = true;
+        nodes[0].service.transferMoney(AccountTestHelper.createTransferDTO(srcId, dstId, "50"));
+        Assert.assertEquals(0, nodes[0].service.getPendingCredits());
+        Assert.assertEquals(0, new BigDecimal("100.5").compareTo(nodes[0].service.getAccount(srcId).getBalance()));
+
+        restart(0);
+
+        Assert.assertEquals(0, nodes[0].service.getPendingCredits());
+        Assert.assertEquals(0, new BigDecimal("100.5").compareTo(nodes[0].service.getAccount(srcId).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("200.5").compareTo(nodes[1].service.getAccount(dstId).getBalance()));
+    }
+
+    @Test
+    public void transferMoney_whilePreparingCredit_leavesSourceUnlocked() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            AtomicBoolean unlocked = new AtomicBoolean();
+            toNode1.onPrepare = () -> {
+                try {
+                    unlocked.set(executor.submit(() -> {
+                        AccountLocks locks = nodes[0].lockManager.tryLock(srcId);
+                        if (locks != null) {
+                            locks.close();
+                        }
+                        return locks != null;
+                    }).get());
+                }
+                catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+            nodes[0].service.transferMoney(AccountTestHelper.createTransferDTO(srcId, dstId, "50"));
+            Assert.assertTrue(unlocked.get());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private void awaitSettled() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (nodes[0].service.getPendingCredits() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, nodes[0].service.getPendingCredits());
+    }
+
+    private void restart(int index) throws IOException {
+        nodes[index].stop();
+        start(index, nodes[index].journalPath);
+    }
+
+    private void start(int index, Path journalPath) throws IOException {
+        Node node = new Node(index, journalPath);
+        nodes[index] = node;
+        (index == 0 ? toNode0 : toNode1).target = node.service.getLocalPeer();
+    }
+
+    private class Node {
+
+        private final Path journalPath;
+        private final Journal journal;
+        private final AccountLockManager lockManager;
+        private final ClusterAccountServiceImpl service;
+
+        private Node(int index, Path journalPath) throws IOException {
+            this.journalPath = journalPath;
+            AccountDAO dao = new OwnedAccountDAO(new AccountDAOImpl(), id -> ring.ownerOf(id) == index);
+            journal = new FileJournalImpl(journalPath, FsyncPolicy.GROUP, new JournalReplayer(dao));
+            lockManager = new AccountLockManagerImpl();
+            AccountServiceImpl localService = new AccountServiceImpl(new AccountValidatorImpl(),
+                    new TransferValidatorImpl(), new AccountTransformerImpl(), dao, lockManager, journal);
+            ClusterPeer[] peers = index == 0 ? new ClusterPeer[] {null, toNode1} : new ClusterPeer[] {toNode0, null};
+            service = new ClusterAccountServiceImpl(localService, new TransferValidatorImpl(), dao, lockManager,
+                    journal, new NoOpSnapshotManager(), new NoOpIdempotencyCache(), new NoOpCurrencyConverter(),
+                    ring, index, peers);
+            service.recover(journalPath);
+        }
+
+        private void stop() {
+            service.close();
+            journal.close();
+        }
+    }
+
+    /**
+     * Passes calls to the current instance of a node, and can fail credits as an unreachable node would
+     */
+    private static class FlakyPeer implements ClusterPeer {
+
+        private volatile ClusterPeer target;
+        private volatile boolean refuseCommits;
+        // Takes the credit but fails as if the response was lost, then refuses commits
+        private volatile boolean loseNextAcknowledgement;
+        // Answers commits as if the destination account no longer existed
+        private volatile boolean loseDestination;
+        private volatile Runnable onPrepare = () -> {};
+
+        public AccountDTO getAccount(int id) throws AccountNotFoundException {
+            return target.getAccount(id);
+        }
+
+        public long getAccountVersion(int id) throws AccountNotFoundException {
+            return target.getAccountVersion(id);
+        }
+
+        public AccountPageDTO getLocalAccountPage(int afterId, int limit) throws InvalidParameterException {
+            return target.getLocalAccountPage(afterId, limit);
+        }
+
+        public List<TransactionDTO> getTransactions(int id, long fromMillis, long toMillis, int limit)
+                throws AccountNotFoundException, InvalidParameterException {
+            return target.getTransactions(id, fromMillis, toMillis, limit);
+        }
+
+        public void transferMoney(TransferDTO transferDTO)
+                throws AccountNotFoundException, InsufficientFundsException,
+                       InvalidParameterException, RequiredParameterException, CurrencyConversionException,
+                       LockTimeoutException, VersionConflictException {
+            target.transferMoney(transferDTO);
+        }
+
+        public BatchTransferResultDTO transferMoneyBatch(List<TransferDTO> transferDTOs)
+                throws RequiredParameterException, LockTimeoutException {
+            return target.transferMoneyBatch(transferDTOs);
+        }
+
+        public BigDecimal prepareCredit(long transactionId, int srcId, int dstId, BigDecimal amount, String currency)
+                throws AccountNotFoundException, CurrencyConversionException {
+            onPrepare.run();
+            return target.prepareCredit(transactionId, srcId, dstId, amount, currency);
+        }
+
+        public void commitCredit(long transactionId, long settledBelow, int srcId, int dstId, BigDecimal creditAmount)
+                throws AccountNotFoundException, LockTimeoutException {
+            if (refuseCommits) {
+                throw new UncheckedIOException(new IOException("Node unreachable"));
+            }
+            if (loseDestination) {
+                throw new AccountNotFoundException("Account with ID %s not found", dstId);
+            }
+            target.commitCredit(transactionId, settledBelow, srcId, dstId, creditAmount);
+            if (loseNextAcknowledgement) {
+                loseNextAcknowledgement = false;
+                refuseCommits = true;
+                throw new UncheckedIOException(new IOException("Response lost"));
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package integration;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.AccountDAOImpl;
+import org.account.exception.CurrencyConversionException;
+import org.account.fx.CurrencyConverterImpl;
+import org.account.fx.FxRate;
+import org.account.idempotency.NoOpIdempotencyCache;
+import org.account.journal.FileJournalImpl;
+import org.account.journal.FsyncPolicy;
+import org.account.journal.Journal;
+import org.account.journal.JournalReplayer;
+import org.account.journal.NoOpJournal;
+import org.account.lock.AccountLockManagerImpl;
+import org.account.model.dto.AccountDTO;
+import org.account.service.AccountService;
+import org.account.service.AccountServiceImpl;
+import org.account.service.SequencedAccountServiceImpl;
+import org.account.snapshot.NoOpSnapshotManager;
+import org.account.transformer.AccountTransformerImpl;
+import org.account.validator.AccountValidatorImpl;
+import org.account.validator.TransferValidatorImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.AccountTestHelper;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Currency;
+
+public class CurrencyConversionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CurrencyConverterImpl converter;
+
+    @Before
+    public void before() throws Exception {
+        converter = new CurrencyConverterImpl(() -> Arrays.asList(
+                new FxRate(Currency.getInstance("GBP"), Currency.getInstance("USD"), new BigDecimal("1.25")),
+                new FxRate(Currency.getInstance("GBP"), Currency.getInstance("EUR"), new BigDecimal("1.15"))),
+                RoundingMode.HALF_EVEN);
+        converter.reload();
+    }
+
+    @Test
+    public void transferMoney_whenAccountsInDifferentCurrencies_convertsEachLeg() throws Exception {
+        AccountService service = createService(new AccountDAOImpl(), null);
+        int gbp = createAccount(service, "GBP", "100.00");
+        int usd = createAccount(service, "USD", "100.00");
+
+        service.transferMoney(AccountTestHelper.createTransferDTO(gbp, usd, "10.00", "GBP"));
+        // Converted at the inverse of the GBP/USD rate
+        service.transferMoney(AccountTestHelper.createTransferDTO(usd, gbp, "10.00", "USD"));
+
+        Assert.assertEquals(0, new BigDecimal("98.00").compareTo(service.getAccount(gbp).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("102.50").compareTo(service.getAccount(usd).getBalance()));
+    }
+
+    @Test
+    public void transferMoney_whenSequenced_convertsEachLeg() throws Exception {
+        try (SequencedAccountServiceImpl service = new SequencedAccountServiceImpl(new AccountValidatorImpl(),
+                new TransferValidatorImpl(), new AccountTransformerImpl(), new AccountDAOImpl(),
+                new NoOpJournal(), new NoOpSnapshotManager(),
+                SequencedAccountServiceImpl.DEFAULT_BUFFER_SIZE, new NoOpIdempotencyCache(), converter)) {
+            int gbp = createAccount(service, "GBP", "100.00");
+            int usd = createAccount(service, "USD", "100.00");
+
+            service.transferMoney(AccountTestHelper.createTransferDTO(gbp, usd, "20.00", "USD"));
+            service.transferMoneyAsync(AccountTestHelper.createTransferDTO(usd, gbp, "5.00", "GBP")).get();
+
+            Assert.assertEquals(0, new BigDecimal("89.00").compareTo(service.getAccount(gbp).getBalance()));
+            Assert.assertEquals(0, new BigDecimal("113.75").compareTo(service.getAccount(usd).getBalance()));
+        }
+    }
+
+    @Test(expected = CurrencyConversionException.class)
+    public void transferMoney_whenNoRate_throwsCurrencyConversionException() throws Exception {
+        AccountService service = createService(new AccountDAOImpl(), null);
+        int gbp = createAccount(service, "GBP", "100.00");
+        int chf = createAccount(service, "CHF", "100.00");
+        service.transferMoney(AccountTestHelper.createTransferDTO(gbp, chf, "10.00", "GBP"));
+    }
+
+    @Test
+    public void replay_afterConvertedTransfer_recoversBothLegs() throws Exception {
+        Path path = folder.newFile().toPath();
+        int gbp;
+        int usd;
+        try (Journal journal = new FileJournalImpl(path, FsyncPolicy.NONE)) {
+            AccountService service = createService(new AccountDAOImpl(), journal);
+            gbp = createAccount(service, "GBP", "100.00");
+            usd = createAccount(service, "USD", "100.00");
+            service.transferMoney(AccountTestHelper.createTransferDTO(gbp, usd, "10.00", "GBP"));
+        }
+
+        AccountDAO recovered = new AccountDAOImpl();
+        new FileJournalImpl(path, FsyncPolicy.NONE, new JournalReplayer(recovered)).close();
+        Assert.assertEquals(0, new BigDecimal("90.00").compareTo(recovered.getAccount(gbp).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("112.50").compareTo(recovered.getAccount(usd).getBalance()));
+    }
+
+    private AccountService createService(AccountDAO dao, Journal journal) {
+        return new AccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                new AccountTransformerImpl(), dao, new AccountLockManagerImpl(),
+                journal != null ? journal : new NoOpJournal(), new NoOpSnapshotManager(),
+                new NoOpIdempotencyCache(), converter);
+    }
+
+    private static int createAccount(AccountService service, String currency, String balance) throws Exception {
+        AccountDTO dto = AccountTestHelper.createAccountDTO();
+        dto.setCurrency(currency);
+        dto.setBalance(new BigDecimal(balance));
+        return service.createAccount(dto).getId();
+    }
+}
@@ -0,0 +1,144 @@
+package integration;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.AccountDAOImpl;
+import org.account.exception.InsufficientFundsException;
+import org.account.exception.InvalidParameterException;
+import org.account.exception.VersionConflictException;
+import org.account.idempotency.IdempotencyCacheImpl;
+import org.account.journal.NoOpJournal;
+import org.account.lock.AccountLockManagerImpl;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.TransferDTO;
+import org.account.service.AccountService;
+import org.account.service.AccountServiceImpl;
+import org.account.snapshot.NoOpSnapshotManager;
+import org.account.transformer.AccountTransformerImpl;
+import org.account.validator.AccountValidatorImpl;
+import org.account.validator.TransferValidatorImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import util.AccountTestHelper;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class IdempotentTransferTest {
+
+    private static final int THREADS = 8;
+
+    private AccountService service;
+
+    @Before
+    public void before() throws Exception {
+        AccountDAO dao = new AccountDAOImpl();
+        service = new AccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                new AccountTransformerImpl(), dao, new AccountLockManagerImpl(), new NoOpJournal(),
+                new NoOpSnapshotManager(), new IdempotencyCacheImpl(60000, 1024 * 1024));
+        for (AccountDTO dto : AccountTestHelper.createAccountDTOs(2)) {
+            service.createAccount(dto);
+        }
+    }
+
+    @Test
+    public void transferMoney_whenRetriedWithSameKey_appliesTransferOnce() throws Exception {
+        service.transferMoney(createTransfer("retry", "50"));
+        service.transferMoney(createTransfer("retry", "50"));
+
+        Assert.assertEquals(0, new BigDecimal("50.5").compareTo(service.getAccount(1).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("250.5").compareTo(service.getAccount(2).getBalance()));
+    }
+
+    @Test
+    public void transferMoney_whenRetriedWithoutKey_appliesTransferEachTime() throws Exception {
+        service.transferMoney(createTransfer(null, "50"));
+        service.transferMoney(createTransfer(null, "50"));
+
+        Assert.assertEquals(0, new BigDecimal("0.5").compareTo(service.getAccount(1).getBalance()));
+    }
+
+    @Test
+    public void transferMoney_whenOriginalFailed_retryReplaysFailure() throws Exception {
+        try {
+            service.transferMoney(createTransfer("declined", "150"));
+            Assert.fail();
+        }
+        catch (InsufficientFundsException e) {
+            // Expected
+        }
+        service.transferMoney(AccountTestHelper.createTransferDTO(2, 1, "100"));
+
+        // Funds are now available, but the retry is answered with the original outcome
+        try {
+            service.transferMoney(createTransfer("declined", "150"));
+            Assert.fail();
+        }
+        catch (InsufficientFundsException e) {
+            Assert.assertEquals(0, new BigDecimal("200.5").compareTo(service.getAccount(1).getBalance()));
+        }
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void transferMoney_whenKeyReusedForDifferentTransfer_throwsInvalidParameterException() throws Exception {
+        service.transferMoney(createTransfer("reused", "50"));
+        service.transferMoney(createTransfer("reused", "60"));
+    }
+
+    @Test
+    public void transferMoney_whenRetriedWithNewExpectedVersion_isNotAnsweredWithOldConflict() throws Exception {
+        long version = service.getAccountVersion(1);
+        TransferDTO stale = createTransfer("conditional", "50");
+        stale.setExpectedVersion(version - 1);
+        try {
+            service.transferMoney(stale);
+            Assert.fail();
+        }
+        catch (VersionConflictException e) {
+            // Expected
+        }
+
+        TransferDTO current = createTransfer("conditional", "50");
+        current.setExpectedVersion(version);
+        try {
+            service.transferMoney(current);
+            Assert.fail();
+        }
+        catch (InvalidParameterException e) {
+            // A different precondition makes it a different transfer, which needs a key of its own
+            Assert.assertEquals(0, new BigDecimal("100.5").compareTo(service.getAccount(1).getBalance()));
+        }
+    }
+
+    @Test
+    public void transferMoney_whenRetriedConcurrently_appliesTransferOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 100; i++) {
+                    service.transferMoney(createTransfer("transfer-" + i, "0.5"));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(0, new BigDecimal("50.5").compareTo(service.getAccount(1).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("250.5").compareTo(service.getAccount(2).getBalance()));
+    }
+
+    private TransferDTO createTransfer(String key, String amount) {
+        TransferDTO dto = AccountTestHelper.createTransferDTO(1, 2, amount);
+        dto.setIdempotencyKey(key);
+        return dto;
+    }
+}
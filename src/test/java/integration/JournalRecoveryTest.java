@@ -0,0 +1,213 @@
+package integration;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.AccountDAOImpl;
+import org.account.journal.FileJournalImpl;
+import org.account.journal.FsyncPolicy;
+import org.account.journal.Journal;
+import org.account.journal.JournalReplayer;
+import org.account.lock.AccountLockManagerImpl;
+import org.account.model.Account;
+import org.account.model.dto.AccountDTO;
+import org.account.service.AccountService;
+import org.account.service.AccountServiceImpl;
+import org.account.snapshot.SnapshotInfo;
+import org.account.snapshot.SnapshotManagerImpl;
+import org.account.snapshot.SnapshotReader;
+import org.account.transformer.AccountTransformerImpl;
+import org.account.validator.AccountValidatorImpl;
+import org.account.validator.TransferValidatorImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.AccountTestHelper;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+public class JournalRecoveryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path journalPath;
+    private Path snapshotPath;
+    private AccountDAO dao;
+    private Journal journal;
+    private SnapshotManagerImpl snapshotManager;
+    private AccountService service;
+
+    @Before
+    public void before() throws IOException {
+        journalPath = folder.newFile().toPath();
+        snapshotPath = folder.getRoot().toPath().resolve("accounts.snapshot");
+        restart();
+    }
+
+    @After
+    public void after() {
+        snapshotManager.close();
+        journal.close();
+    }
+
+    @Test
+    public void restart_afterTransfers_recoversBalances() throws Exception {
+        AccountDTO src = service.createAccount(AccountTestHelper.createAccountDTO(1));
+        AccountDTO dst = service.createAccount(AccountTestHelper.createAccountDTO(2));
+        service.transferMoney(AccountTestHelper.createTransferDTO(src.getId(), dst.getId(), "10.25"));
+        service.transferMoneyBatch(Arrays.asList(
+                AccountTestHelper.createTransferDTO(dst.getId(), src.getId(), "100"),
+                AccountTestHelper.createTransferDTO(src.getId(), dst.getId(), "0.50")));
+
+        restart();
+
+        Assert.assertEquals(2, service.getAllAccounts().size());
+        Assert.assertEquals(0, new BigDecimal("189.75").compareTo(service.getAccount(src.getId()).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("111.25").compareTo(service.getAccount(dst.getId()).getBalance()));
+    }
+
+    @Test
+    public void restart_afterFailedTransfers_recordsNothing() throws Exception {
+        AccountDTO src = service.createAccount(AccountTestHelper.createAccountDTO(1));
+        AccountDTO dst = service.createAccount(AccountTestHelper.createAccountDTO(2));
+        long sequence = journal.getLastSequence();
+        try {
+            service.transferMoney(AccountTestHelper.createTransferDTO(src.getId(), dst.getId(), "1000"));
+            Assert.fail();
+        }
+        catch (Exception e) {
+            // Expected, insufficient funds
+        }
+        Assert.assertFalse(service.transferMoneyBatch(Arrays.asList(
+                AccountTestHelper.createTransferDTO(src.getId(), dst.getId(), "100"),
+                AccountTestHelper.createTransferDTO(src.getId(), dst.getId(), "100"))).isCommitted());
+        Assert.assertEquals(sequence, journal.getLastSequence());
+
+        restart();
+
+        Assert.assertEquals(0, new BigDecimal("100.5").compareTo(service.getAccount(src.getId()).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("200.5").compareTo(service.getAccount(dst.getId()).getBalance()));
+    }
+
+    @Test
+    public void createAccount_afterRestart_doesNotReuseIds() throws Exception {
+        service.createAccount(AccountTestHelper.createAccountDTO(1));
+        service.createAccount(AccountTestHelper.createAccountDTO(2));
+
+        restart();
+
+        Assert.assertEquals(Integer.valueOf(3), service.createAccount(AccountTestHelper.createAccountDTO(3)).getId());
+    }
+
+    @Test
+    public void restart_afterSnapshot_recoversSnapshotAndJournalTail() throws Exception {
+        AccountDTO src = service.createAccount(AccountTestHelper.createAccountDTO(1));
+        AccountDTO dst = service.createAccount(AccountTestHelper.createAccountDTO(2));
+        service.transferMoney(AccountTestHelper.createTransferDTO(src.getId(), dst.getId(), "10.25"));
+        SnapshotInfo snapshot = snapshotManager.takeSnapshot();
+        service.transferMoney(AccountTestHelper.createTransferDTO(dst.getId(), src.getId(), "1"));
+        AccountDTO created = service.createAccount(AccountTestHelper.createAccountDTO(3));
+
+        Assert.assertEquals(2, snapshot.getAccountCount());
+        Assert.assertEquals(3, snapshot.getSequence());
+
+        restart();
+
+        Assert.assertEquals(3, service.getAllAccounts().size());
+        Assert.assertEquals(0, new BigDecimal("91.25").compareTo(service.getAccount(src.getId()).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("209.75").compareTo(service.getAccount(dst.getId()).getBalance()));
+        Assert.assertEquals(created, service.getAccount(created.getId()));
+    }
+
+    @Test
+    public void restart_afterSnapshot_recoversBalanceLongerThanAByte() throws Exception {
+        Account account = AccountTestHelper.createAccount(1);
+        account.setBalance(BigDecimal.TEN.pow(700).add(new BigDecimal("0.5")));
+        int id = dao.createAccount(account).getId();
+        snapshotManager.takeSnapshot();
+
+        restart();
+
+        Assert.assertEquals(0, account.getBalance().compareTo(service.getAccount(id).getBalance()));
+    }
+
+    @Test
+    public void takeSnapshot_whileTransfersRunning_capturesConsistentCut() throws Exception {
+        int accounts = 50;
+        for (int i = 1; i <= accounts; i++) {
+            service.createAccount(AccountTestHelper.createAccountDTO(i));
+        }
+        BigDecimal initialTotal = totalBalance(dao);
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    try {
+                        service.transferMoney(AccountTestHelper.createTransferDTO(
+                                random.nextInt(accounts) + 1, random.nextInt(accounts) + 1, "0.01"));
+                    }
+                    catch (Exception e) {
+                        // Transfers to the same account are rejected, which is fine here
+                    }
+                }
+                return null;
+            }));
+        }
+
+        List<SnapshotInfo> snapshots = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            snapshots.add(snapshotManager.takeSnapshot());
+            AccountDAO loaded = new AccountDAOImpl();
+            new SnapshotReader().load(snapshotPath, loaded);
+            // Balances in a snapshot only ever move between accounts, so a torn cut would change the total
+            Assert.assertEquals(0, initialTotal.compareTo(totalBalance(loaded)));
+        }
+        running.set(false);
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        Map<Integer, BigDecimal> expected = balances(dao);
+
+        restart();
+
+        Assert.assertEquals(expected, balances(dao));
+    }
+
+    private BigDecimal totalBalance(AccountDAO accountDAO) {
+        return accountDAO.getAllAccounts().stream().map(Account::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private Map<Integer, BigDecimal> balances(AccountDAO accountDAO) {
+        return accountDAO.getAllAccounts().stream()
+                .collect(Collectors.toMap(Account::getId, account -> account.getBalance().stripTrailingZeros()));
+    }
+
+    private void restart() throws IOException {
+        if (journal != null) {
+            snapshotManager.close();
+            journal.close();
+        }
+        dao = new AccountDAOImpl();
+        SnapshotInfo snapshot = new SnapshotReader().load(snapshotPath, dao);
+        journal = new FileJournalImpl(journalPath, FsyncPolicy.GROUP, new JournalReplayer(dao),
+                snapshot.getJournalPosition(), snapshot.getSequence());
+        snapshotManager = new SnapshotManagerImpl(dao, journal, snapshotPath);
+        service = new AccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                new AccountTransformerImpl(), dao, new AccountLockManagerImpl(), journal, snapshotManager);
+    }
+}
@@ -0,0 +1,191 @@
+package integration;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.AccountDAOImpl;
+import org.account.exception.InsufficientFundsException;
+import org.account.exception.VersionConflictException;
+import org.account.fx.NoOpCurrencyConverter;
+import org.account.idempotency.NoOpIdempotencyCache;
+import org.account.journal.FileJournalImpl;
+import org.account.journal.FsyncPolicy;
+import org.account.journal.Journal;
+import org.account.journal.JournalReplayer;
+import org.account.journal.NoOpJournal;
+import org.account.lock.AccountLockManager;
+import org.account.lock.AccountLockManagerImpl;
+import org.account.lock.AccountLocks;
+import org.account.model.Account;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.TransferDTO;
+import org.account.service.OptimisticAccountServiceImpl;
+import org.account.snapshot.NoOpSnapshotManager;
+import org.account.transformer.AccountTransformerImpl;
+import org.account.validator.AccountValidatorImpl;
+import org.account.validator.TransferValidatorImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.AccountTestHelper;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class OptimisticAccountServiceTest {
+
+    private static final int THREADS = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AccountDAO dao;
+    private Journal journal;
+    private AccountLockManager lockManager;
+    private OptimisticAccountServiceImpl service;
+
+    @Before
+    public void before() {
+        start(new NoOpJournal());
+    }
+
+    @After
+    public void after() {
+        journal.close();
+    }
+
+    @Test
+    public void transferMoney_whenFundsAvailable_movesMoney() throws Exception {
+        insertAccounts(2);
+        service.transferMoney(AccountTestHelper.createTransferDTO(1, 2, "50"));
+        Assert.assertEquals(0, new BigDecimal("50.5").compareTo(service.getAccount(1).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("250.5").compareTo(service.getAccount(2).getBalance()));
+        Assert.assertEquals(1, service.getCommits());
+    }
+
+    @Test(expected = InsufficientFundsException.class)
+    public void transferMoney_whenInsufficientFunds_throwsInsufficientFundsException() throws Exception {
+        insertAccounts(2);
+        service.transferMoney(AccountTestHelper.createTransferDTO(1, 2, "1000"));
+    }
+
+    @Test
+    public void transferMoney_whenExpectedVersionStale_throwsVersionConflictException() throws Exception {
+        insertAccounts(2);
+        TransferDTO transfer = AccountTestHelper.createTransferDTO(1, 2, "10");
+        transfer.setExpectedVersion(0L);
+        service.transferMoney(transfer);
+        try {
+            service.transferMoney(transfer);
+            Assert.fail();
+        }
+        catch (VersionConflictException e) {
+            Assert.assertEquals(0, new BigDecimal("90.5").compareTo(service.getAccount(1).getBalance()));
+        }
+        transfer.setExpectedVersion(1L);
+        service.transferMoney(transfer);
+        Assert.assertEquals(2, service.getAccountVersion(1));
+    }
+
+    @Test
+    public void transferMoney_whenLocksStayBusy_fallsBackToWaitingForThem() throws Exception {
+        insertAccounts(2);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> transfer;
+        try (AccountLocks locks = lockManager.lock(2)) {
+            transfer = executor.submit(() -> {
+                service.transferMoney(AccountTestHelper.createTransferDTO(1, 2, "50"));
+                return null;
+            });
+            while (service.getFallbacks() == 0) {
+                Thread.sleep(1);
+            }
+            Assert.assertFalse(transfer.isDone());
+        }
+        transfer.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        Assert.assertTrue(service.getBusy() > 0);
+        Assert.assertEquals(1, service.getCommits());
+        Assert.assertEquals(0, new BigDecimal("50.5").compareTo(service.getAccount(1).getBalance()));
+    }
+
+    @Test
+    public void transferMoney_whenHotAccountHitConcurrently_neverOverdrawsAndIsRecoveredAfterRestart() throws Exception {
+        Path journalPath = folder.newFile().toPath();
+        journal.close();
+        start(new FileJournalImpl(journalPath, FsyncPolicy.NONE));
+        insertAccounts(16);
+        BigDecimal initialTotal = totalBalance();
+        AtomicInteger applied = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 2000; i++) {
+                    // Account 1 is on one side of every transfer
+                    int other = random.nextInt(15) + 2;
+                    boolean fromHot = random.nextBoolean();
+                    try {
+                        service.transferMoney(
+                                AccountTestHelper.createTransferDTO(fromHot ? 1 : other, fromHot ? other : 1, "7"));
+                        applied.incrementAndGet();
+                    }
+                    catch (InsufficientFundsException e) {
+                        // Fine, rejected transfers are not journalled
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(0, initialTotal.compareTo(totalBalance()));
+        for (Account account : dao.getAllAccounts()) {
+            Assert.assertTrue(account.getBalance().signum() >= 0);
+        }
+        Assert.assertEquals(applied.get(), service.getCommits());
+
+        Map<Integer, BigDecimal> expected = balances(dao);
+        journal.close();
+        AccountDAO recovered = new AccountDAOImpl();
+        new FileJournalImpl(journalPath, FsyncPolicy.NONE, new JournalReplayer(recovered)).close();
+        Assert.assertEquals(expected, balances(recovered));
+        start(new NoOpJournal());
+    }
+
+    private void start(Journal journal) {
+        this.journal = journal;
+        dao = new AccountDAOImpl();
+        lockManager = new AccountLockManagerImpl();
+        service = new OptimisticAccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                new AccountTransformerImpl(), dao, lockManager, journal, new NoOpSnapshotManager(),
+                new NoOpIdempotencyCache(), new NoOpCurrencyConverter());
+    }
+
+    private void insertAccounts(int n) throws Exception {
+        for (AccountDTO dto : AccountTestHelper.createAccountDTOs(n)) {
+            service.createAccount(dto);
+        }
+    }
+
+    private BigDecimal totalBalance() {
+        return dao.getAllAccounts().stream().map(Account::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private Map<Integer, BigDecimal> balances(AccountDAO accountDAO) {
+        return accountDAO.getAllAccounts().stream()
+                .collect(Collectors.toMap(Account::getId, account -> account.getBalance().stripTrailingZeros()));
+    }
+}
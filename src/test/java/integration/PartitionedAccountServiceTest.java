@@ -0,0 +1,317 @@
+package integration;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.AccountDAOImpl;
+import org.account.dao.PartitionedAccountDAO;
+import org.account.exception.InsufficientFundsException;
+import org.account.exception.VersionConflictException;
+import org.account.fx.NoOpCurrencyConverter;
+import org.account.idempotency.IdempotencyCacheImpl;
+import org.account.journal.FileJournalImpl;
+import org.account.journal.FsyncPolicy;
+import org.account.journal.Journal;
+import org.account.journal.JournalReplayer;
+import org.account.journal.NoOpJournal;
+import org.account.model.Account;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.TransferDTO;
+import org.account.model.dto.TransferResultDTO;
+import org.account.service.PartitionedAccountServiceImpl;
+import org.account.snapshot.NoOpSnapshotManager;
+import org.account.snapshot.SnapshotManagerImpl;
+import org.account.snapshot.SnapshotReader;
+import org.account.transformer.AccountTransformerImpl;
+import org.account.validator.AccountValidatorImpl;
+import org.account.validator.TransferValidatorImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.AccountTestHelper;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+public class PartitionedAccountServiceTest {
+
+    private static final int THREADS = 8;
+    private static final int PARTITIONS = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AccountDAO dao;
+    private Journal journal;
+    private PartitionedAccountServiceImpl service;
+
+    @Before
+    public void before() {
+        start(new NoOpJournal());
+    }
+
+    @After
+    public void after() {
+        service.close();
+        journal.close();
+    }
+
+    @Test
+    public void transferMoney_whenAccountsInSamePartition_movesMoneyLocally() throws Exception {
+        insertAccounts(8);
+        // Accounts 1 and 5 are both in partition 1
+        service.transferMoney(AccountTestHelper.createTransferDTO(1, 5, "50"));
+        Assert.assertEquals(0, new BigDecimal("50.5").compareTo(service.getAccount(1).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("550.5").compareTo(service.getAccount(5).getBalance()));
+        Assert.assertEquals(1, service.getLocalTransfers());
+        Assert.assertEquals(0, service.getCrossPartitionTransfers());
+    }
+
+    @Test
+    public void transferMoney_whenAccountsInDifferentPartitions_movesMoneyBetweenPartitions() throws Exception {
+        insertAccounts(2);
+        service.transferMoney(AccountTestHelper.createTransferDTO(1, 2, "50"));
+        Assert.assertEquals(0, new BigDecimal("50.5").compareTo(service.getAccount(1).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("250.5").compareTo(service.getAccount(2).getBalance()));
+        Assert.assertEquals(0, service.getLocalTransfers());
+        Assert.assertEquals(1, service.getCrossPartitionTransfers());
+    }
+
+    @Test(expected = InsufficientFundsException.class)
+    public void transferMoney_whenInsufficientFunds_throwsInsufficientFundsException() throws Exception {
+        insertAccounts(2);
+        service.transferMoney(AccountTestHelper.createTransferDTO(1, 2, "1000"));
+    }
+
+    @Test
+    public void transferMoney_whenExpectedVersionStale_throwsVersionConflictException() throws Exception {
+        insertAccounts(2);
+        TransferDTO transfer = AccountTestHelper.createTransferDTO(1, 2, "10");
+        transfer.setExpectedVersion(0L);
+        service.transferMoney(transfer);
+        try {
+            service.transferMoney(transfer);
+            Assert.fail();
+        }
+        catch (VersionConflictException e) {
+            Assert.assertEquals(0, new BigDecimal("90.5").compareTo(service.getAccount(1).getBalance()));
+        }
+        transfer.setExpectedVersion(1L);
+        service.transferMoney(transfer);
+        Assert.assertEquals(2, service.getAccountVersion(1));
+    }
+
+    @Test
+    public void transferMoney_whenTransfersCrossPartitionsConcurrently_neverOverdrawsAndConservesTotal() throws Exception {
+        insertAccounts(16);
+        BigDecimal initialTotal = totalBalance();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 2000; i++) {
+                    // Account 1 is on one side of every transfer, and in the same partition as a quarter of the others
+                    int other = random.nextInt(15) + 2;
+                    boolean fromHot = random.nextBoolean();
+                    try {
+                        service.transferMoney(
+                                AccountTestHelper.createTransferDTO(fromHot ? 1 : other, fromHot ? other : 1, "7"));
+                    }
+                    catch (InsufficientFundsException e) {
+                        // Fine, the hot account runs dry from time to time
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(0, initialTotal.compareTo(totalBalance()));
+        for (Account account : dao.getAllAccounts()) {
+            Assert.assertTrue(account.getBalance().signum() >= 0);
+        }
+        Assert.assertTrue(service.getLocalTransfers() > 0);
+        Assert.assertTrue(service.getCrossPartitionTransfers() > 0);
+    }
+
+    @Test
+    public void transferMoneyBatch_whenOneTransferOverdraws_appliesNothing() throws Exception {
+        insertAccounts(2);
+        BatchTransferResultDTO result = service.transferMoneyBatch(Arrays.asList(
+                AccountTestHelper.createTransferDTO(1, 2, "50"),
+                AccountTestHelper.createTransferDTO(1, 2, "60")));
+
+        Assert.assertFalse(result.isCommitted());
+        Assert.assertEquals(TransferResultDTO.Status.ABORTED, result.getResults().get(0).getStatus());
+        Assert.assertEquals(TransferResultDTO.Status.FAILED, result.getResults().get(1).getStatus());
+        Assert.assertEquals(0, new BigDecimal("100.5").compareTo(service.getAccount(1).getBalance()));
+    }
+
+    @Test
+    public void transferMoneyBatch_whenSpanningPartitionsDuringTransfers_appliesAllAndConservesTotal() throws Exception {
+        insertAccounts(8);
+        BigDecimal initialTotal = totalBalance();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> transfers = executor.submit(() -> {
+            for (int i = 0; i < 2000; i++) {
+                int src = i % 8 + 1;
+                service.transferMoney(AccountTestHelper.createTransferDTO(src, src % 8 + 1, "0.5"));
+            }
+            return null;
+        });
+        for (int i = 0; i < 50; i++) {
+            BatchTransferResultDTO result = service.transferMoneyBatch(Arrays.asList(
+                    AccountTestHelper.createTransferDTO(8, 1, "1"),
+                    AccountTestHelper.createTransferDTO(2, 7, "1"),
+                    AccountTestHelper.createTransferDTO(7, 8, "1")));
+            Assert.assertTrue(result.isCommitted());
+        }
+        transfers.get(60, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        Assert.assertEquals(0, initialTotal.compareTo(totalBalance()));
+        Assert.assertEquals(0, new BigDecimal("150.5").compareTo(service.getAccount(1).getBalance()));
+    }
+
+    @Test
+    public void transferMoney_whenJournalled_isRecoveredAfterRestart() throws Exception {
+        Path journalPath = folder.newFile().toPath();
+        service.close();
+        start(new FileJournalImpl(journalPath, FsyncPolicy.GROUP));
+        insertAccounts(4);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 200; i++) {
+                    int src = random.nextInt(4) + 1;
+                    try {
+                        service.transferMoney(AccountTestHelper.createTransferDTO(src, src % 4 + 1, "0.25"));
+                    }
+                    catch (InsufficientFundsException e) {
+                        // Fine, rejected transfers are not journalled
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        Map<Integer, BigDecimal> expected = balances(dao);
+        service.close();
+        journal.close();
+
+        AccountDAO recovered = new AccountDAOImpl();
+        new FileJournalImpl(journalPath, FsyncPolicy.GROUP, new JournalReplayer(recovered)).close();
+        Assert.assertEquals(expected, balances(recovered));
+        start(new NoOpJournal());
+    }
+
+    @Test
+    public void takeSnapshot_whileTransfersCrossPartitions_capturesConsistentCut() throws Exception {
+        Path journalPath = folder.newFile().toPath();
+        Path snapshotPath = folder.getRoot().toPath().resolve("accounts.snapshot");
+        service.close();
+        journal = new FileJournalImpl(journalPath, FsyncPolicy.GROUP);
+        dao = new PartitionedAccountDAO(PARTITIONS);
+        SnapshotManagerImpl snapshotManager = new SnapshotManagerImpl(dao, journal, snapshotPath);
+        service = new PartitionedAccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                new AccountTransformerImpl(), dao, journal, snapshotManager, PARTITIONS);
+        insertAccounts(16);
+        BigDecimal initialTotal = totalBalance();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    int src = random.nextInt(16) + 1;
+                    try {
+                        service.transferMoney(
+                                AccountTestHelper.createTransferDTO(src, (src + random.nextInt(15)) % 16 + 1, "0.01"));
+                    }
+                    catch (InsufficientFundsException e) {
+                        // Fine, only the totals matter here
+                    }
+                }
+                return null;
+            }));
+        }
+
+        for (int i = 0; i < 20; i++) {
+            snapshotManager.takeSnapshot();
+            AccountDAO loaded = new AccountDAOImpl();
+            new SnapshotReader().load(snapshotPath, loaded);
+            // A credit still on its way to another partition would be missing from a torn cut
+            Assert.assertEquals(0, initialTotal.compareTo(totalBalance(loaded)));
+        }
+        running.set(false);
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        snapshotManager.close();
+    }
+
+    @Test
+    public void close_whenTransfersInFlight_completesOrFailsEveryFuture() throws Exception {
+        insertAccounts(8);
+        BigDecimal initialTotal = totalBalance();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int src = i % 8 + 1;
+            futures.add(service.transferMoneyAsync(AccountTestHelper.createTransferDTO(src, src % 8 + 1, "0.01")));
+        }
+        service.close();
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+            }
+            catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+        Assert.assertEquals(0, initialTotal.compareTo(totalBalance()));
+    }
+
+    private void start(Journal journal) {
+        this.journal = journal;
+        dao = new PartitionedAccountDAO(PARTITIONS);
+        service = new PartitionedAccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                new AccountTransformerImpl(), dao, journal, new NoOpSnapshotManager(), PARTITIONS, 64,
+                new IdempotencyCacheImpl(60000, 1024 * 1024), new NoOpCurrencyConverter());
+    }
+
+    private void insertAccounts(int n) throws Exception {
+        for (AccountDTO dto : AccountTestHelper.createAccountDTOs(n)) {
+            service.createAccount(dto);
+        }
+    }
+
+    private BigDecimal totalBalance() {
+        return totalBalance(dao);
+    }
+
+    private BigDecimal totalBalance(AccountDAO accountDAO) {
+        return accountDAO.getAllAccounts().stream().map(Account::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private Map<Integer, BigDecimal> balances(AccountDAO accountDAO) {
+        return accountDAO.getAllAccounts().stream()
+                .collect(Collectors.toMap(Account::getId, account -> account.getBalance().stripTrailingZeros()));
+    }
+}
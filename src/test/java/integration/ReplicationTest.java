@@ -0,0 +1,135 @@
+package integration;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.AccountDAOImpl;
+import org.account.journal.FileJournalImpl;
+import org.account.journal.FsyncPolicy;
+import org.account.journal.Journal;
+import org.account.journal.JournalRecord;
+import org.account.journal.JournalReplayer;
+import org.account.replication.ReplicationClient;
+import org.account.replication.ReplicationServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.AccountTestHelper;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+
+public class ReplicationTest {
+
+    private static final int PORT = 2260;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path journalPath;
+    private Journal journal;
+    private ReplicationServer server;
+    private AccountDAO replicaDAO;
+    private ReplicationClient client;
+
+    @Before
+    public void before() throws Exception {
+        journalPath = folder.newFile().toPath();
+        journal = new FileJournalImpl(journalPath, FsyncPolicy.GROUP);
+        server = new ReplicationServer(PORT, journalPath, journal);
+        server.start();
+        replicaDAO = new AccountDAOImpl();
+        client = new ReplicationClient("localhost:" + PORT, new JournalReplayer(replicaDAO), 1000);
+    }
+
+    @After
+    public void after() {
+        client.close();
+        server.close();
+        journal.close();
+    }
+
+    @Test
+    public void follow_whenPrimaryJournals_appliesRecordsInOrder() throws Exception {
+        journal.append(JournalRecord.accountCreated(AccountTestHelper.createAccount(1)));
+        client.start();
+        journal.append(JournalRecord.accountCreated(AccountTestHelper.createAccount(2)));
+        journal.append(JournalRecord.transfer(1, 2, BigDecimal.TEN));
+
+        awaitApplied(3);
+        Assert.assertTrue(client.isSynced());
+        Assert.assertEquals(0, client.getLagRecords());
+        Assert.assertEquals(new BigDecimal("90.5"), replicaDAO.getAccount(1).getBalance());
+        Assert.assertEquals(new BigDecimal("210.5"), replicaDAO.getAccount(2).getBalance());
+    }
+
+    @Test
+    public void follow_whenPrimaryRestarts_resumesWithoutReapplying() throws Exception {
+        journal.append(JournalRecord.accountCreated(AccountTestHelper.createAccount(1)));
+        journal.append(JournalRecord.accountCreated(AccountTestHelper.createAccount(2)));
+        client.start();
+        journal.append(JournalRecord.transfer(1, 2, BigDecimal.TEN));
+        awaitApplied(3);
+
+        server.close();
+        journal.append(JournalRecord.transfer(1, 2, BigDecimal.ONE));
+        server = new ReplicationServer(PORT, journalPath, journal);
+        server.start();
+
+        awaitApplied(4);
+        Assert.assertEquals(new BigDecimal("89.5"), replicaDAO.getAccount(1).getBalance());
+        Assert.assertEquals(new BigDecimal("211.5"), replicaDAO.getAccount(2).getBalance());
+    }
+
+    @Test
+    public void follow_whenPrimaryLacksNextRecord_stopsFollowing() throws Exception {
+        journal.append(JournalRecord.accountCreated(AccountTestHelper.createAccount(1)));
+        client.start();
+        awaitApplied(1);
+
+        // A different, shorter journal does not have the replica's next record where the replica expects it
+        server.close();
+        Path otherPath = folder.newFile().toPath();
+        try (Journal other = new FileJournalImpl(otherPath, FsyncPolicy.GROUP)) {
+            server = new ReplicationServer(PORT, otherPath, other);
+            server.start();
+            Thread.sleep(1500);
+            other.append(JournalRecord.accountCreated(AccountTestHelper.createAccount(2)));
+            other.append(JournalRecord.accountCreated(AccountTestHelper.createAccount(3)));
+            Thread.sleep(200);
+        }
+        Assert.assertEquals(1, client.getAppliedSequence());
+        Assert.assertEquals(1, replicaDAO.getAllAccounts().size());
+    }
+
+    @Test
+    public void follow_whenRecordCannotBeApplied_stopsFollowing() throws Exception {
+        client.close();
+        JournalReplayer replayer = new JournalReplayer(replicaDAO);
+        client = new ReplicationClient("localhost:" + PORT, record -> {
+            if (record.getSequence() == 2) {
+                throw new IllegalStateException("Cannot apply");
+            }
+            replayer.accept(record);
+        }, 1000);
+        journal.append(JournalRecord.accountCreated(AccountTestHelper.createAccount(1)));
+        journal.append(JournalRecord.accountCreated(AccountTestHelper.createAccount(2)));
+        journal.append(JournalRecord.accountCreated(AccountTestHelper.createAccount(3)));
+        client.start();
+
+        Thread.sleep(1500);
+        Assert.assertEquals(1, client.getAppliedSequence());
+        Assert.assertEquals(1, replicaDAO.getAllAccounts().size());
+        Assert.assertFalse(client.isSynced());
+    }
+
+    private void awaitApplied(long sequence) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (client.getAppliedSequence() < sequence || !client.isSynced() || client.getLagRecords() > 0) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
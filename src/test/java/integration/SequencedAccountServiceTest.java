@@ -0,0 +1,287 @@
+package integration;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.AccountDAOImpl;
+import org.account.exception.InsufficientFundsException;
+import org.account.exception.VersionConflictException;
+import org.account.idempotency.IdempotencyCacheImpl;
+import org.account.journal.FileJournalImpl;
+import org.account.journal.FsyncPolicy;
+import org.account.journal.Journal;
+import org.account.journal.JournalReplayer;
+import org.account.journal.NoOpJournal;
+import org.account.model.Account;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.TransferDTO;
+import org.account.model.dto.TransferResultDTO;
+import org.account.service.SequencedAccountServiceImpl;
+import org.account.snapshot.NoOpSnapshotManager;
+import org.account.transformer.AccountTransformerImpl;
+import org.account.validator.AccountValidatorImpl;
+import org.account.validator.TransferValidatorImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.AccountTestHelper;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class SequencedAccountServiceTest {
+
+    private static final int THREADS = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AccountDAO dao;
+    private Journal journal;
+    private SequencedAccountServiceImpl service;
+
+    @Before
+    public void before() {
+        start(new NoOpJournal());
+    }
+
+    @After
+    public void after() {
+        service.close();
+        journal.close();
+    }
+
+    @Test
+    public void transferMoney_whenFundsAvailable_movesMoney() throws Exception {
+        insertAccounts(2);
+        service.transferMoney(AccountTestHelper.createTransferDTO(1, 2, "50"));
+        Assert.assertEquals(0, new BigDecimal("50.5").compareTo(service.getAccount(1).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("250.5").compareTo(service.getAccount(2).getBalance()));
+    }
+
+    @Test(expected = InsufficientFundsException.class)
+    public void transferMoney_whenInsufficientFunds_throwsInsufficientFundsException() throws Exception {
+        insertAccounts(2);
+        service.transferMoney(AccountTestHelper.createTransferDTO(1, 2, "1000"));
+    }
+
+    @Test
+    public void transferMoney_whenHotAccountHitConcurrently_neverOverdrawsAndConservesTotal() throws Exception {
+        insertAccounts(16);
+        BigDecimal initialTotal = totalBalance();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 2000; i++) {
+                    // Account 1 is on one side of every transfer
+                    int other = random.nextInt(15) + 2;
+                    boolean fromHot = random.nextBoolean();
+                    try {
+                        service.transferMoney(
+                                AccountTestHelper.createTransferDTO(fromHot ? 1 : other, fromHot ? other : 1, "7"));
+                    }
+                    catch (InsufficientFundsException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(0, initialTotal.compareTo(totalBalance()));
+        for (Account account : dao.getAllAccounts()) {
+            Assert.assertTrue(account.getBalance().signum() >= 0);
+        }
+    }
+
+    @Test
+    public void transferMoney_whenExpectedVersionStale_throwsVersionConflictException() throws Exception {
+        insertAccounts(2);
+        TransferDTO transfer = AccountTestHelper.createTransferDTO(1, 2, "10");
+        transfer.setExpectedVersion(0L);
+        service.transferMoney(transfer);
+        try {
+            service.transferMoney(transfer);
+            Assert.fail();
+        }
+        catch (VersionConflictException e) {
+            Assert.assertEquals(0, new BigDecimal("90.5").compareTo(service.getAccount(1).getBalance()));
+        }
+        transfer.setExpectedVersion(1L);
+        service.transferMoney(transfer);
+        Assert.assertEquals(2, service.getAccountVersion(1));
+    }
+
+    @Test
+    public void transferMoneyAsync_whenInsufficientFunds_failsFutureOffTheSequencerThread() throws Exception {
+        insertAccounts(2);
+        CompletableFuture<String> completedOn = service
+                .transferMoneyAsync(AccountTestHelper.createTransferDTO(1, 2, "1000"))
+                .handle((result, e) -> {
+                    Assert.assertTrue(e instanceof InsufficientFundsException);
+                    return Thread.currentThread().getName();
+                });
+        // Runs on this thread instead if the future completed before the callback was attached
+        Assert.assertNotEquals("transfer-sequencer", completedOn.get(5, TimeUnit.SECONDS));
+
+        service.transferMoneyAsync(AccountTestHelper.createTransferDTO(1, 2, "50")).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(0, new BigDecimal("50.5").compareTo(service.getAccount(1).getBalance()));
+    }
+
+    @Test
+    public void transferMoneyBatch_whenOneTransferOverdraws_appliesNothing() throws Exception {
+        insertAccounts(2);
+        BatchTransferResultDTO result = service.transferMoneyBatch(Arrays.asList(
+                AccountTestHelper.createTransferDTO(1, 2, "50"),
+                AccountTestHelper.createTransferDTO(1, 2, "60")));
+
+        Assert.assertFalse(result.isCommitted());
+        Assert.assertEquals(TransferResultDTO.Status.ABORTED, result.getResults().get(0).getStatus());
+        Assert.assertEquals(TransferResultDTO.Status.FAILED, result.getResults().get(1).getStatus());
+        Assert.assertEquals(0, new BigDecimal("100.5").compareTo(service.getAccount(1).getBalance()));
+    }
+
+    @Test
+    public void transferMoneyBatch_whenAllFit_appliesAll() throws Exception {
+        insertAccounts(2);
+        BatchTransferResultDTO result = service.transferMoneyBatch(Arrays.asList(
+                AccountTestHelper.createTransferDTO(1, 2, "100"),
+                AccountTestHelper.createTransferDTO(2, 1, "300")));
+
+        Assert.assertTrue(result.isCommitted());
+        Assert.assertEquals(0, new BigDecimal("300.5").compareTo(service.getAccount(1).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("0.5").compareTo(service.getAccount(2).getBalance()));
+    }
+
+    @Test
+    public void transferMoney_whenJournalled_isRecoveredAfterRestart() throws Exception {
+        Path journalPath = folder.newFile().toPath();
+        service.close();
+        start(new FileJournalImpl(journalPath, FsyncPolicy.GROUP));
+        insertAccounts(4);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 200; i++) {
+                    int src = random.nextInt(4) + 1;
+                    try {
+                        service.transferMoney(AccountTestHelper.createTransferDTO(src, src % 4 + 1, "0.25"));
+                    }
+                    catch (InsufficientFundsException e) {
+                        // Fine, rejected transfers are not journalled
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        Map<Integer, BigDecimal> expected = balances(dao);
+        service.close();
+        journal.close();
+
+        AccountDAO recovered = new AccountDAOImpl();
+        new FileJournalImpl(journalPath, FsyncPolicy.GROUP, new JournalReplayer(recovered)).close();
+        Assert.assertEquals(expected, balances(recovered));
+        start(new NoOpJournal());
+    }
+
+    @Test
+    public void transferMoneyAsync_whenRetriedWithSameKey_appliesTransferOnce() throws Exception {
+        insertAccounts(2);
+        TransferDTO transfer = AccountTestHelper.createTransferDTO(1, 2, "50");
+        transfer.setIdempotencyKey("retry");
+        CompletableFuture<Void> first = service.transferMoneyAsync(transfer);
+        CompletableFuture<Void> second = service.transferMoneyAsync(transfer);
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        service.transferMoney(transfer);
+
+        Assert.assertEquals(0, new BigDecimal("50.5").compareTo(service.getAccount(1).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("250.5").compareTo(service.getAccount(2).getBalance()));
+    }
+
+    @Test
+    public void close_whenTransfersPublishedConcurrently_completesEveryTransfer() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < 10; round++) {
+                // A tiny ring keeps producers waiting for slots when the sequencer stops
+                service.close();
+                dao = new AccountDAOImpl();
+                service = new SequencedAccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                        new AccountTransformerImpl(), dao, journal, new NoOpSnapshotManager(), 2);
+                insertAccounts(2);
+                SequencedAccountServiceImpl current = service;
+                CountDownLatch started = new CountDownLatch(THREADS);
+                List<Future<?>> producers = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    int src = i % 2 + 1;
+                    producers.add(executor.submit(() -> {
+                        started.countDown();
+                        while (true) {
+                            try {
+                                current.transferMoney(AccountTestHelper.createTransferDTO(src, 3 - src, "0.01"));
+                            }
+                            catch (InsufficientFundsException e) {
+                                // Keep publishing
+                            }
+                            catch (IllegalStateException e) {
+                                return null;
+                            }
+                        }
+                    }));
+                }
+                started.await();
+                Thread.sleep(5);
+                service.close();
+                for (Future<?> producer : producers) {
+                    producer.get(5, TimeUnit.SECONDS);
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void start(Journal journal) {
+        this.journal = journal;
+        dao = new AccountDAOImpl();
+        service = new SequencedAccountServiceImpl(new AccountValidatorImpl(), new TransferValidatorImpl(),
+                new AccountTransformerImpl(), dao, journal, new NoOpSnapshotManager(), 64,
+                new IdempotencyCacheImpl(60000, 1024 * 1024));
+    }
+
+    private void insertAccounts(int n) throws Exception {
+        for (AccountDTO dto : AccountTestHelper.createAccountDTOs(n)) {
+            service.createAccount(dto);
+        }
+    }
+
+    private BigDecimal totalBalance() {
+        return dao.getAllAccounts().stream().map(Account::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private Map<Integer, BigDecimal> balances(AccountDAO accountDAO) {
+        return accountDAO.getAllAccounts().stream()
+                .collect(Collectors.toMap(Account::getId, account -> account.getBalance().stripTrailingZeros()));
+    }
+}
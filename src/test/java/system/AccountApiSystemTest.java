@@ -1,7 +1,11 @@
 package system;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.account.api.AccountBinaryProvider;
 import org.account.model.dto.AccountDTO;
+import org.account.model.dto.AccountPageDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.ErrorDTO;
 import org.account.model.dto.TransferDTO;
 import org.junit.After;
 import org.junit.Assert;
@@ -15,15 +19,18 @@ import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.List;
 
 public class AccountApiSystemTest {
 
     private static final int TEST_PORT = 2230;
     private static final String BASE_URI = "http://localhost:" + TEST_PORT + "/api/v1/account";
+    private static final MediaType BINARY = AccountBinaryProvider.APPLICATION_ACCOUNT_BINARY_TYPE;
     private AppServer server;
     private ObjectMapper mapper;
 
@@ -55,6 +62,93 @@ public class AccountApiSystemTest {
         Assert.assertEquals(createdAccount, response.readEntity(AccountDTO.class));
     }
 
+    @Test
+    public void conditionalReadWorkflowTest() throws Exception {
+        for (AccountDTO dto : AccountTestHelper.createAccountDTOs(2)) {
+            assertResponseOk(create(dto));
+        }
+        Response response = read(1);
+        assertResponseOk(response);
+        String tag = response.getHeaderString(HttpHeaders.ETAG);
+        Assert.assertNotNull(tag);
+
+        // Unchanged account is not sent again
+        response = read(1, tag);
+        Assert.assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+        Assert.assertEquals(tag, response.getHeaderString(HttpHeaders.ETAG));
+        Assert.assertFalse(response.hasEntity());
+
+        // A transfer changes the tag, so the new balance is sent
+        TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
+        assertResponseOk(transfer(transferDTO));
+        response = read(1, tag);
+        assertResponseOk(response);
+        String newTag = response.getHeaderString(HttpHeaders.ETAG);
+        Assert.assertNotEquals(tag, newTag);
+        Assert.assertEquals(AccountTestHelper.createAccountDTO(1).getBalance().subtract(transferDTO.getTransferAmount()),
+                response.readEntity(AccountDTO.class).getBalance());
+
+        // Transfers conditional on the source account are refused once it has changed
+        transferDTO.setTransferAmount(new BigDecimal("0.25"));
+        Assert.assertEquals(Response.Status.PRECONDITION_FAILED.getStatusCode(), transfer(transferDTO, tag).getStatus());
+        assertResponseOk(transfer(transferDTO, newTag));
+        Assert.assertEquals(Response.Status.PRECONDITION_FAILED.getStatusCode(), transfer(transferDTO, newTag).getStatus());
+    }
+
+    @Test
+    public void binaryWorkflowTest() throws Exception {
+        Client client = ClientBuilder.newClient().register(new AccountBinaryProvider());
+        WebTarget resource = client.target(BASE_URI);
+        Entity<AccountDTO> account = Entity.entity(AccountTestHelper.createAccountDTO(), BINARY);
+        Response response = resource.request().accept(BINARY).post(account);
+        assertResponseOk(response);
+        Assert.assertEquals(BINARY, response.getMediaType());
+        AccountDTO createdAccount = response.readEntity(AccountDTO.class);
+        Assert.assertEquals(AccountTestHelper.createAccountDTO().getBalance(), createdAccount.getBalance());
+        assertResponseOk(create(AccountTestHelper.createAccountDTO(2)));
+
+        TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
+        assertResponseOk(resource.request().accept(BINARY).put(Entity.entity(transferDTO, BINARY)));
+
+        // Each representation of an account has its own tag
+        response = resource.path("1").request().accept(BINARY).get();
+        assertResponseOk(response);
+        String tag = response.getHeaderString(HttpHeaders.ETAG);
+        String jsonTag = read(1).getHeaderString(HttpHeaders.ETAG);
+        Assert.assertNotEquals(jsonTag, tag);
+        Assert.assertEquals(createdAccount.getBalance().subtract(transferDTO.getTransferAmount()),
+                response.readEntity(AccountDTO.class).getBalance());
+        response = resource.path("1").request().accept(BINARY).header(HttpHeaders.IF_NONE_MATCH, tag).get();
+        Assert.assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+
+        // The JSON tag does not stand in for the binary body
+        response = resource.path("1").request().accept(BINARY).header(HttpHeaders.IF_NONE_MATCH, jsonTag).get();
+        assertResponseOk(response);
+        Assert.assertEquals(BINARY, response.getMediaType());
+        Assert.assertEquals(tag, response.getHeaderString(HttpHeaders.ETAG));
+
+        // Either tag names the version a transfer expects
+        transferDTO.setTransferAmount(new BigDecimal("0.25"));
+        response = resource.request().accept(BINARY).header(HttpHeaders.IF_MATCH, tag)
+                .put(Entity.entity(transferDTO, BINARY));
+        assertResponseOk(response);
+
+        // Clients that accept anything still get JSON
+        Assert.assertEquals(MediaType.APPLICATION_JSON_TYPE, resource.path("1").request().get().getMediaType());
+        Assert.assertEquals(MediaType.APPLICATION_JSON_TYPE, resource.path("1/transactions").request().get().getMediaType());
+
+        // Failures are described in the same content type
+        transferDTO.setTransferAmount(BigDecimal.valueOf(1000000));
+        response = resource.request().accept(BINARY).put(Entity.entity(transferDTO, BINARY));
+        Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), response.getStatus());
+        Assert.assertNotNull(response.readEntity(ErrorDTO.class).getErrorMessage());
+
+        response = resource.request().accept(BINARY)
+                .put(Entity.entity(new byte[] {AccountBinaryProvider.VERSION, 0, 0}, BINARY));
+        Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        client.close();
+    }
+
     @Test
     public void transferMoneyWorkflowTest() throws Exception {
         // Create 2 accounts
@@ -98,6 +192,58 @@ public class AccountApiSystemTest {
         Assert.assertEquals(account2ExpectedFinalBalance, response.readEntity(AccountDTO.class).getBalance());
     }
 
+    @Test
+    public void batchTransferWorkflowTest() throws Exception {
+        // Create 2 accounts
+        for (AccountDTO dto : AccountTestHelper.createAccountDTOs(2)) {
+            assertResponseOk(create(dto));
+        }
+        BigDecimal account1InitialBalance = read(1).readEntity(AccountDTO.class).getBalance();
+        BigDecimal account2InitialBalance = read(2).readEntity(AccountDTO.class).getBalance();
+
+        // Transfer money back and forth in one batch
+        TransferDTO forward = AccountTestHelper.createTransferDTO();
+        forward.setTransferAmount(BigDecimal.valueOf(50));
+        TransferDTO backward = AccountTestHelper.createTransferDTO();
+        backward.setSourceAccountId(2);
+        backward.setDestinationAccountId(1);
+        backward.setTransferAmount(BigDecimal.valueOf(20));
+
+        Response response = transferBatch(Arrays.asList(forward, backward));
+        assertResponseOk(response);
+        BatchTransferResultDTO result = response.readEntity(BatchTransferResultDTO.class);
+        Assert.assertTrue(result.isCommitted());
+        Assert.assertEquals(2, result.getResults().size());
+
+        // Check accounts have updated balances
+        Assert.assertEquals(0, account1InitialBalance.subtract(BigDecimal.valueOf(30))
+                .compareTo(read(1).readEntity(AccountDTO.class).getBalance()));
+        Assert.assertEquals(0, account2InitialBalance.add(BigDecimal.valueOf(30))
+                .compareTo(read(2).readEntity(AccountDTO.class).getBalance()));
+    }
+
+    @Test
+    public void accountPagingWorkflowTest() throws Exception {
+        // Create 3 accounts
+        for (AccountDTO dto : AccountTestHelper.createAccountDTOs(3)) {
+            assertResponseOk(create(dto));
+        }
+
+        // Read them 2 at a time
+        Response response = readPage(0, 2);
+        assertResponseOk(response);
+        AccountPageDTO page = response.readEntity(AccountPageDTO.class);
+        Assert.assertEquals(2, page.getAccounts().size());
+        Assert.assertEquals(Integer.valueOf(2), page.getNextAfter());
+
+        response = readPage(page.getNextAfter(), 2);
+        assertResponseOk(response);
+        page = response.readEntity(AccountPageDTO.class);
+        Assert.assertEquals(1, page.getAccounts().size());
+        Assert.assertEquals(Integer.valueOf(3), page.getAccounts().get(0).getId());
+        Assert.assertNull(page.getNextAfter());
+    }
+
     private Response create(AccountDTO accountDTO) throws Exception {
         Client client = ClientBuilder.newClient();
         WebTarget resource = client.target(BASE_URI);
@@ -111,12 +257,24 @@ public class AccountApiSystemTest {
         return resource.request().accept(MediaType.APPLICATION_JSON).get();
     }
 
+    private Response read(int id, String ifNoneMatch) throws Exception {
+        Client client = ClientBuilder.newClient();
+        WebTarget resource = client.target(BASE_URI + "/" + id);
+        return resource.request().accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch).get();
+    }
+
     private Response readAll() throws Exception {
         Client client = ClientBuilder.newClient();
         WebTarget resource = client.target(BASE_URI);
         return resource.request().accept(MediaType.APPLICATION_JSON).get();
     }
 
+    private Response readPage(int after, int limit) throws Exception {
+        Client client = ClientBuilder.newClient();
+        WebTarget resource = client.target(BASE_URI + "/page").queryParam("after", after).queryParam("limit", limit);
+        return resource.request().accept(MediaType.APPLICATION_JSON).get();
+    }
+
     private Response transfer(TransferDTO transferDTO) throws Exception {
         Client client = ClientBuilder.newClient();
         WebTarget resource = client.target(BASE_URI);
@@ -124,6 +282,20 @@ public class AccountApiSystemTest {
         return resource.request().accept(MediaType.APPLICATION_JSON).put(Entity.json(json));
     }
 
+    private Response transfer(TransferDTO transferDTO, String ifMatch) throws Exception {
+        Client client = ClientBuilder.newClient();
+        WebTarget resource = client.target(BASE_URI);
+        String json = mapper.writeValueAsString(transferDTO);
+        return resource.request().accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_MATCH, ifMatch).put(Entity.json(json));
+    }
+
+    private Response transferBatch(List<TransferDTO> transferDTOs) throws Exception {
+        Client client = ClientBuilder.newClient();
+        WebTarget resource = client.target(BASE_URI + "/transfers/batch");
+        String json = mapper.writeValueAsString(transferDTOs);
+        return resource.request().accept(MediaType.APPLICATION_JSON).post(Entity.json(json));
+    }
+
     private void assertResponseOk(Response response) {
         Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
     }
@@ -0,0 +1,65 @@
+package system;
+
+import org.account.AppServer;
+import org.account.config.AdmissionConfig;
+import org.account.config.AppConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.Properties;
+
+public class AdmissionControlSystemTest {
+
+    private static final int TEST_PORT = 2232;
+    private static final String ACCOUNT_URI = "http://localhost:" + TEST_PORT + "/api/v1/account";
+    private static final String METRICS_URI = "http://localhost:" + TEST_PORT + "/metrics";
+    private static final String API_KEY_HEADER = "X-Api-Key";
+    private AppServer server;
+
+    @Before
+    public void before() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(AdmissionConfig.CLIENT_RATE_PROPERTY, "0.1");
+        properties.setProperty(AdmissionConfig.CLIENT_BURST_PROPERTY, "2");
+        properties.setProperty(AdmissionConfig.MAX_CONCURRENCY_PROPERTY, "100");
+        server = new AppServer(TEST_PORT, AppConfig.fromProperties(properties));
+        server.runTestServer();
+    }
+
+    @After
+    public void after() throws Exception {
+        server.stopTestServer();
+    }
+
+    @Test
+    public void admissionWorkflowTest() {
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), getAll("batch").getStatus());
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), getAll("batch").getStatus());
+
+        Response rejected = getAll("batch");
+        Assert.assertEquals(429, rejected.getStatus());
+        Assert.assertEquals("10", rejected.getHeaderString("Retry-After"));
+
+        // A malformed body is never read once the client is over its rate
+        Response malformed = ClientBuilder.newClient().target(ACCOUNT_URI).path("transfer").request()
+                .header(API_KEY_HEADER, "batch").post(Entity.entity("{not json", MediaType.APPLICATION_JSON));
+        Assert.assertEquals(429, malformed.getStatus());
+
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), getAll("interactive").getStatus());
+
+        String metrics = ClientBuilder.newClient().target(METRICS_URI).request().get(String.class);
+        Assert.assertTrue(metrics.contains("account_admission_rejected_total{reason=\"rate\"} 2"));
+        Assert.assertTrue(metrics.contains("account_admission_in_flight 0"));
+    }
+
+    private Response getAll(String apiKey) {
+        return ClientBuilder.newClient().target(ACCOUNT_URI).request(MediaType.APPLICATION_JSON)
+                .header(API_KEY_HEADER, apiKey).get();
+    }
+}
@@ -0,0 +1,181 @@
+package system;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.account.AppServer;
+import org.account.cluster.HashRing;
+import org.account.config.AppConfig;
+import org.account.config.ClusterConfig;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.BatchTransferResultDTO;
+import org.account.model.dto.TransferDTO;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import util.AccountTestHelper;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class ClusterSystemTest {
+
+    private static final int NODES = 3;
+    private static final int HTTP_PORT = 2240;
+    private static final String CLUSTER_NODES = "localhost:2250,localhost:2251,localhost:2252";
+    private final List<AppServer> servers = new ArrayList<>();
+    private final Client client = ClientBuilder.newClient();
+    private ObjectMapper mapper;
+    private HashRing ring;
+
+    @Before
+    public void before() throws Exception {
+        mapper = new ObjectMapper();
+        ring = new HashRing(Arrays.asList(CLUSTER_NODES.split(",")), 128);
+        for (int node = 0; node < NODES; node++) {
+            Properties properties = new Properties();
+            properties.setProperty(ClusterConfig.NODES_PROPERTY, CLUSTER_NODES);
+            properties.setProperty(ClusterConfig.NODE_INDEX_PROPERTY, String.valueOf(node));
+            AppServer server = new AppServer(HTTP_PORT + node, AppConfig.fromProperties(properties));
+            server.runTestServer();
+            servers.add(server);
+        }
+    }
+
+    @After
+    public void after() throws Exception {
+        for (AppServer server : servers) {
+            server.stopTestServer();
+        }
+        client.close();
+    }
+
+    @Test
+    public void crossNodeWorkflowTest() throws Exception {
+        // Each node creates accounts it holds itself
+        AccountDTO source = create(0, AccountTestHelper.createAccountDTO(1));
+        AccountDTO destination = create(1, AccountTestHelper.createAccountDTO(2));
+        Assert.assertEquals(0, ring.ownerOf(source.getId()));
+        Assert.assertEquals(1, ring.ownerOf(destination.getId()));
+
+        // Any node can read any account
+        Assert.assertEquals(source, read(2, source.getId()));
+        Assert.assertEquals(destination, read(0, destination.getId()));
+
+        // A transfer sent to a node holding neither account moves the money between the other two
+        TransferDTO transferDTO = transferDTO(source.getId(), destination.getId(), BigDecimal.valueOf(50));
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), transfer(2, transferDTO).getStatus());
+        Assert.assertEquals(0, source.getBalance().subtract(BigDecimal.valueOf(50))
+                .compareTo(read(1, source.getId()).getBalance()));
+        Assert.assertEquals(0, destination.getBalance().add(BigDecimal.valueOf(50))
+                .compareTo(read(2, destination.getId()).getBalance()));
+
+        // Failures on the other node come back as they would from a single node
+        transferDTO.setTransferAmount(BigDecimal.valueOf(1000));
+        Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), transfer(1, transferDTO).getStatus());
+        Assert.assertEquals(Response.Status.NOT_FOUND.getStatusCode(),
+                client.target(uri(1) + "/" + 999999).request().accept(MediaType.APPLICATION_JSON).get().getStatus());
+
+        // Every node lists the accounts of all nodes
+        List<AccountDTO> all = client.target(uri(2)).request().accept(MediaType.APPLICATION_JSON)
+                .get(new GenericType<List<AccountDTO>>() {});
+        Assert.assertEquals(2, all.size());
+    }
+
+    @Test
+    public void batchAcrossNodesIsNotCommittedTest() throws Exception {
+        AccountDTO source = create(0, AccountTestHelper.createAccountDTO(1));
+        AccountDTO destination = create(1, AccountTestHelper.createAccountDTO(2));
+
+        String json = mapper.writeValueAsString(Arrays.asList(
+                transferDTO(source.getId(), destination.getId(), BigDecimal.ONE)));
+        Response response = client.target(uri(0) + "/transfers/batch").request().accept(MediaType.APPLICATION_JSON)
+                .post(Entity.json(json));
+        Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), response.getStatus());
+        Assert.assertFalse(response.readEntity(BatchTransferResultDTO.class).isCommitted());
+        Assert.assertEquals(source.getBalance(), read(0, source.getId()).getBalance());
+        Assert.assertEquals(destination.getBalance(), read(1, destination.getId()).getBalance());
+    }
+
+    @Test
+    public void concurrentCrossNodeTransfersConserveMoneyTest() throws Exception {
+        List<AccountDTO> accounts = new ArrayList<>();
+        for (int node = 0; node < NODES; node++) {
+            accounts.add(create(node, AccountTestHelper.createAccountDTO(node + 1)));
+        }
+
+        // Each thread sends money round the ring of nodes through a different entry node
+        int transfers = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(NODES);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < NODES; thread++) {
+            int entryNode = thread;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < transfers; i++) {
+                    int src = (entryNode + i) % NODES;
+                    TransferDTO transferDTO = transferDTO(accounts.get(src).getId(),
+                            accounts.get((src + 1) % NODES).getId(), BigDecimal.ONE);
+                    Assert.assertEquals(Response.Status.OK.getStatusCode(), transfer(entryNode, transferDTO).getStatus());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        BigDecimal before = BigDecimal.ZERO;
+        BigDecimal after = BigDecimal.ZERO;
+        for (AccountDTO account : accounts) {
+            before = before.add(account.getBalance());
+            after = after.add(read(2, account.getId()).getBalance());
+        }
+        Assert.assertEquals(0, before.compareTo(after));
+        String metrics = client.target("http://localhost:" + HTTP_PORT + "/metrics").request().get(String.class);
+        Assert.assertTrue(metrics.contains("account_cluster_pending_credits 0"));
+    }
+
+    private AccountDTO create(int node, AccountDTO accountDTO) throws Exception {
+        Response response = client.target(uri(node)).request().accept(MediaType.APPLICATION_JSON)
+                .post(Entity.json(mapper.writeValueAsString(accountDTO)));
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        return response.readEntity(AccountDTO.class);
+    }
+
+    private AccountDTO read(int node, int id) {
+        Response response = client.target(uri(node) + "/" + id).request().accept(MediaType.APPLICATION_JSON).get();
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        return response.readEntity(AccountDTO.class);
+    }
+
+    private Response transfer(int node, TransferDTO transferDTO) throws Exception {
+        return client.target(uri(node)).request().accept(MediaType.APPLICATION_JSON)
+                .put(Entity.json(mapper.writeValueAsString(transferDTO)));
+    }
+
+    private TransferDTO transferDTO(int srcId, int dstId, BigDecimal amount) {
+        TransferDTO dto = AccountTestHelper.createTransferDTO();
+        dto.setSourceAccountId(srcId);
+        dto.setDestinationAccountId(dstId);
+        dto.setTransferAmount(amount);
+        return dto;
+    }
+
+    private String uri(int node) {
+        return "http://localhost:" + (HTTP_PORT + node) + "/api/v1/account";
+    }
+}
@@ -0,0 +1,98 @@
+package system;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.account.AppServer;
+import org.account.config.AppConfig;
+import org.account.config.ReplicationConfig;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.TransferDTO;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.AccountTestHelper;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.util.Properties;
+
+public class ReplicationSystemTest {
+
+    private static final int PRIMARY_PORT = 2233;
+    private static final int REPLICA_PORT = 2234;
+    private static final int REPLICATION_PORT = 2261;
+    private static final String PRIMARY_URI = "http://localhost:" + PRIMARY_PORT + "/api/v1/account";
+    private static final String REPLICA_URI = "http://localhost:" + REPLICA_PORT + "/api/v1/account";
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Client client = ClientBuilder.newClient();
+    private ObjectMapper mapper;
+    private AppServer primary;
+    private AppServer replica;
+
+    @Before
+    public void before() throws Exception {
+        mapper = new ObjectMapper();
+        Properties primaryProperties = new Properties();
+        primaryProperties.setProperty(AppConfig.JOURNAL_PATH_PROPERTY, folder.newFile().getPath());
+        primaryProperties.setProperty(ReplicationConfig.PORT_PROPERTY, String.valueOf(REPLICATION_PORT));
+        primary = new AppServer(PRIMARY_PORT, AppConfig.fromProperties(primaryProperties));
+        primary.runTestServer();
+
+        Properties replicaProperties = new Properties();
+        replicaProperties.setProperty(ReplicationConfig.PRIMARY_PROPERTY, "localhost:" + REPLICATION_PORT);
+        replica = new AppServer(REPLICA_PORT, AppConfig.fromProperties(replicaProperties));
+        replica.runTestServer();
+    }
+
+    @After
+    public void after() throws Exception {
+        replica.stopTestServer();
+        primary.stopTestServer();
+        client.close();
+    }
+
+    @Test
+    public void replicaWorkflowTest() throws Exception {
+        // Changes made on the primary can be read from the replica
+        for (AccountDTO dto : AccountTestHelper.createAccountDTOs(2)) {
+            Response response = client.target(PRIMARY_URI).request().accept(MediaType.APPLICATION_JSON)
+                    .post(Entity.json(mapper.writeValueAsString(dto)));
+            Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        }
+        TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
+        Response response = client.target(PRIMARY_URI).request().accept(MediaType.APPLICATION_JSON)
+                .put(Entity.json(mapper.writeValueAsString(transferDTO)));
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+
+        BigDecimal expected = AccountTestHelper.createAccountDTO(2).getBalance().add(transferDTO.getTransferAmount());
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (true) {
+            response = client.target(REPLICA_URI + "/2").request().accept(MediaType.APPLICATION_JSON).get();
+            if (response.getStatus() == Response.Status.OK.getStatusCode()
+                    && expected.compareTo(response.readEntity(AccountDTO.class).getBalance()) == 0) {
+                break;
+            }
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+
+        // The replica refuses changes
+        response = client.target(REPLICA_URI).request().accept(MediaType.APPLICATION_JSON)
+                .put(Entity.json(mapper.writeValueAsString(transferDTO)));
+        Assert.assertEquals(Response.Status.METHOD_NOT_ALLOWED.getStatusCode(), response.getStatus());
+
+        String metrics = client.target("http://localhost:" + REPLICA_PORT + "/metrics").request().get(String.class);
+        Assert.assertTrue(metrics.contains("account_replication_lag_records 0"));
+        Assert.assertTrue(metrics.contains("account_replica_rejected_total{reason=\"write\"} 1"));
+    }
+}
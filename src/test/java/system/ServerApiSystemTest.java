@@ -0,0 +1,97 @@
+package system;
+
+import org.account.AppServer;
+import org.account.config.AppConfig;
+import org.account.config.ServerConfig;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.ThreadPoolStatsDTO;
+import org.account.model.dto.TransferDTO;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import util.AccountTestHelper;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Properties;
+
+public class ServerApiSystemTest {
+
+    private static final int TEST_PORT = 2231;
+    private static final String BASE_URI = "http://localhost:" + TEST_PORT + "/api/v1/server";
+    private static final String ACCOUNT_URI = "http://localhost:" + TEST_PORT + "/api/v1/account";
+    private static final String METRICS_URI = "http://localhost:" + TEST_PORT + "/metrics";
+    private AppServer server;
+
+    @Before
+    public void before() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(ServerConfig.MAX_THREADS_PROPERTY, "16");
+        properties.setProperty(ServerConfig.QUEUE_SIZE_PROPERTY, "100");
+        properties.setProperty(ServerConfig.KEEP_ALIVE_PROPERTY, "false");
+        server = new AppServer(TEST_PORT, AppConfig.fromProperties(properties));
+        server.runTestServer();
+    }
+
+    @After
+    public void after() throws Exception {
+        server.stopTestServer();
+    }
+
+    @Test
+    public void threadPoolsWorkflowTest() {
+        Response response = ClientBuilder.newClient().target(BASE_URI).path("threadPools")
+                .request(MediaType.APPLICATION_JSON).get();
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        // Keep-alive is disabled, so the server asks for the connection to be closed
+        Assert.assertEquals("close", response.getHeaderString("Connection"));
+
+        List<ThreadPoolStatsDTO> stats = response.readEntity(new GenericType<List<ThreadPoolStatsDTO>>() {});
+        ThreadPoolStatsDTO jetty = stats.get(0);
+        Assert.assertEquals("jetty", jetty.getName());
+        Assert.assertEquals(16, jetty.getMaxThreads());
+        Assert.assertEquals(100, jetty.getQueueCapacity());
+        // At least the thread serving this request is busy
+        Assert.assertTrue(jetty.getBusyThreads() >= 1);
+        Assert.assertTrue(jetty.getUtilisation() > 0);
+        Assert.assertEquals("account-service", stats.get(1).getName());
+    }
+
+    @Test
+    public void metricsWorkflowTest() {
+        for (int i = 1; i <= 2; i++) {
+            Response response = ClientBuilder.newClient().target(ACCOUNT_URI).request(MediaType.APPLICATION_JSON)
+                    .post(Entity.entity(AccountTestHelper.createAccountDTO(i), MediaType.APPLICATION_JSON));
+            Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        }
+        TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
+        Response response = ClientBuilder.newClient().target(ACCOUNT_URI).request(MediaType.APPLICATION_JSON)
+                .put(Entity.entity(transferDTO, MediaType.APPLICATION_JSON));
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        transferDTO.setTransferAmount(new BigDecimal("1000000"));
+        response = ClientBuilder.newClient().target(ACCOUNT_URI).request(MediaType.APPLICATION_JSON)
+                .put(Entity.entity(transferDTO, MediaType.APPLICATION_JSON));
+        Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), response.getStatus());
+
+        response = ClientBuilder.newClient().target(METRICS_URI).request().get();
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        Assert.assertTrue(response.getMediaType().toString().startsWith(MediaType.TEXT_PLAIN));
+        String metrics = response.readEntity(String.class);
+        Assert.assertTrue(metrics.contains("account_api_request_seconds_count{endpoint=\"transferMoney\"} 2\n"));
+        Assert.assertTrue(metrics.contains("account_api_responses_total{endpoint=\"transferMoney\",status=\"4xx\"} 1\n"));
+        Assert.assertTrue(metrics.contains("account_service_call_seconds_count{method=\"createAccount\"} 2\n"));
+        Assert.assertTrue(metrics.contains("account_transfers_total{outcome=\"success\"} 1\n"));
+        Assert.assertTrue(metrics.contains("account_transfers_total{outcome=\"InsufficientFundsException\"} 1\n"));
+        // Funds are checked under the locks, so the rejected transfer took them too
+        Assert.assertTrue(metrics.contains("account_lock_acquisitions_total 2\n"));
+        // Store operations are sampled, so only check that they are exported
+        Assert.assertTrue(metrics.contains("account_dao_operation_seconds_count{operation=\"accountWithdraw\"} "));
+        Assert.assertTrue(metrics.contains("account_threadpool_max_threads{pool=\"jetty\"} 16\n"));
+    }
+}
@@ -0,0 +1,151 @@
+package unit;
+
+import org.account.api.AccountBinaryProvider;
+import org.account.codec.AccountBinaryCodec;
+import org.account.model.dto.AccountDTO;
+import org.account.model.dto.TransactionDTO;
+import org.account.model.dto.TransferDTO;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import util.AccountTestHelper;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.GenericType;
+import java.io.*;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+public class AccountBinaryCodecTest {
+
+    private AccountBinaryProvider provider;
+
+    @Before
+    public void before() {
+        provider = new AccountBinaryProvider();
+    }
+
+    @Test
+    public void readAccount_whenWritten_returnsEqualAccount() throws Exception {
+        AccountDTO account = AccountTestHelper.createAccountDTO(7);
+        account.setCreatedDate(new Date());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AccountBinaryCodec.writeAccount(account, new DataOutputStream(bytes));
+
+        AccountDTO read = AccountBinaryCodec.readAccount(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        Assert.assertEquals(account, read);
+        Assert.assertEquals(account.getCreatedDate(), read.getCreatedDate());
+    }
+
+    @Test
+    public void readAccount_whenFieldsAbsent_returnsAbsentFields() throws Exception {
+        AccountDTO account = new AccountDTO();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AccountBinaryCodec.writeAccount(account, new DataOutputStream(bytes));
+
+        AccountDTO read = AccountBinaryCodec.readAccount(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        Assert.assertNull(read.getId());
+        Assert.assertNull(read.getAccountHolderName());
+        Assert.assertNull(read.getBalance());
+        Assert.assertNull(read.getCreatedDate());
+    }
+
+    @Test
+    public void readDecimal_keepsScale() throws Exception {
+        BigDecimal value = new BigDecimal("-12345678901234567890.1200");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AccountBinaryCodec.writeDecimal(value, new DataOutputStream(bytes));
+
+        BigDecimal read = AccountBinaryCodec.readDecimal(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        Assert.assertEquals(value, read);
+        Assert.assertEquals(4, read.scale());
+    }
+
+    @Test
+    public void readDecimal_whenLongerThanAByte_returnsEqualDecimal() throws Exception {
+        BigDecimal value = BigDecimal.TEN.pow(700).negate().add(new BigDecimal("0.01"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        AccountBinaryCodec.writeDecimal(value, out);
+        out.writeInt(42);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertEquals(value, AccountBinaryCodec.readDecimal(in));
+        // The stream stays aligned for whatever follows
+        Assert.assertEquals(42, in.readInt());
+    }
+
+    @Test(expected = IOException.class)
+    public void readDecimal_whenLengthOutOfRange_throws() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeInt(Integer.MAX_VALUE);
+        AccountBinaryCodec.readDecimal(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test(expected = IOException.class)
+    public void readTransfers_whenSizeNegative_throws() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeInt(-1);
+        AccountBinaryCodec.readTransfers(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void provider_readsWhatItWrites() throws Exception {
+        TransactionDTO transaction = new TransactionDTO();
+        transaction.setTimestamp(1L);
+        transaction.setCounterpartyAccountId(2);
+        transaction.setAmount(BigDecimal.TEN);
+        transaction.setBalance(new BigDecimal("110.5"));
+        transaction.setCurrency("GBP");
+        List<TransactionDTO> transactions = Arrays.asList(transaction);
+        java.lang.reflect.Type type = new GenericType<List<TransactionDTO>>() {}.getType();
+        Assert.assertTrue(provider.isWriteable(List.class, type, null, AccountBinaryProvider.APPLICATION_ACCOUNT_BINARY_TYPE));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        provider.writeTo(transactions, List.class, type, null, AccountBinaryProvider.APPLICATION_ACCOUNT_BINARY_TYPE,
+                null, bytes);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertEquals(AccountBinaryProvider.VERSION, in.readByte());
+        Assert.assertEquals(transactions, AccountBinaryCodec.readTransactions(in));
+    }
+
+    @Test
+    public void provider_readsTransfer() throws Exception {
+        TransferDTO transfer = AccountTestHelper.createTransferDTO();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(AccountBinaryProvider.VERSION);
+        AccountBinaryCodec.writeTransfer(transfer, out);
+
+        Object read = readWithProvider(TransferDTO.class, bytes.toByteArray());
+        Assert.assertEquals(transfer, read);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void provider_whenVersionUnknown_rejectsBody() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(AccountBinaryProvider.VERSION + 1);
+        AccountBinaryCodec.writeTransfer(AccountTestHelper.createTransferDTO(), out);
+
+        readWithProvider(TransferDTO.class, bytes.toByteArray());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void provider_whenBodyTruncated_rejectsBody() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(AccountBinaryProvider.VERSION);
+        AccountBinaryCodec.writeAccount(AccountTestHelper.createAccountDTO(), out);
+
+        readWithProvider(AccountDTO.class, Arrays.copyOf(bytes.toByteArray(), bytes.size() - 3));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object readWithProvider(Class<?> type, byte[] body) throws IOException {
+        return provider.readFrom((Class<Object>) type, type, null, AccountBinaryProvider.APPLICATION_ACCOUNT_BINARY_TYPE,
+                null, new ByteArrayInputStream(body));
+    }
+}
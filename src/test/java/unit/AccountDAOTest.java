@@ -13,6 +13,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 import util.AccountTestHelper;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -42,11 +43,49 @@ public class AccountDAOTest {
         Assert.assertTrue(returnedAccounts.containsAll(accounts));
     }
 
+    @Test
+    public void getAccounts_whenAfterAndLimitGiven_returnsNextAccountsInIdOrder() {
+        List<Account> accounts = AccountTestHelper.createAccounts(10);
+        accounts.forEach(accountDAO::createAccount);
+        Assert.assertEquals(accounts.subList(3, 7), accountDAO.getAccounts(3, 4));
+        Assert.assertEquals(accounts.subList(8, 10), accountDAO.getAccounts(8, 4));
+        Assert.assertTrue(accountDAO.getAccounts(10, 4).isEmpty());
+    }
+
+    @Test
+    public void getAccounts_whenIdsHaveGaps_skipsMissingIds() {
+        accountDAO.insertAccount(AccountTestHelper.createAccount(2));
+        accountDAO.insertAccount(AccountTestHelper.createAccount(5));
+        List<Integer> ids = accountDAO.getAccounts(0, 10).stream().map(Account::getId).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(2, 5), ids);
+    }
+
     @Test (expected = AccountNotFoundException.class)
     public void getAccount_whenAccountNotFound_throwsAccountNotFoundException() throws AccountNotFoundException {
         accountDAO.getAccount(1);
     }
 
+    @Test (expected = AccountNotFoundException.class)
+    public void getAccount_whenIdNotPositive_throwsAccountNotFoundException() throws AccountNotFoundException {
+        accountDAO.createAccount(AccountTestHelper.createAccount());
+        accountDAO.getAccount(0);
+    }
+
+    @Test
+    public void insertAccount_whenIdsSpreadAcrossPages_findsEveryAccount() throws AccountNotFoundException {
+        int[] ids = {1, 4095, 4096, 4097, 1000000, 50000000};
+        for (int id : ids) {
+            accountDAO.insertAccount(AccountTestHelper.createAccount(id));
+        }
+
+        for (int id : ids) {
+            Assert.assertEquals(id, accountDAO.getAccount(id).getId());
+        }
+        List<Integer> allIds = accountDAO.getAllAccounts().stream().map(Account::getId).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(1, 4095, 4096, 4097, 1000000, 50000000), allIds);
+        Assert.assertEquals(50000001, accountDAO.createAccount(AccountTestHelper.createAccount()).getId());
+    }
+
     @Test
     public void getAccount_whenAccountFound_returnsAccount() throws AccountNotFoundException {
         Account account = AccountTestHelper.createAccount();
@@ -82,14 +121,14 @@ public class AccountDAOTest {
 
     @Test (expected = AccountNotFoundException.class)
     public void accountWithdraw_whenAccountNotFound_throwsAccountNotFoundException() throws AccountNotFoundException, InsufficientFundsException {
-        accountDAO.accountWithdraw(1, BigDecimal.ONE);
+        accountDAO.accountWithdraw(1, BigDecimal.ONE, 0);
     }
 
     @Test (expected = InsufficientFundsException.class)
     public void accountWithdraw_whenInsufficientFunds_throwsInsufficientFundsException() throws AccountNotFoundException, InsufficientFundsException {
         Account account = AccountTestHelper.createAccount();
         Account createdAccount = accountDAO.createAccount(account);
-        accountDAO.accountWithdraw(createdAccount.getId(), createdAccount.getBalance().add(BigDecimal.ONE));
+        accountDAO.accountWithdraw(createdAccount.getId(), createdAccount.getBalance().add(BigDecimal.ONE), 0);
     }
 
     @Test
@@ -100,13 +139,13 @@ public class AccountDAOTest {
         BigDecimal initialBalance = createdAccount.getBalance();
         BigDecimal expectedFinalBalance = initialBalance.subtract(withdrawAmount);
 
-        accountDAO.accountWithdraw(createdAccount.getId(), withdrawAmount);
+        accountDAO.accountWithdraw(createdAccount.getId(), withdrawAmount, 0);
         Assert.assertEquals(expectedFinalBalance, accountDAO.getAccount(createdAccount.getId()).getBalance());
     }
 
     @Test (expected = AccountNotFoundException.class)
     public void accountDeposit_whenAccountNotFound_throwsAccountNotFoundException() throws AccountNotFoundException, InsufficientFundsException {
-        accountDAO.accountDeposit(1, BigDecimal.ONE);
+        accountDAO.accountDeposit(1, BigDecimal.ONE, 0);
     }
 
     @Test
@@ -117,7 +156,53 @@ public class AccountDAOTest {
         BigDecimal initialBalance = createdAccount.getBalance();
         BigDecimal expectedFinalBalance = initialBalance.add(depositAmount);
 
-        accountDAO.accountDeposit(createdAccount.getId(), depositAmount);
+        accountDAO.accountDeposit(createdAccount.getId(), depositAmount, 0);
         Assert.assertEquals(expectedFinalBalance, accountDAO.getAccount(createdAccount.getId()).getBalance());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void accountWithdraw_whenMinorUnitBalance_subtractsAmountFromAccountBalance() throws AccountNotFoundException, InsufficientFundsException {
+        Account account = AccountTestHelper.createAccount();
+        account.setBalanceMinorUnits(1000);
+        Account createdAccount = accountDAO.createAccount(account);
+
+        accountDAO.accountWithdraw(createdAccount.getId(), new BigDecimal("2.5"), 0);
+        Assert.assertEquals(750, accountDAO.getAccount(createdAccount.getId()).getBalanceMinorUnits());
+    }
+
+    @Test (expected = InsufficientFundsException.class)
+    public void accountWithdraw_whenMinorUnitBalanceInsufficient_throwsInsufficientFundsException() throws AccountNotFoundException, InsufficientFundsException {
+        Account account = AccountTestHelper.createAccount();
+        account.setBalanceMinorUnits(1000);
+        Account createdAccount = accountDAO.createAccount(account);
+        accountDAO.accountWithdraw(createdAccount.getId(), new BigDecimal("10.01"), 0);
+    }
+
+    @Test
+    public void accountDeposit_whenMinorUnitBalance_addsAmountToAccountBalance() throws AccountNotFoundException {
+        Account account = AccountTestHelper.createAccount();
+        account.setBalanceMinorUnits(1000);
+        Account createdAccount = accountDAO.createAccount(account);
+
+        accountDAO.accountDeposit(createdAccount.getId(), BigDecimal.TEN, 0);
+        Assert.assertEquals(2000, accountDAO.getAccount(createdAccount.getId()).getBalanceMinorUnits());
+        Assert.assertEquals(new BigDecimal("20.00"), accountDAO.getAccount(createdAccount.getId()).getBalance());
+    }
+
+    @Test
+    public void getVersion_whenBalanceChanged_countsOnlyAppliedChanges() throws AccountNotFoundException {
+        Account account = accountDAO.createAccount(AccountTestHelper.createAccount());
+        Assert.assertEquals(0, account.getVersion());
+
+        accountDAO.accountDeposit(account.getId(), BigDecimal.TEN, 0);
+        try {
+            accountDAO.accountWithdraw(account.getId(), new BigDecimal("1000"), 0);
+            Assert.fail();
+        }
+        catch (InsufficientFundsException e) {
+            Assert.assertEquals(1, account.getVersion());
+        }
+        accountDAO.accountDeposit(account.getId(), BigDecimal.TEN, 0);
+        Assert.assertEquals(2, account.getVersion());
+    }
+}
@@ -0,0 +1,63 @@
+package unit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.account.cache.AccountJson;
+import org.account.cache.AccountJsonCacheImpl;
+import org.account.exception.AccountNotFoundException;
+import org.account.model.dto.AccountDTO;
+import org.account.service.AccountService;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import util.AccountTestHelper;
+
+public class AccountJsonCacheTest {
+
+    private AccountService accountService;
+
+    @Before
+    public void before() throws AccountNotFoundException {
+        accountService = Mockito.mock(AccountService.class);
+        for (int id = 1; id <= 3; id++) {
+            Mockito.when(accountService.getAccount(id)).thenReturn(AccountTestHelper.createAccountDTO(id));
+        }
+    }
+
+    @Test
+    public void getAccount_whenUnchanged_servesCachedJson() throws Exception {
+        AccountJsonCacheImpl cache = new AccountJsonCacheImpl(accountService, 16);
+        AccountJson first = cache.getAccount(1);
+        AccountJson second = cache.getAccount(1);
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(AccountTestHelper.createAccountDTO(1), new ObjectMapper().readValue(first.getJson(), AccountDTO.class));
+        Mockito.verify(accountService, Mockito.times(1)).getAccount(1);
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void getAccount_whenVersionChanged_serializesAgainWithNewTag() throws Exception {
+        AccountJsonCacheImpl cache = new AccountJsonCacheImpl(accountService, 16);
+        AccountJson first = cache.getAccount(1);
+        Mockito.when(accountService.getAccountVersion(1)).thenReturn(1L);
+        AccountJson second = cache.getAccount(1);
+
+        Assert.assertEquals(1, second.getVersion());
+        Assert.assertNotEquals(first.getEntityTag(), second.getEntityTag());
+        Mockito.verify(accountService, Mockito.times(2)).getAccount(1);
+    }
+
+    @Test
+    public void getAccount_whenAccountsShareSlot_keepsLatest() throws Exception {
+        AccountJsonCacheImpl cache = new AccountJsonCacheImpl(accountService, 2);
+        cache.getAccount(1);
+        cache.getAccount(3);
+        cache.getAccount(3);
+        cache.getAccount(1);
+
+        Assert.assertEquals(1, cache.getHits());
+        Mockito.verify(accountService, Mockito.times(2)).getAccount(1);
+    }
+}
@@ -0,0 +1,147 @@
+package unit;
+
+import org.account.exception.LockTimeoutException;
+import org.account.lock.AccountLockManager;
+import org.account.lock.AccountLockManagerImpl;
+import org.account.lock.AccountLocks;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+
+public class AccountLockManagerTest {
+
+    @Test
+    public void lock_whenOppositeOrderFromTwoThreads_doesNotDeadlock() throws Exception {
+        AccountLockManager lockManager = new AccountLockManagerImpl();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> forward = executor.submit(() -> lockRepeatedly(lockManager, 1, 2));
+        Future<?> backward = executor.submit(() -> lockRepeatedly(lockManager, 2, 1));
+
+        forward.get(30, TimeUnit.SECONDS);
+        backward.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+        Assert.assertEquals(20000, lockManager.getStatistics().getAcquisitions());
+    }
+
+    @Test
+    public void tryLock_whenOneLockHeldByOtherThread_returnsNullAndReleasesTheOthers() throws Exception {
+        AccountLockManager lockManager = new AccountLockManagerImpl();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AccountLocks held = executor.submit(() -> lockManager.tryLock(2)).get();
+        Assert.assertNotNull(held);
+
+        Assert.assertNull(lockManager.tryLock(1, 2));
+        // Account 1 was locked before account 2 was found busy, so another thread can only get it if it was released
+        Assert.assertNotNull(executor.submit(() -> lockManager.tryLock(1)).get());
+        executor.shutdown();
+    }
+
+    @Test(expected = LockTimeoutException.class)
+    public void lock_whenHeldByOtherThreadBeyondTimeout_throwsLockTimeoutException() throws Exception {
+        AccountLockManager lockManager = new AccountLockManagerImpl(50);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try (AccountLocks locks = lockManager.lock(1)) {
+                held.countDown();
+                release.await();
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        holder.start();
+        held.await();
+        try {
+            lockManager.lock(1, 2);
+        }
+        finally {
+            release.countDown();
+            holder.join();
+            Assert.assertEquals(1, lockManager.getStatistics().getTimeouts());
+        }
+    }
+
+    @Test
+    public void lock_whenTimedOut_releasesLocksAlreadyAcquired() throws Exception {
+        AccountLockManager lockManager = new AccountLockManagerImpl(50);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try (AccountLocks locks = lockManager.lock(2)) {
+                held.countDown();
+                release.await();
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        holder.start();
+        held.await();
+        try {
+            lockManager.lock(1, 2);
+            Assert.fail();
+        }
+        catch (LockTimeoutException e) {
+            // Account 1 must have been released again
+            Assert.assertTrue(lockFromOtherThread(lockManager, 1));
+        }
+        finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    public void lock_whenDisjointAccounts_doesNotBlock() throws Exception {
+        AccountLockManager lockManager = new AccountLockManagerImpl(1000);
+        try (AccountLocks locks = lockManager.lock(1, 2)) {
+            Assert.assertTrue(lockFromOtherThread(lockManager, 3, 4));
+        }
+    }
+
+    @Test
+    public void lock_whenSameAccountTwice_locksOnce() throws Exception {
+        AccountLockManager lockManager = new AccountLockManagerImpl();
+        try (AccountLocks locks = lockManager.lock(1, 1)) {
+            Assert.assertTrue(locks.getWaitNanos() >= 0);
+        }
+        Assert.assertTrue(lockFromOtherThread(lockManager, 1));
+    }
+
+    @Test
+    public void lock_whenAccountsShareStripe_blocksAndLocksOnce() throws Exception {
+        AccountLockManager lockManager = new AccountLockManagerImpl(50, 1);
+        try (AccountLocks locks = lockManager.lock(1, 2)) {
+            Assert.assertFalse(lockFromOtherThread(lockManager, 3));
+        }
+        Assert.assertTrue(lockFromOtherThread(lockManager, 3));
+    }
+
+    private static Void lockRepeatedly(AccountLockManager lockManager, int first, int second) throws LockTimeoutException {
+        for (int i = 0; i < 10000; i++) {
+            try (AccountLocks locks = lockManager.lock(first, second)) {
+                Thread.yield();
+            }
+        }
+        return null;
+    }
+
+    private static boolean lockFromOtherThread(AccountLockManager lockManager, int... ids) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(() -> {
+                try (AccountLocks locks = lockManager.lock(ids)) {
+                    return true;
+                }
+                catch (LockTimeoutException e) {
+                    return false;
+                }
+            }).get(5, TimeUnit.SECONDS);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
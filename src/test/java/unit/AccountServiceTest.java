@@ -2,6 +2,7 @@ package unit;
 
 import org.account.exception.*;
 import org.account.model.dto.AccountDTO;
+import org.account.model.dto.AccountPageDTO;
 import org.account.model.dto.TransferDTO;
 import org.junit.Assert;
 import org.junit.Before;
@@ -62,6 +63,30 @@ public class AccountServiceTest {
         verify(AccountTransformer, times(accounts.size())).toDTO(any(Account.class));
     }
 
+    @Test
+    public void getAccountPage_whenPageIsFull_returnsCursorOfLastAccount() throws InvalidParameterException {
+        List<Account> accounts = AccountTestHelper.createAccounts(5);
+        when(accountDAO.getAccounts(0, 5)).thenReturn(accounts);
+
+        AccountPageDTO page = accountService.getAccountPage(0, 5);
+
+        Assert.assertEquals(5, page.getAccounts().size());
+        Assert.assertEquals(Integer.valueOf(5), page.getNextAfter());
+        verify(accountDAO).getAccounts(0, 5);
+    }
+
+    @Test
+    public void getAccountPage_whenPageIsNotFull_returnsNoCursor() throws InvalidParameterException {
+        when(accountDAO.getAccounts(5, 10)).thenReturn(AccountTestHelper.createAccounts(3));
+
+        Assert.assertNull(accountService.getAccountPage(5, 10).getNextAfter());
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void getAccountPage_whenLimitTooLarge_throwsInvalidParameterException() throws InvalidParameterException {
+        accountService.getAccountPage(0, 1001);
+    }
+
     @Test(expected = AccountNotFoundException.class)
     public void getAccount_whenAccountNotFound_throwsAccountNotFoundException() throws AccountNotFoundException {
         when(accountDAO.getAccount(1)).thenThrow(new AccountNotFoundException("Account not found"));
@@ -120,35 +145,35 @@ public class AccountServiceTest {
     }
 
     @Test(expected = InvalidParameterException.class)
-    public void transferMoney_whenInvalidParameter_throwsInvalidParameterException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenInvalidParameter_throwsInvalidParameterException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         doThrow(new InvalidParameterException("Invalid parameter")).when(mockTransferValidator).validate(transferDTO);
         accountService.transferMoney(transferDTO);
     }
 
     @Test(expected = RequiredParameterException.class)
-    public void transferMoney_whenRequiredParameterExceptionMissing_throwsRequiredParameterException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenRequiredParameterExceptionMissing_throwsRequiredParameterException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         doThrow(new RequiredParameterException("Invalid parameter")).when(mockTransferValidator).validate(transferDTO);
         accountService.transferMoney(transferDTO);
     }
 
     @Test(expected = AccountNotFoundException.class)
-    public void transferMoney_whenSourceAccountNotFound_throwsAccountNotFoundException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenSourceAccountNotFound_throwsAccountNotFoundException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         when(accountDAO.getAccount(transferDTO.getSourceAccountId())).thenThrow(new AccountNotFoundException("Account not found"));
         accountService.transferMoney(transferDTO);
     }
 
     @Test(expected = AccountNotFoundException.class)
-    public void transferMoney_whenDestinationAccountNotFound_throwsAccountNotFoundException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenDestinationAccountNotFound_throwsAccountNotFoundException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         when(accountDAO.getAccount(transferDTO.getDestinationAccountId())).thenThrow(new AccountNotFoundException("Account not found"));
         accountService.transferMoney(transferDTO);
     }
 
     @Test(expected = CurrencyConversionException.class)
-    public void transferMoney_whenSourceAccountCurrencyNotSameAsTransferCurrency_throwsCurrencyConversionException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenSourceAccountCurrencyNotSameAsTransferCurrency_throwsCurrencyConversionException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         Account srcAccount = AccountTestHelper.createAccount(1);
         srcAccount.setCurrency(Currency.getInstance("USD"));
@@ -159,7 +184,7 @@ public class AccountServiceTest {
     }
 
     @Test(expected = CurrencyConversionException.class)
-    public void transferMoney_whenDestinationAccountCurrencyNotSameAsTransferCurrency_throwsCurrencyConversionException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenDestinationAccountCurrencyNotSameAsTransferCurrency_throwsCurrencyConversionException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         Account srcAccount = AccountTestHelper.createAccount(1);
         Account dstAccount = AccountTestHelper.createAccount(2);
@@ -170,7 +195,7 @@ public class AccountServiceTest {
     }
 
     @Test(expected = InsufficientFundsException.class)
-    public void transferMoney_whenSourceAccountHasInsufficientFundsForTransfer_throwsInsufficientFundsException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenSourceAccountHasInsufficientFundsForTransfer_throwsInsufficientFundsException() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         Account srcAccount = AccountTestHelper.createAccount(1);
         srcAccount.setBalance(BigDecimal.ZERO);
@@ -181,7 +206,7 @@ public class AccountServiceTest {
     }
 
     @Test
-    public void transferMoney_whenSuccessful_accountBalancedUpdatedCorrectly() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenSuccessful_accountBalancedUpdatedCorrectly() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         Account srcAccount = AccountTestHelper.createAccount(1);
         Account dstAccount = AccountTestHelper.createAccount(2);
@@ -189,47 +214,47 @@ public class AccountServiceTest {
         when(accountDAO.getAccount(transferDTO.getDestinationAccountId())).thenReturn(dstAccount);
         accountService.transferMoney(transferDTO);
 
-        verify(accountDAO).accountWithdraw(transferDTO.getSourceAccountId(), transferDTO.getTransferAmount());
-        verify(accountDAO).accountDeposit(transferDTO.getDestinationAccountId(), transferDTO.getTransferAmount());
+        verify(accountDAO).accountWithdraw(transferDTO.getSourceAccountId(), transferDTO.getTransferAmount(), transferDTO.getDestinationAccountId());
+        verify(accountDAO).accountDeposit(transferDTO.getDestinationAccountId(), transferDTO.getTransferAmount(), transferDTO.getSourceAccountId());
     }
 
     @Test
-    public void transferMoney_whenWithdrawFails_rollsBackDeposit() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenWithdrawFails_rollsBackDeposit() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         Account srcAccount = AccountTestHelper.createAccount(1);
         Account dstAccount = AccountTestHelper.createAccount(2);
         when(accountDAO.getAccount(transferDTO.getSourceAccountId())).thenReturn(srcAccount);
         when(accountDAO.getAccount(transferDTO.getDestinationAccountId())).thenReturn(dstAccount);
 
-        when(accountDAO.accountWithdraw(srcAccount.getId(), transferDTO.getTransferAmount())).thenReturn(false);
-        when(accountDAO.accountDeposit(dstAccount.getId(), transferDTO.getTransferAmount())).thenReturn(true);
+        when(accountDAO.accountWithdraw(srcAccount.getId(), transferDTO.getTransferAmount(), dstAccount.getId())).thenReturn(false);
+        when(accountDAO.accountDeposit(dstAccount.getId(), transferDTO.getTransferAmount(), srcAccount.getId())).thenReturn(true);
 
         accountService.transferMoney(transferDTO);
 
-        verify(accountDAO).accountWithdraw(transferDTO.getSourceAccountId(), transferDTO.getTransferAmount());
-        verify(accountDAO).accountDeposit(transferDTO.getDestinationAccountId(), transferDTO.getTransferAmount());
+        verify(accountDAO).accountWithdraw(transferDTO.getSourceAccountId(), transferDTO.getTransferAmount(), transferDTO.getDestinationAccountId());
+        verify(accountDAO).accountDeposit(transferDTO.getDestinationAccountId(), transferDTO.getTransferAmount(), transferDTO.getSourceAccountId());
 
         // Rollback call
-        verify(accountDAO).accountWithdraw(transferDTO.getDestinationAccountId(), transferDTO.getTransferAmount());
+        verify(accountDAO).accountWithdraw(transferDTO.getDestinationAccountId(), transferDTO.getTransferAmount(), transferDTO.getSourceAccountId());
     }
 
     @Test
-    public void transferMoney_whenDepositThrowsException_rollsBackWithdraw() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException {
+    public void transferMoney_whenDepositThrowsException_rollsBackWithdraw() throws InvalidParameterException, AccountNotFoundException, RequiredParameterException, CurrencyConversionException, InsufficientFundsException, LockTimeoutException, VersionConflictException {
         TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
         Account srcAccount = AccountTestHelper.createAccount(1);
         Account dstAccount = AccountTestHelper.createAccount(2);
         when(accountDAO.getAccount(transferDTO.getSourceAccountId())).thenReturn(srcAccount);
         when(accountDAO.getAccount(transferDTO.getDestinationAccountId())).thenReturn(dstAccount);
 
-        when(accountDAO.accountWithdraw(srcAccount.getId(), transferDTO.getTransferAmount())).thenReturn(true);
-        when(accountDAO.accountDeposit(dstAccount.getId(), transferDTO.getTransferAmount())).thenThrow(new RuntimeException("Database connection lost"));
+        when(accountDAO.accountWithdraw(srcAccount.getId(), transferDTO.getTransferAmount(), dstAccount.getId())).thenReturn(true);
+        when(accountDAO.accountDeposit(dstAccount.getId(), transferDTO.getTransferAmount(), srcAccount.getId())).thenThrow(new RuntimeException("Database connection lost"));
 
         accountService.transferMoney(transferDTO);
 
-        verify(accountDAO).accountWithdraw(transferDTO.getSourceAccountId(), transferDTO.getTransferAmount());
-        verify(accountDAO).accountDeposit(transferDTO.getDestinationAccountId(), transferDTO.getTransferAmount());
+        verify(accountDAO).accountWithdraw(transferDTO.getSourceAccountId(), transferDTO.getTransferAmount(), transferDTO.getDestinationAccountId());
+        verify(accountDAO).accountDeposit(transferDTO.getDestinationAccountId(), transferDTO.getTransferAmount(), transferDTO.getSourceAccountId());
 
         // Rollback call
-        verify(accountDAO).accountDeposit(transferDTO.getSourceAccountId(), transferDTO.getTransferAmount());
+        verify(accountDAO).accountDeposit(transferDTO.getSourceAccountId(), transferDTO.getTransferAmount(), transferDTO.getDestinationAccountId());
     }
 }
\ No newline at end of file
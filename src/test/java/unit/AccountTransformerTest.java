@@ -9,6 +9,7 @@ import org.account.transformer.AccountTransformer;
 import org.account.transformer.AccountTransformerImpl;
 import util.AccountTestHelper;
 
+import java.math.BigDecimal;
 import java.util.Currency;
 
 public class AccountTransformerTest {
@@ -49,4 +50,16 @@ public class AccountTransformerTest {
         AccountDTO dto2 = accountTransformer.toDTO(account);
         Assert.assertEquals(dto, dto2);
     }
+
+    @Test
+    public void fromDTO_whenMinorUnitBalances_storesBalanceAsMinorUnits() {
+        AccountTransformer minorUnitTransformer = new AccountTransformerImpl(true);
+        AccountDTO dto = AccountTestHelper.createAccountDTO();
+        dto.setBalance(new BigDecimal("12.34"));
+        Account account = minorUnitTransformer.fromDTO(dto);
+
+        Assert.assertTrue(account.isMinorUnitBalance());
+        Assert.assertEquals(1234, account.getBalanceMinorUnits());
+        Assert.assertEquals(dto, minorUnitTransformer.toDTO(account));
+    }
 }
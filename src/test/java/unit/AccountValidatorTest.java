@@ -55,4 +55,24 @@ public class AccountValidatorTest {
         accountValidator.validate(accountDTO);
     }
 
+    @Test(expected = InvalidParameterException.class)
+    public void validate_balanceMorePreciseThanCurrency_throwsInvalidParameterException() throws InvalidParameterException, RequiredParameterException {
+        AccountDTO accountDTO = AccountTestHelper.createAccountDTO();
+        accountDTO.setBalance(new BigDecimal("10.001"));
+        accountValidator.validate(accountDTO);
+    }
+
+    @Test
+    public void validate_balanceWithTrailingZeros_isValid() throws InvalidParameterException, RequiredParameterException {
+        AccountDTO accountDTO = AccountTestHelper.createAccountDTO();
+        accountDTO.setBalance(new BigDecimal("10.1000"));
+        accountValidator.validate(accountDTO);
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void validate_balanceWithTooManyDigits_throwsInvalidParameterException() throws InvalidParameterException, RequiredParameterException {
+        AccountDTO accountDTO = AccountTestHelper.createAccountDTO();
+        accountDTO.setBalance(new BigDecimal("1E+40"));
+        accountValidator.validate(accountDTO);
+    }
 }
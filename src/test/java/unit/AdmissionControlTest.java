@@ -0,0 +1,81 @@
+package unit;
+
+import org.account.admission.AdaptiveConcurrencyLimiter;
+import org.account.admission.ClientRateLimiter;
+import org.account.admission.TokenBucket;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AdmissionControlTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void tryAcquire_whenBurstUsed_waitsForRefill() {
+        long start = -5 * MILLI;
+        TokenBucket bucket = new TokenBucket(10, 3, start);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, bucket.tryAcquire(start));
+        }
+        Assert.assertEquals(100 * MILLI, bucket.tryAcquire(start));
+        Assert.assertEquals(50 * MILLI, bucket.tryAcquire(start + 50 * MILLI));
+        Assert.assertEquals(0, bucket.tryAcquire(start + 100 * MILLI));
+        Assert.assertFalse(bucket.isFull(start + 100 * MILLI));
+        Assert.assertTrue(bucket.isFull(start + 400 * MILLI));
+    }
+
+    @Test
+    public void tryAcquire_whenClientsDiffer_limitsEachSeparately() {
+        AtomicLong clock = new AtomicLong();
+        ClientRateLimiter limiter = new ClientRateLimiter(1, 1, 2, clock::get);
+        Assert.assertEquals(0, limiter.tryAcquire("a"));
+        Assert.assertTrue(limiter.tryAcquire("a") > 0);
+        Assert.assertEquals(0, limiter.tryAcquire("b"));
+
+        // Once idle, buckets are forgotten when too many clients are tracked
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        Assert.assertEquals(0, limiter.tryAcquire("c"));
+        Assert.assertEquals(1, limiter.size());
+    }
+
+    @Test
+    public void tryAcquire_whenAtLimit_rejectsUntilReleased() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, () -> 0);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        limiter.release(MILLI);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    public void release_whenLatencyRises_lowersLimitAndRaisesItAgainWhenItRecovers() {
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 4, 100, clock::get);
+        runWindows(limiter, clock, MILLI, 5);
+        int unloaded = limiter.getLimit();
+        Assert.assertTrue(unloaded > 50);
+
+        runWindows(limiter, clock, 20 * MILLI, 20);
+        int loaded = limiter.getLimit();
+        Assert.assertTrue(loaded < unloaded / 2);
+        Assert.assertTrue(loaded >= 4);
+
+        runWindows(limiter, clock, MILLI, 20);
+        Assert.assertTrue(limiter.getLimit() > loaded);
+    }
+
+    private static void runWindows(AdaptiveConcurrencyLimiter limiter, AtomicLong clock, long latency, int windows) {
+        for (int window = 0; window < windows; window++) {
+            clock.addAndGet(100 * MILLI);
+            for (int i = 0; i < 10; i++) {
+                Assert.assertTrue(limiter.tryAcquire());
+                limiter.release(latency);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package unit;
+
+import org.account.config.AppConfig;
+import org.account.config.ClusterConfig;
+import org.account.config.ReplicationConfig;
+import org.account.config.ServerConfig;
+import org.account.journal.FsyncPolicy;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+public class AppConfigTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void after() {
+        System.clearProperty(AppConfig.CONFIG_FILE_PROPERTY);
+        System.clearProperty(ServerConfig.MAX_THREADS_PROPERTY);
+    }
+
+    @Test
+    public void fromProperties_whenEmpty_usesDefaults() {
+        AppConfig config = AppConfig.fromProperties(new Properties());
+        Assert.assertEquals(AppConfig.ServiceMode.LOCKING, config.getServiceMode());
+        Assert.assertEquals(FsyncPolicy.GROUP, config.getJournalFsyncPolicy());
+        Assert.assertEquals(200, config.getServerConfig().getMaxThreads());
+        Assert.assertEquals(-1, config.getServerConfig().getQueueSize());
+        Assert.assertTrue(config.getServerConfig().isKeepAlive());
+        Assert.assertEquals(4096, config.getAsyncQueueSize());
+        Assert.assertEquals(30000, config.getAsyncTimeoutMillis());
+    }
+
+    @Test
+    public void fromProperties_withServerSettings_setsServerConfig() {
+        Properties properties = new Properties();
+        properties.setProperty(ServerConfig.MIN_THREADS_PROPERTY, "4");
+        properties.setProperty(ServerConfig.MAX_THREADS_PROPERTY, "64");
+        properties.setProperty(ServerConfig.QUEUE_SIZE_PROPERTY, "1000");
+        properties.setProperty(ServerConfig.ACCEPTORS_PROPERTY, "2");
+        properties.setProperty(ServerConfig.SELECTORS_PROPERTY, "4");
+        properties.setProperty(ServerConfig.ACCEPT_QUEUE_SIZE_PROPERTY, "4096");
+        properties.setProperty(ServerConfig.KEEP_ALIVE_PROPERTY, "false");
+        properties.setProperty(ServerConfig.REQUEST_HEADER_SIZE_PROPERTY, " 16384 ");
+
+        ServerConfig config = AppConfig.fromProperties(properties).getServerConfig();
+        Assert.assertEquals(4, config.getMinThreads());
+        Assert.assertEquals(64, config.getMaxThreads());
+        Assert.assertEquals(1000, config.getQueueSize());
+        Assert.assertEquals(2, config.getAcceptors());
+        Assert.assertEquals(4, config.getSelectors());
+        Assert.assertEquals(4096, config.getAcceptQueueSize());
+        Assert.assertFalse(config.isKeepAlive());
+        Assert.assertEquals(16384, config.getRequestHeaderSize());
+    }
+
+    @Test
+    public void fromProperties_withPartitionedMode_setsPartitions() {
+        Properties properties = new Properties();
+        properties.setProperty(AppConfig.SERVICE_MODE_PROPERTY, "partitioned");
+        properties.setProperty(AppConfig.PARTITIONS_PROPERTY, "6");
+
+        AppConfig config = AppConfig.fromProperties(properties);
+        Assert.assertEquals(AppConfig.ServiceMode.PARTITIONED, config.getServiceMode());
+        Assert.assertEquals(6, config.getPartitions());
+        Assert.assertEquals(Runtime.getRuntime().availableProcessors(),
+                AppConfig.fromProperties(new Properties()).getPartitions());
+    }
+
+    @Test
+    public void fromProperties_withClusterNodes_enablesCluster() {
+        Properties properties = new Properties();
+        properties.setProperty(ClusterConfig.NODES_PROPERTY, "localhost:2250, localhost:2251");
+        properties.setProperty(ClusterConfig.NODE_INDEX_PROPERTY, "1");
+
+        ClusterConfig config = AppConfig.fromProperties(properties).getClusterConfig();
+        Assert.assertTrue(config.isEnabled());
+        Assert.assertEquals(Arrays.asList("localhost:2250", "localhost:2251"), config.getNodes());
+        Assert.assertEquals(1, config.getNodeIndex());
+        Assert.assertFalse(AppConfig.fromProperties(new Properties()).getClusterConfig().isEnabled());
+    }
+
+    @Test
+    public void fromProperties_withPrimaryAddress_startsReplica() {
+        Properties properties = new Properties();
+        properties.setProperty(ReplicationConfig.PRIMARY_PROPERTY, " localhost:2261 ");
+        properties.setProperty(ReplicationConfig.MAX_STALENESS_PROPERTY, "250");
+
+        ReplicationConfig config = AppConfig.fromProperties(properties).getReplicationConfig();
+        Assert.assertTrue(config.isReplica());
+        Assert.assertFalse(config.isPrimary());
+        Assert.assertEquals("localhost:2261", config.getPrimary());
+        Assert.assertEquals(250, config.getMaxStalenessMillis());
+    }
+
+    @Test
+    public void load_whenConfigFileAndSystemProperty_systemPropertyWins() throws Exception {
+        Path file = folder.newFile("account.properties").toPath();
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            writer.write(ServerConfig.MAX_THREADS_PROPERTY + "=32\n");
+            writer.write(AppConfig.SERVICE_MODE_PROPERTY + "=sequenced\n");
+        }
+        System.setProperty(AppConfig.CONFIG_FILE_PROPERTY, file.toString());
+        System.setProperty(ServerConfig.MAX_THREADS_PROPERTY, "48");
+
+        AppConfig config = AppConfig.load();
+        Assert.assertEquals(AppConfig.ServiceMode.SEQUENCED, config.getServiceMode());
+        Assert.assertEquals(48, config.getServerConfig().getMaxThreads());
+    }
+}
@@ -0,0 +1,169 @@
+package unit;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.AccountDAOImpl;
+import org.account.journal.FileJournalImpl;
+import org.account.journal.FsyncPolicy;
+import org.account.journal.Journal;
+import org.account.journal.JournalReader;
+import org.account.journal.JournalRecord;
+import org.account.journal.JournalReplayer;
+import org.account.model.Account;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.AccountTestHelper;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FileJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void append_whenReopened_replaysRecordsInOrder() throws IOException {
+        for (FsyncPolicy policy : FsyncPolicy.values()) {
+            Path path = folder.newFile().toPath();
+            Account account = AccountTestHelper.createAccount(7);
+            try (Journal journal = new FileJournalImpl(path, policy)) {
+                Assert.assertEquals(1, journal.append(JournalRecord.accountCreated(account)));
+                Assert.assertEquals(2, journal.append(JournalRecord.transfer(7, 8, new BigDecimal("12.34"))));
+            }
+
+            List<JournalRecord> records = replay(path);
+            Assert.assertEquals(2, records.size());
+            Assert.assertEquals(account, records.get(0).toAccount());
+            Assert.assertEquals(1, records.get(0).getSequence());
+
+            JournalRecord transfer = records.get(1);
+            Assert.assertEquals(JournalRecord.Type.TRANSFER, transfer.getType());
+            Assert.assertEquals(2, transfer.getSequence());
+            Assert.assertEquals(7, transfer.getSourceAccountId(0));
+            Assert.assertEquals(8, transfer.getDestinationAccountId(0));
+            Assert.assertEquals(new BigDecimal("12.34"), transfer.getAmount(0));
+        }
+    }
+
+    @Test
+    public void append_whenAmountLongerThanAByte_replaysIt() throws IOException {
+        Path path = folder.newFile().toPath();
+        BigDecimal amount = BigDecimal.TEN.pow(700).add(new BigDecimal("0.01"));
+        try (Journal journal = new FileJournalImpl(path, FsyncPolicy.GROUP)) {
+            journal.append(JournalRecord.transfer(1, 2, amount));
+            journal.append(JournalRecord.transfer(2, 1, BigDecimal.ONE));
+        }
+
+        List<JournalRecord> records = replay(path);
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals(amount, records.get(0).getAmount(0));
+        Assert.assertEquals(BigDecimal.ONE, records.get(1).getAmount(0));
+    }
+
+    @Test
+    public void append_whenReopened_continuesSequence() throws IOException {
+        Path path = folder.newFile().toPath();
+        try (Journal journal = new FileJournalImpl(path, FsyncPolicy.GROUP)) {
+            journal.append(JournalRecord.transfer(1, 2, BigDecimal.ONE));
+        }
+        try (Journal journal = new FileJournalImpl(path, FsyncPolicy.GROUP)) {
+            Assert.assertEquals(1, journal.getLastSequence());
+            Assert.assertEquals(2, journal.append(JournalRecord.transfer(2, 1, BigDecimal.ONE)));
+        }
+        Assert.assertEquals(2, replay(path).size());
+    }
+
+    @Test
+    public void open_whenTailIsTorn_truncatesIncompleteRecord() throws IOException {
+        Path path = folder.newFile().toPath();
+        try (Journal journal = new FileJournalImpl(path, FsyncPolicy.EVERY_RECORD)) {
+            journal.append(JournalRecord.transfer(1, 2, BigDecimal.ONE));
+            journal.append(JournalRecord.transfer(1, 2, BigDecimal.TEN));
+        }
+        long length = path.toFile().length();
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(length - 3);
+        }
+
+        List<JournalRecord> records = replay(path);
+        Assert.assertEquals(1, records.size());
+        Assert.assertEquals(BigDecimal.ONE, records.get(0).getAmount(0));
+        Assert.assertTrue(path.toFile().length() < length - 3);
+    }
+
+    @Test
+    public void open_whenRecordIsCorrupt_stopsBeforeIt() throws IOException {
+        Path path = folder.newFile().toPath();
+        try (Journal journal = new FileJournalImpl(path, FsyncPolicy.EVERY_RECORD)) {
+            journal.append(JournalRecord.transfer(1, 2, BigDecimal.ONE));
+            journal.append(JournalRecord.transfer(1, 2, BigDecimal.TEN));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        Assert.assertEquals(1, replay(path).size());
+    }
+
+    @Test
+    public void append_withdrawalAndDeposit_replayChangesOnlyTheirOwnAccount() throws Exception {
+        Path path = folder.newFile().toPath();
+        try (Journal journal = new FileJournalImpl(path, FsyncPolicy.GROUP)) {
+            journal.append(JournalRecord.accountCreated(AccountTestHelper.createAccount(1)));
+            journal.append(JournalRecord.withdrawal(1, 2, new BigDecimal("0.5"), new BigDecimal("0.6"), 256));
+            journal.append(JournalRecord.deposit(3, 1, new BigDecimal("10"), 513, 257));
+            journal.append(JournalRecord.settled(256));
+        }
+
+        // Accounts 2 and 3 are held elsewhere, so replay must not touch them
+        AccountDAO dao = new AccountDAOImpl();
+        JournalReplayer replayer = new JournalReplayer(dao);
+        new FileJournalImpl(path, FsyncPolicy.GROUP, replayer).close();
+        Assert.assertEquals(4, replayer.getReplayed());
+        Assert.assertEquals(0, new BigDecimal("110").compareTo(dao.getAccount(1).getBalance()));
+    }
+
+    @Test
+    public void read_withdrawalDepositAndSettled_keepTheirTransaction() throws Exception {
+        Path path = folder.newFile().toPath();
+        try (Journal journal = new FileJournalImpl(path, FsyncPolicy.GROUP)) {
+            journal.append(JournalRecord.withdrawal(1, 2, new BigDecimal("0.5"), new BigDecimal("0.6"), 256));
+            journal.append(JournalRecord.deposit(3, 1, new BigDecimal("10"), 513, 257));
+            journal.append(JournalRecord.settled(256));
+        }
+
+        List<JournalRecord> records = new ArrayList<>();
+        JournalReader.read(path, records::add);
+        Assert.assertEquals(3, records.size());
+        Assert.assertEquals(JournalRecord.Type.WITHDRAWAL, records.get(0).getType());
+        Assert.assertEquals(0, new BigDecimal("0.6").compareTo(records.get(0).getCreditAmount(0)));
+        Assert.assertEquals(256, records.get(0).getTransactionId());
+        Assert.assertEquals(JournalRecord.Type.DEPOSIT, records.get(1).getType());
+        Assert.assertEquals(513, records.get(1).getTransactionId());
+        Assert.assertEquals(257, records.get(1).getSettledBelow());
+        Assert.assertEquals(JournalRecord.Type.SETTLED, records.get(2).getType());
+        Assert.assertEquals(256, records.get(2).getTransactionId());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void append_whenClosed_throwsIllegalStateException() throws IOException {
+        Journal journal = new FileJournalImpl(folder.newFile().toPath(), FsyncPolicy.NONE);
+        journal.close();
+        journal.append(JournalRecord.transfer(1, 2, BigDecimal.ONE));
+    }
+
+    private List<JournalRecord> replay(Path path) throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        new FileJournalImpl(path, FsyncPolicy.NONE, records::add).close();
+        return records;
+    }
+}
@@ -0,0 +1,98 @@
+package unit;
+
+import org.account.exception.CurrencyConversionException;
+import org.account.fx.CurrencyConverterImpl;
+import org.account.fx.FileFxRateProvider;
+import org.account.fx.FxRate;
+import org.account.fx.FxRates;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+
+public class FxRatesTest {
+
+    private static final Currency GBP = Currency.getInstance("GBP");
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void convert_whenRateQuoted_roundsToMinorUnitsOfTarget() throws CurrencyConversionException {
+        FxRates rates = new FxRates(Arrays.asList(new FxRate(GBP, USD, new BigDecimal("1.2735")),
+                new FxRate(GBP, JPY, new BigDecimal("191.237"))), RoundingMode.HALF_EVEN);
+
+        Assert.assertEquals(new BigDecimal("12.74"), rates.convert(BigDecimal.TEN, GBP, USD));
+        Assert.assertEquals(new BigDecimal("1912"), rates.convert(BigDecimal.TEN, GBP, JPY));
+        Assert.assertEquals(4, rates.size());
+    }
+
+    @Test
+    public void convert_whenOnlyOppositeDirectionQuoted_usesInverseRate() throws CurrencyConversionException {
+        FxRates rates = new FxRates(Collections.singletonList(new FxRate(GBP, USD, new BigDecimal("1.25"))),
+                RoundingMode.DOWN);
+
+        Assert.assertEquals(new BigDecimal("80.00"), rates.convert(new BigDecimal("100.00"), USD, GBP));
+    }
+
+    @Test
+    public void convert_whenSameCurrency_returnsAmountUnchanged() throws CurrencyConversionException {
+        BigDecimal amount = new BigDecimal("10.5");
+        Assert.assertSame(amount, FxRates.EMPTY.convert(amount, GBP, GBP));
+    }
+
+    @Test(expected = CurrencyConversionException.class)
+    public void convert_whenNoRate_throwsCurrencyConversionException() throws CurrencyConversionException {
+        FxRates.EMPTY.convert(BigDecimal.TEN, GBP, USD);
+    }
+
+    @Test(expected = CurrencyConversionException.class)
+    public void convert_whenAmountRoundsToNothing_throwsCurrencyConversionException() throws CurrencyConversionException {
+        FxRates rates = new FxRates(Collections.singletonList(new FxRate(JPY, GBP, new BigDecimal("0.0049"))),
+                RoundingMode.HALF_EVEN);
+        rates.convert(BigDecimal.ONE, JPY, GBP);
+    }
+
+    @Test
+    public void reload_whenFileChanges_swapsRatesAndKeepsThemOnError() throws Exception {
+        Path path = folder.newFile().toPath();
+        write(path, "GBP/USD=1.25");
+        CurrencyConverterImpl converter = new CurrencyConverterImpl(new FileFxRateProvider(path), RoundingMode.HALF_EVEN);
+        converter.reload();
+        FxRates first = converter.getRates();
+        Assert.assertEquals(new BigDecimal("12.50"), first.convert(BigDecimal.TEN, GBP, USD));
+
+        write(path, "GBP/USD=1.30\nUSD/JPY=150");
+        converter.reload();
+        Assert.assertEquals(new BigDecimal("13.00"), converter.getRates().convert(BigDecimal.TEN, GBP, USD));
+        Assert.assertEquals(new BigDecimal("12.50"), first.convert(BigDecimal.TEN, GBP, USD));
+
+        FxRates second = converter.getRates();
+        write(path, "GBP/USD=-1");
+        try {
+            converter.reload();
+            Assert.fail("A negative rate should not load");
+        }
+        catch (IOException e) {
+            Assert.assertSame(second, converter.getRates());
+        }
+    }
+
+    private static void write(Path path, String... lines) throws IOException {
+        List<String> content = Arrays.asList(lines);
+        Files.write(path, content, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,55 @@
+package unit;
+
+import org.account.cluster.HashRing;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class HashRingTest {
+
+    private static final int ACCOUNTS = 30000;
+    private static final List<String> NODES = Arrays.asList("localhost:2250", "localhost:2251", "localhost:2252");
+
+    @Test
+    public void ownerOf_withSameNodes_agreesBetweenRings() {
+        HashRing ring = new HashRing(NODES, 128);
+        HashRing other = new HashRing(NODES, 128);
+        for (int id = 1; id <= ACCOUNTS; id++) {
+            Assert.assertEquals(ring.ownerOf(id), other.ownerOf(id));
+        }
+    }
+
+    @Test
+    public void ownerOf_withManyAccounts_spreadsThemEvenly() {
+        HashRing ring = new HashRing(NODES, 128);
+        int[] owned = new int[NODES.size()];
+        for (int id = 1; id <= ACCOUNTS; id++) {
+            owned[ring.ownerOf(id)]++;
+        }
+        for (int count : owned) {
+            Assert.assertTrue(Arrays.toString(owned), Math.abs(count - ACCOUNTS / NODES.size()) < ACCOUNTS / 10);
+        }
+    }
+
+    @Test
+    public void ownerOf_whenNodeAdded_onlyMovesAccountsToIt() {
+        HashRing ring = new HashRing(NODES, 128);
+        HashRing grown = new HashRing(Arrays.asList("localhost:2250", "localhost:2251", "localhost:2252",
+                "localhost:2253"), 128);
+        int moved = 0;
+        for (int id = 1; id <= ACCOUNTS; id++) {
+            if (ring.ownerOf(id) != grown.ownerOf(id)) {
+                Assert.assertEquals(3, grown.ownerOf(id));
+                moved++;
+            }
+        }
+        Assert.assertTrue(String.valueOf(moved), moved > ACCOUNTS / 6 && moved < ACCOUNTS / 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_withNoNodes_throwsException() {
+        new HashRing(Arrays.asList(), 128);
+    }
+}
@@ -0,0 +1,75 @@
+package unit;
+
+import org.account.exception.InvalidParameterException;
+import org.account.idempotency.IdempotencyCacheImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class IdempotencyCacheTest {
+
+    private static final long WINDOW_MILLIS = 1000;
+
+    private AtomicLong clock;
+    private IdempotencyCacheImpl cache;
+
+    @Before
+    public void before() {
+        clock = new AtomicLong();
+        cache = new IdempotencyCacheImpl(WINDOW_MILLIS, 1024 * 1024, clock::get);
+    }
+
+    @Test
+    public void claim_whenKeyRepeated_returnsOriginalOutcome() throws Exception {
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        Assert.assertNull(cache.claim("key", "1:2:100:GBP", first));
+        Assert.assertSame(first, cache.claim("key", "1:2:100:GBP", new CompletableFuture<>()));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void claim_whenKeyReusedForDifferentOperation_throwsInvalidParameterException() throws Exception {
+        cache.claim("key", "1:2:100:GBP", new CompletableFuture<>());
+        cache.claim("key", "1:2:200:GBP", new CompletableFuture<>());
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void claim_whenKeyTooLong_throwsInvalidParameterException() throws Exception {
+        cache.claim(new String(new char[256]).replace('\0', 'k'), "1:2:100:GBP", new CompletableFuture<>());
+    }
+
+    @Test
+    public void claim_whenWindowElapsed_claimsKeyAgain() throws Exception {
+        cache.claim("key", "1:2:100:GBP", new CompletableFuture<>());
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS));
+        Assert.assertNull(cache.claim("key", "1:2:200:GBP", new CompletableFuture<>()));
+    }
+
+    @Test
+    public void abandon_whenOutcomeStillClaimed_claimsKeyAgain() throws Exception {
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        cache.claim("key", "1:2:100:GBP", first);
+        // A stale outcome must not release the key claimed by a later execution
+        cache.abandon("key", new CompletableFuture<>());
+        Assert.assertSame(first, cache.claim("key", "1:2:100:GBP", new CompletableFuture<>()));
+
+        cache.abandon("key", first);
+        Assert.assertNull(cache.claim("key", "1:2:100:GBP", new CompletableFuture<>()));
+    }
+
+    @Test
+    public void claim_whenOverMemoryBudget_evictsOldestOutcomes() throws Exception {
+        cache = new IdempotencyCacheImpl(WINDOW_MILLIS, 64 * 1024, clock::get);
+        for (int i = 0; i < 10000; i++) {
+            cache.claim("key-" + i, "1:2:100:GBP", new CompletableFuture<>());
+        }
+
+        Assert.assertTrue(cache.getEstimatedBytes() <= 64 * 1024);
+        Assert.assertTrue(cache.size() < 10000);
+        Assert.assertNull(cache.claim("key-0", "1:2:100:GBP", new CompletableFuture<>()));
+    }
+}
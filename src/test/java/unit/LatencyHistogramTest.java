@@ -0,0 +1,57 @@
+package unit;
+
+import org.account.metrics.LatencyHistogram;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void getValueAtQuantile_whenNothingRecorded_returnsZero() {
+        Assert.assertEquals(0, new LatencyHistogram().getValueAtQuantile(0.99));
+    }
+
+    @Test
+    public void getValueAtQuantile_whenUniformValues_isWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1_000_000; value++) {
+            histogram.record(value);
+        }
+
+        Assert.assertEquals(1_000_000, histogram.getCount());
+        Assert.assertEquals(1_000_000, histogram.getMaxNanos());
+        Assert.assertEquals(500_000L * 1_000_001, histogram.getSumNanos());
+        assertWithin(500_000, histogram.getValueAtQuantile(0.5));
+        assertWithin(990_000, histogram.getValueAtQuantile(0.99));
+        Assert.assertEquals(1_000_000, histogram.getValueAtQuantile(1.0));
+    }
+
+    @Test
+    public void getValueAtQuantile_whenSmallValues_isExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < 64; value++) {
+            histogram.record(value);
+        }
+        Assert.assertEquals(31, histogram.getValueAtQuantile(0.5));
+        Assert.assertEquals(63, histogram.getValueAtQuantile(1.0));
+    }
+
+    @Test
+    public void record_whenOutOfRange_isClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(TimeUnit.DAYS.toNanos(1));
+
+        Assert.assertEquals(2, histogram.getCount());
+        Assert.assertEquals(0, histogram.getValueAtQuantile(0.5));
+        Assert.assertTrue(histogram.getValueAtQuantile(1.0) < TimeUnit.DAYS.toNanos(1));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        // Buckets are 1/32 of their power of two range wide, and the upper bound of a bucket is reported
+        Assert.assertTrue("Expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= expected * 1.04);
+    }
+}
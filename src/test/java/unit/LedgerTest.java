@@ -0,0 +1,70 @@
+package unit;
+
+import org.account.ledger.LedgerEntry;
+import org.account.ledger.LedgerImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LedgerTest {
+
+    private AtomicLong clock;
+    private LedgerImpl ledger;
+
+    @Before
+    public void before() {
+        clock = new AtomicLong(1000);
+        ledger = new LedgerImpl(clock::get);
+    }
+
+    @Test
+    public void getEntries_whenNothingRecorded_returnsNothing() {
+        Assert.assertTrue(ledger.getEntries(1, 0, Long.MAX_VALUE, 10).isEmpty());
+    }
+
+    @Test
+    public void getEntries_whenRecorded_returnsEntriesOldestFirst() {
+        ledger.record(1, 2, -500, 9500);
+        clock.incrementAndGet();
+        ledger.record(1, 3, 200, 9700);
+
+        List<LedgerEntry> entries = ledger.getEntries(1, 0, Long.MAX_VALUE, 10);
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals(new LedgerEntry(1000, 2, -500, 9500), entries.get(0));
+        Assert.assertEquals(new LedgerEntry(1001, 3, 200, 9700), entries.get(1));
+        Assert.assertEquals(2, ledger.getEntryCount());
+    }
+
+    @Test
+    public void getEntries_whenSpanningManyChunks_returnsOnlyTimeRange() {
+        // One entry per millisecond from 1000 to 10999
+        for (int i = 0; i < 10000; i++) {
+            ledger.record(1, 2, 1, i + 1);
+            clock.incrementAndGet();
+        }
+
+        List<LedgerEntry> entries = ledger.getEntries(1, 5000, 5300, 1000);
+        Assert.assertEquals(300, entries.size());
+        Assert.assertEquals(5000, entries.get(0).getTimestampMillis());
+        Assert.assertEquals(5299, entries.get(299).getTimestampMillis());
+        Assert.assertEquals(4001, entries.get(0).getBalanceMinorUnits());
+
+        Assert.assertEquals(10, ledger.getEntries(1, 5000, 5300, 10).size());
+        Assert.assertTrue(ledger.getEntries(1, 11000, Long.MAX_VALUE, 10).isEmpty());
+        Assert.assertTrue(ledger.getEntries(2, 0, Long.MAX_VALUE, 10).isEmpty());
+    }
+
+    @Test
+    public void record_whenClockStepsBack_keepsEntriesInTimeOrder() {
+        ledger.record(1, 2, -1, 99);
+        clock.set(500);
+        ledger.record(1, 2, -1, 98);
+
+        List<LedgerEntry> entries = ledger.getEntries(1, 1000, 1001, 10);
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals(98, entries.get(1).getBalanceMinorUnits());
+    }
+}
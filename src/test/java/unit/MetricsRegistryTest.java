@@ -0,0 +1,63 @@
+package unit;
+
+import org.account.metrics.Counter;
+import org.account.metrics.LatencyHistogram;
+import org.account.metrics.MetricsRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class MetricsRegistryTest {
+
+    private MetricsRegistry registry;
+
+    @Before
+    public void before() {
+        registry = new MetricsRegistry();
+    }
+
+    @Test
+    public void counter_whenSameNameAndLabels_returnsSameCounter() {
+        Counter counter = registry.counter("test_total", "Test", "outcome", "success");
+        Assert.assertSame(counter, registry.counter("test_total", "Test", "outcome", "success"));
+        Assert.assertNotSame(counter, registry.counter("test_total", "Test", "outcome", "failure"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void histogram_whenNameRegisteredAsCounter_throwsIllegalArgumentException() {
+        registry.counter("test_total", "Test");
+        registry.histogram("test_total", "Test");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void counter_whenLabelWithoutValue_throwsIllegalArgumentException() {
+        registry.counter("test_total", "Test", "outcome");
+    }
+
+    @Test
+    public void writeTo_writesPrometheusTextFormat() throws IOException {
+        registry.counter("test_total", "Test count", "outcome", "say \"hi\"").add(3);
+        registry.gauge("test_ratio", "Test gauge", () -> 0.25);
+        LatencyHistogram histogram = registry.histogram("test_seconds", "Test latency", "method", "get");
+        histogram.record(1_000_000);
+        histogram.record(3_000_000);
+
+        String text = write();
+        Assert.assertTrue(text.contains("# HELP test_total Test count\n# TYPE test_total counter\n"));
+        Assert.assertTrue(text.contains("test_total{outcome=\"say \\\"hi\\\"\"} 3\n"));
+        Assert.assertTrue(text.contains("# TYPE test_ratio gauge\ntest_ratio 0.25\n"));
+        Assert.assertTrue(text.contains("# TYPE test_seconds summary\n"));
+        Assert.assertTrue(text.contains("test_seconds{method=\"get\",quantile=\"0.5\"} 0.001"));
+        Assert.assertTrue(text.contains("test_seconds_sum{method=\"get\"} 0.004\n"));
+        Assert.assertTrue(text.contains("test_seconds_count{method=\"get\"} 2\n"));
+    }
+
+    private String write() throws IOException {
+        StringWriter writer = new StringWriter();
+        registry.writeTo(writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package unit;
+
+import org.account.sequencer.MpscArrayQueue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class MpscArrayQueueTest {
+
+    @Test
+    public void offer_whenFull_returnsFalseUntilPolled() {
+        MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(3);
+        Assert.assertEquals(4, queue.capacity());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(queue.offer(i));
+        }
+        Assert.assertFalse(queue.offer(4));
+        Assert.assertEquals(4, queue.size());
+
+        Assert.assertEquals(Integer.valueOf(0), queue.poll());
+        Assert.assertTrue(queue.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            Assert.assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void offer_whenManyProducersWrapTheQueue_consumerSeesEachProducersValuesInOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 20000;
+        MpscArrayQueue<int[]> queue = new MpscArrayQueue<>(16);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!queue.offer(new int[] {producer, i})) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+
+        int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            int[] value = queue.poll();
+            if (value == null) {
+                Thread.yield();
+                continue;
+            }
+            Assert.assertEquals(next[value[0]]++, value[1]);
+            received++;
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        Assert.assertNull(queue.poll());
+    }
+}
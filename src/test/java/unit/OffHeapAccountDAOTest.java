@@ -0,0 +1,88 @@
+package unit;
+
+import org.account.dao.AccountDAO;
+import org.account.dao.OffHeapAccountDAO;
+import org.account.exception.AccountNotFoundException;
+import org.account.exception.InsufficientFundsException;
+import org.account.model.Account;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import util.AccountTestHelper;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class OffHeapAccountDAOTest {
+
+    private AccountDAO accountDAO;
+
+    @Before
+    public void before() {
+        accountDAO = new OffHeapAccountDAO();
+    }
+
+    @Test
+    public void getAccount_whenAccountCreated_returnsStoredFields() throws AccountNotFoundException {
+        Account account = AccountTestHelper.createAccount();
+        account.setAccountHolderName("Zo\u00eb \u00c5ngstr\u00f6m");
+        accountDAO.createAccount(account);
+
+        Account stored = accountDAO.getAccount(1);
+        Assert.assertEquals(1, stored.getId());
+        Assert.assertEquals("Zo\u00eb \u00c5ngstr\u00f6m", stored.getAccountHolderName());
+        Assert.assertEquals(Currency.getInstance("GBP"), stored.getCurrency());
+        Assert.assertEquals(new BigDecimal("100.50"), stored.getBalance());
+        Assert.assertEquals(account.getCreatedDate(), stored.getCreatedDate());
+        Assert.assertEquals(stored, accountDAO.getAccount(1));
+    }
+
+    @Test
+    public void getAccount_whenBalanceChanged_viewShowsCurrentBalance() throws Exception {
+        Account view = accountDAO.createAccount(AccountTestHelper.createAccount());
+
+        accountDAO.accountWithdraw(1, new BigDecimal("0.50"), 2);
+        accountDAO.accountDeposit(1, BigDecimal.TEN, 2);
+        Assert.assertEquals(new BigDecimal("110.00"), view.getBalance());
+        Assert.assertEquals(11000, view.getBalanceMinorUnits());
+        Assert.assertEquals(2, view.getVersion());
+    }
+
+    @Test (expected = InsufficientFundsException.class)
+    public void accountWithdraw_whenInsufficientFunds_throwsInsufficientFundsException() throws Exception {
+        accountDAO.createAccount(AccountTestHelper.createAccount());
+        accountDAO.accountWithdraw(1, new BigDecimal("100.51"), 0);
+    }
+
+    @Test (expected = AccountNotFoundException.class)
+    public void accountDeposit_whenAccountNotFound_throwsAccountNotFoundException() throws AccountNotFoundException {
+        accountDAO.createAccount(AccountTestHelper.createAccount());
+        accountDAO.accountDeposit(2, BigDecimal.ONE, 0);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void createAccount_whenCurrencyHasNoMinorUnits_throwsIllegalArgumentException() {
+        Account account = AccountTestHelper.createAccount();
+        account.setCurrency(Currency.getInstance("XAU"));
+        accountDAO.createAccount(account);
+    }
+
+    @Test
+    public void insertAccount_whenIdsSpreadAcrossPages_findsEveryAccount() throws AccountNotFoundException {
+        int[] ids = {1, 65535, 65536, 65537, 1000000};
+        for (int id : ids) {
+            accountDAO.insertAccount(AccountTestHelper.createAccount(id));
+        }
+        for (int id : ids) {
+            Assert.assertEquals(String.format("Account holder %s", id), accountDAO.getAccount(id).getAccountHolderName());
+        }
+        List<Integer> allIds = accountDAO.getAllAccounts().stream().map(Account::getId).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(1, 65535, 65536, 65537, 1000000), allIds);
+        Assert.assertEquals(Arrays.asList(65536, 65537), accountDAO.getAccounts(65535, 2).stream()
+                .map(Account::getId).collect(Collectors.toList()));
+        Assert.assertEquals(1000001, accountDAO.createAccount(AccountTestHelper.createAccount()).getId());
+    }
+}
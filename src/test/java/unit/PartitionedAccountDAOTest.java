@@ -0,0 +1,91 @@
+package unit;
+
+import org.account.dao.PartitionedAccountDAO;
+import org.account.exception.AccountNotFoundException;
+import org.account.model.Account;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import util.AccountTestHelper;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class PartitionedAccountDAOTest {
+
+    private PartitionedAccountDAO accountDAO;
+
+    @Before
+    public void before() {
+        accountDAO = new PartitionedAccountDAO(3);
+    }
+
+    @Test
+    public void createAccount_whenManyCreated_spreadsAccountsEvenly() {
+        for (int i = 0; i < 9; i++) {
+            accountDAO.createAccount(AccountTestHelper.createAccount());
+        }
+        for (int partition = 0; partition < 3; partition++) {
+            Assert.assertEquals(3, accountDAO.getAccountCount(partition));
+        }
+    }
+
+    @Test
+    public void getAllAccounts_whenSpreadAcrossPartitions_returnsAccountsInIdOrder() {
+        for (int i = 0; i < 7; i++) {
+            accountDAO.createAccount(AccountTestHelper.createAccount());
+        }
+        List<Integer> ids = accountDAO.getAllAccounts().stream().map(Account::getId).collect(Collectors.toList());
+        Assert.assertEquals(7, accountDAO.getAllAccounts().size());
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7), ids);
+        Assert.assertEquals(Arrays.asList(3, 4),
+                accountDAO.getAccounts(2, 2).stream().map(Account::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void insertAccount_whenIdsSparse_findsEveryAccountAndContinuesAfterHighest() throws Exception {
+        int[] ids = {2, 5, 1000};
+        for (int id : ids) {
+            accountDAO.insertAccount(AccountTestHelper.createAccount(id));
+        }
+        for (int id : ids) {
+            Assert.assertEquals(id, accountDAO.getAccount(id).getId());
+        }
+        Assert.assertEquals(1001, accountDAO.createAccount(AccountTestHelper.createAccount()).getId());
+    }
+
+    @Test (expected = AccountNotFoundException.class)
+    public void getAccount_whenSlotSharedWithOtherPartitionsId_throwsAccountNotFoundException() throws Exception {
+        // IDs 3, 4 and 5 share slot 1 of their partitions' indexes
+        accountDAO.insertAccount(AccountTestHelper.createAccount(4));
+        accountDAO.getAccount(3);
+    }
+
+    @Test
+    public void accountWithdraw_whenAccountInAnyPartition_changesOnlyThatAccount() throws Exception {
+        accountDAO.insertAccount(AccountTestHelper.createAccount(1));
+        accountDAO.insertAccount(AccountTestHelper.createAccount(2));
+        accountDAO.accountWithdraw(2, new BigDecimal("0.5"), 1);
+        accountDAO.accountDeposit(1, new BigDecimal("0.5"), 2);
+        Assert.assertEquals(0, new BigDecimal("101").compareTo(accountDAO.getAccount(1).getBalance()));
+        Assert.assertEquals(0, new BigDecimal("200").compareTo(accountDAO.getAccount(2).getBalance()));
+    }
+
+    @Test
+    public void insertAccount_whenBalanceDecimal_holdsBalanceInMinorUnits() throws Exception {
+        accountDAO.insertAccount(AccountTestHelper.createAccount(1));
+        Account account = accountDAO.getAccount(1);
+        Assert.assertTrue(account.isMinorUnitBalance());
+        Assert.assertEquals(10050, account.getBalanceMinorUnits());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void createAccount_whenCurrencyHasNoMinorUnits_throwsIllegalArgumentException() {
+        Account account = AccountTestHelper.createAccount();
+        account.setCurrency(Currency.getInstance("XAU"));
+        accountDAO.createAccount(account);
+    }
+}
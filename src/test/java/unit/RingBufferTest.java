@@ -0,0 +1,86 @@
+package unit;
+
+import org.account.sequencer.RingBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RingBufferTest {
+
+    @Test
+    public void constructor_whenSizeNotPowerOfTwo_roundsUp() {
+        Assert.assertEquals(8, new RingBuffer<>(5, AtomicLong::new).size());
+        Assert.assertEquals(8, new RingBuffer<>(8, AtomicLong::new).size());
+    }
+
+    @Test
+    public void waitFor_whenEntriesPublished_returnsHighestContiguousSequence() throws InterruptedException {
+        RingBuffer<AtomicLong> ringBuffer = new RingBuffer<>(8, AtomicLong::new);
+        long first = ringBuffer.claim();
+        long second = ringBuffer.claim();
+        long third = ringBuffer.claim();
+        ringBuffer.publish(first);
+        ringBuffer.publish(third);
+
+        // The second entry is still being filled in, so the third one cannot be consumed yet
+        Assert.assertEquals(first, ringBuffer.waitFor(first));
+        ringBuffer.publish(second);
+        Assert.assertEquals(third, ringBuffer.waitFor(second));
+    }
+
+    @Test
+    public void waitFor_whenHalted_returnsBelowSequence() throws InterruptedException {
+        RingBuffer<AtomicLong> ringBuffer = new RingBuffer<>(8, AtomicLong::new);
+        ringBuffer.halt();
+        Assert.assertTrue(ringBuffer.waitFor(0) < 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void claim_whenHaltedWhileFull_throws() {
+        RingBuffer<AtomicLong> ringBuffer = new RingBuffer<>(2, AtomicLong::new);
+        ringBuffer.claim();
+        ringBuffer.claim();
+        ringBuffer.halt();
+        ringBuffer.claim();
+    }
+
+    @Test
+    public void publish_whenManyProducersWrapTheRing_consumerSeesEveryValueOnce() throws Exception {
+        int producers = 4;
+        int perProducer = 20000;
+        RingBuffer<AtomicLong> ringBuffer = new RingBuffer<>(16, AtomicLong::new);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long sequence = ringBuffer.claim();
+                    ringBuffer.get(sequence).set(producer * perProducer + i);
+                    ringBuffer.publish(sequence);
+                }
+            }));
+        }
+
+        boolean[] seen = new boolean[producers * perProducer];
+        long next = 0;
+        while (next < seen.length) {
+            long available = ringBuffer.waitFor(next);
+            for (; next <= available; next++) {
+                int value = (int) ringBuffer.get(next).get();
+                Assert.assertFalse(seen[value]);
+                seen[value] = true;
+            }
+            ringBuffer.release(available);
+        }
+
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+}
@@ -1,10 +1,12 @@
 package unit;
 
+import org.account.exception.ErrorCode;
 import org.account.exception.InvalidParameterException;
 import org.account.exception.RequiredParameterException;
 import org.account.model.dto.TransferDTO;
 import org.account.validator.TransferValidatorImpl;
 import org.account.validator.Validator;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import util.AccountTestHelper;
@@ -47,4 +49,34 @@ public class TransferValidatorTest {
         transferDTO.setTransferAmount(BigDecimal.valueOf(-1));
         transferValidator.validate(transferDTO);
     }
+
+    @Test(expected = InvalidParameterException.class)
+    public void validate_transferAmountMorePreciseThanCurrency_throwsInvalidParameterException() throws InvalidParameterException, RequiredParameterException {
+        TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
+        transferDTO.setCurrency("JPY");
+        transferDTO.setTransferAmount(new BigDecimal("1.5"));
+        transferValidator.validate(transferDTO);
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void validate_transferAmountWithTooManyDigits_throwsInvalidParameterException() throws InvalidParameterException, RequiredParameterException {
+        TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
+        transferDTO.setTransferAmount(new BigDecimal("12345678901234567890123456789012345"));
+        transferValidator.validate(transferDTO);
+    }
+
+    @Test
+    public void validate_invalidCurrencyCode_rejectsWithoutStackTrace() throws RequiredParameterException {
+        TransferDTO transferDTO = AccountTestHelper.createTransferDTO();
+        transferDTO.setCurrency("XXY");
+        try {
+            transferValidator.validate(transferDTO);
+            Assert.fail("Transfer was not rejected");
+        }
+        catch (InvalidParameterException e) {
+            Assert.assertEquals(ErrorCode.INVALID_PARAMETER, e.getCode());
+            Assert.assertEquals("XXY is not a valid currency code", e.getMessage());
+            Assert.assertEquals(0, e.getStackTrace().length);
+        }
+    }
 }
@@ -65,4 +65,17 @@ public class AccountTestHelper {
         dto.setTransferAmount(BigDecimal.valueOf(100));
         return dto;
     }
+
+    public static TransferDTO createTransferDTO(int srcId, int dstId, String amount) {
+        return createTransferDTO(srcId, dstId, amount, "GBP");
+    }
+
+    public static TransferDTO createTransferDTO(int srcId, int dstId, String amount, String currency) {
+        TransferDTO dto = createTransferDTO();
+        dto.setSourceAccountId(srcId);
+        dto.setDestinationAccountId(dstId);
+        dto.setCurrency(currency);
+        dto.setTransferAmount(new BigDecimal(amount));
+        return dto;
+    }
 }